@@ -19,18 +19,20 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-import org.projog.core.CutException;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.ProjogException;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
 import org.projog.core.term.Variable;
 
 /**
  * Represents an executing query.
  */
 public final class QueryResult {
+   /** Records the variables instantiated while evaluating this query so they can be reverted on backtracking. */
+   private final Trail trail = new Trail();
    private final Predicate predicate;
    private final Map<String, Variable> variables;
    private boolean hasBeenEvaluated;
@@ -44,18 +46,27 @@ public final class QueryResult {
     * @see QueryStatement#executeQuery()
     */
    QueryResult(PredicateFactory predicateFactory, Term query, Map<String, Variable> variables) {
+      Trail previous = Trail.activate(trail);
+      try {
+         this.predicate = getPredicate(predicateFactory, query);
+      } finally {
+         Trail.activate(previous);
+      }
+
+      this.variables = variables;
+   }
+
+   private static Predicate getPredicate(PredicateFactory predicateFactory, Term query) {
       int numArgs = query.getNumberOfArguments();
       if (numArgs == 0) {
-         this.predicate = predicateFactory.getPredicate(TermUtils.EMPTY_ARRAY);
+         return predicateFactory.getPredicate(TermUtils.EMPTY_ARRAY);
       } else {
          Term[] args = new Term[numArgs];
          for (int i = 0; i < args.length; i++) {
             args[i] = query.getArgument(i).getTerm();
          }
-         this.predicate = predicateFactory.getPredicate(args);
+         return predicateFactory.getPredicate(args);
       }
-
-      this.variables = variables;
    }
 
    /**
@@ -71,12 +82,17 @@ public final class QueryResult {
     * @throws ProjogException if an error occurs while evaluating the query
     */
    public boolean next() {
-      if (!hasBeenEvaluated) {
-         return doFirstEvaluationOfQuery();
-      } else if (predicate.couldReevaluationSucceed()) {
-         return doRetryEvaluationOfQuery();
-      } else {
-         return false;
+      Trail previous = Trail.activate(trail);
+      try {
+         if (!hasBeenEvaluated) {
+            return doFirstEvaluationOfQuery();
+         } else if (predicate.couldReevaluationSucceed()) {
+            return doRetryEvaluationOfQuery();
+         } else {
+            return false;
+         }
+      } finally {
+         Trail.activate(previous);
       }
    }
 
@@ -86,12 +102,8 @@ public final class QueryResult {
    }
 
    private boolean doRetryEvaluationOfQuery() {
-      try {
-         return predicate.evaluate();
-      } catch (CutException e) {
-         // e.g. for a query like: ?- true, !.
-         return false;
-      }
+      // a query like "?- true, !." fails on retry by cutting the barrier of this query's trail
+      return !trail.getCutBarrier().isCut() && predicate.evaluate();
    }
 
    /**
@@ -27,10 +27,10 @@ import org.projog.core.PredicateFactory;
 import org.projog.core.ProjogException;
 import org.projog.core.parser.ParserException;
 import org.projog.core.parser.SentenceParser;
-import org.projog.core.term.Atom;
 import org.projog.core.term.DecimalFraction;
 import org.projog.core.term.IntegerNumber;
 import org.projog.core.term.ListFactory;
+import org.projog.core.term.SymbolTable;
 import org.projog.core.term.Term;
 import org.projog.core.term.Variable;
 
@@ -110,7 +110,7 @@ public final class QueryStatement {
    }
 
    public void setAtomName(String variableId, String atomName) {
-      setTerm(variableId, new Atom(atomName));
+      setTerm(variableId, SymbolTable.getAtom(atomName));
    }
 
    public void setDouble(String variableId, double value) {
@@ -124,7 +124,7 @@ public final class QueryStatement {
    public void setListOfAtomNames(String variableId, String... atomNames) {
       Term[] terms = new Term[atomNames.length];
       for (int i = 0; i < atomNames.length; i++) {
-         terms[i] = new Atom(atomNames[i]);
+         terms[i] = SymbolTable.getAtom(atomNames[i]);
       }
       setTerm(variableId, ListFactory.createList(terms));
    }
@@ -132,7 +132,7 @@ public final class QueryStatement {
    public void setListOfAtomNames(String variableId, List<String> atomNames) {
       Term[] terms = new Term[atomNames.size()];
       for (int i = 0; i < atomNames.size(); i++) {
-         terms[i] = new Atom(atomNames.get(i));
+         terms[i] = SymbolTable.getAtom(atomNames.get(i));
       }
       setTerm(variableId, ListFactory.createList(terms));
    }
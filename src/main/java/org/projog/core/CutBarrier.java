@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core;
+
+/**
+ * Records if the evaluation of a user defined predicate has backtracked to a cut.
+ * <p>
+ * Each invocation of a user defined predicate (and each query, and each goal passed as an argument to a predicate such
+ * as {@code call/1}, {@code findall/3} or {@code \+/1}) has its own {@code CutBarrier}, which it makes available to the
+ * goals of its clauses using {@link org.projog.core.term.Trail#setCutBarrier(CutBarrier)}. When
+ * backtracking reaches a cut the cut calls {@link #cut()} on the current barrier and fails. Predicates that would
+ * otherwise try alternative solutions (such as conjunctions, disjunctions and the iteration over the clauses of a user
+ * defined predicate) check {@link #isCut()} before doing so.
+ * <p>
+ * Using a flag, rather than throwing an exception, means the predicates between the cut and the invocation it belongs
+ * to are exited by ordinary returns.
+ * <p>
+ * A cut that is evaluated outside of any query or user defined predicate (e.g. a predicate evaluated directly from Java
+ * using the thread's default trail) has nothing to prune. It is made against {@link #NONE}, which ignores it, so that
+ * it does not affect later evaluations on the same thread.
+ *
+ * @see org.projog.core.function.flow.Cut
+ */
+public final class CutBarrier {
+   /** A barrier that is never cut, used when there is no query or user defined predicate for a cut to prune. */
+   public static final CutBarrier NONE = new CutBarrier(false);
+
+   private final boolean isCuttable;
+   private boolean isCut;
+
+   public CutBarrier() {
+      this(true);
+   }
+
+   private CutBarrier(boolean isCuttable) {
+      this.isCuttable = isCuttable;
+   }
+
+   /** Indicates that backtracking has reached a cut, so no further alternatives should be tried. */
+   public void cut() {
+      if (isCuttable) {
+         isCut = true;
+      }
+   }
+
+   /**
+    * Returns {@code true} if {@link #cut()} has been called.
+    *
+    * @return {@code true} if backtracking has reached a cut, else {@code false}
+    */
+   public boolean isCut() {
+      return isCut;
+   }
+}
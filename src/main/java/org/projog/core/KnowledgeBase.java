@@ -17,6 +17,7 @@ package org.projog.core;
 
 import org.projog.core.event.ProjogListeners;
 import org.projog.core.function.kb.AddPredicateFactory;
+import org.projog.core.term.IntegerNumberCache;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermFormatter;
 
@@ -51,6 +52,7 @@ public final class KnowledgeBase {
     */
    KnowledgeBase(ProjogProperties projogProperties) {
       this.projogProperties = projogProperties;
+      IntegerNumberCache.ensureCached(projogProperties.getMinCachedIntegerValue(), projogProperties.getMaxCachedIntegerValue());
       this.predicates = new Predicates(this);
       this.predicates.addPredicateFactory(ADD_PREDICATE_KEY, new AddPredicateFactory(this));
       this.arithmeticOperators = new ArithmeticOperators(this);
@@ -18,9 +18,9 @@ package org.projog.core;
 import static org.projog.core.term.TermUtils.getAtomName;
 import static org.projog.core.term.TermUtils.toInt;
 
-import org.projog.core.term.Atom;
 import org.projog.core.term.IntegerNumberCache;
 import org.projog.core.term.Structure;
+import org.projog.core.term.SymbolTable;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermType;
 
@@ -84,7 +84,7 @@ public final class PredicateKey implements Comparable<PredicateKey> {
       if (numArgs < 0) {
          throw new IllegalArgumentException("Number of arguments: " + numArgs + " is less than 0");
       }
-      this.name = name;
+      this.name = SymbolTable.intern(name);
       this.numArgs = numArgs;
    }
 
@@ -97,7 +97,7 @@ public final class PredicateKey implements Comparable<PredicateKey> {
    }
 
    public Term toTerm() {
-      return Structure.createStructure(PREDICATE_KEY_FUNCTOR, new Term[] {new Atom(name), IntegerNumberCache.valueOf(numArgs)});
+      return Structure.createStructure(PREDICATE_KEY_FUNCTOR, new Term[] {SymbolTable.getAtom(name), IntegerNumberCache.valueOf(numArgs)});
    }
 
    /**
@@ -109,7 +109,7 @@ public final class PredicateKey implements Comparable<PredicateKey> {
    public boolean equals(Object o) {
       if (o instanceof PredicateKey) {
          PredicateKey k = (PredicateKey) o;
-         return name.equals(k.name) && numArgs == k.numArgs;
+         return name == k.name && numArgs == k.numArgs;
       } else {
          return false;
       }
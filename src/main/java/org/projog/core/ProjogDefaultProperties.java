@@ -15,6 +15,8 @@
  */
 package org.projog.core;
 
+import org.projog.core.udp.IndexEvictionPolicy;
+
 /**
  * Implementation of {@link ProjogProperties} with hard-coded values.
  * <p>
@@ -31,4 +33,70 @@ public class ProjogDefaultProperties implements ProjogProperties {
    public String getBootstrapScript() {
       return DEFAULT_BOOTSTRAP_SCRIPT;
    }
+
+   /** Returns {@code false} */
+   @Override
+   public boolean isStructureSharingEnabled() {
+      return false;
+   }
+
+   /** Returns {@code false} */
+   @Override
+   public boolean isGroundTermSharingEnabled() {
+      return false;
+   }
+
+   /** Returns {@code -128} */
+   @Override
+   public long getMinCachedIntegerValue() {
+      return -128;
+   }
+
+   /** Returns {@code 127} */
+   @Override
+   public long getMaxCachedIntegerValue() {
+      return 127;
+   }
+
+   /** Returns a quarter of the maximum amount of memory the JVM will attempt to use */
+   @Override
+   public long getIndexMemoryBudget() {
+      return Runtime.getRuntime().maxMemory() / 4;
+   }
+
+   /** Returns {@link IndexEvictionPolicy#LEAST_RECENTLY_USED} */
+   @Override
+   public IndexEvictionPolicy getIndexEvictionPolicy() {
+      return IndexEvictionPolicy.LEAST_RECENTLY_USED;
+   }
+
+   /** Returns {@code false} */
+   @Override
+   public boolean isBloomFilterEnabled() {
+      return false;
+   }
+
+   /** Returns {@code false} */
+   @Override
+   public boolean isRuntimeCompilationEnabled() {
+      return false;
+   }
+
+   /** Returns {@code 1000} */
+   @Override
+   public int getRuntimeCompilationThreshold() {
+      return 1000;
+   }
+
+   /** Returns {@code false} */
+   @Override
+   public boolean isWamEnabled() {
+      return false;
+   }
+
+   /** Returns {@code false} */
+   @Override
+   public boolean isLastCallOptimisationEnabled() {
+      return false;
+   }
 }
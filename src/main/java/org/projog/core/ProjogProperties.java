@@ -16,6 +16,7 @@
 package org.projog.core;
 
 import org.projog.api.Projog;
+import org.projog.core.udp.IndexEvictionPolicy;
 
 /**
  * Collection of configuration properties.
@@ -41,4 +42,149 @@ public interface ProjogProperties {
     * @see KnowledgeBaseUtils#bootstrap(KnowledgeBase)
     */
    String getBootstrapScript();
+
+   /**
+    * Returns {@code true} if the bodies of user defined predicates should be shared between invocations.
+    * <p>
+    * When enabled, the body of a rule consisting of a conjunction of goals is not copied every time the rule is
+    * invoked. Instead each invocation has a frame recording the terms its variables represent. The arguments of each
+    * goal of the body are only created, from the shared body and the frame, when that goal is reached.
+    *
+    * @return {@code true} if the bodies of user defined predicates should be shared between invocations
+    */
+   boolean isStructureSharingEnabled();
+
+   /**
+    * Returns {@code true} if equal ground terms contained in the clauses of static user defined predicates should be
+    * represented by a single instance.
+    * <p>
+    * When enabled, each clause added to a static user defined predicate has its ground terms replaced with equal
+    * instances that are shared with other clauses. This reduces the memory required by programs that contain many
+    * facts that repeat the same ground terms, at the cost of extra work when the clauses are added.
+    *
+    * @return {@code true} if ground terms in the clauses of static user defined predicates should be shared
+    * @see org.projog.core.term.GroundTermTable
+    */
+   boolean isGroundTermSharingEnabled();
+
+   /**
+    * Returns the minimum value of the range of integers that should be represented by shared instances.
+    * <p>
+    * Arithmetic, and predicates such as {@code between/3} and {@code length/2}, create a new integer for each result
+    * unless the result is within the range of cached values. Extending the range can reduce the number of objects
+    * created by programs that count through a known range of values - at the cost of the memory required to keep the
+    * cached instances.
+    *
+    * @return the minimum value of the range of integers that should be cached
+    * @see #getMaxCachedIntegerValue()
+    * @see org.projog.core.term.IntegerNumberCache
+    */
+   long getMinCachedIntegerValue();
+
+   /**
+    * Returns the maximum value of the range of integers that should be represented by shared instances.
+    *
+    * @return the maximum value of the range of integers that should be cached
+    * @see #getMinCachedIntegerValue()
+    * @see org.projog.core.term.IntegerNumberCache
+    */
+   long getMaxCachedIntegerValue();
+
+   /**
+    * Returns the maximum number of bytes that should be used by the indexes of static user defined predicates.
+    * <p>
+    * Indexes are created when first needed. When the estimated size of all indexes exceeds this budget, indexes are
+    * discarded (and recreated if needed again) in the order determined by {@link #getIndexEvictionPolicy()}. The
+    * budget covers the indexes of arguments that are immutable in every clause, the indexes of the principal functors
+    * of other arguments, the indexes used to select clauses within a range and, if enabled, Bloom filters. It does not
+    * cover the clauses themselves.
+    *
+    * @return the maximum number of bytes that should be used by indexes
+    * @see org.projog.core.udp.IndexCache
+    */
+   long getIndexMemoryBudget();
+
+   /**
+    * Returns the policy used to select which index to discard when the {@link #getIndexMemoryBudget()} is exceeded.
+    *
+    * @return the policy used to select which index to discard
+    * @see org.projog.core.udp.IndexCache
+    */
+   IndexEvictionPolicy getIndexEvictionPolicy();
+
+   /**
+    * Returns {@code true} if calls to static user defined predicates should be checked against Bloom filters before an
+    * index is used.
+    * <p>
+    * When enabled, a Bloom filter is created for each argument that is immutable in every clause the first time a call
+    * has an immutable value for that argument. A call with a value that the filter shows does not occur in any clause
+    * fails without an index being created or used. This benefits programs that query large tables of facts for values
+    * they mostly do not contain. Each filter uses approximately 10 bits per clause and, like indexes, is subject to the
+    * {@link #getIndexMemoryBudget()}.
+    *
+    * @return {@code true} if Bloom filters should be used to identify calls that cannot match any clause
+    * @see org.projog.core.udp.BloomFilterStatistics
+    */
+   boolean isBloomFilterEnabled();
+
+   /**
+    * Returns {@code true} if static user defined predicates should be compiled into Java classes at runtime.
+    * <p>
+    * When enabled, the clauses of a static user defined predicate are translated into Java source code, and compiled
+    * in memory, the first time the predicate is called. The generated code unifies arguments and evaluates the goals of
+    * each clause directly, rather than interpreting templates, but otherwise behaves identically to the interpreter.
+    * Compilation requires a Java compiler to be available at runtime (i.e. running on a JDK rather than a JRE) - if one
+    * is not available then predicates continue to be interpreted.
+    *
+    * @return {@code true} if static user defined predicates should be compiled into Java classes at runtime
+    * @see org.projog.core.udp.compiler.PredicateCompiler
+    * @see #getRuntimeCompilationThreshold()
+    */
+   boolean isRuntimeCompilationEnabled();
+
+   /**
+    * Returns the number of times a static user defined predicate is called before it is compiled.
+    * <p>
+    * Only used if {@link #isRuntimeCompilationEnabled()}. Until the threshold is reached a predicate is interpreted.
+    * Once it is reached the predicate is compiled by a background thread, while calls continue to be interpreted, and
+    * the compiled version is used by all calls made after compilation completes. This avoids spending time compiling
+    * predicates that are rarely called. If {@code 0} then predicates are compiled, by the calling thread, the first time
+    * they are called.
+    *
+    * @return the number of calls to a predicate before it is compiled
+    * @see org.projog.core.udp.StaticUserDefinedPredicateFactory#getExecutionTier()
+    */
+   int getRuntimeCompilationThreshold();
+
+   /**
+    * Indicates if static user defined predicates should be evaluated by a Warren Abstract Machine (WAM).
+    * <p>
+    * When enabled, the clauses of a static user defined predicate, and of the user defined predicates it calls, are
+    * compiled into instructions that are executed by a {@link org.projog.core.udp.wam.WamCompiler WAM} - rather than
+    * being interpreted. Predicates that call dynamic predicates, retryable built-in predicates (such as a disjunction)
+    * or use variables as goals are not supported and continue to be interpreted. When a predicate is evaluated by the
+    * WAM its execution tier is not changed by {@link #isRuntimeCompilationEnabled()}.
+    * <p>
+    * The WAM is experimental and is not a performance option - it is currently slower than the interpreter it replaces.
+    *
+    * @return {@code true} if static user defined predicates should be evaluated by a WAM when possible
+    */
+   boolean isWamEnabled();
+
+   /**
+    * Returns {@code true} if interpreted user defined predicates should evaluate the last goal of a clause without
+    * growing the Java stack, when nothing else in the clause is left to backtrack to.
+    * <p>
+    * When enabled, if the last goal of a clause is a call to an interpreted user defined predicate, and neither the
+    * goals before it (back to the most recent cut) nor the remaining clauses could provide an alternative solution, then
+    * the clauses of the called predicate are evaluated in place of the calling clause rather than by a nested call. This
+    * allows deterministic recursion, including mutual recursion and clauses with more than one goal before the recursive
+    * call, to run for any number of iterations. Calls to predicates that are being spied on, and to predicates that are
+    * compiled or evaluated by a WAM, are always evaluated by a nested call. The clauses of calls that are evaluated in
+    * place are not included in the stack trace of an exception.
+    *
+    * @return {@code true} if last call optimisation should be applied to interpreted user defined predicates
+    * @see TailCall
+    */
+   boolean isLastCallOptimisationEnabled();
 }
@@ -29,6 +29,7 @@ import java.util.Map;
 
 import org.projog.core.parser.SentenceParser;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.ClauseModel;
 import org.projog.core.udp.DynamicUserDefinedPredicateFactory;
 import org.projog.core.udp.StaticUserDefinedPredicateFactory;
@@ -167,9 +168,14 @@ public final class ProjogSourceReader {
       if (isDynamicFunctionCall(query)) {
          declareDynamicPredicate(query.getArgument(0));
       } else {
-         Predicate e = KnowledgeBaseUtils.getPredicate(kb, query);
-         while (e.evaluate() && e.couldReevaluationSucceed()) {
-            // keep re-evaluating until fail
+         Trail previous = Trail.activate(new Trail());
+         try {
+            Predicate e = KnowledgeBaseUtils.getPredicate(kb, query);
+            while (e.evaluate() && e.couldReevaluationSucceed()) {
+               // keep re-evaluating until fail
+            }
+         } finally {
+            Trail.activate(previous);
          }
       }
    }
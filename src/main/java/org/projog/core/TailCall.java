@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core;
+
+/**
+ * Allows the body of a clause to pass the evaluation of its last goal back to the user defined predicate the clause
+ * belongs to.
+ * <p>
+ * Before evaluating the body of a clause, a user defined predicate that supports last call optimisation calls
+ * {@link #allow(Predicate)}. When the body reaches its last goal, and that goal is a call to a user defined predicate
+ * that has not yet been evaluated, the body calls {@link #offer(Predicate)} and returns {@code true} without evaluating
+ * the goal. The predicates that make up the body record, using {@link #precededBy(Predicate, boolean)}, whether any of
+ * the goals before the last goal could be backtracked to. If nothing is left to backtrack to then the user defined
+ * predicate can continue with the clauses of the called predicate, rather than evaluating it by a nested call, so the
+ * Java stack does not grow with each call.
+ * <p>
+ * Each {@link org.projog.core.term.Trail} has its own {@code TailCall}.
+ *
+ * @see ProjogProperties#isLastCallOptimisationEnabled()
+ */
+public final class TailCall {
+   private Predicate allowed;
+   private Predicate callee;
+   private boolean isDeterministic;
+   private boolean isPruned;
+
+   /**
+    * Allows the specified predicate to offer its last goal the next time it is evaluated.
+    *
+    * @param body the predicate about to be evaluated, or {@code null} to withdraw a previous permission
+    */
+   public void allow(Predicate body) {
+      allowed = body;
+   }
+
+   /**
+    * Returns {@code true} if the specified predicate has been allowed to offer its last goal.
+    * <p>
+    * The permission is withdrawn by calling this method, so it only applies to a single evaluation.
+    *
+    * @param body the predicate being evaluated
+    * @return {@code true} if {@code body} can call {@link #offer(Predicate)}
+    */
+   public boolean isAllowed(Predicate body) {
+      if (allowed == body) {
+         allowed = null;
+         return true;
+      } else {
+         return false;
+      }
+   }
+
+   /**
+    * Offers the specified, not yet evaluated, last goal to the user defined predicate that allowed the offer.
+    *
+    * @param callee the last goal of the body of a clause
+    */
+   public void offer(Predicate callee) {
+      this.callee = callee;
+      this.isDeterministic = true;
+      this.isPruned = false;
+   }
+
+   /**
+    * Records a goal that precedes the offered goal in the body of the clause.
+    * <p>
+    * Must be called for each preceding goal in turn, starting with the goal immediately before the offered goal.
+    *
+    * @param goal a goal that has already been evaluated
+    * @param isCut {@code true} if {@code goal} is a cut
+    */
+   public void precededBy(Predicate goal, boolean isCut) {
+      if (isPruned) {
+         // goals before a cut can never be backtracked to
+      } else if (isCut) {
+         isPruned = true;
+      } else if (goal.couldReevaluationSucceed()) {
+         isDeterministic = false;
+      }
+   }
+
+   /**
+    * Returns {@code true} if a goal has been offered and not yet taken.
+    *
+    * @return {@code true} if {@link #take()} would return a goal
+    */
+   public boolean isOffered() {
+      return callee != null;
+   }
+
+   /**
+    * Returns {@code true} if none of the goals that precede the offered goal, and follow the last cut, can be
+    * re-evaluated.
+    *
+    * @return {@code true} if nothing in the body, other than the offered goal, could be backtracked to
+    */
+   public boolean isDeterministic() {
+      return isDeterministic;
+   }
+
+   /**
+    * Returns {@code true} if the offered goal is preceded by a cut.
+    *
+    * @return {@code true} if the other clauses of the predicate that allowed the offer will never be tried
+    */
+   public boolean isPruned() {
+      return isPruned;
+   }
+
+   /**
+    * Returns the offered goal, so it is no longer offered.
+    *
+    * @return the goal passed to the most recent call to {@link #offer(Predicate)}
+    */
+   public Predicate take() {
+      Predicate result = callee;
+      callee = null;
+      return result;
+   }
+}
@@ -72,7 +72,7 @@ abstract class AbstractCollectionOf extends AbstractPredicate {
    private void init(Term template, Term goal) {
       variablesNotInTemplate = getVariablesNotInTemplate(template, goal);
 
-      Predicate predicate = KnowledgeBaseUtils.getPredicate(kb, goal);
+      Predicate predicate = new CutBarrierPredicate(KnowledgeBaseUtils.getPredicate(kb, goal));
 
       Map<Key, List<Term>> m = new LinkedHashMap<>();
       if (predicate.evaluate()) {
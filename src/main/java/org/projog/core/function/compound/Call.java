@@ -148,7 +148,7 @@ public final class Call implements PredicateFactory, KnowledgeBaseConsumer {
    }
 
    public Predicate getPredicate(Term arg) {
-      return KnowledgeBaseUtils.getPredicate(knowledgeBase, arg);
+      return new CutBarrierPredicate(KnowledgeBaseUtils.getPredicate(knowledgeBase, arg));
    }
 
    @Override
@@ -17,12 +17,17 @@ package org.projog.core.function.compound;
 
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
+import org.projog.core.Predicates;
 import org.projog.core.PreprocessablePredicateFactory;
+import org.projog.core.TailCall;
 import org.projog.core.function.AbstractPredicateFactory;
 import org.projog.core.function.AbstractSingletonPredicate;
+import org.projog.core.function.flow.Cut;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.PredicateUtils;
+import org.projog.core.udp.interpreter.InterpretedUserDefinedPredicate;
 
 /* TEST
  %TRUE true, true
@@ -135,9 +140,41 @@ import org.projog.core.udp.PredicateUtils;
  * </p>
  */
 public final class Conjunction extends AbstractPredicateFactory implements PreprocessablePredicateFactory {
+   /**
+    * Returns a new {@link Predicate} for the specified goal.
+    * <p>
+    * The goal may contain variables that have been instantiated since the goal was created. Rather than using
+    * {@link Term#getTerm()} to create a new version of the whole goal (which, for a conjunction, would include all of
+    * the goals it contains) only the arguments of goals that are not conjunctions are replaced. A conjunction replaces
+    * the arguments of each of the goals it contains when that goal is reached.
+    */
+   static Predicate getPredicate(Predicates predicates, Term goal) {
+      PredicateFactory pf = predicates.getPredicateFactory(goal);
+      return pf.getPredicate(getArgs(pf, goal));
+   }
+
+   /**
+    * Returns the arguments to use when calling {@link PredicateFactory#getPredicate(Term[])} for the specified goal.
+    *
+    * @see #getPredicate(Predicates, Term)
+    */
+   private static Term[] getArgs(PredicateFactory pf, Term goal) {
+      if (isConjunction(pf)) {
+         return goal.getArgs();
+      } else {
+         return TermUtils.getTerms(goal.getArgs());
+      }
+   }
+
+   private static boolean isConjunction(PredicateFactory pf) {
+      return pf instanceof Conjunction
+             || pf instanceof OptimisedRetryableConjuction
+             || pf instanceof OptimisedSingletonConjuction;
+   }
+
    @Override
    protected Predicate getPredicate(Term arg1, Term arg2) {
-      Predicate firstPredicate = getPredicates().getPredicateFactory(arg1).getPredicate(arg1.getArgs());
+      Predicate firstPredicate = getPredicate(getPredicates(), arg1);
       if (firstPredicate.evaluate()) {
          return new ConjunctionPredicate(firstPredicate, getPredicates().getPredicateFactory(arg2), arg2);
       } else {
@@ -173,7 +210,7 @@ public final class Conjunction extends AbstractPredicateFactory implements Prepr
 
       @Override
       protected Predicate getPredicate(Term arg1, Term arg2) {
-         Predicate firstPredicate = firstPredicateFactory.getPredicate(arg1.getArgs());
+         Predicate firstPredicate = firstPredicateFactory.getPredicate(getArgs(firstPredicateFactory, arg1));
          if (firstPredicate.evaluate()) {
             return new ConjunctionPredicate(firstPredicate, secondPredicateFactory, arg2);
          } else {
@@ -193,7 +230,7 @@ public final class Conjunction extends AbstractPredicateFactory implements Prepr
 
       @Override
       protected boolean evaluate(Term arg1, Term arg2) {
-         return firstPredicateFactory.getPredicate(arg1.getArgs()).evaluate() && secondPredicateFactory.getPredicate(arg2.getTerm().getArgs()).evaluate();
+         return firstPredicateFactory.getPredicate(getArgs(firstPredicateFactory, arg1)).evaluate() && secondPredicateFactory.getPredicate(getArgs(secondPredicateFactory, arg2)).evaluate();
       }
    }
 
@@ -202,7 +239,8 @@ public final class Conjunction extends AbstractPredicateFactory implements Prepr
       private final PredicateFactory secondPredicateFactory;
       private final Term originalSecondArgument;
       private Predicate secondPredicate;
-      private Term copySecondArgument;
+      private Trail trail;
+      private int mark;
 
       private ConjunctionPredicate(Predicate firstPredicate, PredicateFactory secondPredicateFactory, Term secondArgument) {
          this.firstPredicate = firstPredicate;
@@ -210,31 +248,64 @@ public final class Conjunction extends AbstractPredicateFactory implements Prepr
          this.originalSecondArgument = secondArgument;
       }
 
+      /**
+       * Evaluates the second goal, backtracking to the first goal if the second goal fails.
+       * <p>
+       * If this conjunction is the body of a clause that has been allowed to offer its last goal (see {@link TailCall})
+       * then a second goal that is a call to an interpreted user defined predicate is offered, rather than evaluated.
+       */
       @Override
       public boolean evaluate() {
+         if (trail == null) {
+            trail = Trail.getCurrent();
+         }
+         TailCall tailCall = trail.getTailCall();
+         boolean isTailCallAllowed = tailCall.isAllowed(this);
          do {
             if (secondPredicate == null) {
-               copySecondArgument = originalSecondArgument.getTerm();
-               secondPredicate = secondPredicateFactory.getPredicate(copySecondArgument.getArgs());
-               if (secondPredicate.evaluate()) {
+               mark = trail.mark();
+               secondPredicate = secondPredicateFactory.getPredicate(getArgs(secondPredicateFactory, originalSecondArgument));
+               if (isTailCallAllowed && InterpretedUserDefinedPredicate.isTailCallCandidate(secondPredicate)) {
+                  tailCall.offer(secondPredicate);
+                  tailCall.precededBy(firstPredicate, Cut.isCut(firstPredicate));
                   return true;
                }
-            } else if (secondPredicate.couldReevaluationSucceed() && secondPredicate.evaluate()) {
+               if (evaluateSecondPredicate(tailCall, isTailCallAllowed)) {
+                  return true;
+               }
+            } else if (secondPredicate.couldReevaluationSucceed() && evaluateSecondPredicate(tailCall, isTailCallAllowed)) {
                return true;
             }
 
             secondPredicate = null;
-            TermUtils.backtrack(copySecondArgument.getArgs());
-         } while (firstPredicate.couldReevaluationSucceed() && firstPredicate.evaluate());
+            trail.undo(mark);
+         } while (!trail.getCutBarrier().isCut() && firstPredicate.couldReevaluationSucceed() && firstPredicate.evaluate());
 
          return false;
       }
 
+      private boolean evaluateSecondPredicate(TailCall tailCall, boolean isTailCallAllowed) {
+         if (!isTailCallAllowed) {
+            return secondPredicate.evaluate();
+         }
+
+         // the second goal may itself be a conjunction that ends with a goal that can be offered
+         tailCall.allow(secondPredicate);
+         if (secondPredicate.evaluate()) {
+            if (tailCall.isOffered()) {
+               tailCall.precededBy(firstPredicate, Cut.isCut(firstPredicate));
+            }
+            return true;
+         } else {
+            return false;
+         }
+      }
+
       @Override
       public boolean couldReevaluationSucceed() {
          return firstPredicate.couldReevaluationSucceed()
                 || (secondPredicate != null && secondPredicate.couldReevaluationSucceed())
-                || (copySecondArgument == null && secondPredicateFactory.isRetryable());
+                || (trail == null && secondPredicateFactory.isRetryable());
       }
    }
 }
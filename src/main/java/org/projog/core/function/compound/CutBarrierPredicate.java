@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.function.compound;
+
+import org.projog.core.CutBarrier;
+import org.projog.core.Predicate;
+import org.projog.core.term.Trail;
+
+/**
+ * Evaluates a goal, passed as an argument to a predicate such as {@code call/1} or {@code findall/3}, with its own
+ * {@link CutBarrier}.
+ * <p>
+ * A cut within a goal that is called as an argument to another predicate only prevents alternative solutions of that
+ * goal - it does not affect the clause that contains the call. e.g. given {@code e(X) :- findall(Y,(m(Y),!),X).} and
+ * {@code e(other).} then {@code e(X)} has two solutions. The barrier is made current on the {@link Trail} for the
+ * duration of each evaluation of the goal, and then the previous barrier is restored.
+ */
+final class CutBarrierPredicate implements Predicate {
+   private final Predicate predicate;
+   private final CutBarrier cutBarrier = new CutBarrier();
+
+   CutBarrierPredicate(Predicate predicate) {
+      this.predicate = predicate;
+   }
+
+   @Override
+   public boolean evaluate() {
+      if (cutBarrier.isCut()) {
+         return false;
+      }
+      Trail trail = Trail.getCurrent();
+      CutBarrier previousCutBarrier = trail.setCutBarrier(cutBarrier);
+      try {
+         return predicate.evaluate();
+      } finally {
+         trail.setCutBarrier(previousCutBarrier);
+      }
+   }
+
+   @Override
+   public boolean couldReevaluationSucceed() {
+      return !cutBarrier.isCut() && predicate.couldReevaluationSucceed();
+   }
+}
@@ -20,6 +20,7 @@ import org.projog.core.Predicate;
 import org.projog.core.function.AbstractPredicate;
 import org.projog.core.function.AbstractPredicateFactory;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 
 /* TEST
  %QUERY true; true
@@ -205,7 +206,7 @@ public final class Disjunction extends AbstractPredicateFactory {
       Predicate actualPredicate;
       Predicate conditionPredicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), conditionTerm);
       if (conditionPredicate.evaluate()) {
-         actualPredicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), thenTerm.getTerm());
+         actualPredicate = Conjunction.getPredicate(getPredicates(), thenTerm);
       } else {
          conditionTerm.backtrack();
          actualPredicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), elseTerm);
@@ -232,7 +233,7 @@ public final class Disjunction extends AbstractPredicateFactory {
       @Override
       public boolean evaluate() {
          if (firstPredicate == null) {
-            firstPredicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), inputArg1.getTerm());
+            firstPredicate = Conjunction.getPredicate(getPredicates(), inputArg1);
             if (firstPredicate.evaluate()) {
                return true;
             }
@@ -241,8 +242,12 @@ public final class Disjunction extends AbstractPredicateFactory {
          }
 
          if (secondPredicate == null) {
+            if (Trail.getCurrent().getCutBarrier().isCut()) {
+               // the first alternative backtracked to a cut, so the second alternative must not be tried
+               return false;
+            }
             inputArg1.backtrack();
-            secondPredicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), inputArg2.getTerm());
+            secondPredicate = Conjunction.getPredicate(getPredicates(), inputArg2);
             return secondPredicate.evaluate();
          } else {
             return secondPredicate.couldReevaluationSucceed() && secondPredicate.evaluate();
@@ -87,7 +87,7 @@ import org.projog.core.term.Variable;
 public final class FindAll extends AbstractSingletonPredicate {
    @Override
    protected boolean evaluate(Term template, Term goal, Term output) {
-      final Predicate predicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), goal);
+      final Predicate predicate = new CutBarrierPredicate(KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), goal));
       final Term solutions;
       if (predicate.evaluate()) {
          solutions = createListOfAllSolutions(template, predicate);
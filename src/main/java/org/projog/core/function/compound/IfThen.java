@@ -103,8 +103,7 @@ public final class IfThen extends AbstractPredicateFactory {
    protected Predicate getPredicate(Term conditionTerm, Term thenTerm) {
       Predicate conditionPredicate = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), conditionTerm);
       if (conditionPredicate.evaluate()) {
-         // TODO should we need to call getTerm before calling getPredicate, or should getPredicate contain that logic?
-         return KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), thenTerm.getTerm());
+         return Conjunction.getPredicate(getPredicates(), thenTerm);
       } else {
          return PredicateUtils.toPredicate(false);
       }
@@ -71,7 +71,7 @@ import org.projog.core.term.Term;
 public final class Not extends AbstractSingletonPredicate implements PreprocessablePredicateFactory {
    @Override
    protected boolean evaluate(Term t) {
-      Predicate e = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), t);
+      Predicate e = new CutBarrierPredicate(KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), t));
       if (!e.evaluate()) {
          t.backtrack();
          return true;
@@ -99,7 +99,7 @@ public final class Not extends AbstractSingletonPredicate implements Preprocessa
 
       @Override
       protected boolean evaluate(Term arg) {
-         if (!pf.getPredicate(arg.getArgs()).evaluate()) {
+         if (!new CutBarrierPredicate(pf.getPredicate(arg.getArgs())).evaluate()) {
             arg.backtrack();
             return true;
          } else {
@@ -50,7 +50,7 @@ import org.projog.core.term.Term;
 public final class Once extends AbstractSingletonPredicate implements PreprocessablePredicateFactory {
    @Override
    protected boolean evaluate(Term t) {
-      Predicate e = KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), t);
+      Predicate e = new CutBarrierPredicate(KnowledgeBaseUtils.getPredicate(getKnowledgeBase(), t));
       return e.evaluate();
    }
 
@@ -73,7 +73,7 @@ public final class Once extends AbstractSingletonPredicate implements Preprocess
 
       @Override
       protected boolean evaluate(Term arg) {
-         return pf.getPredicate(arg.getArgs()).evaluate();
+         return new CutBarrierPredicate(pf.getPredicate(arg.getArgs())).evaluate();
       }
    }
 }
@@ -20,9 +20,9 @@ import static org.projog.core.term.TermUtils.toInt;
 
 import org.projog.core.ProjogException;
 import org.projog.core.function.AbstractSingletonPredicate;
-import org.projog.core.term.Atom;
 import org.projog.core.term.IntegerNumberCache;
 import org.projog.core.term.Structure;
+import org.projog.core.term.SymbolTable;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermType;
 
@@ -98,7 +98,7 @@ public final class Functor extends AbstractSingletonPredicate {
          case STRUCTURE:
          case LIST:
          case EMPTY_LIST:
-            return functor.unify(new Atom(term.getName())) && arity.unify(IntegerNumberCache.valueOf(term.getNumberOfArguments()));
+            return functor.unify(SymbolTable.getAtom(term.getName())) && arity.unify(IntegerNumberCache.valueOf(term.getNumberOfArguments()));
          case VARIABLE:
             Term createdTerm = createTerm(functor, arity);
             return term.unify(createdTerm);
@@ -23,6 +23,7 @@ import org.projog.core.term.IntegerNumber;
 import org.projog.core.term.IntegerNumberCache;
 import org.projog.core.term.ListFactory;
 import org.projog.core.term.Numeric;
+import org.projog.core.term.SymbolTable;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermType;
 
@@ -314,7 +315,7 @@ public final class TermSplit extends AbstractSingletonPredicate {
       if (convertToCharCodes) {
          return IntegerNumberCache.valueOf(c);
       } else {
-         return new Atom(Character.toString(c));
+         return SymbolTable.getAtom(Character.toString(c));
       }
    }
 
@@ -326,7 +327,7 @@ public final class TermSplit extends AbstractSingletonPredicate {
       if (firstArgNumeric) {
          return toNumeric(s);
       } else {
-         return new Atom(s);
+         return SymbolTable.getAtom(s);
       }
    }
 
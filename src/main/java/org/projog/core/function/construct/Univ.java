@@ -19,9 +19,9 @@ import java.util.ArrayList;
 
 import org.projog.core.ProjogException;
 import org.projog.core.function.AbstractSingletonPredicate;
-import org.projog.core.term.Atom;
 import org.projog.core.term.ListFactory;
 import org.projog.core.term.Structure;
+import org.projog.core.term.SymbolTable;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermType;
 
@@ -131,7 +131,7 @@ public final class Univ extends AbstractSingletonPredicate {
       }
 
       if (predicateArgs.size() == 0) {
-         return new Atom(predicateName);
+         return SymbolTable.getAtom(predicateName);
       } else {
          return Structure.createStructure(predicateName, predicateArgs.toArray(new Term[predicateArgs.size()]));
       }
@@ -141,7 +141,7 @@ public final class Univ extends AbstractSingletonPredicate {
       String predicateName = t.getName();
       int numArgs = t.getNumberOfArguments();
       Term[] listArgs = new Term[numArgs + 1];
-      listArgs[0] = new Atom(predicateName);
+      listArgs[0] = SymbolTable.getAtom(predicateName);
       for (int i = 0; i < numArgs; i++) {
          listArgs[i + 1] = t.getArgument(i);
       }
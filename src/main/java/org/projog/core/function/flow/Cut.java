@@ -15,9 +15,10 @@
  */
 package org.projog.core.function.flow;
 
-import org.projog.core.CutException;
+import org.projog.core.Predicate;
 import org.projog.core.function.AbstractPredicate;
 import org.projog.core.function.AbstractPredicateFactory;
+import org.projog.core.term.Trail;
 
 /* TEST
  %TRUE_NO repeat, !
@@ -42,12 +43,82 @@ import org.projog.core.function.AbstractPredicateFactory;
 
  %QUERY a(z, Y)
  %ANSWER Y = 2
+
+ b(X, Y) :- member(X, [1,2,3]), (X > 1, ! ; fail), Y = X.
+ b(_, none).
+
+ %QUERY b(X, Y)
+ %ANSWER
+ % X=2
+ % Y=2
+ %ANSWER
+ %NO
+
+ % A cut within a goal that is passed as an argument to another predicate (e.g. findall/3 or call/1) only prevents
+ % alternative solutions of that goal - it does not prevent the remaining clauses of the predicate being tried.
+ m(1).
+ m(2).
+ m(3).
+
+ e(X) :- findall(Y, (m(Y), !), X).
+ e(other).
+
+ %QUERY e(X)
+ %ANSWER X = [1]
+ %ANSWER X = other
+
+ v(X) :- findall(Y, (m(Y), !), L), member(X, L).
+ v(other).
+
+ %QUERY v(X)
+ %ANSWER X = 1
+ %ANSWER X = other
+
+ s(X) :- bagof(Y, (m(Y), !), X).
+ s(other).
+
+ %QUERY s(X)
+ %ANSWER X = [1]
+ %ANSWER X = other
+
+ n(X) :- \+ ((m(Y), !, Y > 1)), X = a.
+ n(b).
+
+ %QUERY n(X)
+ %ANSWER X = a
+ %ANSWER X = b
+
+ c(X) :- call((m(X), !)).
+ c(other).
+
+ %QUERY c(X)
+ %ANSWER X = 1
+ %ANSWER X = other
+
+ c(X, Y) :- G = (m(X), !, X > Y), call(G).
+ c(none, _).
+
+ %QUERY c(X, 0)
+ %ANSWER X = 1
+ %ANSWER X = none
+
+ %QUERY c(X, 1)
+ %ANSWER X = none
+
+ o(X) :- once((m(Y), !, Y > 1)) ; X = a.
+ o(b).
+
+ %QUERY o(X)
+ %ANSWER X = a
+ %ANSWER X = b
  */
 /**
  * <code>!</code> - the "cut".
  * <p>
  * The "cut", represented as a <code>!</code>, is a special mechanism which affects how prolog backtracks.
  * </p>
+ *
+ * @see org.projog.core.CutBarrier
  */
 public final class Cut extends AbstractPredicateFactory {
    @Override
@@ -55,13 +126,23 @@ public final class Cut extends AbstractPredicateFactory {
       return new CutPredicate();
    }
 
+   /**
+    * Returns {@code true} if the specified predicate was created by evaluating a cut.
+    *
+    * @see org.projog.core.TailCall#precededBy(Predicate, boolean)
+    */
+   public static boolean isCut(Predicate p) {
+      return p instanceof CutPredicate;
+   }
+
    private final static class CutPredicate extends AbstractPredicate {
       private boolean retried = false;
 
       @Override
       public boolean evaluate() {
          if (retried) {
-            throw CutException.CUT_EXCEPTION;
+            Trail.getCurrent().getCutBarrier().cut();
+            return false;
          }
          retried = true;
          return true;
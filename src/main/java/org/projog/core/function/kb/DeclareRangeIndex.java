@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.function.kb;
+
+import org.projog.core.KnowledgeBaseServiceLocator;
+import org.projog.core.PredicateKey;
+import org.projog.core.ProjogException;
+import org.projog.core.function.AbstractSingletonPredicate;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermUtils;
+import org.projog.core.udp.RangeIndexes;
+
+/* TEST
+ %TRUE range_index(reading/3, 2)
+ %TRUE range_index(reading/3, 1)
+
+ %QUERY range_index(reading/3, 0)
+ %ERROR Invalid argument position: 0 for: reading/3
+ %QUERY range_index(reading/3, 4)
+ %ERROR Invalid argument position: 4 for: reading/3
+ %QUERY range_index(X, 1)
+ %ERROR Expected an atom or a predicate but got a VARIABLE with value: X
+ */
+/**
+ * <code>range_index(X,Y)</code> - declares that clauses can be selected by a range of values of an argument.
+ * <p>
+ * The first argument is a predicate indicator (i.e. name and arity) of a user defined predicate and the second
+ * argument is the (one-based) position of one of its arguments. Calls to the predicate using {@code in_range/3} will
+ * use an index, ordered by the values of the specified argument, to select the clauses to attempt. A predicate can
+ * have at most one range index - declaring another replaces the previous declaration.
+ * <p>
+ * Normally used as a directive - e.g. <code>?- range_index(event/3, 1).</code>
+ *
+ * @see InRange
+ */
+public final class DeclareRangeIndex extends AbstractSingletonPredicate {
+   private RangeIndexes rangeIndexes;
+
+   @Override
+   protected void init() {
+      rangeIndexes = KnowledgeBaseServiceLocator.getServiceLocator(getKnowledgeBase()).getInstance(RangeIndexes.class);
+   }
+
+   @Override
+   protected boolean evaluate(Term predicateIndicator, Term argumentPosition) {
+      PredicateKey key = PredicateKey.createFromNameAndArity(predicateIndicator);
+      int position = TermUtils.toInt(argumentPosition);
+      if (position < 1 || position > key.getNumArgs()) {
+         throw new ProjogException("Invalid argument position: " + position + " for: " + key);
+      }
+      rangeIndexes.declare(key, position - 1);
+      return true;
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.function.kb;
+
+import static org.projog.core.term.TermComparator.TERM_COMPARATOR;
+
+import org.projog.core.KnowledgeBaseServiceLocator;
+import org.projog.core.Predicate;
+import org.projog.core.PredicateFactory;
+import org.projog.core.PredicateKey;
+import org.projog.core.ProjogException;
+import org.projog.core.function.AbstractPredicateFactory;
+import org.projog.core.term.Term;
+import org.projog.core.udp.RangeIndexes;
+import org.projog.core.udp.StaticUserDefinedPredicateFactory;
+
+/* TEST
+ reading(10, a, 7).
+ reading(40, b, 3).
+ reading(20, c, 5).
+ reading(X, d, 1) :- X = 25.
+ reading(30, e, 9).
+ reading(z, f, 0).
+
+ %QUERY in_range(reading(T,S,V), 20, 30)
+ %ERROR No range index declared for: reading/3
+
+ %TRUE range_index(reading/3, 1)
+
+ % solutions are in clause order
+ %QUERY in_range(reading(T,S,V), 20, 40)
+ %ANSWER
+ % T=20
+ % S=c
+ % V=5
+ %ANSWER
+ %ANSWER
+ % T=25
+ % S=d
+ % V=1
+ %ANSWER
+ %ANSWER
+ % T=30
+ % S=e
+ % V=9
+ %ANSWER
+
+ % upper bound is exclusive
+ %QUERY in_range(reading(T,S,_), 10, 20)
+ %ANSWER
+ % T=10
+ % S=a
+ %ANSWER
+
+ % uses standard order of terms, so all numbers are less than all atoms
+ %QUERY in_range(reading(T,_,_), 35, a)
+ %ANSWER T=40
+ %QUERY in_range(reading(T,_,_), a, zz)
+ %ANSWER T=z
+
+ %FALSE in_range(reading(_,_,_), 41, 50)
+ %FALSE in_range(reading(_,_,_), 30, 20)
+
+ % other arguments can also be specified
+ %QUERY in_range(reading(T,_,V), 0, 100), V > 6
+ %ANSWER
+ % T=10
+ % V=7
+ %ANSWER
+ %ANSWER
+ % T=30
+ % V=9
+ %ANSWER
+
+ % can also be used with dynamic predicates, but all their clauses are attempted
+ %TRUE assertz(level(3)), assertz(level(8)), assertz(level(5)), assertz(level(12))
+ %TRUE range_index(level/1, 1)
+ %QUERY in_range(level(X), 5, 10)
+ %ANSWER X=8
+ %ANSWER X=5
+ %NO
+ */
+/**
+ * <code>in_range(X,Y,Z)</code> - calls a goal for only the clauses within a range.
+ * <p>
+ * Succeeds for each solution of the goal {@code X} where the argument of {@code X} that has been declared using
+ * {@code range_index/2} is greater than or equal to {@code Y} and less than {@code Z}. The standard order of terms is
+ * used to compare values. Solutions are found in the order the clauses were defined.
+ * <p>
+ * Has the same result as calling {@code X} and then checking the value of the argument but, for static user defined
+ * predicates, only the clauses whose argument could be within the range are attempted.
+ *
+ * @see DeclareRangeIndex
+ */
+public final class InRange extends AbstractPredicateFactory {
+   private RangeIndexes rangeIndexes;
+
+   @Override
+   protected void init() {
+      rangeIndexes = KnowledgeBaseServiceLocator.getServiceLocator(getKnowledgeBase()).getInstance(RangeIndexes.class);
+   }
+
+   @Override
+   protected Predicate getPredicate(Term goal, Term from, Term to) {
+      PredicateKey key = PredicateKey.createForTerm(goal);
+      int position = rangeIndexes.getPosition(key);
+      if (position == -1) {
+         throw new ProjogException("No range index declared for: " + key);
+      }
+
+      Term[] args = goal.getArgs();
+      PredicateFactory pf = getPredicates().getPredicateFactory(key);
+      Predicate predicate;
+      if (pf instanceof StaticUserDefinedPredicateFactory) {
+         predicate = ((StaticUserDefinedPredicateFactory) pf).getPredicateInRange(args, position, from.getTerm(), to.getTerm());
+      } else {
+         predicate = pf.getPredicate(args);
+      }
+      return new InRangePredicate(predicate, args[position], from.getTerm(), to.getTerm());
+   }
+
+   private static final class InRangePredicate implements Predicate {
+      private final Predicate predicate;
+      private final Term arg;
+      private final Term from;
+      private final Term to;
+
+      InRangePredicate(Predicate predicate, Term arg, Term from, Term to) {
+         this.predicate = predicate;
+         this.arg = arg;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      public boolean evaluate() {
+         while (predicate.evaluate()) {
+            Term value = arg.getTerm();
+            if (TERM_COMPARATOR.compare(value, from) >= 0 && TERM_COMPARATOR.compare(value, to) < 0) {
+               return true;
+            }
+            if (!predicate.couldReevaluationSucceed()) {
+               return false;
+            }
+         }
+         return false;
+      }
+
+      @Override
+      public boolean couldReevaluationSucceed() {
+         return predicate.couldReevaluationSucceed();
+      }
+   }
+}
@@ -155,7 +155,7 @@ public final class Inspect extends AbstractPredicateFactory {
       if (userDefinedPredicate == null) {
          return PredicateUtils.toPredicate(false);
       } else {
-         return new InspectPredicate(clauseHead, clauseBody, userDefinedPredicate.getImplications());
+         return new InspectPredicate(clauseHead, clauseBody, userDefinedPredicate.getImplications(clauseHead.getArgs()));
       }
    }
 
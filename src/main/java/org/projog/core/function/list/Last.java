@@ -17,8 +17,8 @@ package org.projog.core.function.list;
 
 import org.projog.core.ProjogException;
 import org.projog.core.function.AbstractSingletonPredicate;
+import org.projog.core.term.ListUtils;
 import org.projog.core.term.Term;
-import org.projog.core.term.TermType;
 
 /* TEST
  %QUERY last([a,b,c], X)
@@ -65,13 +65,8 @@ public final class Last extends AbstractSingletonPredicate {
    }
 
    private boolean unifyLastElementOfList(Term list, Term termToUnifyLastElementWith) {
-      Term lastElement;
-      do {
-         lastElement = list.getArgument(0);
-         list = list.getArgument(1);
-      } while (list.getType() == TermType.LIST);
-
-      if (list.getType() == TermType.EMPTY_LIST) {
+      Term lastElement = ListUtils.getLastElement(list);
+      if (lastElement != null) {
          return termToUnifyLastElementWith.unify(lastElement);
       } else {
          return false; // return false if a partial list
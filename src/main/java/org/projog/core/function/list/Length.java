@@ -16,7 +16,7 @@
 package org.projog.core.function.list;
 
 import static org.projog.core.term.ListFactory.createListOfLength;
-import static org.projog.core.term.ListUtils.toJavaUtilList;
+import static org.projog.core.term.ListUtils.getLength;
 import static org.projog.core.udp.PredicateUtils.toPredicate;
 
 import org.projog.core.Predicate;
@@ -109,9 +109,9 @@ public final class Length extends AbstractPredicateFactory {
    }
 
    private boolean checkLength(final Term list, final Term expectedLength) {
-      final java.util.List<Term> javaList = toJavaUtilList(list);
-      if (javaList != null) {
-         final IntegerNumber actualLength = IntegerNumberCache.valueOf(javaList.size());
+      final int length = getLength(list);
+      if (length != -1) {
+         final IntegerNumber actualLength = IntegerNumberCache.valueOf(length);
          return expectedLength.unify(actualLength);
       } else {
          return false;
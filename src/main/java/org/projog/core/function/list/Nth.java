@@ -15,6 +15,7 @@
  */
 package org.projog.core.function.list;
 
+import static org.projog.core.term.ListUtils.getElement;
 import static org.projog.core.term.ListUtils.toJavaUtilList;
 import static org.projog.core.term.TermUtils.toInt;
 
@@ -162,24 +163,16 @@ public final class Nth extends AbstractPredicateFactory {
    }
 
    private boolean evaluate(Term index, Term list, Term element) {
-      List<Term> l = toJavaUtilList(list);
-      if (l == null) {
-         return false;
-      }
-
       int i = toInt(index);
       int idx = i - startingIdx;
-      if (isValidIndex(l, idx)) {
-         return element.unify(l.get(idx));
+      Term t = getElement(list, idx);
+      if (t != null) {
+         return element.unify(t);
       } else {
          return false;
       }
    }
 
-   private boolean isValidIndex(List<Term> l, int idx) {
-      return idx > -1 && idx < l.size();
-   }
-
    private class Retryable implements Predicate {
       final Term index;
       final Term list;
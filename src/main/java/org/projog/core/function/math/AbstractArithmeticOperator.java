@@ -20,10 +20,13 @@ import org.projog.core.ArithmeticOperators;
 import org.projog.core.KnowledgeBase;
 import org.projog.core.KnowledgeBaseConsumer;
 import org.projog.core.PreprocessableArithmeticOperator;
+import org.projog.core.term.IntegerNumberCache;
 import org.projog.core.term.Numeric;
 import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.term.TermUtils;
 
-public abstract class AbstractArithmeticOperator implements PreprocessableArithmeticOperator, KnowledgeBaseConsumer {
+public abstract class AbstractArithmeticOperator implements PreprocessableArithmeticOperator, LongArithmeticOperator, KnowledgeBaseConsumer {
    private ArithmeticOperators operators;
 
    /**
@@ -60,6 +63,52 @@ public abstract class AbstractArithmeticOperator implements PreprocessableArithm
       throw createWrongNumberOfArgumentsException(2);
    }
 
+   /**
+    * Indicates if the result of this operator, when all its arguments are integers, is always an integer calculated by
+    * {@link #calculateLong(long)} or {@link #calculateLong(long, long)}.
+    *
+    * @return {@code true} if integer arguments can be evaluated using primitive {@code long}s, else {@code false}
+    */
+   boolean isLongSupported() {
+      return false;
+   }
+
+   /** Returns the result of evaluating an arithmetic expression using the argument */
+   protected long calculateLong(long n) {
+      throw createWrongNumberOfArgumentsException(1);
+   }
+
+   /** Returns the result of evaluating an arithmetic expression using the two arguments */
+   protected long calculateLong(long n1, long n2) {
+      throw createWrongNumberOfArgumentsException(2);
+   }
+
+   @Override
+   public final boolean isLong(Term[] args) {
+      if (!isLongSupported()) {
+         return false;
+      }
+      for (Term arg : args) {
+         if (arg.getType() != TermType.INTEGER) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   @Override
+   public final long calculateLong(Term[] args) {
+      if (args.length == 1) {
+         return calculateLong(getLong(args[0]));
+      } else {
+         return calculateLong(getLong(args[0]), getLong(args[1]));
+      }
+   }
+
+   private static long getLong(Term t) {
+      return TermUtils.castToNumeric(t).getLong();
+   }
+
    private IllegalArgumentException createWrongNumberOfArgumentsException(int numberOfArguments) {
       throw new IllegalArgumentException("The ArithmeticOperator: " + getClass() + " does next accept the number of arguments: " + numberOfArguments);
    }
@@ -114,34 +163,156 @@ public abstract class AbstractArithmeticOperator implements PreprocessableArithm
       }
    }
 
-   private final class PreprocessedUnaryOperator implements ArithmeticOperator {
+   /**
+    * Evaluates the arguments of preprocessed operators using primitive {@code long}s, if possible, so that only the
+    * final result needs to be represented by a {@link org.projog.core.term.IntegerNumber}.
+    */
+   private final class PreprocessedUnaryOperator implements LongArithmeticOperator {
       final ArithmeticOperator o;
+      final LongOperand l;
 
       PreprocessedUnaryOperator(ArithmeticOperator o) {
          this.o = o;
+         this.l = isLongSupported() ? LongOperand.create(o) : null;
       }
 
       @Override
       public Numeric calculate(Term[] args) {
+         if (isLong(args)) {
+            return IntegerNumberCache.valueOf(calculateLong(args));
+         }
          Numeric n = o.calculate(args[0].getArgs());
          return AbstractArithmeticOperator.this.calculate(n);
       }
+
+      @Override
+      public boolean isLong(Term[] args) {
+         return l != null && l.isLong(args[0]);
+      }
+
+      @Override
+      public long calculateLong(Term[] args) {
+         return AbstractArithmeticOperator.this.calculateLong(l.getLong(args[0]));
+      }
    }
 
-   private final class PreprocessedBinaryOperator implements ArithmeticOperator {
+   /** @see PreprocessedUnaryOperator */
+   private final class PreprocessedBinaryOperator implements LongArithmeticOperator {
       final ArithmeticOperator o1;
       final ArithmeticOperator o2;
+      final LongOperand l1;
+      final LongOperand l2;
 
       PreprocessedBinaryOperator(ArithmeticOperator o1, ArithmeticOperator o2) {
          this.o1 = o1;
          this.o2 = o2;
+         LongOperand l1 = isLongSupported() ? LongOperand.create(o1) : null;
+         LongOperand l2 = isLongSupported() ? LongOperand.create(o2) : null;
+         boolean isLong = l1 != null && l2 != null;
+         this.l1 = isLong ? l1 : null;
+         this.l2 = isLong ? l2 : null;
+      }
+
+      @Override
+      public boolean isLong(Term[] args) {
+         return l1 != null && l1.isLong(args[0]) && l2.isLong(args[1]);
+      }
+
+      @Override
+      public long calculateLong(Term[] args) {
+         long n1 = l1.getLong(args[0]);
+         long n2 = l2.getLong(args[1]);
+         return AbstractArithmeticOperator.this.calculateLong(n1, n2);
       }
 
       @Override
       public Numeric calculate(Term[] args) {
+         if (isLong(args)) {
+            return IntegerNumberCache.valueOf(calculateLong(args));
+         }
          Numeric n1 = o1 == null ? operators.getNumeric(args[0]) : o1.calculate(args[0].getArgs());
          Numeric n2 = o2 == null ? operators.getNumeric(args[1]) : o2.calculate(args[1].getArgs());
          return AbstractArithmeticOperator.this.calculate(n1, n2);
       }
    }
+
+   /**
+    * Provides the integer value of an argument of a preprocessed operator.
+    * <p>
+    * Which subclass is used is decided when the operator is preprocessed, so that no type checks of the preprocessed
+    * argument are needed each time the operator is evaluated.
+    */
+   private abstract static class LongOperand {
+      private static final LongOperand UNPROCESSED = new LongOperand() {
+         @Override
+         boolean isLong(Term arg) {
+            return arg.getType() == TermType.INTEGER;
+         }
+
+         @Override
+         long getLong(Term arg) {
+            return AbstractArithmeticOperator.getLong(arg);
+         }
+      };
+
+      /**
+       * Returns a {@code LongOperand} for the specified result of preprocessing an argument.
+       *
+       * @param o the result of preprocessing the argument, or {@code null} if it could not be preprocessed
+       * @return a {@code LongOperand} or {@code null} if the argument can never be evaluated as an integer
+       */
+      static LongOperand create(ArithmeticOperator o) {
+         if (o == null) {
+            return UNPROCESSED;
+         } else if (o instanceof Numeric) {
+            return ((Numeric) o).getType() == TermType.INTEGER ? new ConstantLongOperand(((Numeric) o).getLong()) : null;
+         } else if (o instanceof LongArithmeticOperator) {
+            return new NestedLongOperand((LongArithmeticOperator) o);
+         } else {
+            return null;
+         }
+      }
+
+      /** Returns {@code true} if the specified argument represents an integer. */
+      abstract boolean isLong(Term arg);
+
+      /** Returns the integer value of the specified argument. Must only be called if {@link #isLong(Term)} is true. */
+      abstract long getLong(Term arg);
+   }
+
+   private static final class ConstantLongOperand extends LongOperand {
+      final long value;
+
+      ConstantLongOperand(long value) {
+         this.value = value;
+      }
+
+      @Override
+      boolean isLong(Term arg) {
+         return true;
+      }
+
+      @Override
+      long getLong(Term arg) {
+         return value;
+      }
+   }
+
+   private static final class NestedLongOperand extends LongOperand {
+      final LongArithmeticOperator o;
+
+      NestedLongOperand(LongArithmeticOperator o) {
+         this.o = o;
+      }
+
+      @Override
+      boolean isLong(Term arg) {
+         return o.isLong(arg.getArgs());
+      }
+
+      @Override
+      long getLong(Term arg) {
+         return o.calculateLong(arg.getArgs());
+      }
+   }
 }
@@ -44,4 +44,10 @@ public abstract class AbstractBinaryArithmeticOperator extends AbstractArithmeti
 
    /** Returns the result of evaluating an arithmetic expression using the two arguments */
    protected abstract long calculateLong(long n1, long n2);
+
+   /** Returns {@code true} */
+   @Override
+   final boolean isLongSupported() {
+      return true;
+   }
 }
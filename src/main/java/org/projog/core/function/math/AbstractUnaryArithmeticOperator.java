@@ -40,4 +40,10 @@ public abstract class AbstractUnaryArithmeticOperator extends AbstractArithmetic
 
    /** Returns the result of evaluating an arithmetic expression using the specified argument */
    protected abstract long calculateLong(long n);
+
+   /** Returns {@code true} */
+   @Override
+   final boolean isLongSupported() {
+      return true;
+   }
 }
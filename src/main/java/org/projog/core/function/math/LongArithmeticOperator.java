@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.function.math;
+
+import org.projog.core.ArithmeticOperator;
+import org.projog.core.term.Term;
+
+/**
+ * An {@link ArithmeticOperator} that can calculate its result using primitive {@code long}s when all the values it
+ * depends on are integers.
+ * <p>
+ * Allows nested arithmetic expressions, e.g. {@code X is (A+B)*C}, to be evaluated without creating an
+ * {@link org.projog.core.term.IntegerNumber} to represent each intermediate result.
+ */
+interface LongArithmeticOperator extends ArithmeticOperator {
+   /**
+    * Returns {@code true} if {@link #calculateLong(Term[])} can be used to calculate the result of the expression
+    * represented by the specified arguments.
+    *
+    * @param args the arguments that would be passed to {@link #calculate(Term[])}
+    * @return {@code true} if all the values the calculation depends on are integers
+    */
+   boolean isLong(Term[] args);
+
+   /**
+    * Returns the result of the calculation using the specified arguments.
+    * <p>
+    * Must only be called if {@link #isLong(Term[])} has returned {@code true} for the same arguments.
+    *
+    * @param args the arguments to use in the calculation
+    * @return the result of the calculation using the specified arguments
+    */
+   long calculateLong(Term[] args);
+}
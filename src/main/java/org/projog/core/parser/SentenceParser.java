@@ -40,6 +40,7 @@ import org.projog.core.term.EmptyList;
 import org.projog.core.term.IntegerNumber;
 import org.projog.core.term.ListFactory;
 import org.projog.core.term.Structure;
+import org.projog.core.term.SymbolTable;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermUtils;
 import org.projog.core.term.Variable;
@@ -417,7 +418,7 @@ public class SentenceParser {
             }
          } while (true);
       } else {
-         return new Atom(name);
+         return SymbolTable.getAtom(name);
       }
    }
 
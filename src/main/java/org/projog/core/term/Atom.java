@@ -27,8 +27,18 @@ public final class Atom implements Term {
 
    /**
     * @param value the value this {@code Atom} represents
+    * @see SymbolTable#getAtom(String)
     */
    public Atom(String value) {
+      this.value = SymbolTable.intern(value);
+   }
+
+   /**
+    * Called by {@link SymbolTable} to create the canonical instance of an atom.
+    *
+    * @param value the value this {@code Atom} represents - which must not already be contained in {@link SymbolTable}
+    */
+   Atom(String value, boolean canonical) {
       this.value = value;
    }
 
@@ -87,14 +97,7 @@ public final class Atom implements Term {
 
    @Override
    public boolean unify(Term t) {
-      TermType tType = t.getType();
-      if (tType == TermType.ATOM) {
-         return value.equals(t.getName());
-      } else if (tType.isVariable()) {
-         return t.unify(this);
-      } else {
-         return false;
-      }
+      return TermUnifier.unify(this, t);
    }
 
    @Override
@@ -109,7 +112,8 @@ public final class Atom implements Term {
       }
 
       if (o.getClass() == Atom.class) {
-         return value.equals(((Atom) o).value);
+         // names are interned so can compare by identity
+         return value == ((Atom) o).value;
       }
 
       return false;
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Implementations of the operations of {@link List} and {@link Structure} that do not recurse on the last argument.
+ * <p>
+ * The last argument of a compound term is processed by looping (or, for {@link #getTerm(Term)} and
+ * {@link #copy(Term, Map)}, by recursing only to a limited depth) while any other arguments are processed by
+ * recursion. As the tail of a list is its last argument, the depth of the Java stack required to process a list does
+ * not grow with the length of the list. The same applies to other terms that are nested in their last argument, e.g. a
+ * long sequence of conjunctions.
+ */
+final class CompoundTerms {
+   private static final int DEFAULT_STACK_SIZE = 8;
+   /**
+    * The number of compound terms that {@link #rebuild(Term, Map, int)} will recurse through before switching to an
+    * iterative approach.
+    */
+   private static final int MAX_RECURSION_DEPTH = 64;
+   /** The number of compound terms to follow before starting to check for cycles. */
+   private static final int CYCLE_CHECK_THRESHOLD = 32;
+
+   /**
+    * Private constructor as all methods are static.
+    */
+   private CompoundTerms() {
+      // do nothing
+   }
+
+   /**
+    * Returns {@code true} if the specified term is a {@link List} or {@link Structure}.
+    */
+   private static boolean isCompound(Term t) {
+      Class<?> c = t.getClass();
+      return c == List.class || c == Structure.class;
+   }
+
+   private static boolean isMutableCompound(Term t) {
+      return isCompound(t) && !t.isImmutable();
+   }
+
+   /**
+    * Returns a version of the specified term with variables replaced by the terms they are instantiated with.
+    *
+    * @see Term#getTerm()
+    */
+   static Term getTerm(Term t) {
+      return rebuild(t, null, 0);
+   }
+
+   /**
+    * Returns a copy of the specified term with uninstantiated variables replaced by new variables.
+    *
+    * @see Term#copy(Map)
+    */
+   static Term copy(Term t, Map<Variable, Variable> sharedVariables) {
+      return rebuild(t, sharedVariables, 0);
+   }
+
+   /**
+    * Implements {@link #getTerm(Term)} (if {@code sharedVariables} is {@code null}) and {@link #copy(Term, Map)}.
+    * <p>
+    * Recurses on the last argument until {@link #MAX_RECURSION_DEPTH} is reached, as that avoids having to record the
+    * compound terms that have been visited, and then continues using {@link #rebuildNested(Term, Map)}.
+    */
+   private static Term rebuild(Term t, Map<Variable, Variable> sharedVariables, int depth) {
+      int lastIdx = t.getNumberOfArguments() - 1;
+      Term link = t.getArgument(lastIdx);
+      Term last = Variable.dereference(link);
+      boolean isLastMutableCompound = isMutableCompound(last);
+      if (isLastMutableCompound && depth == MAX_RECURSION_DEPTH) {
+         return rebuildNested(t, sharedVariables);
+      }
+
+      if (t.getClass() == List.class) {
+         Term head = t.getArgument(0);
+         Term newHead = rebuildArgument(head, sharedVariables);
+         Term newTail = rebuildLast(last, isLastMutableCompound, sharedVariables, depth);
+         if (newHead == head && newTail == link) {
+            return t;
+         } else {
+            return new List(newHead, newTail);
+         }
+      }
+
+      Term[] newArgs = null;
+      for (int i = 0; i < lastIdx; i++) {
+         Term arg = t.getArgument(i);
+         Term newArg = rebuildArgument(arg, sharedVariables);
+         if (newArgs == null && newArg != arg) {
+            newArgs = new Term[lastIdx + 1];
+            for (int j = 0; j < i; j++) {
+               newArgs[j] = t.getArgument(j);
+            }
+         }
+         if (newArgs != null) {
+            newArgs[i] = newArg;
+         }
+      }
+      Term newLast = rebuildLast(last, isLastMutableCompound, sharedVariables, depth);
+      if (newArgs == null) {
+         if (newLast == link) {
+            return t;
+         }
+         newArgs = new Term[lastIdx + 1];
+         for (int j = 0; j < lastIdx; j++) {
+            newArgs[j] = t.getArgument(j);
+         }
+      }
+      newArgs[lastIdx] = newLast;
+      return new Structure(t.getName(), newArgs, isImmutable(newArgs));
+   }
+
+   private static Term rebuildLast(Term last, boolean isCompound, Map<Variable, Variable> sharedVariables, int depth) {
+      if (isCompound) {
+         return rebuild(last, sharedVariables, depth + 1);
+      } else {
+         return rebuildArgument(last, sharedVariables);
+      }
+   }
+
+   /**
+    * Walks along the last arguments of the term, recording each compound term and the new versions of its other
+    * arguments. The new versions of the compound terms are then created in reverse order, reusing the existing compound
+    * terms where none of their arguments have changed.
+    * <p>
+    * Nothing is recorded until the first change is found. If the term does not need to be changed then it is returned
+    * without any objects having been created.
+    */
+   private static Term rebuildNested(Term root, Map<Variable, Variable> sharedVariables) {
+      RebuildStack stack = null;
+      int depth = 0;
+      CycleDetector cycleDetector = null;
+      Term t = root;
+      while (true) {
+         cycleDetector = CycleDetector.check(cycleDetector, depth, t, null);
+
+         int lastIdx = t.getNumberOfArguments() - 1;
+         if (stack != null) {
+            stack.pushCompound(t);
+         }
+         for (int i = 0; i < lastIdx; i++) {
+            Term arg = t.getArgument(i);
+            Term newArg = rebuildArgument(arg, sharedVariables);
+            if (stack == null && newArg != arg) {
+               stack = RebuildStack.record(root, depth);
+               stack.pushCompound(t);
+               for (int j = 0; j < i; j++) {
+                  stack.pushArgument(t.getArgument(j));
+               }
+            }
+            if (stack != null) {
+               stack.pushArgument(newArg);
+            }
+         }
+         depth++;
+
+         Term link = t.getArgument(lastIdx);
+         Term next = Variable.dereference(link);
+         if (isMutableCompound(next)) {
+            if (stack == null && next != link) {
+               stack = RebuildStack.record(root, depth);
+            }
+            t = next;
+         } else {
+            Term last = rebuildArgument(next, sharedVariables);
+            if (stack == null) {
+               if (last == link) {
+                  return root;
+               }
+               stack = RebuildStack.record(root, depth);
+            }
+            return stack.rebuild(last);
+         }
+      }
+   }
+
+   /**
+    * Records the compound terms, and the new versions of their arguments, visited by
+    * {@link CompoundTerms#rebuildNested(Term, Map)}.
+    */
+   private static final class RebuildStack {
+      private Term[] compounds;
+      private int numCompounds;
+      private Term[] args;
+      private int numArgs;
+
+      private RebuildStack(int capacity) {
+         compounds = new Term[Math.max(capacity, DEFAULT_STACK_SIZE)];
+         args = new Term[Math.max(capacity, DEFAULT_STACK_SIZE)];
+      }
+
+      /**
+       * Returns a new stack containing the first {@code numCompounds} compound terms along the last arguments of
+       * {@code root}, each with all but the last of its (unchanged) arguments.
+       */
+      static RebuildStack record(Term root, int numCompounds) {
+         RebuildStack stack = new RebuildStack(numCompounds * 2);
+         Term t = root;
+         for (int c = 0; c < numCompounds; c++) {
+            int lastIdx = t.getNumberOfArguments() - 1;
+            stack.pushCompound(t);
+            for (int i = 0; i < lastIdx; i++) {
+               stack.pushArgument(t.getArgument(i));
+            }
+            t = Variable.dereference(t.getArgument(lastIdx));
+         }
+         return stack;
+      }
+
+      void pushCompound(Term t) {
+         if (numCompounds == compounds.length) {
+            compounds = Arrays.copyOf(compounds, numCompounds * 2);
+         }
+         compounds[numCompounds++] = t;
+      }
+
+      void pushArgument(Term t) {
+         if (numArgs == args.length) {
+            args = Arrays.copyOf(args, numArgs * 2);
+         }
+         args[numArgs++] = t;
+      }
+
+      /**
+       * Creates the new versions of the recorded compound terms, in reverse order.
+       *
+       * @param last the new version of the last argument of the most recently recorded compound term
+       */
+      Term rebuild(Term last) {
+         Term result = last;
+         while (numCompounds > 0) {
+            Term original = compounds[--numCompounds];
+            int lastIdx = original.getNumberOfArguments() - 1;
+            numArgs -= lastIdx;
+            boolean changed = result != original.getArgument(lastIdx);
+            for (int i = 0; !changed && i < lastIdx; i++) {
+               changed = args[numArgs + i] != original.getArgument(i);
+            }
+            if (!changed) {
+               result = original;
+            } else if (original.getClass() == List.class) {
+               result = new List(args[numArgs], result);
+            } else {
+               Term[] newArgs = new Term[lastIdx + 1];
+               System.arraycopy(args, numArgs, newArgs, 0, lastIdx);
+               newArgs[lastIdx] = result;
+               result = new Structure(original.getName(), newArgs, isImmutable(newArgs));
+            }
+         }
+         return result;
+      }
+   }
+
+   private static Term rebuildArgument(Term t, Map<Variable, Variable> sharedVariables) {
+      return sharedVariables == null ? t.getTerm() : t.copy(sharedVariables);
+   }
+
+   /**
+    * Returns {@code true} if the specified compound term is structurally equal to the specified object.
+    *
+    * @param compound a {@link List} or {@link Structure}
+    * @param o the object to compare to
+    * @see Term#equals(Object)
+    */
+   static boolean equals(Term compound, Object o) {
+      Term a = compound;
+      while (true) {
+         if (a == o) {
+            return true;
+         }
+         if (o.getClass() != a.getClass() || a.hashCode() != o.hashCode()) {
+            return false;
+         }
+
+         Term b = (Term) o;
+         int lastIdx = a.getNumberOfArguments() - 1;
+         // names are interned so can compare by identity
+         if (lastIdx != b.getNumberOfArguments() - 1 || a.getName() != b.getName()) {
+            return false;
+         }
+         for (int i = 0; i < lastIdx; i++) {
+            if (!a.getArgument(i).equals(b.getArgument(i))) {
+               return false;
+            }
+         }
+
+         a = a.getArgument(lastIdx);
+         o = b.getArgument(lastIdx);
+         if (!isCompound(a)) {
+            return a.equals(o);
+         }
+      }
+   }
+
+   /**
+    * Reverts the variables contained in the specified compound term to an uninstantiated state.
+    *
+    * @param compound a {@link List} or {@link Structure}
+    * @see Term#backtrack()
+    */
+   static void backtrack(Term compound) {
+      Term t = compound;
+      while (!t.isImmutable()) {
+         int lastIdx = t.getNumberOfArguments() - 1;
+         for (int i = 0; i < lastIdx; i++) {
+            t.getArgument(i).backtrack();
+         }
+         t = t.getArgument(lastIdx);
+         if (!isCompound(t)) {
+            t.backtrack();
+            return;
+         }
+      }
+   }
+
+   /**
+    * Detects, using Brent's algorithm, when following the last arguments of a cyclic term would never end.
+    * <p>
+    * A cyclic term (e.g. created by unifying {@code X} with {@code f(X)}) has no finite representation. When the
+    * operations of this class were implemented using recursion such terms caused a {@code StackOverflowError}. The
+    * same error is thrown when a cycle is detected so that the behaviour is unchanged.
+    */
+   static final class CycleDetector {
+      private Object checkpointA;
+      private Object checkpointB;
+      private int steps;
+      private int limit = 2;
+
+      /**
+       * Checks for a cycle, creating a new detector when required.
+       * <p>
+       * Most terms are not deeply nested so no checks are made until {@code depth} exceeds
+       * {@link CompoundTerms#CYCLE_CHECK_THRESHOLD}.
+       *
+       * @param detector the detector returned by the previous call to this method, or {@code null} if this is the first
+       * call
+       * @param depth the number of compound terms followed so far
+       * @return the detector to pass to the next call of this method
+       * @throws StackOverflowError if the specified combination of objects has been visited before
+       */
+      static CycleDetector check(CycleDetector detector, int depth, Object a, Object b) {
+         if (depth <= CYCLE_CHECK_THRESHOLD) {
+            return detector;
+         }
+         if (detector == null) {
+            detector = new CycleDetector();
+         }
+         detector.check(a, b);
+         return detector;
+      }
+
+      /**
+       * @throws StackOverflowError if the specified combination of objects has been visited before
+       */
+      private void check(Object a, Object b) {
+         if (a == checkpointA && b == checkpointB) {
+            throw new StackOverflowError("Cyclic term");
+         }
+         if (++steps == limit) {
+            checkpointA = a;
+            checkpointB = b;
+            steps = 0;
+            limit <<= 1;
+         }
+      }
+   }
+
+   private static boolean isImmutable(Term[] args) {
+      for (Term t : args) {
+         if (!t.isImmutable()) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
@@ -88,14 +88,7 @@ public final class DecimalFraction implements Numeric {
 
    @Override
    public boolean unify(Term t) {
-      TermType tType = t.getType();
-      if (tType == TermType.FRACTION) {
-         return value == ((DecimalFraction) t.getTerm()).value;
-      } else if (tType.isVariable()) {
-         return t.unify(this);
-      } else {
-         return false;
-      }
+      return TermUnifier.unify(this, t);
    }
 
    @Override
@@ -96,14 +96,7 @@ public final class EmptyList implements Term {
 
    @Override
    public boolean unify(Term t) {
-      TermType tType = t.getType();
-      if (tType == TermType.EMPTY_LIST) {
-         return true;
-      } else if (tType.isVariable()) {
-         return t.unify(this);
-      } else {
-         return false;
-      }
+      return TermUnifier.unify(this, t);
    }
 
    /**
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Allows equal ground terms to be represented by a single instance.
+ * <p>
+ * Programs often contain many facts that repeat the same ground terms - e.g. {@code country(uk)} or
+ * {@code status(active)}. Each occurrence will, by default, be represented by a separate instance. Passing terms to
+ * {@link #share(Term)} replaces each ground term they contain with an equal instance previously passed to
+ * {@code share}, so that only one instance of each distinct ground term needs to be kept in memory. As well as reducing
+ * memory usage, this means that comparing shared ground terms using {@code equals} will normally succeed on the
+ * initial identity check.
+ * <p>
+ * Instances are only weakly referenced by the table, so the table does not prevent terms that are no longer in use
+ * from being garbage collected.
+ *
+ * @see org.projog.core.ProjogProperties#isGroundTermSharingEnabled()
+ */
+public final class GroundTermTable {
+   /**
+    * The depth of nested compound terms beyond which terms are not shared.
+    * <p>
+    * Limits the depth of the Java stack required by {@link #share(Term)}. The elements of a list are not considered
+    * to be nested within each other, so there is no limit on the length of lists that can be shared.
+    */
+   private static final int MAX_DEPTH = 64;
+
+   private final Map<Term, WeakReference<Term>> table = new WeakHashMap<>();
+
+   /**
+    * Returns a version of the specified term where every ground term it contains has been replaced with an equal,
+    * shared, instance.
+    * <p>
+    * If the specified term is itself ground then the returned term will be the same instance as returned by all other
+    * calls to this method with an equal argument. If the specified term is not ground (i.e. contains variables) then
+    * the returned term will contain the same variables as the specified term.
+    *
+    * @param t the term to share
+    * @return a term equal to {@code t}
+    */
+   public synchronized Term share(Term t) {
+      return share(t, 0);
+   }
+
+   /**
+    * Returns the number of distinct ground terms currently in the table.
+    *
+    * @return the number of distinct ground terms currently in the table
+    */
+   public synchronized int size() {
+      return table.size();
+   }
+
+   private Term share(Term t, int depth) {
+      if (depth > MAX_DEPTH) {
+         return t;
+      } else if (t.isImmutable()) {
+         return getShared(t, depth);
+      }
+
+      switch (t.getType()) {
+         case STRUCTURE:
+            return shareStructure(t, depth);
+         case LIST:
+            return shareList(t, depth);
+         default:
+            return t;
+      }
+   }
+
+   private Term getShared(Term t, int depth) {
+      WeakReference<Term> r = table.get(t);
+      Term shared = r == null ? null : r.get();
+      if (shared == null) {
+         switch (t.getType()) {
+            case STRUCTURE:
+               shared = shareStructure(t, depth);
+               break;
+            case LIST:
+               shared = shareList(t, depth);
+               break;
+            default:
+               shared = t;
+         }
+         table.put(shared, new WeakReference<>(shared));
+      }
+      return shared;
+   }
+
+   private Term shareStructure(Term t, int depth) {
+      Term[] args = t.getArgs();
+      Term[] newArgs = null;
+      for (int i = 0; i < args.length; i++) {
+         Term newArg = share(args[i], depth + 1);
+         if (newArg != args[i]) {
+            if (newArgs == null) {
+               newArgs = args.clone();
+            }
+            newArgs[i] = newArg;
+         }
+      }
+      return newArgs == null ? t : Structure.createStructure(t.getName(), newArgs);
+   }
+
+   private Term shareList(Term t, int depth) {
+      ArrayList<Term> elements = new ArrayList<>();
+      boolean changed = false;
+      Term tail = t;
+      while (tail.getType() == TermType.LIST) {
+         if (tail.getClass() == List.class && ((List) tail).isArrayBacked()) {
+            List l = (List) tail;
+            int length = l.getArrayLength();
+            for (int i = 0; i < length; i++) {
+               Term element = l.getArrayElement(i);
+               Term newElement = share(element, depth + 1);
+               changed |= newElement != element;
+               elements.add(newElement);
+            }
+            tail = EmptyList.EMPTY_LIST;
+         } else {
+            Term element = tail.getArgument(0);
+            Term newElement = share(element, depth + 1);
+            changed |= newElement != element;
+            elements.add(newElement);
+            tail = tail.getArgument(1);
+         }
+      }
+      Term newTail = share(tail, depth + 1);
+      if (changed || newTail != tail) {
+         return ListFactory.createList(elements.toArray(new Term[elements.size()]), newTail);
+      } else {
+         return t;
+      }
+   }
+}
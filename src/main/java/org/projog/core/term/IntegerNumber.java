@@ -87,14 +87,7 @@ public final class IntegerNumber implements Numeric {
 
    @Override
    public boolean unify(Term t) {
-      TermType tType = t.getType();
-      if (tType == TermType.INTEGER) {
-         return value == ((IntegerNumber) t.getTerm()).value;
-      } else if (tType.isVariable()) {
-         return t.unify(this);
-      } else {
-         return false;
-      }
+      return TermUnifier.unify(this, t);
    }
 
    @Override
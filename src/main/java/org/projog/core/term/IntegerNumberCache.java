@@ -15,29 +15,116 @@
  */
 package org.projog.core.term;
 
+/**
+ * Provides {@link IntegerNumber} instances that can be shared, rather than creating a new instance each time.
+ * <p>
+ * By default values in the range {@code -128} to {@code 127} (inclusive) are cached. The range can be extended using
+ * {@link org.projog.core.ProjogProperties#getMinCachedIntegerValue()} and
+ * {@link org.projog.core.ProjogProperties#getMaxCachedIntegerValue()}. As {@code IntegerNumber} instances are shared by
+ * all knowledge bases the range is never reduced - so, if more than one knowledge base has been created, the values
+ * cached will include all the values requested by each of their properties.
+ */
 public final class IntegerNumberCache {
    public static final IntegerNumber ZERO = new IntegerNumber(0);
-   private static final int MIN_CACHED_VALUE = -128;
-   private static final int MAX_CACHED_VALUE = 127;
-   private static final int OFFSET = -MIN_CACHED_VALUE;
-
-   static final IntegerNumber CACHE[] = new IntegerNumber[OFFSET + MAX_CACHED_VALUE + 1];
+   static final int DEFAULT_MIN_CACHED_VALUE = -128;
+   static final int DEFAULT_MAX_CACHED_VALUE = 127;
+   /** The maximum number of values that can be cached. */
+   static final int MAX_CACHE_SIZE = Integer.MAX_VALUE - 8;
 
-   static {
-      for (int i = 0; i < CACHE.length; i++) {
-         int n = i - OFFSET;
-         CACHE[i] = n == 0 ? ZERO : new IntegerNumber(n);
-      }
-   }
+   /**
+    * The values currently cached.
+    * <p>
+    * Replaced, rather than altered, when the range of cached values is extended. As all the fields of {@code Cache} are
+    * final a thread will always see a fully populated instance.
+    */
+   private static volatile Cache cache = new Cache(DEFAULT_MIN_CACHED_VALUE, DEFAULT_MAX_CACHED_VALUE, null);
 
    private IntegerNumberCache() {
    }
 
+   /**
+    * Returns an {@code IntegerNumber} representing the specified value.
+    * <p>
+    * Returns a cached instance if the value is in the range of values currently cached, else returns a new instance.
+    */
    public static IntegerNumber valueOf(long l) {
-      if (l >= MIN_CACHED_VALUE && l <= MAX_CACHED_VALUE) {
-         return CACHE[(int) l + OFFSET];
+      Cache c = cache;
+      long idx = l - c.min;
+      if (idx >= 0 && idx < c.values.length) {
+         return c.values[(int) idx];
       } else {
          return new IntegerNumber(l);
       }
    }
+
+   /**
+    * Ensures values in the specified range (inclusive) are cached.
+    * <p>
+    * The range of values cached is never reduced. Any values already cached outside of the specified range will
+    * continue to be cached, and existing instances will continue to be used for values that are already cached.
+    *
+    * @param min the minimum value to cache
+    * @param max the maximum value to cache
+    * @throws IllegalArgumentException if {@code min} is greater than {@code max} or the range would contain more than
+    * {@link #MAX_CACHE_SIZE} values
+    */
+   public static synchronized void ensureCached(long min, long max) {
+      if (min > max) {
+         throw new IllegalArgumentException("Minimum: " + min + " is greater than maximum: " + max);
+      }
+      Cache current = cache;
+      long newMin = Math.min(min, current.min);
+      long newMax = Math.max(max, current.getMax());
+      if (newMin != current.min || newMax != current.getMax()) {
+         if (newMax - newMin >= MAX_CACHE_SIZE || newMax - newMin < 0) {
+            throw new IllegalArgumentException("Cannot cache more than " + MAX_CACHE_SIZE + " values. Requested: " + min + " to " + max);
+         }
+         cache = new Cache(newMin, newMax, current);
+      }
+   }
+
+   /** Returns the minimum value currently cached. */
+   static long getMin() {
+      return cache.min;
+   }
+
+   /** Returns the maximum value currently cached. */
+   static long getMax() {
+      return cache.getMax();
+   }
+
+   /** Restores the default range of cached values. Only intended for use by tests. */
+   static synchronized void reset() {
+      Cache current = cache;
+      if (current.min != DEFAULT_MIN_CACHED_VALUE || current.getMax() != DEFAULT_MAX_CACHED_VALUE) {
+         cache = new Cache(DEFAULT_MIN_CACHED_VALUE, DEFAULT_MAX_CACHED_VALUE, current);
+      }
+   }
+
+   private static final class Cache {
+      final long min;
+      final IntegerNumber[] values;
+
+      /**
+       * @param previous the instances to reuse for values that are already cached, or {@code null}
+       */
+      Cache(long min, long max, Cache previous) {
+         this.min = min;
+         this.values = new IntegerNumber[(int) (max - min + 1)];
+         for (int i = 0; i < values.length; i++) {
+            long n = min + i;
+            if (n == 0) {
+               values[i] = ZERO;
+            } else if (previous != null && n >= previous.min && n <= previous.getMax()) {
+               values[i] = previous.values[(int) (n - previous.min)];
+            } else {
+               values[i] = new IntegerNumber(n);
+            }
+         }
+      }
+
+      long getMax() {
+         return min + values.length - 1;
+      }
+   }
 }
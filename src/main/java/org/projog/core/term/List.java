@@ -15,6 +15,7 @@
  */
 package org.projog.core.term;
 
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -23,15 +24,42 @@ import java.util.Map;
  * The head and tail can be any {@link Term}s - including other {@code List}s. By having a {@code List} with a
  * {@code List} as its tail it is possible to represent an ordered sequence of {@link Term}s of any length. The end of
  * an ordered sequence of {@link Term}s is normally represented as a tail having the value of an {@link EmptyList}.
+ * <p>
+ * A list whose elements are all immutable can be <i>array-backed</i>, in which case its elements are stored in a
+ * contiguous array rather than as a chain of {@code List} instances. The tail of an array-backed list is itself an
+ * array-backed view of the same array - starting at the next element - which is only created when it is first
+ * requested. This allows the length of, and elements at specified positions of, long ground lists to be found without
+ * traversing them. Array-backed lists are created by {@link ListFactory} and behave in the same way as any other list.
  *
  * @see EmptyList
  * @see ListFactory
  * @see ListUtils
  */
 public final class List implements Term {
+   /** The value of {@link #position} for a list that is not array-backed and not immutable. */
+   private static final int MUTABLE = -1;
+   /** The value of {@link #position} for a list that is not array-backed and is immutable. */
+   private static final int IMMUTABLE = -2;
+   /**
+    * The multiplicative inverse of {@code 7} modulo 2<sup>32</sup>.
+    * <p>
+    * Used to calculate the hash code of the tail of an array-backed list from the hash code of the list.
+    */
+   private static final int INVERSE_OF_7 = 0xB6DB6DB7;
+
    private final Term head;
+   /** Only {@code null} for an array-backed list whose tail has not yet been requested. */
    private Term tail;
-   private final boolean immutable;
+   /** The elements of an array-backed list, else {@code null}. */
+   private final Term[] elements;
+   /**
+    * The index of {@link #head} in {@link #elements} for an array-backed list, else {@link #MUTABLE} or
+    * {@link #IMMUTABLE}.
+    * <p>
+    * (Using a single field, rather than a separate flag for immutability, means that adding support for array-backed
+    * lists did not increase the memory used by each instance.)
+    */
+   private final int position;
    private final int hashCode;
 
    /**
@@ -45,10 +73,39 @@ public final class List implements Term {
    public List(Term head, Term tail) {
       this.head = head;
       this.tail = tail;
-      this.immutable = head.isImmutable() && tail.isImmutable();
+      this.elements = null;
+      this.position = head.isImmutable() && tail.isImmutable() ? IMMUTABLE : MUTABLE;
       this.hashCode = head.hashCode() + (tail.hashCode() * 7);
    }
 
+   /**
+    * Creates a new array-backed list containing the specified elements.
+    *
+    * @param elements the elements of the list, which must all be immutable and not be subsequently altered
+    */
+   List(Term[] elements) {
+      this(elements, 0, hashCode(elements));
+   }
+
+   private List(Term[] elements, int position, int hashCode) {
+      this.head = elements[position];
+      this.elements = elements;
+      this.position = position;
+      this.hashCode = hashCode;
+   }
+
+   /**
+    * Returns the same value as would be returned by the {@code hashCode} of a list constructed by combining the
+    * specified elements using {@link #List(Term, Term)}.
+    */
+   private static int hashCode(Term[] elements) {
+      int hashCode = EmptyList.EMPTY_LIST.hashCode();
+      for (int i = elements.length - 1; i > -1; i--) {
+         hashCode = elements[i].hashCode() + (hashCode * 7);
+      }
+      return hashCode;
+   }
+
    /**
     * Returns {@link ListFactory#LIST_PREDICATE_NAME}.
     *
@@ -71,7 +128,61 @@ public final class List implements Term {
 
    @Override
    public Term getArgument(int index) {
-      return index == 0 ? head : tail;
+      return index == 0 ? head : getTail();
+   }
+
+   private Term getTail() {
+      Term t = tail;
+      if (t == null) {
+         // As all the fields of the new list are final it is safe for more than one thread to create it. The only
+         // consequence will be that more than one instance will exist to represent the same tail.
+         int next = position + 1;
+         if (next == elements.length) {
+            t = EmptyList.EMPTY_LIST;
+         } else {
+            t = new List(elements, next, (hashCode - head.hashCode()) * INVERSE_OF_7);
+         }
+         tail = t;
+      }
+      return t;
+   }
+
+   /**
+    * Returns {@code true} if this list stores its elements in an array.
+    * <p>
+    * An array-backed list is always immutable and always has an empty list as its final tail.
+    */
+   boolean isArrayBacked() {
+      return elements != null;
+   }
+
+   /**
+    * Returns the number of elements in this array-backed list.
+    *
+    * @see #isArrayBacked()
+    */
+   int getArrayLength() {
+      return elements.length - position;
+   }
+
+   /**
+    * Returns the element at the specified position of this array-backed list.
+    *
+    * @param index the position of the element, where {@code 0} is the position of the head of this list
+    * @see #isArrayBacked()
+    * @see #getArrayLength()
+    */
+   Term getArrayElement(int index) {
+      return elements[position + index];
+   }
+
+   /**
+    * Copies the elements of this array-backed list into a new array.
+    *
+    * @see #isArrayBacked()
+    */
+   Term[] copyArrayElements() {
+      return Arrays.copyOfRange(elements, position, elements.length);
    }
 
    /**
@@ -86,65 +197,36 @@ public final class List implements Term {
 
    @Override
    public boolean isImmutable() {
-      return immutable;
+      return position != MUTABLE;
    }
 
    @Override
    public List getTerm() {
-      if (immutable) {
+      if (isImmutable()) {
          return this;
       } else {
-         Term newHead = head.getTerm();
-         Term newTail = tail.getTerm();
-         if (newHead == head && newTail == tail) {
-            return this;
-         } else {
-            return new List(newHead, newTail);
-         }
+         return (List) CompoundTerms.getTerm(this);
       }
    }
 
    @Override
    public List copy(Map<Variable, Variable> sharedVariables) {
-      if (immutable) {
+      if (isImmutable()) {
          return this;
       } else {
-         Term newHead = head.copy(sharedVariables);
-         Term newTail = tail.copy(sharedVariables);
-         if (newHead == head && newTail == tail) {
-            return this;
-         } else {
-            return new List(newHead, newTail);
-         }
+         return (List) CompoundTerms.copy(this, sharedVariables);
       }
    }
 
    @Override
-   public boolean unify(Term t1) {
-      // used to be implemented using recursion but caused stack overflow problems with long lists
-      Term t2 = this;
-      do {
-         TermType tType = t1.getType();
-         if (tType == TermType.LIST) {
-            if (t2.getArgument(0).unify(t1.getArgument(0)) == false) {
-               return false;
-            }
-            t1 = t1.getArgument(1);
-            t2 = t2.getArgument(1);
-         } else if (tType.isVariable()) {
-            return t1.unify(t2);
-         } else {
-            return false;
-         }
-      } while (t2.getType() == TermType.LIST);
-      return t2.unify(t1);
+   public boolean unify(Term t) {
+      return TermUnifier.unify(this, t);
    }
 
    @Override
    public void backtrack() {
-      if (!immutable) {
-         head.backtrack();
-         tail.backtrack();
+      if (!isImmutable()) {
+         CompoundTerms.backtrack(this);
       }
    }
 
@@ -155,25 +237,29 @@ public final class List implements Term {
       }
 
       if (o.getClass() == List.class && hashCode == o.hashCode()) {
-         // used to be implemented using recursion but caused stack overflow problems with long lists
-         Term a = this;
-         Term b = (List) o;
-
-         do {
-            if (!a.getArgument(0).equals(b.getArgument(0))) {
-               return false;
-            }
-
-            a = a.getArgument(1);
-            b = b.getArgument(1);
-         } while (a.getClass() == List.class && b.getClass() == List.class);
-
-         return a.equals(b);
+         List other = (List) o;
+         if (elements != null && other.elements != null) {
+            return equalsArrayBacked(other);
+         }
+         return CompoundTerms.equals(this, o);
       }
 
       return false;
    }
 
+   private boolean equalsArrayBacked(List other) {
+      int length = getArrayLength();
+      if (length != other.getArrayLength()) {
+         return false;
+      }
+      for (int i = 0; i < length; i++) {
+         if (!getArrayElement(i).equals(other.getArrayElement(i))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
    @Override
    public int hashCode() {
       return hashCode;
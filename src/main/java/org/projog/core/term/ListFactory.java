@@ -29,6 +29,12 @@ public final class ListFactory {
     * A "{@code .}" is the functor name for all lists in Prolog.
     */
    public static final String LIST_PREDICATE_NAME = ".";
+   /**
+    * The minimum number of elements a list must contain before it will be array-backed.
+    *
+    * @see List
+    */
+   private static final int MIN_ARRAY_BACKED_LENGTH = 2;
 
    /**
     * Private constructor as all methods are static.
@@ -55,7 +61,13 @@ public final class ListFactory {
     * @return a new {@link List} with the specified terms and a empty list as the final tail element
     */
    public static Term createList(final Collection<? extends Term> terms) {
-      return createList(terms.toArray(new Term[terms.size()]));
+      Term[] array = terms.toArray(new Term[terms.size()]);
+      if (isArrayBackable(array)) {
+         // no need to copy the array as it is not referenced by anything else
+         return new List(array);
+      } else {
+         return createList(array, EmptyList.EMPTY_LIST);
+      }
    }
 
    /**
@@ -76,6 +88,9 @@ public final class ListFactory {
     * <p>
     * By having a {@code List} with a {@code List} as its tail it is possible to represent an ordered sequence of the
     * specified terms.
+    * <p>
+    * If {@code tail} is an empty list and all of {@code terms} are immutable then the returned list will be
+    * array-backed.
     *
     * @param terms contents of the list
     * @return a new {@link List} with the specified terms and the second parameter as the tail element
@@ -85,6 +100,9 @@ public final class ListFactory {
       if (numberOfElements == 0) {
          return EmptyList.EMPTY_LIST;
       }
+      if (tail == EmptyList.EMPTY_LIST && isArrayBackable(terms)) {
+         return new List(terms.clone());
+      }
       Term list = tail;
       for (int i = numberOfElements - 1; i > -1; i--) {
          Term element = terms[i];
@@ -93,6 +111,18 @@ public final class ListFactory {
       return list;
    }
 
+   private static boolean isArrayBackable(Term[] terms) {
+      if (terms.length < MIN_ARRAY_BACKED_LENGTH) {
+         return false;
+      }
+      for (Term t : terms) {
+         if (!t.isImmutable()) {
+            return false;
+         }
+      }
+      return true;
+   }
+
    /** Returns a new list of the specified length where is each element is a variable. */
    public static Term createListOfLength(final int length) {
       final java.util.List<Term> javaList = new ArrayList<Term>();
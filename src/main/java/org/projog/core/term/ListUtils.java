@@ -49,6 +49,15 @@ public class ListUtils {
       if (list.getType() == TermType.LIST) {
          final List<Term> result = new ArrayList<Term>();
          do {
+            org.projog.core.term.List arrayBacked = getArrayBacked(list);
+            if (arrayBacked != null) {
+               // no need to check the tail as an array-backed list always ends with an empty list
+               int length = arrayBacked.getArrayLength();
+               for (int i = 0; i < length; i++) {
+                  result.add(arrayBacked.getArrayElement(i));
+               }
+               return result;
+            }
             result.add(list.getArgument(0));
             list = list.getArgument(1);
          } while (list.getType() == TermType.LIST);
@@ -68,6 +77,104 @@ public class ListUtils {
       }
    }
 
+   /**
+    * Returns the number of elements in the specified list.
+    * <p>
+    * Will return {@code -1} if {@code list} is neither of type {@link TermType#LIST} or {@link TermType#EMPTY_LIST},
+    * or if {@code list} represents a partial list (i.e. a list that does not have an empty list as its tail).
+    * </p>
+    * <p>
+    * Does not need to traverse array-backed lists.
+    * </p>
+    *
+    * @see org.projog.core.term.List
+    */
+   public static int getLength(Term list) {
+      int length = 0;
+      while (list.getType() == TermType.LIST) {
+         org.projog.core.term.List arrayBacked = getArrayBacked(list);
+         if (arrayBacked != null) {
+            return length + arrayBacked.getArrayLength();
+         }
+         length++;
+         list = list.getArgument(1);
+      }
+      return list.getType() == TermType.EMPTY_LIST ? length : -1;
+   }
+
+   /**
+    * Returns the element at the specified position of the specified list.
+    * <p>
+    * Will return {@code null} if {@code index} is not a valid position in the list, if {@code list} is neither of type
+    * {@link TermType#LIST} or {@link TermType#EMPTY_LIST}, or if {@code list} represents a partial list (i.e. a list
+    * that does not have an empty list as its tail).
+    * </p>
+    * <p>
+    * Does not need to traverse array-backed lists.
+    * </p>
+    *
+    * @param list the list to get the element from
+    * @param index the position of the element, where {@code 0} is the position of the first element
+    * @see org.projog.core.term.List
+    */
+   public static Term getElement(Term list, int index) {
+      Term result = null;
+      int position = 0;
+      while (list.getType() == TermType.LIST) {
+         org.projog.core.term.List arrayBacked = getArrayBacked(list);
+         if (arrayBacked != null) {
+            int offset = index - position;
+            if (offset > -1 && offset < arrayBacked.getArrayLength()) {
+               result = arrayBacked.getArrayElement(offset);
+            }
+            return result;
+         }
+         if (position == index) {
+            result = list.getArgument(0);
+         }
+         position++;
+         list = list.getArgument(1);
+      }
+      return list.getType() == TermType.EMPTY_LIST ? result : null;
+   }
+
+   /**
+    * Returns the last element of the specified list.
+    * <p>
+    * Will return {@code null} if {@code list} is not of type {@link TermType#LIST} or if {@code list} represents a
+    * partial list (i.e. a list that does not have an empty list as its tail).
+    * </p>
+    * <p>
+    * Does not need to traverse array-backed lists.
+    * </p>
+    *
+    * @see org.projog.core.term.List
+    */
+   public static Term getLastElement(Term list) {
+      Term lastElement = null;
+      while (list.getType() == TermType.LIST) {
+         org.projog.core.term.List arrayBacked = getArrayBacked(list);
+         if (arrayBacked != null) {
+            return arrayBacked.getArrayElement(arrayBacked.getArrayLength() - 1);
+         }
+         lastElement = list.getArgument(0);
+         list = list.getArgument(1);
+      }
+      return list.getType() == TermType.EMPTY_LIST ? lastElement : null;
+   }
+
+   /** Returns the specified term as an array-backed list, or {@code null} if it is not an array-backed list. */
+   private static org.projog.core.term.List getArrayBacked(Term t) {
+      Term list = Variable.dereference(t);
+      if (list.getClass() == org.projog.core.term.List.class) {
+         org.projog.core.term.List l = (org.projog.core.term.List) list;
+         if (l.isArrayBacked()) {
+            return l;
+         }
+      }
+      return null;
+   }
+
    /**
     * Returns a new {@code java.util.List} containing the sorted contents of the specified
     * {@code org.projog.core.term.List}.
@@ -55,7 +55,7 @@ public final class Structure implements Term {
          functor = ListFactory.LIST_PREDICATE_NAME;
       }
 
-      return new Structure(functor, args, isImmutable(args));
+      return new Structure(SymbolTable.intern(functor), args, isImmutable(args));
    }
 
    private static boolean isImmutable(Term[] args) {
@@ -68,11 +68,13 @@ public final class Structure implements Term {
    }
 
    /**
-    * Private constructor to force use of {@link #createStructure(String, Term[])}
+    * Package-private constructor to force use of {@link #createStructure(String, Term[])} outside of this package.
+    * <p>
+    * Callers must ensure {@code functor} has been returned from {@link SymbolTable#intern(String)}.
     *
     * @param immutable is this structure immutable (i.e. are all its arguments known to be immutable)?
     */
-   private Structure(String functor, Term[] args, boolean immutable) {
+   Structure(String functor, Term[] args, boolean immutable) {
       this.functor = functor;
       this.args = args;
       this.immutable = immutable;
@@ -124,23 +126,7 @@ public final class Structure implements Term {
       if (immutable) {
          return this;
       } else {
-         boolean returnThis = true;
-         boolean newImmutable = true;
-         Term newArgs[] = new Term[args.length];
-         for (int i = 0; i < args.length; i++) {
-            newArgs[i] = args[i].getTerm();
-            if (newArgs[i] != args[i]) {
-               returnThis = false;
-            }
-            if (newArgs[i].isImmutable() == false) {
-               newImmutable = false;
-            }
-         }
-         if (returnThis) {
-            return this;
-         } else {
-            return new Structure(functor, newArgs, newImmutable);
-         }
+         return (Structure) CompoundTerms.getTerm(this);
       }
    }
 
@@ -149,54 +135,19 @@ public final class Structure implements Term {
       if (immutable) {
          return this;
       } else {
-         boolean returnThis = true;
-         boolean newIsImmutable = true;
-         Term newArgs[] = new Term[args.length];
-         for (int i = 0; i < args.length; i++) {
-            newArgs[i] = args[i].copy(sharedVariables);
-            if (newArgs[i] != args[i]) {
-               returnThis = false;
-            }
-            if (newArgs[i].isImmutable() == false) {
-               newIsImmutable = false;
-            }
-         }
-         if (returnThis) {
-            return this;
-         } else {
-            return new Structure(functor, newArgs, newIsImmutable);
-         }
+         return (Structure) CompoundTerms.copy(this, sharedVariables);
       }
    }
 
    @Override
    public boolean unify(Term t) {
-      TermType tType = t.getType();
-      if (tType == TermType.STRUCTURE) {
-         Term[] tArgs = t.getArgs();
-         if (args.length != tArgs.length) {
-            return false;
-         }
-         if (!functor.equals(t.getName())) {
-            return false;
-         }
-         for (int i = 0; i < args.length; i++) {
-            if (!args[i].unify(tArgs[i])) {
-               return false;
-            }
-         }
-         return true;
-      } else if (tType.isVariable()) {
-         return t.unify(this);
-      } else {
-         return false;
-      }
+      return TermUnifier.unify(this, t);
    }
 
    @Override
    public void backtrack() {
       if (!immutable) {
-         TermUtils.backtrack(args);
+         CompoundTerms.backtrack(this);
       }
    }
 
@@ -207,8 +158,7 @@ public final class Structure implements Term {
       }
 
       if (o.getClass() == Structure.class && hashCode == o.hashCode()) {
-         Structure other = (Structure) o;
-         return functor.equals(other.functor) && Arrays.equals(args, other.args);
+         return CompoundTerms.equals(this, o);
       }
 
       return false;
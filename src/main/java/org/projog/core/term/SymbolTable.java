@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table of the names used by atoms and structures.
+ * <p>
+ * Every {@link Atom} and {@link Structure} uses the canonical {@code String} instance returned by
+ * {@link #intern(String)} as its name. As a result names can be compared by identity (rather than by calling
+ * {@code String.equals}) when unifying terms, comparing terms for equality and looking up predicates. Sharing a single
+ * instance of each name, and of each {@link Atom}, also reduces the memory used by programs containing large numbers
+ * of facts.
+ * <p>
+ * The table is shared by all knowledge bases but holds its names, and atoms, weakly - a name is removed once nothing
+ * else refers to its canonical instance. Names are therefore not leaked by knowledge bases that are no longer used,
+ * while a name that is still referred to (e.g. by a term or a {@link org.projog.core.PredicateKey}) keeps its canonical
+ * instance.
+ * <p>
+ * Looking up a name that is already in the table does not require a lock.
+ */
+public final class SymbolTable {
+   /** Each symbol is both the key and the value of its entry. */
+   private static final ConcurrentHashMap<Object, Symbol> SYMBOLS = new ConcurrentHashMap<>();
+   /** Receives the symbols whose name has been reclaimed, so they can be removed from {@link #SYMBOLS}. */
+   private static final ReferenceQueue<String> RECLAIMED = new ReferenceQueue<>();
+
+   /**
+    * Private constructor as all methods are static.
+    */
+   private SymbolTable() {
+      // do nothing
+   }
+
+   /**
+    * Returns the canonical instance of the specified name.
+    *
+    * @param name the name to intern
+    * @return a {@code String} equal to {@code name} - the same instance will be returned for all equal names while the
+    * returned instance is still referred to
+    */
+   public static String intern(String name) {
+      Symbol symbol = SYMBOLS.get(new Lookup(name));
+      String canonical = symbol == null ? null : symbol.get();
+      return canonical == null ? add(name) : canonical;
+   }
+
+   /**
+    * Returns the shared {@link Atom} with the specified name.
+    * <p>
+    * As atoms are immutable a single instance can be used for all occurrences of an atom with the same name.
+    *
+    * @param name the name of the atom
+    * @return an atom with the specified name - the same instance will be returned for all equal names while the
+    * returned atom is still referred to
+    */
+   public static Atom getAtom(String name) {
+      String canonical = intern(name);
+      // as canonical is strongly referenced its symbol cannot be removed
+      Symbol symbol = SYMBOLS.get(new Lookup(canonical));
+      Atom atom = symbol.getAtom();
+      if (atom == null) {
+         synchronized (symbol) {
+            atom = symbol.getAtom();
+            if (atom == null) {
+               atom = new Atom(canonical, true);
+               symbol.atom = new WeakReference<>(atom);
+            }
+         }
+      }
+      return atom;
+   }
+
+   /**
+    * Returns the number of names in the table.
+    * <p>
+    * As names are removed when they are no longer referred to, the value returned is an upper bound of the number of
+    * names in use.
+    *
+    * @return the number of names in the table
+    */
+   public static int size() {
+      removeReclaimed();
+      return SYMBOLS.size();
+   }
+
+   private static String add(String name) {
+      removeReclaimed();
+      Symbol symbol = new Symbol(name);
+      while (true) {
+         Symbol existing = SYMBOLS.putIfAbsent(symbol, symbol);
+         if (existing == null) {
+            return name;
+         }
+         // the name of the existing symbol may have been reclaimed since it was found to be equal
+         String canonical = existing.get();
+         if (canonical != null) {
+            return canonical;
+         }
+      }
+   }
+
+   private static void removeReclaimed() {
+      Reference<? extends String> reclaimed;
+      while ((reclaimed = RECLAIMED.poll()) != null) {
+         SYMBOLS.remove(reclaimed, reclaimed);
+      }
+   }
+
+   /**
+    * Weakly refers to a canonical name. Equal to other symbols whose name is equal, while the name has not been
+    * reclaimed.
+    */
+   private static final class Symbol extends WeakReference<String> {
+      private final int hashCode;
+      private volatile WeakReference<Atom> atom;
+
+      Symbol(String name) {
+         super(name, RECLAIMED);
+         this.hashCode = name.hashCode();
+      }
+
+      Atom getAtom() {
+         WeakReference<Atom> ref = atom;
+         return ref == null ? null : ref.get();
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (o == this) {
+            return true;
+         }
+         String name = get();
+         return name != null && o instanceof Symbol && name.equals(((Symbol) o).get());
+      }
+
+      @Override
+      public int hashCode() {
+         return hashCode;
+      }
+   }
+
+   /** Used to find the symbol of a name without creating a reference to it. */
+   private static final class Lookup {
+      private final String name;
+
+      Lookup(String name) {
+         this.name = name;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof Symbol && name.equals(((Symbol) o).get());
+      }
+
+      @Override
+      public int hashCode() {
+         return name.hashCode();
+      }
+   }
+}
@@ -15,6 +15,8 @@
  */
 package org.projog.core.term;
 
+import java.util.ArrayDeque;
+
 import org.projog.core.Operands;
 
 /**
@@ -62,10 +64,43 @@ public class TermFormatter {
    }
 
    private void write(Term t, StringBuilder sb) {
+      // loops, rather than recurses, on the last argument of structures so that deeply nested terms (e.g. a long
+      // sequence of conjunctions) do not cause a StackOverflowError - text to append after the last argument has been
+      // written is recorded in outermostSuffix or, if there is more than one, innerSuffixes
+      String outermostSuffix = null;
+      ArrayDeque<String> innerSuffixes = null;
+      CompoundTerms.CycleDetector cycleDetector = null;
+      int depth = 0;
+      while (t.getType() == TermType.STRUCTURE) {
+         cycleDetector = CompoundTerms.CycleDetector.check(cycleDetector, depth++, Variable.dereference(t), null);
+         String suffix = writeAllButLastArgument(t, sb);
+         if (suffix == null) {
+            // nothing to add
+         } else if (outermostSuffix == null) {
+            outermostSuffix = suffix;
+         } else {
+            if (innerSuffixes == null) {
+               innerSuffixes = new ArrayDeque<>();
+            }
+            innerSuffixes.push(suffix);
+         }
+         t = t.getArgument(t.getNumberOfArguments() - 1);
+      }
+
+      writeNonStructure(t, sb);
+
+      if (innerSuffixes != null) {
+         for (String suffix : innerSuffixes) {
+            sb.append(suffix);
+         }
+      }
+      if (outermostSuffix != null) {
+         sb.append(outermostSuffix);
+      }
+   }
+
+   private void writeNonStructure(Term t, StringBuilder sb) {
       switch (t.getType()) {
-         case STRUCTURE:
-            writePredicate(t, sb);
-            break;
          case LIST:
             writeList(t, sb);
             break;
@@ -86,7 +121,10 @@ public class TermFormatter {
       Term tail = p.getArgument(1);
       write(head, sb);
       Term list;
+      CompoundTerms.CycleDetector cycleDetector = null;
+      int depth = 0;
       while ((list = getList(tail)) != null) {
+         cycleDetector = CompoundTerms.CycleDetector.check(cycleDetector, depth++, Variable.dereference(list), null);
          sb.append(',');
          write(list.getArgument(0), sb);
          tail = list.getArgument(1);
@@ -107,15 +145,21 @@ public class TermFormatter {
       }
    }
 
-   private void writePredicate(Term p, StringBuilder sb) {
+   /**
+    * Writes the specified structure, apart from its last argument.
+    *
+    * @return the text to write after the last argument of the structure has been written, or {@code null} if none
+    */
+   private String writeAllButLastArgument(Term p, StringBuilder sb) {
       if (isInfixOperator(p)) {
-         writeInfixOperator(p, sb);
+         return writeInfixOperator(p, sb);
       } else if (isPrefixOperator(p)) {
          writePrefixOperator(p, sb);
+         return null;
       } else if (isPostfixOperator(p)) {
-         writePostfixOperator(p, sb);
+         return writePostfixOperator(p);
       } else {
-         writeNonOperatorPredicate(p, sb);
+         return writeNonOperatorPredicate(p, sb);
       }
    }
 
@@ -123,7 +167,7 @@ public class TermFormatter {
       return t.getType() == TermType.STRUCTURE && t.getArgs().length == 2 && operands.infix(t.getName());
    }
 
-   private void writeInfixOperator(Term p, StringBuilder sb) {
+   private String writeInfixOperator(Term p, StringBuilder sb) {
       Term[] args = p.getArgs();
       write(args[0], sb);
       sb.append(' ').append(p.getName()).append(' ');
@@ -135,10 +179,9 @@ public class TermFormatter {
       //  ?- fail , fail ; true
       if (isInfixOperator(args[1]) && isEqualOrLowerPriority(p, args[1])) {
          sb.append('(');
-         writeInfixOperator(args[1], sb);
-         sb.append(')');
+         return ")";
       } else {
-         write(args[1], sb);
+         return null;
       }
    }
 
@@ -152,29 +195,25 @@ public class TermFormatter {
 
    private void writePrefixOperator(Term p, StringBuilder sb) {
       sb.append(p.getName()).append(' ');
-      write(p.getArgs()[0], sb);
    }
 
    private boolean isPostfixOperator(Term t) {
       return t.getType() == TermType.STRUCTURE && t.getArgs().length == 1 && operands.postfix(t.getName());
    }
 
-   private void writePostfixOperator(Term p, StringBuilder sb) {
-      write(p.getArgs()[0], sb);
-      sb.append(' ').append(p.getName());
+   private String writePostfixOperator(Term p) {
+      return " " + p.getName();
    }
 
-   private void writeNonOperatorPredicate(Term p, StringBuilder sb) {
+   private String writeNonOperatorPredicate(Term p, StringBuilder sb) {
       String name = p.getName();
       Term[] args = p.getArgs();
       sb.append(name);
       sb.append("(");
-      for (int i = 0; i < args.length; i++) {
-         if (i != 0) {
-            sb.append(", ");
-         }
+      for (int i = 0; i < args.length - 1; i++) {
          write(args[i], sb);
+         sb.append(", ");
       }
-      sb.append(")");
+      return ")";
    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+/**
+ * A pre-processed representation of a {@link Term} that can be used to create copies of the term.
+ * <p>
+ * Rather than storing variables, a {@code TermTemplate} refers to variables by their position (or "slot") in a
+ * <i>frame</i>. A frame is an array that records the term each variable of the original term is represented by. This
+ * allows a term to be copied, or unified with another term, without having to use a map to keep track of which new
+ * variables have been created to represent the variables of the original term.
+ * <p>
+ * Each element of a new frame is {@code null}. A slot of a frame is populated the first time the variable it
+ * represents is encountered while using {@link #unify(Term, Term[], Trail)} or {@link #instantiate(Term[], Trail)}.
+ * <p>
+ * The currently active {@link Trail} is passed to each method, by the predicate evaluating the term, so that the
+ * variables created and instantiated by the template do not need to look it up.
+ *
+ * @see TermTemplateFactory
+ */
+public interface TermTemplate {
+   /**
+    * Returns a copy of the term this template represents.
+    *
+    * @param frame the terms to use to represent the variables of the term this template represents
+    * @param trail the currently active trail
+    * @return a copy of the term this template represents
+    */
+   Term instantiate(Term[] frame, Trail trail);
+
+   /**
+    * Attempts to unify the specified term with a copy of the term this template represents.
+    * <p>
+    * Unlike calling {@code input.unify(instantiate(frame, trail))} this method avoids creating objects wherever
+    * possible.
+    *
+    * @param input the term to unify with a copy of the term this template represents
+    * @param frame the terms to use to represent the variables of the term this template represents
+    * @param trail the currently active trail
+    * @return {@code true} if the attempt to unify the terms was successful
+    */
+   boolean unify(Term input, Term[] frame, Trail trail);
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates {@link TermTemplate} instances that share a single frame.
+ * <p>
+ * All the terms passed to the constructor of a {@code TermTemplateFactory} (e.g. the head and body of a clause) are
+ * considered to share the same variables. Each variable that occurs more than once is assigned a slot in the frame.
+ * Variables that only occur once do not need to be assigned a slot as no other part of the terms refers to them. Slots
+ * are numbered in the order the variables first occur.
+ */
+public final class TermTemplateFactory {
+   private final Map<Variable, Integer> occurrences = new LinkedHashMap<>();
+   private final Map<Variable, Integer> slots = new HashMap<>();
+   private final String[] slotIds;
+
+   /**
+    * @param terms all the terms that templates will be created for
+    */
+   public TermTemplateFactory(Term... terms) {
+      for (Term t : terms) {
+         countOccurrences(t);
+      }
+      for (Map.Entry<Variable, Integer> e : occurrences.entrySet()) {
+         if (e.getValue() > 1) {
+            slots.put(e.getKey(), slots.size());
+         }
+      }
+      slotIds = new String[slots.size()];
+      for (Map.Entry<Variable, Integer> e : slots.entrySet()) {
+         slotIds[e.getValue()] = e.getKey().getId();
+      }
+   }
+
+   private void countOccurrences(Term t) {
+      while (!t.isImmutable()) {
+         switch (t.getType()) {
+            case VARIABLE:
+               occurrences.merge((Variable) t.getTerm(), 1, Integer::sum);
+               return;
+            case STRUCTURE:
+               for (Term arg : t.getArgs()) {
+                  countOccurrences(arg);
+               }
+               return;
+            case LIST:
+               // iterate rather than recurse through the tail of lists to avoid StackOverflowError for long lists
+               countOccurrences(t.getArgument(0));
+               t = t.getArgument(1);
+               break;
+            default:
+               return;
+         }
+      }
+   }
+
+   /**
+    * Returns the number of slots required by a frame used with the templates created by this object.
+    *
+    * @return the number of slots required by a frame used with the templates created by this object
+    */
+   public int getNumberOfSlots() {
+      return slots.size();
+   }
+
+   /**
+    * Returns a new frame for use with the templates created by this object.
+    *
+    * @return a new frame for use with the templates created by this object
+    */
+   public Term[] createFrame() {
+      return slots.isEmpty() ? TermUtils.EMPTY_ARRAY : new Term[slots.size()];
+   }
+
+   /**
+    * Creates a new variable for each slot of the specified frame that is not yet populated.
+    * <p>
+    * Ensures that any variables subsequently created by instantiating templates are not recorded in the frame.
+    *
+    * @param frame a frame returned from {@link #createFrame()}
+    * @param trail the currently active trail
+    */
+   public void populateFrame(Term[] frame, Trail trail) {
+      for (int i = 0; i < frame.length; i++) {
+         if (frame[i] == null) {
+            frame[i] = new Variable(slotIds[i], trail);
+         }
+      }
+   }
+
+   /**
+    * Returns templates for each of the specified terms.
+    *
+    * @param terms the terms to create templates for - must have been passed to the constructor of this object
+    * @return templates for each of the specified terms
+    */
+   public TermTemplate[] createTemplates(Term[] terms) {
+      TermTemplate[] templates = new TermTemplate[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+         templates[i] = createTemplate(terms[i]);
+      }
+      return templates;
+   }
+
+   /**
+    * Returns a template for the specified term.
+    *
+    * @param t the term to create a template for - must have been passed to the constructor of this object
+    * @return a template for the specified term
+    */
+   public TermTemplate createTemplate(Term t) {
+      if (t.isImmutable()) {
+         return new ImmutableTemplate(t);
+      }
+      switch (t.getType()) {
+         case VARIABLE:
+            return createVariableTemplate((Variable) t.getTerm());
+         case STRUCTURE:
+            return new StructureTemplate(t.getName(), createTemplates(t.getArgs()));
+         case LIST:
+            return createListTemplate(t);
+         default:
+            return new ImmutableTemplate(t.getTerm());
+      }
+   }
+
+   private TermTemplate createVariableTemplate(Variable v) {
+      Integer slot = slots.get(v);
+      if (slot != null) {
+         return new VariableTemplate(slot, v.getId());
+      } else if (occurrences.containsKey(v)) {
+         return new SingletonVariableTemplate(v.getId());
+      } else {
+         throw new IllegalArgumentException(v + " not contained in terms passed to constructor");
+      }
+   }
+
+   private TermTemplate createListTemplate(Term t) {
+      java.util.List<TermTemplate> heads = new ArrayList<>();
+      do {
+         heads.add(createTemplate(t.getArgument(0)));
+         t = t.getArgument(1);
+      } while (t.getType() == TermType.LIST && !t.isImmutable());
+      return new ListTemplate(heads.toArray(new TermTemplate[heads.size()]), createTemplate(t));
+   }
+
+   private static final class ImmutableTemplate implements TermTemplate {
+      private final Term term;
+
+      ImmutableTemplate(Term term) {
+         this.term = term;
+      }
+
+      @Override
+      public Term instantiate(Term[] frame, Trail trail) {
+         return term;
+      }
+
+      @Override
+      public boolean unify(Term input, Term[] frame, Trail trail) {
+         return TermUnifier.unify(input, term, trail);
+      }
+   }
+
+   /** Represents a variable that only occurs once so does not need to be recorded in the frame. */
+   private static final class SingletonVariableTemplate implements TermTemplate {
+      private final String id;
+
+      SingletonVariableTemplate(String id) {
+         this.id = id;
+      }
+
+      @Override
+      public Term instantiate(Term[] frame, Trail trail) {
+         return new Variable(id, trail);
+      }
+
+      @Override
+      public boolean unify(Term input, Term[] frame, Trail trail) {
+         if (input.getType().isVariable()) {
+            // an uninstantiated variable of a query becomes an alias of the variable of the clause
+            return TermUnifier.unify(input, new Variable(id, trail), trail);
+         } else {
+            // can unify with anything
+            return true;
+         }
+      }
+   }
+
+   private static final class VariableTemplate implements TermTemplate {
+      private final int slot;
+      private final String id;
+
+      VariableTemplate(int slot, String id) {
+         this.slot = slot;
+         this.id = id;
+      }
+
+      @Override
+      public Term instantiate(Term[] frame, Trail trail) {
+         Term t = frame[slot];
+         if (t == null) {
+            t = new Variable(id, trail);
+            frame[slot] = t;
+            return t;
+         } else {
+            return t.getTerm();
+         }
+      }
+
+      @Override
+      public boolean unify(Term input, Term[] frame, Trail trail) {
+         Term t = frame[slot];
+         if (t != null) {
+            return TermUnifier.unify(input, t, trail);
+         } else if (input.getType().isVariable()) {
+            // an uninstantiated variable of a query becomes an alias of the variable of the clause
+            t = new Variable(id, trail);
+            frame[slot] = t;
+            return TermUnifier.unify(input, t, trail);
+         } else {
+            // first occurrence so, rather than creating a new variable, can use the input term to represent it
+            frame[slot] = input;
+            return true;
+         }
+      }
+   }
+
+   private static final class StructureTemplate implements TermTemplate {
+      private final String functor;
+      private final TermTemplate[] args;
+
+      StructureTemplate(String functor, TermTemplate[] args) {
+         this.functor = SymbolTable.intern(functor);
+         this.args = args;
+      }
+
+      @Override
+      public Term instantiate(Term[] frame, Trail trail) {
+         Term[] newArgs = new Term[args.length];
+         boolean immutable = true;
+         for (int i = 0; i < args.length; i++) {
+            newArgs[i] = args[i].instantiate(frame, trail);
+            if (!newArgs[i].isImmutable()) {
+               immutable = false;
+            }
+         }
+         return new Structure(functor, newArgs, immutable);
+      }
+
+      @Override
+      public boolean unify(Term input, Term[] frame, Trail trail) {
+         TermType type = input.getType();
+         if (type == TermType.STRUCTURE) {
+            // names are interned so can compare by identity
+            if (functor != input.getName() || args.length != input.getNumberOfArguments()) {
+               return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+               if (!args[i].unify(input.getArgument(i), frame, trail)) {
+                  return false;
+               }
+            }
+            return true;
+         } else if (type.isVariable()) {
+            return TermUnifier.unify(input, instantiate(frame, trail), trail);
+         } else {
+            return false;
+         }
+      }
+   }
+
+   /** Represents a sequence of one or more list elements followed by a tail. */
+   private static final class ListTemplate implements TermTemplate {
+      private final TermTemplate[] heads;
+      private final TermTemplate tail;
+
+      ListTemplate(TermTemplate[] heads, TermTemplate tail) {
+         this.heads = heads;
+         this.tail = tail;
+      }
+
+      @Override
+      public Term instantiate(Term[] frame, Trail trail) {
+         return instantiate(0, frame, trail);
+      }
+
+      private Term instantiate(int from, Term[] frame, Trail trail) {
+         Term[] elements = new Term[heads.length - from];
+         for (int i = 0; i < elements.length; i++) {
+            elements[i] = heads[from + i].instantiate(frame, trail);
+         }
+         return ListFactory.createList(elements, tail.instantiate(frame, trail));
+      }
+
+      @Override
+      public boolean unify(Term input, Term[] frame, Trail trail) {
+         for (int i = 0; i < heads.length; i++) {
+            TermType type = input.getType();
+            if (type == TermType.LIST) {
+               if (!heads[i].unify(input.getArgument(0), frame, trail)) {
+                  return false;
+               }
+               input = input.getArgument(1);
+            } else if (type.isVariable()) {
+               return TermUnifier.unify(input, instantiate(i, frame, trail), trail);
+            } else {
+               return false;
+            }
+         }
+         return tail.unify(input, frame, trail);
+      }
+   }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import org.projog.core.term.CompoundTerms.CycleDetector;
+
+/**
+ * Unifies terms.
+ * <p>
+ * All implementations of {@link Term#unify(Term)} in this package delegate to {@link #unify(Term, Term)} so that the
+ * unification of any pair of terms is performed by a single method. The type of each term is determined by comparing
+ * its class - which, unlike calling {@link Term#getType()}, does not require a virtual method call - and the common
+ * combinations (a variable with any term, two atoms, two integers and two compound terms with the same functor) are
+ * handled inline.
+ * <p>
+ * As with {@link CompoundTerms}, the last argument of a compound term is processed by looping rather than recursion.
+ */
+final class TermUnifier {
+   /**
+    * Private constructor as all methods are static.
+    */
+   private TermUnifier() {
+      // do nothing
+   }
+
+   /**
+    * Attempts to unify the two specified terms.
+    *
+    * @return {@code true} if the terms were unified, else {@code false} (in which case some variables contained in the
+    * terms may have been instantiated and will need to be backtracked)
+    * @see Term#unify(Term)
+    */
+   static boolean unify(Term a, Term b) {
+      return unify(a, b, null);
+   }
+
+   /**
+    * Attempts to unify the two specified terms, recording any variables that are instantiated in the specified trail.
+    *
+    * @param trail the currently active trail, or {@code null} if it should be looked up when a variable is instantiated
+    * @return {@code true} if the terms were unified, else {@code false} (in which case some variables contained in the
+    * terms may have been instantiated and will need to be backtracked)
+    */
+   static boolean unify(Term a, Term b, Trail trail) {
+      int depth = 0;
+      CycleDetector cycleDetector = null;
+      while (true) {
+         a = Variable.dereference(a);
+         b = Variable.dereference(b);
+         cycleDetector = CycleDetector.check(cycleDetector, depth++, a, b);
+         if (a == b) {
+            // will be common when ground terms are shared - see GroundTermTable
+            return true;
+         }
+
+         Class<?> c = a.getClass();
+         if (c == Variable.class) {
+            return ((Variable) a).unify(b, trail);
+         } else if (b.getClass() == Variable.class) {
+            return ((Variable) b).unify(a, trail);
+         } else if (c != b.getClass()) {
+            return unifyDifferentClasses(a, b);
+         } else if (c == Atom.class) {
+            // names are interned so can compare by identity
+            return a.getName() == b.getName();
+         } else if (c == IntegerNumber.class) {
+            return ((IntegerNumber) a).getLong() == ((IntegerNumber) b).getLong();
+         }
+
+         int lastIdx;
+         if (c == List.class) {
+            if (((List) a).isArrayBacked() && ((List) b).isArrayBacked()) {
+               // as all elements are immutable the two lists will only unify if they are equal
+               return a.equals(b);
+            }
+            lastIdx = 1;
+         } else if (c == Structure.class) {
+            lastIdx = a.getNumberOfArguments() - 1;
+            // names are interned so can compare by identity
+            if (lastIdx != b.getNumberOfArguments() - 1 || a.getName() != b.getName()) {
+               return false;
+            }
+         } else if (c == EmptyList.class) {
+            return true;
+         } else if (c == DecimalFraction.class) {
+            return ((DecimalFraction) a).getDouble() == ((DecimalFraction) b).getDouble();
+         } else {
+            return a.unify(b);
+         }
+
+         for (int i = 0; i < lastIdx; i++) {
+            if (!unify(a.getArgument(i), b.getArgument(i), trail)) {
+               return false;
+            }
+         }
+
+         a = a.getArgument(lastIdx);
+         b = b.getArgument(lastIdx);
+      }
+   }
+
+   /**
+    * Terms of different classes never unify, unless one of them is an implementation of {@link Term} that is not
+    * defined in this package - in which case it is left to that implementation to decide.
+    */
+   private static boolean unifyDifferentClasses(Term a, Term b) {
+      if (!isDefinedInThisPackage(a.getClass())) {
+         return a.unify(b);
+      } else if (!isDefinedInThisPackage(b.getClass())) {
+         return b.unify(a);
+      } else {
+         return false;
+      }
+   }
+
+   private static boolean isDefinedInThisPackage(Class<?> c) {
+      return c == Atom.class
+             || c == IntegerNumber.class
+             || c == Structure.class
+             || c == List.class
+             || c == EmptyList.class
+             || c == DecimalFraction.class
+             || c == Variable.class;
+   }
+}
@@ -57,6 +57,29 @@ public final class TermUtils {
       return output;
    }
 
+   /**
+    * Returns the result of calling {@link Term#getTerm()} on each of the specified {@link Term}s.
+    * <p>
+    * If calling {@code getTerm()} does not change any of the terms then the specified array is returned, rather than a
+    * new array.
+    *
+    * @param input {@link Term}s to call {@code getTerm()} on
+    * @return the results of calling {@code getTerm()} on each of the specified {@link Term}s
+    */
+   public static Term[] getTerms(final Term[] input) {
+      Term[] output = input;
+      for (int i = 0; i < input.length; i++) {
+         Term t = input[i].getTerm();
+         if (t != input[i]) {
+            if (output == input) {
+               output = input.clone();
+            }
+            output[i] = t;
+         }
+      }
+      return output;
+   }
+
    /**
     * Backtracks all {@link Term}s in the specified array.
     *
@@ -72,25 +95,52 @@ public final class TermUtils {
    /**
     * Attempts to unify all corresponding {@link Term}s in the specified arrays.
     * <p>
-    * <b>Note: If the attempt to unify the corresponding terms is unsuccessful only the terms in {@code queryArgs} will
-    * get backtracked.</b>
+    * If the attempt to unify the corresponding terms is unsuccessful then any variables instantiated during the attempt
+    * will be backtracked, using the current {@link Trail}.
     *
     * @param queryArgs terms to unify with {@code consequentArgs}
     * @param consequentArgs terms to unify with {@code queryArgs}
     * @return {@code true} if the attempt to unify all corresponding terms was successful
     */
    public static boolean unify(final Term[] queryArgs, final Term[] consequentArgs) {
+      final Trail trail = Trail.getCurrent();
+      final int mark = trail.mark();
       for (int i = 0; i < queryArgs.length; i++) {
-         if (!consequentArgs[i].unify(queryArgs[i])) {
-            for (int j = 0; j < i; j++) {
-               queryArgs[j].backtrack();
-            }
+         if (!TermUnifier.unify(consequentArgs[i], queryArgs[i], trail)) {
+            trail.undo(mark);
             return false;
          }
       }
       return true;
    }
 
+   /**
+    * Attempts to unify the two specified terms.
+    * <p>
+    * Has the same effect as calling {@code a.unify(b)} but, as all unification is performed by the same method, avoids
+    * the cost of first calling {@link Term#unify(Term)} on whatever class {@code a} is an instance of.
+    *
+    * @return {@code true} if the attempt to unify the terms was successful
+    * @see Term#unify(Term)
+    */
+   public static boolean unify(final Term a, final Term b) {
+      return TermUnifier.unify(a, b);
+   }
+
+   /**
+    * Attempts to unify the two specified terms, recording any variables that are instantiated in the specified trail.
+    * <p>
+    * Used by predicates that have already looked up the currently active trail so that it does not need to be looked
+    * up again each time a variable is instantiated.
+    *
+    * @param trail the currently active trail
+    * @return {@code true} if the attempt to unify the terms was successful
+    * @see #unify(Term, Term)
+    */
+   public static boolean unify(final Term a, final Term b, final Trail trail) {
+      return TermUnifier.unify(a, b, trail);
+   }
+
    /**
     * Returns all {@link Variable}s contained in the specified term.
     *
@@ -103,15 +153,25 @@ public final class TermUtils {
       return variables;
    }
 
-   private static void getAllVariablesInTerm(final Term argument, final Set<Variable> variables) {
-      if (argument.isImmutable()) {
-         // ignore
-      } else if (argument.getType() == TermType.VARIABLE) {
-         variables.add((Variable) argument);
-      } else {
-         for (int i = 0; i < argument.getNumberOfArguments(); i++) {
+   private static void getAllVariablesInTerm(Term argument, final Set<Variable> variables) {
+      // loops, rather than recurses, on the last argument so long lists do not cause a StackOverflowError
+      CompoundTerms.CycleDetector cycleDetector = null;
+      int depth = 0;
+      while (!argument.isImmutable()) {
+         Term dereferenced = Variable.dereference(argument);
+         cycleDetector = CompoundTerms.CycleDetector.check(cycleDetector, depth++, dereferenced, null);
+         if (argument.getType() == TermType.VARIABLE) {
+            variables.add((Variable) argument);
+            return;
+         }
+         int lastIdx = argument.getNumberOfArguments() - 1;
+         if (lastIdx < 0) {
+            return;
+         }
+         for (int i = 0; i < lastIdx; i++) {
             getAllVariablesInTerm(argument.getArgument(i), variables);
          }
+         argument = argument.getArgument(lastIdx);
       }
    }
 
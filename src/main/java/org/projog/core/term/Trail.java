@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import java.util.Arrays;
+
+import org.projog.core.CutBarrier;
+import org.projog.core.TailCall;
+
+/**
+ * Records the {@link Variable}s that have been instantiated so that they can later be reverted.
+ * <p>
+ * Rather than backtracking by walking every argument of a query (which costs time proportional to the size of the
+ * arguments) a {@code Trail} allows backtracking to only revert the variables that were actually instantiated since a
+ * choicepoint was created. A choicepoint is created by calling {@link #mark()} and the variables instantiated since
+ * then are reverted by calling {@link #undo(int)}.
+ * <p>
+ * Each thread has a <i>current</i> trail that {@link Variable#unify(Term)} records instantiations into. Each query
+ * should have its own trail, activated (using {@link #activate(Trail)}) for the duration of each attempt to evaluate
+ * it, so that the evaluation of queries that are interleaved on the same thread do not interfere with each other.
+ * <p>
+ * A variable only needs to be recorded if it existed before the most recent choicepoint. A variable created, using
+ * {@link Variable#Variable(String, Trail)}, after the most recent choicepoint will not be reachable after backtracking
+ * to that choicepoint and so its instantiation is not recorded. This prevents the trail growing during long running
+ * deterministic computations. Predicates look up the current trail once, when they are first evaluated, and pass it to
+ * the variables they create and instantiate - rather than each variable looking it up.
+ * <p>
+ * A {@code Trail} also keeps track of the {@link CutBarrier} of the user defined predicate currently being evaluated,
+ * which is what a cut prunes when it is backtracked to, and the {@link TailCall} used to pass the last goal of a clause
+ * back to the user defined predicate that the clause belongs to. The cut barrier of a new trail belongs to the query
+ * it is created for, whereas the default trail of each thread starts with {@link CutBarrier#NONE} - so that a cut
+ * evaluated directly from Java, rather than as part of a query, does not prevent later evaluations on that thread
+ * from backtracking.
+ * <p>
+ * <b>Note:</b> a {@code Trail} is not thread-safe.
+ */
+public final class Trail {
+   private static final int DEFAULT_CAPACITY = 32;
+   private static final ThreadLocal<Trail> CURRENT = new ThreadLocal<Trail>() {
+      @Override
+      protected Trail initialValue() {
+         return new Trail(CutBarrier.NONE);
+      }
+   };
+
+   private Variable[] variables = new Variable[DEFAULT_CAPACITY];
+   private int size;
+   /**
+    * Identifies variables created since the most recent call to {@link #mark()}.
+    * <p>
+    * Incremented each time {@link #mark()} is called.
+    */
+   private int segment;
+   private CutBarrier cutBarrier;
+   private final TailCall tailCall = new TailCall();
+
+   public Trail() {
+      this(new CutBarrier());
+   }
+
+   private Trail(CutBarrier cutBarrier) {
+      this.cutBarrier = cutBarrier;
+   }
+
+   /**
+    * Returns the trail that is currently active for the calling thread.
+    *
+    * @return the trail that is currently active for the calling thread
+    */
+   public static Trail getCurrent() {
+      return CURRENT.get();
+   }
+
+   /**
+    * Makes the specified trail the currently active trail for the calling thread.
+    * <p>
+    * Callers should restore the previously active trail, by passing the value returned from this method to
+    * {@link #activate(Trail)}, when they have finished.
+    *
+    * @param trail the trail to make active
+    * @return the trail that was active before this method was called
+    */
+   public static Trail activate(Trail trail) {
+      Trail previous = CURRENT.get();
+      CURRENT.set(trail);
+      return previous;
+   }
+
+   /**
+    * Creates a choicepoint.
+    *
+    * @return the position to pass to {@link #undo(int)} to revert all variables instantiated after this call
+    */
+   public int mark() {
+      segment++;
+      return size;
+   }
+
+   /**
+    * Reverts all variables that have been instantiated since the specified choicepoint was created.
+    *
+    * @param mark value returned from a previous call to {@link #mark()}
+    */
+   public void undo(int mark) {
+      while (size > mark) {
+         Variable v = variables[--size];
+         variables[size] = null;
+         v.backtrack();
+      }
+   }
+
+   /**
+    * Returns the number of variable instantiations currently recorded by this trail.
+    *
+    * @return the number of variable instantiations currently recorded by this trail
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Returns the barrier that a cut should prune to.
+    *
+    * @return the barrier of the user defined predicate (or query) currently being evaluated
+    */
+   public CutBarrier getCutBarrier() {
+      return cutBarrier;
+   }
+
+   /**
+    * Makes the specified barrier the one that a cut should prune to.
+    * <p>
+    * Callers should restore the previous barrier, by passing the value returned from this method to
+    * {@link #setCutBarrier(CutBarrier)}, when they return.
+    *
+    * @param cutBarrier the barrier of the user defined predicate that is about to be evaluated
+    * @return the barrier that was current before this method was called
+    */
+   public CutBarrier setCutBarrier(CutBarrier cutBarrier) {
+      CutBarrier previous = this.cutBarrier;
+      this.cutBarrier = cutBarrier;
+      return previous;
+   }
+
+   /**
+    * Returns the object used to offer the last goal of a clause to the user defined predicate that the clause belongs to.
+    *
+    * @return the {@code TailCall} of this trail
+    * @see org.projog.core.ProjogProperties#isLastCallOptimisationEnabled()
+    */
+   public TailCall getTailCall() {
+      return tailCall;
+   }
+
+   /** Called by {@link Variable} when it is created. */
+   int getSegment() {
+      return segment;
+   }
+
+   /** Called by {@link Variable} when it becomes instantiated. */
+   void record(Variable v) {
+      if (v.getTrail() == this && v.getSegment() == segment) {
+         // variable created after most recent choicepoint so no need to record it
+         return;
+      }
+      if (size == variables.length) {
+         variables = Arrays.copyOf(variables, size * 2);
+      }
+      variables[size++] = v;
+   }
+}
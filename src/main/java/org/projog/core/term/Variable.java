@@ -38,10 +38,36 @@ public final class Variable implements Term {
    private Term value;
 
    /**
+    * The trail that was active when this variable was created, or {@code null} if not known.
+    */
+   private final Trail trail;
+
+   /**
+    * Used by {@link Trail} to determine if this variable was created since the most recent choicepoint.
+    */
+   private final int segment;
+
+   /**
+    * Creates a variable that, as the trail it was created on is not known, is always recorded by the active
+    * {@link Trail} when it becomes instantiated.
+    *
     * @param id value by which this variable can be identified
     */
    public Variable(String id) {
+      this(id, null);
+   }
+
+   /**
+    * Creates a variable whose instantiation does not need to be recorded by the specified trail until the trail's next
+    * choicepoint is created.
+    *
+    * @param id value by which this variable can be identified
+    * @param trail the currently active trail, or {@code null} if not known
+    */
+   public Variable(String id, Trail trail) {
       this.id = id;
+      this.trail = trail;
+      this.segment = trail == null ? 0 : trail.getSegment();
    }
 
    /**
@@ -109,13 +135,23 @@ public final class Variable implements Term {
 
    @Override
    public boolean unify(Term t) {
+      return unify(t, null);
+   }
+
+   /**
+    * Attempts to unify this variable with the specified term, recording any instantiation in the specified trail.
+    *
+    * @param trail the currently active trail, or {@code null} if it should be looked up
+    */
+   boolean unify(Term t, Trail trail) {
       if (value == null) {
          if (this != t) {
             value = t;
+            (trail == null ? Trail.getCurrent() : trail).record(this);
          }
          return true;
       } else {
-         return getValue().unify(t.getTerm());
+         return TermUnifier.unify(getValue(), t, trail);
       }
    }
 
@@ -191,6 +227,30 @@ public final class Variable implements Term {
       }
    }
 
+   /**
+    * Returns the term the specified term represents, without resolving the arguments of that term.
+    * <p>
+    * If the specified term is an instantiated variable then returns the term it is instantiated with (following any
+    * chain of variables), else returns the specified term.
+    */
+   static Term dereference(Term t) {
+      if (t.getClass() == Variable.class) {
+         Variable v = (Variable) t;
+         if (v.value != null) {
+            return v.getValue();
+         }
+      }
+      return t;
+   }
+
+   Trail getTrail() {
+      return trail;
+   }
+
+   int getSegment() {
+      return segment;
+   }
+
    /**
     * Reverts this variable to an uninstantiated state.
     */
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import org.projog.core.term.Term;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * A probabilistic set of the values of an argument of the clauses of a static user defined predicate.
+ * <p>
+ * Used by {@link Indexes} to identify calls that cannot match any clause without needing to create, or look up the call
+ * in, an {@link Index}. A call whose value for the argument is not in the filter certainly has no matching clauses. A
+ * call whose value is in the filter <i>may</i> have matching clauses - the probability of a value that does not
+ * occur in any clause being reported as in the filter (a "false positive") is approximately 1%.
+ * <p>
+ * The filter is sized using the number of clauses, rather than the number of distinct values, so that it can be
+ * created with a single pass of the clauses. Values are identified by their {@link Term#hashCode()}, so values that
+ * have the same hash code are indistinguishable.
+ * <p>
+ * The counters are not updated atomically so, when the predicate is called concurrently, may undercount. As the memory
+ * used by filters is limited by an {@link IndexCache}, a filter may be discarded and recreated - in which case its
+ * counters start again from zero.
+ */
+final class BloomFilter implements IndexCache.Cacheable {
+   private static final int BITS_PER_KEY = 10;
+   /** The optimal number of hash functions for {@link #BITS_PER_KEY} is {@code BITS_PER_KEY * ln(2)}. */
+   private static final int NUMBER_OF_HASHES = 7;
+   private static final int MIN_BITS = Long.SIZE;
+   private static final long MAX_BITS = 1L << 34;
+
+   private final int position;
+   private final long[] bits;
+   private final long mask;
+   private long probes;
+   private long rejections;
+
+   /**
+    * @param clauses the clauses to create a filter of - each must have an immutable term at {@code position}
+    * @param position the position of the argument to create a filter of
+    */
+   BloomFilter(ClauseAction[] clauses, int position) {
+      this.position = position;
+      long bitCount = MIN_BITS;
+      while (bitCount < (long) clauses.length * BITS_PER_KEY && bitCount < MAX_BITS) {
+         bitCount *= 2;
+      }
+      this.bits = new long[(int) (bitCount / Long.SIZE)];
+      this.mask = bitCount - 1;
+      for (ClauseAction clause : clauses) {
+         long h1 = hash(Index.getArgument(clause, position));
+         long h2 = h2(h1);
+         for (int i = 0; i < NUMBER_OF_HASHES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+         }
+      }
+   }
+
+   /**
+    * Returns {@code false} if no clause has the same value, for the argument this filter is of, as the specified call.
+    *
+    * @param args the arguments of a call - must be immutable at the position this filter is of
+    * @return {@code false} if the call certainly does not match any clause, else {@code true}
+    */
+   boolean mightMatch(Term[] args) {
+      probes++;
+      long h1 = hash(args[position]);
+      long h2 = h2(h1);
+      for (int i = 0; i < NUMBER_OF_HASHES; i++) {
+         long bit = (h1 + i * h2) & mask;
+         if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+            rejections++;
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /** Uses the finalisation step of MurmurHash3 to spread the bits of the hash code over 64 bits. */
+   private static long hash(Term t) {
+      long h = t.hashCode();
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+   }
+
+   /** Returns the increment used to derive the bit positions from the first hash - must be odd. */
+   private static long h2(long h1) {
+      return Long.rotateLeft(h1, 32) | 1;
+   }
+
+   @Override
+   public long getEstimatedSize() {
+      return Index.getEstimatedArraySize(bits.length, Long.BYTES);
+   }
+
+   BloomFilterStatistics getStatistics() {
+      long bitsSet = 0;
+      for (long b : bits) {
+         bitsSet += Long.bitCount(b);
+      }
+      double falsePositiveRate = Math.pow((double) bitsSet / (mask + 1), NUMBER_OF_HASHES);
+      return new BloomFilterStatistics(position, mask + 1, probes, rejections, falsePositiveRate);
+   }
+}
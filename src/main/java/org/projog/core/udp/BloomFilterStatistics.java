@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+/**
+ * A snapshot of how the Bloom filter of an argument of a user defined predicate has been used.
+ * <p>
+ * A "rejection" is a call that the filter identified as not matching any clause, so that no index needed to be
+ * created or used for it.
+ *
+ * @see StaticUserDefinedPredicateFactory#getBloomFilterStatistics()
+ * @see org.projog.core.ProjogProperties#isBloomFilterEnabled()
+ */
+public final class BloomFilterStatistics {
+   private final int argument;
+   private final long bitCount;
+   private final long probeCount;
+   private final long rejectionCount;
+   private final double expectedFalsePositiveRate;
+
+   BloomFilterStatistics(int argument, long bitCount, long probeCount, long rejectionCount, double expectedFalsePositiveRate) {
+      this.argument = argument;
+      this.bitCount = bitCount;
+      this.probeCount = probeCount;
+      this.rejectionCount = rejectionCount;
+      this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+   }
+
+   /**
+    * Returns the (zero-based) position of the argument the filter is of.
+    */
+   public int getArgument() {
+      return argument;
+   }
+
+   /**
+    * Returns the number of bits used by the filter.
+    */
+   public long getBitCount() {
+      return bitCount;
+   }
+
+   /**
+    * Returns the number of calls that have been checked using the filter.
+    */
+   public long getProbeCount() {
+      return probeCount;
+   }
+
+   /**
+    * Returns the number of calls that the filter identified as not matching any clause.
+    */
+   public long getRejectionCount() {
+      return rejectionCount;
+   }
+
+   /**
+    * Returns the probability that a value that does not occur in any clause is not rejected by the filter.
+    * <p>
+    * Calculated from the proportion of the bits of the filter that are set. The rate actually observed for calls
+    * is available from {@link IndexStatistics#getFalsePositiveRate()}.
+    *
+    * @return a value between {@code 0} and {@code 1}
+    */
+   public double getExpectedFalsePositiveRate() {
+      return expectedFalsePositiveRate;
+   }
+
+   @Override
+   public String toString() {
+      return "argument=" + argument + " bits=" + bitCount + " probes=" + probeCount + " rejections=" + rejectionCount + " expected false positive rate=" + expectedFalsePositiveRate;
+   }
+}
@@ -20,6 +20,8 @@ import static org.projog.core.KnowledgeBaseUtils.IMPLICATION_PREDICATE_NAME;
 import org.projog.core.PredicateKey;
 import org.projog.core.term.Atom;
 import org.projog.core.term.Term;
+import org.projog.core.term.TermTemplate;
+import org.projog.core.term.TermTemplateFactory;
 import org.projog.core.term.TermUtils;
 
 /**
@@ -36,6 +38,10 @@ public final class ClauseModel {
    private final Term original;
    private final Term consequent;
    private final Term antecedent;
+   private final TermTemplateFactory templateFactory;
+   private final TermTemplate[] consequentArgTemplates;
+   private final TermTemplate antecedentTemplate;
+   private final TermTemplate[] antecedentArgTemplates;
 
    public static ClauseModel createClauseModel(Term original) {
       final Term consequent;
@@ -68,6 +74,21 @@ public final class ClauseModel {
       this.original = original;
       this.consequent = consequent;
       this.antecedent = antecedent;
+      this.templateFactory = new TermTemplateFactory(consequent, antecedent);
+      this.consequentArgTemplates = templateFactory.createTemplates(getArgs(consequent));
+      this.antecedentTemplate = templateFactory.createTemplate(antecedent);
+      this.antecedentArgTemplates = templateFactory.createTemplates(getArgs(antecedent));
+   }
+
+   private static Term[] getArgs(Term t) {
+      if (t.getType().isVariable()) {
+         return TermUtils.EMPTY_ARRAY;
+      }
+      Term[] args = new Term[t.getNumberOfArguments()];
+      for (int i = 0; i < args.length; i++) {
+         args[i] = t.getArgument(i);
+      }
+      return args;
    }
 
    /** Returns the body of the clause. i.e. the bit after the {@code :-} */
@@ -84,6 +105,39 @@ public final class ClauseModel {
       return original;
    }
 
+   /**
+    * Returns a new frame to use with the templates of this clause.
+    * <p>
+    * Variables in this clause are numbered when the clause is created. Copies of the clause can then be created, or
+    * unified with, using the templates returned by {@link #getConsequentArgTemplates()} and
+    * {@link #getAntecedentTemplate()} - with the new frame used to keep track of the variables of the copy.
+    *
+    * @see TermTemplate
+    */
+   public Term[] createFrame() {
+      return templateFactory.createFrame();
+   }
+
+   /** Returns the object used to create the templates of this clause. */
+   public TermTemplateFactory getTemplateFactory() {
+      return templateFactory;
+   }
+
+   /** Returns templates for each of the arguments of the head of the clause. */
+   public TermTemplate[] getConsequentArgTemplates() {
+      return consequentArgTemplates;
+   }
+
+   /** Returns a template for the body of the clause. */
+   public TermTemplate getAntecedentTemplate() {
+      return antecedentTemplate;
+   }
+
+   /** Returns templates for each of the arguments of the body of the clause. */
+   public TermTemplate[] getAntecedentArgTemplates() {
+      return antecedentArgTemplates;
+   }
+
    public PredicateKey getPredicateKey() {
       return PredicateKey.createForTerm(consequent);
    }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import org.projog.core.term.IntegerNumber;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * An {@link Index} of a single argument that is an integer, within a narrow range of values, in every clause.
+ * <p>
+ * The clauses for each value are stored in an array at the offset of the value from the minimum value, so looking up
+ * the clauses for a call requires no hashing or probing. Only used when the range of values is small enough, relative
+ * to the number of clauses, that the array is no larger than the table {@link IntegerIndex} would use.
+ */
+final class DenseIntegerIndex extends Index {
+   private final int position;
+   private final long min;
+   private final ClauseAction[][] values;
+
+   /**
+    * Returns {@code true} if the range of values of the specified argument is no more than twice the number of clauses.
+    *
+    * @param position the position of an argument that is an integer in every clause
+    */
+   static boolean isSuitable(int position, ClauseAction[] clauses) {
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      for (ClauseAction clause : clauses) {
+         long value = getLong(getArgument(clause, position));
+         min = Math.min(min, value);
+         max = Math.max(max, value);
+      }
+      // if the difference overflows it will be negative
+      long range = max - min;
+      return range >= 0 && range < 2L * clauses.length;
+   }
+
+   /** @see Index#create(int[], ClauseAction[]) */
+   DenseIntegerIndex(int position, ClauseAction[] clauses) {
+      this.position = position;
+
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      for (ClauseAction clause : clauses) {
+         long value = getLong(getArgument(clause, position));
+         min = Math.min(min, value);
+         max = Math.max(max, value);
+      }
+      this.min = min;
+      this.values = new ClauseAction[(int) (max - min + 1)][];
+
+      // first pass counts the clauses for each value, second pass populates the arrays
+      int[] counts = new int[values.length];
+      for (ClauseAction clause : clauses) {
+         counts[getOffset(clause)]++;
+      }
+      for (ClauseAction clause : clauses) {
+         int offset = getOffset(clause);
+         if (values[offset] == null) {
+            values[offset] = new ClauseAction[counts[offset]];
+            counts[offset] = 0;
+         }
+         values[offset][counts[offset]++] = clause;
+      }
+   }
+
+   private int getOffset(ClauseAction clause) {
+      return (int) (getLong(getArgument(clause, position)) - min);
+   }
+
+   @Override
+   ClauseAction[] getMatches(Term[] args) {
+      Term arg = args[position];
+      if (arg.getType() != TermType.INTEGER) {
+         return NO_MATCHES;
+      }
+      // if the subtraction overflows the result will still be outside the range of the array
+      long offset = getLong(arg) - min;
+      if (offset < 0 || offset >= values.length) {
+         return NO_MATCHES;
+      }
+      ClauseAction[] value = values[(int) offset];
+      return value == null ? NO_MATCHES : value;
+   }
+
+   @Override
+   public long getEstimatedSize() {
+      return getEstimatedSize(values);
+   }
+
+   private static long getLong(Term t) {
+      return ((IntegerNumber) t).getLong();
+   }
+}
@@ -32,50 +32,85 @@ import org.projog.core.udp.interpreter.InterpretedUserDefinedPredicate;
  * <p>
  * A "dynamic" user defined predicate is one that can have clauses added and removed <i>after</i> it has been first
  * defined. This is normally done using the {@code asserta/1}, {@code assertz/1} and {@code retract/1} predicates.
+ * <p>
+ * As well as a linked list of all its clauses, a separate linked list is maintained for each distinct value of each
+ * argument (up to {@link #MAX_INDEXABLE_ARGS}) that is immutable in every clause. The lists are updated as clauses are
+ * added and removed, and each contains its clauses in the same order as the list of all clauses. When a call has one
+ * or more indexed arguments that are immutable, only the clauses in the shortest list for those values are attempted.
+ * <p>
+ * Alterations are made while holding a lock but reading the clauses does not require a lock. A clause that is removed
+ * retains its links to the clauses that followed it, so that callers that are already iterating over it can continue,
+ * and is marked as removed so that those callers skip it rather than attempting, or removing, it again.
  *
  * @see org.projog.core.udp.interpreter.InterpretedUserDefinedPredicate
  */
 public final class DynamicUserDefinedPredicateFactory implements UserDefinedPredicateFactory {
-   // use array rather than two instances so that references not lost between
-   // copies when heads or tails alter
-   private static final int FIRST = 0;
-   private static final int LAST = 1;
+   /**
+    * Maximum number of arguments that will be indexed.
+    * <p>
+    * Limits the memory used by each clause to record its position in the list for each indexed argument.
+    */
+   private static final int MAX_INDEXABLE_ARGS = 8;
+   /** The position, in the links of each clause, of the list of all clauses. */
+   private static final int ALL_CLAUSES = 0;
 
    private final Object LOCK = new Object();
    private final KnowledgeBase kb;
    private final SpyPoints.SpyPoint spyPoint;
-   private final ClauseActionMetaData[] ends = new ClauseActionMetaData[2];
-   private ConcurrentHashMap<Term, ClauseActionMetaData> index;
-   private boolean hasPrimaryKey;
+   private final boolean isLastCallOptimisationEnabled;
+   private final Chain all = new Chain(ALL_CLAUSES);
+   private final ArgumentIndex[] indexes;
 
    public DynamicUserDefinedPredicateFactory(KnowledgeBase kb, PredicateKey predicateKey) {
       this.kb = kb;
-      if (predicateKey.getNumArgs() == 0) {
-         this.hasPrimaryKey = false;
-         this.index = null;
-      } else {
-         this.hasPrimaryKey = true;
-         index = new ConcurrentHashMap<>();
+      this.indexes = new ArgumentIndex[Math.min(predicateKey.getNumArgs(), MAX_INDEXABLE_ARGS)];
+      for (int i = 0; i < indexes.length; i++) {
+         indexes[i] = new ArgumentIndex(i);
       }
       this.spyPoint = kb.getSpyPoints().getSpyPoint(predicateKey);
+      this.isLastCallOptimisationEnabled = kb.getProjogProperties().isLastCallOptimisationEnabled();
    }
 
    @Override
    public Predicate getPredicate(Term[] args) {
-      if (hasPrimaryKey) {
-         Term firstArg = args[0];
-         if (firstArg.isImmutable()) {
-            ClauseActionMetaData match = index.get(firstArg);
-            if (match == null) {
-               return PredicateUtils.createFailurePredicate(spyPoint, args);
-            } else {
-               return PredicateUtils.createSingleClausePredicate(match.clause, spyPoint, args);
-            }
+      Chain chain = selectChain(args);
+      if (chain == null) {
+         return PredicateUtils.createFailurePredicate(spyPoint, args);
+      }
+
+      ClauseActionMetaData first = chain.first;
+      if (chain != all) {
+         if (first == null) {
+            return PredicateUtils.createFailurePredicate(spyPoint, args);
+         } else if (first.next[chain.link] == null && !(isLastCallOptimisationEnabled && first.clause.isRetryable())) {
+            return PredicateUtils.createSingleClausePredicate(first.clause, spyPoint, args);
          }
       }
+      ClauseActionIterator itr = new ClauseActionIterator(first, chain.link);
+      return new InterpretedUserDefinedPredicate(itr, spyPoint, args, isLastCallOptimisationEnabled);
+   }
 
-      ClauseActionIterator itr = new ClauseActionIterator(ends[FIRST]);
-      return new InterpretedUserDefinedPredicate(itr, spyPoint, args);
+   /**
+    * Returns the list containing the fewest clauses that could match the specified arguments.
+    *
+    * @return {@code null} if an indexed argument has a value that no clause has, or the list of all clauses if none of
+    * the indexed arguments are immutable
+    */
+   private Chain selectChain(Term[] args) {
+      Chain selected = all;
+      for (ArgumentIndex index : indexes) {
+         Term arg = args[index.position];
+         ConcurrentHashMap<Term, Chain> map = index.map;
+         if (map != null && arg.isImmutable()) {
+            Chain chain = map.get(arg);
+            if (chain == null) {
+               return null;
+            } else if (selected == all || chain.size < selected.size) {
+               selected = chain;
+            }
+         }
+      }
+      return selected;
    }
 
    @Override
@@ -102,26 +137,33 @@ public final class DynamicUserDefinedPredicateFactory implements UserDefinedPred
     */
    @Override
    public Iterator<ClauseModel> getImplications() {
-      return new ImplicationsIterator();
+      return new ImplicationsIterator(all.first, all.link);
+   }
+
+   /**
+    * Returns an iterator over the clauses of this user defined predicate that could match the specified arguments.
+    * <p>
+    * Uses the same index as {@link #getPredicate(Term[])} so that, e.g., {@code retract/1} only needs to attempt the
+    * clauses that have the same value for an immutable argument. The iterator has the same characteristics as
+    * {@link #getImplications()} - including that calls to {@link java.util.Iterator#remove()} alter this predicate.
+    */
+   @Override
+   public Iterator<ClauseModel> getImplications(Term[] args) {
+      Chain chain = selectChain(args);
+      return chain == null ? new ImplicationsIterator(null, ALL_CLAUSES) : new ImplicationsIterator(chain.first, chain.link);
    }
 
    @Override
    public void addFirst(ClauseModel clauseModel) {
       synchronized (LOCK) {
          ClauseActionMetaData newClause = createClauseActionMetaData(clauseModel);
-         addToIndex(clauseModel, newClause);
-
-         // if first used in a implication antecedent before being used as a consequent,
-         // it will originally been created with first and last both null
-         ClauseActionMetaData first = ends[FIRST];
-         if (first == null) {
-            ends[FIRST] = newClause;
-            ends[LAST] = newClause;
-            return;
+         all.addFirst(newClause);
+         for (ArgumentIndex index : indexes) {
+            Chain chain = index.getChain(newClause);
+            if (chain != null) {
+               chain.addFirst(newClause);
+            }
          }
-         newClause.next = first;
-         first.previous = newClause;
-         ends[FIRST] = newClause;
       }
    }
 
@@ -129,40 +171,24 @@ public final class DynamicUserDefinedPredicateFactory implements UserDefinedPred
    public void addLast(ClauseModel clauseModel) {
       synchronized (LOCK) {
          ClauseActionMetaData newClause = createClauseActionMetaData(clauseModel);
-         addToIndex(clauseModel, newClause);
-
-         // if first used in a implication antecedent before being used as a consequent,
-         // it will originally been created with first and last both null
-         ClauseActionMetaData last = ends[LAST];
-         if (last == null) {
-            ends[FIRST] = newClause;
-            ends[LAST] = newClause;
-            return;
-         }
-         last.next = newClause;
-         newClause.previous = last;
-         ends[LAST] = newClause;
-      }
-   }
-
-   private void addToIndex(ClauseModel clauseModel, ClauseActionMetaData metaData) {
-      if (hasPrimaryKey) {
-         Term firstArg = clauseModel.getConsequent().getArgument(0);
-         if (!firstArg.isImmutable() || index.put(firstArg, metaData) != null) {
-            hasPrimaryKey = false;
-            index.clear();
+         all.addLast(newClause);
+         for (ArgumentIndex index : indexes) {
+            Chain chain = index.getChain(newClause);
+            if (chain != null) {
+               chain.addLast(newClause);
+            }
          }
       }
    }
 
    @Override
    public ClauseModel getClauseModel(int index) {
-      ClauseActionMetaData next = ends[FIRST];
+      ClauseActionMetaData next = all.first;
       for (int i = 0; i < index; i++) {
          if (next == null) {
             return null;
          }
-         next = next.next;
+         next = next.next[ALL_CLAUSES];
       }
       if (next == null) {
          return null;
@@ -171,29 +197,62 @@ public final class DynamicUserDefinedPredicateFactory implements UserDefinedPred
    }
 
    private ClauseActionMetaData createClauseActionMetaData(ClauseModel clauseModel) {
-      return new ClauseActionMetaData(kb, clauseModel);
+      return new ClauseActionMetaData(kb, clauseModel, indexes.length + 1);
+   }
+
+   /**
+    * Must be called while holding {@link #LOCK}.
+    * <p>
+    * Does nothing if the clause has already been removed - which can happen when an iterator is backtracked into after
+    * another iterator has removed the clause it was positioned at.
+    */
+   private void remove(ClauseActionMetaData clause) {
+      if (clause.isRemoved) {
+         return;
+      }
+      clause.isRemoved = true;
+      all.remove(clause);
+      for (ArgumentIndex index : indexes) {
+         index.remove(clause);
+      }
+      if (all.first == null) {
+         // now there are no clauses every argument can be indexed again
+         for (ArgumentIndex index : indexes) {
+            index.map = new ConcurrentHashMap<>();
+         }
+      }
    }
 
    private static class ClauseActionIterator implements Iterator<ClauseAction> {
+      private final int link;
       private ClauseActionMetaData next;
 
-      ClauseActionIterator(ClauseActionMetaData first) {
-         next = first;
+      ClauseActionIterator(ClauseActionMetaData first, int link) {
+         this.next = first;
+         this.link = link;
       }
 
       @Override
       public boolean hasNext() {
+         skipRemoved();
          return next != null;
       }
 
       /** need to call getFree on result */
       @Override
       public ClauseAction next() {
+         skipRemoved();
          ClauseAction c = next.clause;
-         next = next.next;
+         next = next.next[link];
          return c;
       }
 
+      private void skipRemoved() {
+         while (next != null && next.isRemoved) {
+            next = next.next[link];
+         }
+      }
+
       @Override
       public void remove() {
          throw new UnsupportedOperationException();
@@ -201,8 +260,15 @@ public final class DynamicUserDefinedPredicateFactory implements UserDefinedPred
    }
 
    private class ImplicationsIterator implements Iterator<ClauseModel> {
+      private final ClauseActionMetaData first;
+      private final int link;
       private ClauseActionMetaData previous;
 
+      ImplicationsIterator(ClauseActionMetaData first, int link) {
+         this.first = first;
+         this.link = link;
+      }
+
       @Override
       public boolean hasNext() {
          return getNext() != null;
@@ -220,50 +286,146 @@ public final class DynamicUserDefinedPredicateFactory implements UserDefinedPred
       }
 
       private ClauseActionMetaData getNext() {
-         return previous == null ? ends[FIRST] : previous.next;
+         ClauseActionMetaData next = previous == null ? first : previous.next[link];
+         while (next != null && next.isRemoved) {
+            next = next.next[link];
+         }
+         return next;
       }
 
       @Override
-      public void remove() { // TODO find way to use index when retracting
+      public void remove() {
          synchronized (LOCK) {
-            if (hasPrimaryKey) {
-               Term firstArg = previous.clause.getModel().getConsequent().getArgument(0);
-               if (index.remove(firstArg) == null) {
-                  throw new IllegalStateException();
-               }
-            }
-            if (previous.previous != null) {
-               previous.previous.next = previous.next;
-            } else {
-               ClauseActionMetaData newHead = previous.next;
-               if (newHead != null) {
-                  newHead.previous = null;
-               }
-               ends[FIRST] = newHead;
-            }
-            if (previous.next != null) {
-               previous.next.previous = previous.previous;
-            } else {
-               ClauseActionMetaData newTail = previous.previous;
-               if (newTail != null) {
-                  newTail.next = null;
-               }
-               ends[LAST] = newTail;
-            }
-            if (ends[FIRST] == null && ends[LAST] == null) {
-               hasPrimaryKey = index != null;
+            DynamicUserDefinedPredicateFactory.this.remove(previous);
+         }
+      }
+   }
+
+   /**
+    * The clauses that have the same value for an argument.
+    * <p>
+    * The map, and the {@link Chain}s it contains, are only altered while holding {@link #LOCK}. When the argument stops
+    * being indexable the map is discarded rather than cleared, so that callers that have already read it can continue
+    * to use it.
+    */
+   private final class ArgumentIndex {
+      final int position;
+      /** The position, in the links of each clause, of the list for this argument. */
+      final int link;
+      /** {@code null} if a clause has been added that has a mutable term for this argument. */
+      volatile ConcurrentHashMap<Term, Chain> map = new ConcurrentHashMap<>();
+
+      ArgumentIndex(int position) {
+         this.position = position;
+         this.link = position + 1;
+      }
+
+      /**
+       * Returns the list the specified new clause should be added to, creating it if necessary.
+       *
+       * @return {@code null} if this argument is no longer indexed
+       */
+      Chain getChain(ClauseActionMetaData clause) {
+         if (map == null) {
+            return null;
+         }
+         Term arg = getArgument(clause);
+         if (!arg.isImmutable()) {
+            map = null;
+            return null;
+         }
+         return map.computeIfAbsent(arg, k -> new Chain(link));
+      }
+
+      void remove(ClauseActionMetaData clause) {
+         if (map != null) {
+            Term arg = getArgument(clause);
+            Chain chain = map.get(arg);
+            chain.remove(clause);
+            if (chain.first == null) {
+               map.remove(arg);
             }
          }
       }
+
+      private Term getArgument(ClauseActionMetaData clause) {
+         return clause.clause.getModel().getConsequent().getArgument(position);
+      }
+   }
+
+   /**
+    * A doubly linked list of clauses.
+    * <p>
+    * Each clause is in multiple lists, so has a pair of links for each list it is in. Only altered while holding
+    * {@link #LOCK}.
+    */
+   private static final class Chain {
+      /** The position, in the links of each clause, of this list. */
+      final int link;
+      ClauseActionMetaData first;
+      ClauseActionMetaData last;
+      int size;
+
+      Chain(int link) {
+         this.link = link;
+      }
+
+      void addFirst(ClauseActionMetaData clause) {
+         if (first == null) {
+            last = clause;
+         } else {
+            clause.next[link] = first;
+            first.previous[link] = clause;
+         }
+         first = clause;
+         size++;
+      }
+
+      void addLast(ClauseActionMetaData clause) {
+         if (last == null) {
+            first = clause;
+         } else {
+            last.next[link] = clause;
+            clause.previous[link] = last;
+         }
+         last = clause;
+         size++;
+      }
+
+      void remove(ClauseActionMetaData clause) {
+         ClauseActionMetaData previous = clause.previous[link];
+         ClauseActionMetaData next = clause.next[link];
+         if (previous != null) {
+            previous.next[link] = next;
+         } else {
+            first = next;
+         }
+         if (next != null) {
+            next.previous[link] = previous;
+         } else {
+            last = previous;
+         }
+         size--;
+      }
    }
 
    private static class ClauseActionMetaData {
       final ClauseAction clause;
-      ClauseActionMetaData previous;
-      ClauseActionMetaData next;
+      /** Links to the previous clause in each list this clause is in. */
+      final ClauseActionMetaData[] previous;
+      /** Links to the next clause in each list this clause is in. */
+      final ClauseActionMetaData[] next;
+      /**
+       * Set, while holding {@link #LOCK}, when this clause is removed.
+       * <p>
+       * A removed clause keeps its links so that iterators positioned at it can continue, but is skipped by them.
+       */
+      volatile boolean isRemoved;
 
-      ClauseActionMetaData(KnowledgeBase kb, ClauseModel clauseModel) {
+      ClauseActionMetaData(KnowledgeBase kb, ClauseModel clauseModel, int numberOfLinks) {
          this.clause = ClauseActionFactory.createClauseAction(kb, clauseModel);
+         this.previous = new ClauseActionMetaData[numberOfLinks];
+         this.next = new ClauseActionMetaData[numberOfLinks];
       }
    }
 
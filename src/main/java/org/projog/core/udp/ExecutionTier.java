@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+/**
+ * Indicates how a static user defined predicate is currently being evaluated.
+ *
+ * @see StaticUserDefinedPredicateFactory#getExecutionTier()
+ * @see org.projog.core.ProjogProperties#getRuntimeCompilationThreshold()
+ */
+public enum ExecutionTier {
+   /** The clauses of the predicate are interpreted. */
+   INTERPRETED,
+   /** The clauses of the predicate are interpreted while a background thread compiles them. */
+   COMPILING,
+   /** The clauses of the predicate have been compiled into Java classes. */
+   COMPILED
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * Selects clauses using the principal functor of arguments (i.e. "switch on term").
+ * <p>
+ * Unlike {@link Indexes}, which requires an argument to be immutable in every clause, a {@code FunctorIndex} can be used
+ * for any argument. Clauses are grouped by the type of the argument and, for atoms and integers, its value or, for
+ * compound terms, its name and number of arguments. e.g. the clauses of a predicate that recurses over a list can be
+ * separated into those whose argument is {@code []} and those whose argument is {@code [H|T]}, and the clauses of a
+ * predicate that evaluates an expression tree can be separated into those for {@code plus(A,B)} and for
+ * {@code times(A,B)}.
+ * <p>
+ * Only arguments that are a variable or a compound term in at least one clause are considered - arguments that are
+ * atomic in every clause are left to {@link Indexes}. Clauses where the argument is a variable could match any call, so
+ * they are included in every group. This means that a large table of facts with a few "catch-all" clauses (e.g.
+ * {@code p(X,default)}) can still be indexed - but, to limit the memory used, an argument is only indexed if the
+ * reduction in the number of clauses selected justifies the copies of the clauses with a variable.
+ * <p>
+ * The clauses selected for a key are in the same order as they were defined.
+ * <p>
+ * As creating a {@code FunctorIndex} requires a map for each of the arguments, it should be created when first needed
+ * using {@link IndexCache#createEntry(java.util.function.Supplier)} so that its memory is limited by the budget of the
+ * {@link IndexCache}.
+ */
+final class FunctorIndex implements IndexCache.Cacheable {
+   private static final ClauseAction[] NO_MATCHES = new ClauseAction[0];
+   /**
+    * The maximum average number of times each clause can be referenced by the index of a single argument.
+    *
+    * @see #isWorthIndexing(ClauseAction[], int)
+    */
+   private static final int MAX_REFERENCES_PER_CLAUSE = 4;
+   /** Estimated size of a {@code HashMap}, excluding its table. */
+   private static final int MAP_SIZE = 48;
+   /** Estimated size of an entry of a {@code HashMap}, including its key. */
+   private static final int MAP_ENTRY_SIZE = 56;
+
+   private final int[] positions;
+   private final List<Map<Object, ClauseAction[]>> maps;
+   /** The clauses to use, for each indexed argument, when the key of the argument is not in the map. */
+   private final ClauseAction[][] defaults;
+
+   /**
+    * Returns the positions of the arguments that a {@code FunctorIndex} of the specified clauses would use.
+    * <p>
+    * An argument is a candidate if it is a variable or a compound term in at least one clause, and would allow some
+    * clauses to be excluded - i.e. it is a variable in some, but not all, clauses or it has more than one key.
+    * Determining the candidates does not require creating any maps, so can be done when the clauses are compiled.
+    *
+    * @return an empty array if there are less than two clauses or no candidate arguments
+    */
+   static int[] getCandidatePositions(ClauseAction[] clauses) {
+      if (clauses.length < 2) {
+         return new int[0];
+      }
+
+      int numArgs = clauses[0].getModel().getConsequent().getNumberOfArguments();
+      int[] candidates = new int[numArgs];
+      int numCandidates = 0;
+      for (int i = 0; i < numArgs; i++) {
+         if (isCandidate(clauses, i)) {
+            candidates[numCandidates++] = i;
+         }
+      }
+      return Arrays.copyOf(candidates, numCandidates);
+   }
+
+   private static boolean isCandidate(ClauseAction[] clauses, int position) {
+      boolean hasVariable = false;
+      boolean hasCompound = false;
+      boolean hasDistinctKeys = false;
+      Object firstKey = null;
+      for (ClauseAction clause : clauses) {
+         Term arg = clause.getModel().getConsequent().getArgument(position);
+         Object key = getKey(arg);
+         if (key == null) {
+            hasVariable = true;
+         } else if (firstKey == null) {
+            firstKey = key;
+         } else if (!hasDistinctKeys) {
+            hasDistinctKeys = !firstKey.equals(key);
+         }
+         hasCompound |= arg.getType() == TermType.LIST || arg.getType() == TermType.STRUCTURE;
+      }
+      return (hasVariable || hasCompound) && firstKey != null && (hasVariable || hasDistinctKeys);
+   }
+
+   /**
+    * Returns a {@code FunctorIndex} for the specified clauses.
+    *
+    * @return {@code null} if there is no argument that would allow some clauses to be excluded
+    */
+   static FunctorIndex create(ClauseAction[] clauses) {
+      FunctorIndex index = create(clauses, getCandidatePositions(clauses));
+      return index.positions.length == 0 ? null : index;
+   }
+
+   /**
+    * Returns a {@code FunctorIndex} of the specified arguments of the specified clauses.
+    * <p>
+    * Arguments that would not exclude enough clauses to justify their memory are not indexed, so the result may not
+    * index any arguments - in which case {@link #getMatches(Term[])} always returns {@code null}.
+    *
+    * @param positions the arguments to consider, as returned by {@link #getCandidatePositions(ClauseAction[])}
+    */
+   static FunctorIndex create(ClauseAction[] clauses, int[] positions) {
+      List<Integer> indexed = new ArrayList<>();
+      List<Map<Object, ClauseAction[]>> maps = new ArrayList<>();
+      List<ClauseAction[]> defaults = new ArrayList<>();
+      for (int i : positions) {
+         if (isWorthIndexing(clauses, i)) {
+            Map<Object, List<ClauseAction>> groups = new HashMap<>();
+            List<ClauseAction> variableClauses = new ArrayList<>();
+            groupByKey(clauses, i, groups, variableClauses);
+            indexed.add(i);
+            maps.add(convertListsToArrays(groups));
+            defaults.add(toArray(variableClauses));
+         }
+      }
+
+      int[] p = new int[indexed.size()];
+      for (int i = 0; i < p.length; i++) {
+         p[i] = indexed.get(i);
+      }
+      return new FunctorIndex(p, maps, defaults.toArray(new ClauseAction[defaults.size()][]));
+   }
+
+   /**
+    * Returns {@code true} if indexing the argument at the specified position would reduce the number of clauses
+    * attempted by enough to justify the memory used.
+    * <p>
+    * As clauses with a variable argument are copied into the group of every key, the number of references stored for an
+    * argument is the number of clauses with a key plus the number of keys multiplied by the number of clauses with a
+    * variable. An argument is only indexed if, on average, a key selects no more than half of the clauses and the number
+    * of references stored is no more than {@link #MAX_REFERENCES_PER_CLAUSE} times the number of clauses. This is
+    * determined by counting the keys before any groups are created.
+    */
+   private static boolean isWorthIndexing(ClauseAction[] clauses, int position) {
+      Set<Object> keys = new HashSet<>();
+      int numVariables = 0;
+      for (ClauseAction clause : clauses) {
+         Object key = getKey(clause.getModel().getConsequent().getArgument(position));
+         if (key == null) {
+            numVariables++;
+         } else {
+            keys.add(key);
+         }
+      }
+
+      int numKeys = keys.size();
+      if (numKeys == 0 || (numKeys == 1 && numVariables == 0)) {
+         return false;
+      }
+      long numReferences = clauses.length - numVariables + (long) numKeys * numVariables;
+      double averageMatches = (double) numReferences / numKeys;
+      return averageMatches <= clauses.length / 2.0 && numReferences <= (long) MAX_REFERENCES_PER_CLAUSE * clauses.length;
+   }
+
+   /**
+    * Groups the clauses by the key of their argument at the specified position.
+    * <p>
+    * As a clause whose argument is a variable could match any call it is added to every group, and to
+    * {@code variableClauses}, so that each group contains its clauses in their original order.
+    */
+   private static void groupByKey(ClauseAction[] clauses, int position, Map<Object, List<ClauseAction>> groups, List<ClauseAction> variableClauses) {
+      for (ClauseAction clause : clauses) {
+         Object key = getKey(clause.getModel().getConsequent().getArgument(position));
+         if (key == null) {
+            for (List<ClauseAction> group : groups.values()) {
+               group.add(clause);
+            }
+            variableClauses.add(clause);
+         } else {
+            List<ClauseAction> group = groups.get(key);
+            if (group == null) {
+               group = new ArrayList<>(variableClauses);
+               groups.put(key, group);
+            }
+            group.add(clause);
+         }
+      }
+   }
+
+   private static Map<Object, ClauseAction[]> convertListsToArrays(Map<Object, List<ClauseAction>> map) {
+      Map<Object, ClauseAction[]> result = new HashMap<>(map.size() * 2);
+      for (Map.Entry<Object, List<ClauseAction>> e : map.entrySet()) {
+         result.put(e.getKey(), toArray(e.getValue()));
+      }
+      return result;
+   }
+
+   private static ClauseAction[] toArray(List<ClauseAction> list) {
+      return list.isEmpty() ? NO_MATCHES : list.toArray(new ClauseAction[list.size()]);
+   }
+
+   /**
+    * Returns an object that is equal to the key of any other term with the same principal functor.
+    *
+    * @return {@code null} if the term is an uninstantiated variable
+    */
+   static Object getKey(Term t) {
+      switch (t.getType()) {
+         case VARIABLE:
+            return null;
+         case LIST:
+            return TermType.LIST;
+         case FRACTION:
+            // not keyed by value as 0.0 and -0.0 unify but have different hash codes
+            return TermType.FRACTION;
+         case STRUCTURE:
+            return new Functor(t.getName(), t.getNumberOfArguments());
+         default:
+            // atoms, integers and the empty list
+            return t.getTerm();
+      }
+   }
+
+   private FunctorIndex(int[] positions, List<Map<Object, ClauseAction[]>> maps, ClauseAction[][] defaults) {
+      this.positions = positions;
+      this.maps = maps;
+      this.defaults = defaults;
+   }
+
+   /**
+    * Returns an estimate of the number of bytes used by this index.
+    * <p>
+    * Assumes compressed references, and does not include the clauses themselves.
+    *
+    * @see IndexCache
+    */
+   @Override
+   public long getEstimatedSize() {
+      long result = Index.getEstimatedArraySize(positions.length, Integer.BYTES) + Index.getEstimatedSize(defaults);
+      for (Map<Object, ClauseAction[]> map : maps) {
+         // each map is created with an initial capacity of twice its number of entries, rounded up to a power of two
+         result += MAP_SIZE + Index.getEstimatedArraySize(Integer.highestOneBit(map.size() * 4 - 1), Index.REFERENCE_SIZE);
+         for (ClauseAction[] value : map.values()) {
+            result += MAP_ENTRY_SIZE + Index.getEstimatedArraySize(value.length, Index.REFERENCE_SIZE);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Returns the clauses that could match the specified arguments.
+    * <p>
+    * The first indexed argument that is not an uninstantiated variable is used to select the clauses.
+    *
+    * @return {@code null} if all of the indexed arguments are uninstantiated variables
+    */
+   ClauseAction[] getMatches(Term[] args) {
+      for (int i = 0; i < positions.length; i++) {
+         Object key = getKey(args[positions[i]]);
+         if (key != null) {
+            return maps.get(i).getOrDefault(key, defaults[i]);
+         }
+      }
+      return null;
+   }
+
+   private static final class Functor {
+      final String name;
+      final int numArgs;
+
+      Functor(String name, int numArgs) {
+         this.name = name;
+         this.numArgs = numArgs;
+      }
+
+      @Override
+      public int hashCode() {
+         return name.hashCode() + numArgs;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (o instanceof Functor) {
+            Functor f = (Functor) o;
+            // names are interned so can compare by identity
+            return name == f.name && numArgs == f.numArgs;
+         } else {
+            return false;
+         }
+      }
+   }
+}
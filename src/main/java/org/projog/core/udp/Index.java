@@ -15,27 +15,86 @@
  */
 package org.projog.core.udp;
 
-import java.util.Map;
-
 import org.projog.core.term.Term;
-import org.projog.core.udp.KeyFactories.KeyFactory;
+import org.projog.core.term.TermType;
 import org.projog.core.udp.interpreter.ClauseAction;
 
-final class Index {
-   private static final ClauseAction[] NO_MATCHES = new ClauseAction[0];
+/**
+ * Maps the values of one or more arguments to the clauses that have those values.
+ * <p>
+ * Use {@link #create(int[], ClauseAction[])} to create an index of the implementation most suited to the values of the
+ * indexed arguments. As tables of facts are often keyed by a single integer "id" argument, an index of a single
+ * argument that is an integer in every clause compares primitive {@code long}s rather than terms - and, where the
+ * integers are close enough together, uses the value of the argument as an offset into an array.
+ */
+abstract class Index implements IndexCache.Cacheable {
+   /** Maximum number of arguments that can be included in a single index. */
+   static final int MAX_ARGUMENTS_PER_INDEX = 3;
+
+   static final ClauseAction[] NO_MATCHES = new ClauseAction[0];
+
+   static final int REFERENCE_SIZE = 4;
+   static final int ARRAY_HEADER_SIZE = 16;
+
+   /**
+    * Returns an index of the specified clauses.
+    *
+    * @param positions the positions of the arguments to index
+    * @param clauses the clauses to index - each must have an immutable term at each of {@code positions}
+    */
+   static Index create(int[] positions, ClauseAction[] clauses) {
+      if (positions.length == 0 || positions.length > MAX_ARGUMENTS_PER_INDEX) {
+         throw new IllegalArgumentException("Invalid number of positions: " + positions.length);
+      }
+      if (positions.length == 1 && isIntegers(positions[0], clauses)) {
+         return DenseIntegerIndex.isSuitable(positions[0], clauses) ? new DenseIntegerIndex(positions[0], clauses) : new IntegerIndex(positions[0], clauses);
+      } else {
+         return new TermIndex(positions, clauses);
+      }
+   }
+
+   private static boolean isIntegers(int position, ClauseAction[] clauses) {
+      for (ClauseAction clause : clauses) {
+         if (getArgument(clause, position).getType() != TermType.INTEGER) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   static Term getArgument(ClauseAction clause, int position) {
+      return clause.getModel().getConsequent().getArgument(position);
+   }
+
+   /**
+    * Returns the clauses that have the same values, at the indexed positions, as the specified arguments.
+    *
+    * @param args the arguments of a call - must be immutable at each of the indexed positions
+    * @return the matching clauses, in the order they were defined, or an empty array if there are none
+    */
+   abstract ClauseAction[] getMatches(Term[] args);
 
-   private final int[] positions;
-   private final Map<Object, ClauseAction[]> result;
-   private final KeyFactory keyFactory;
+   /**
+    * Returns an estimate of the number of bytes used by this index.
+    * <p>
+    * Assumes compressed references, and does not include the clauses themselves.
+    *
+    * @see IndexCache
+    */
+   @Override
+   public abstract long getEstimatedSize();
 
-   Index(int[] positions, Map<Object, ClauseAction[]> result) {
-      this.keyFactory = KeyFactories.getKeyFactory(positions.length);
-      this.positions = positions;
-      this.result = result;
+   static long getEstimatedSize(ClauseAction[][] values) {
+      long result = getEstimatedArraySize(values.length, REFERENCE_SIZE);
+      for (ClauseAction[] value : values) {
+         if (value != null) {
+            result += getEstimatedArraySize(value.length, REFERENCE_SIZE);
+         }
+      }
+      return result;
    }
 
-   ClauseAction[] getMatches(Term[] args) {
-      Object key = keyFactory.createKey(positions, args);
-      return result.getOrDefault(key, NO_MATCHES);
+   static long getEstimatedArraySize(int length, int elementSize) {
+      return ARRAY_HEADER_SIZE + (long) length * elementSize;
    }
 }
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.projog.core.KnowledgeBase;
+import org.projog.core.ProjogProperties;
+
+/**
+ * Limits the memory used by the indexes of the static user defined predicates of a {@link KnowledgeBase}.
+ * <p>
+ * Indexes are created the first time they are needed. When the estimated size of all the indexes that currently exist
+ * exceeds the budget specified by {@link ProjogProperties#getIndexMemoryBudget()} then indexes, chosen using the
+ * {@link ProjogProperties#getIndexEvictionPolicy()}, are discarded until the total is within the budget. A discarded
+ * index will be recreated if it is needed again.
+ * <p>
+ * The budget covers every structure used to select the clauses of a static user defined predicate that is created after
+ * the predicate has been compiled:
+ * <ul>
+ * <li>each {@link Index} used by {@link Indexes} for arguments that are immutable in every clause;</li>
+ * <li>the {@link FunctorIndex} of arguments that are a variable or compound term in some clauses;</li>
+ * <li>the {@link BloomFilter} of each argument that is immutable in every clause, if Bloom filters are enabled; and</li>
+ * <li>the {@link OrderedIndex} of each argument used to select clauses within a range.</li>
+ * </ul>
+ * The budget does not cover the clauses themselves, or the statistics (a few numbers per argument and call mode) used
+ * to decide which index to create. Sizes are estimates that assume compressed references.
+ * <p>
+ * Indexes are only weakly referenced by the cache - an index stops counting against the budget once the predicate
+ * factory that owns it is no longer used (e.g. when replaced by a compiled version, or when the clause that called a
+ * preprocessed version is discarded) or has {@link CachedIndex#release() released} it.
+ * <p>
+ * The number of indexes created and discarded, and the time spent creating them, is recorded so that the budget can be
+ * tuned.
+ *
+ * @see Indexes
+ */
+public final class IndexCache {
+   private final long budget;
+   private final IndexEvictionPolicy policy;
+   /**
+    * The indexes that currently exist, ordered so the first is the next to discard.
+    * <p>
+    * As indexes are used without holding a lock, each is ordered by when it was last used (and how many times it had
+    * been used) when it was added or last reordered. The first is only discarded if it has not been used since - else
+    * it is reordered and the next is considered.
+    */
+   private final TreeSet<Node> resident;
+   /** Receives the nodes of entries that are no longer referenced. */
+   private final ReferenceQueue<CachedIndex<?>> unreferenced = new ReferenceQueue<>();
+   /** Used to order nodes that were last used at the same time. */
+   private long nodeCtr;
+   /**
+    * Incremented each time an index is used, to order indexes by when they were last used.
+    * <p>
+    * Not updated atomically, so when indexes are used concurrently the order is only approximate.
+    */
+   private long clock;
+   private long size;
+   private long buildCount;
+   private long buildTime;
+   private long evictionCount;
+
+   public IndexCache(KnowledgeBase kb) {
+      this(kb.getProjogProperties().getIndexMemoryBudget(), kb.getProjogProperties().getIndexEvictionPolicy());
+   }
+
+   IndexCache(long budget, IndexEvictionPolicy policy) {
+      this.budget = budget;
+      this.policy = policy;
+      Comparator<Node> byLastUsed = Comparator.comparingLong(n -> n.lastUsed);
+      Comparator<Node> order = policy == IndexEvictionPolicy.LEAST_FREQUENTLY_USED ? Comparator.<Node> comparingLong(n -> n.uses).thenComparing(byLastUsed) : byLastUsed;
+      this.resident = new TreeSet<>(order.thenComparingLong(n -> n.id));
+   }
+
+   /** Returns the maximum estimated size, in bytes, of the indexes that should exist at any one time. */
+   public long getBudget() {
+      return budget;
+   }
+
+   /** Returns the policy used to decide which index to discard when the budget is exceeded. */
+   public IndexEvictionPolicy getPolicy() {
+      return policy;
+   }
+
+   /** Returns the estimated size, in bytes, of the indexes that currently exist. */
+   public synchronized long getSize() {
+      removeUnreferenced();
+      return size;
+   }
+
+   /** Returns the number of indexes that currently exist. */
+   public synchronized int getIndexCount() {
+      removeUnreferenced();
+      return resident.size();
+   }
+
+   /** Returns the number of times an index has been created, including indexes that were recreated. */
+   public synchronized long getBuildCount() {
+      return buildCount;
+   }
+
+   /** Returns the total time, in nanoseconds, spent creating indexes. */
+   public synchronized long getBuildTime() {
+      return buildTime;
+   }
+
+   /** Returns the number of times an index has been discarded as the budget was exceeded. */
+   public synchronized long getEvictionCount() {
+      return evictionCount;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "IndexCache [indexes=" + resident.size() + " size=" + size + " budget=" + budget + " policy=" + policy + " builds=" + buildCount + " buildTime=" + buildTime + "ns evictions=" + evictionCount + "]";
+   }
+
+   /**
+    * Returns a new, empty, entry that will use the specified factory to create its index when first needed.
+    */
+   <T extends Cacheable> CachedIndex<T> createEntry(Supplier<T> factory) {
+      return new CachedIndex<>(factory);
+   }
+
+   private synchronized void added(CachedIndex<?> entry, long entrySize, long duration) {
+      removeUnreferenced();
+      buildCount++;
+      buildTime += duration;
+      if (entry.isReleased) {
+         // released while being created
+         entry.index = null;
+         return;
+      }
+      size += entrySize;
+      // the new index is kept even if on its own it exceeds the budget, as it is about to be used
+      while (size > budget && !resident.isEmpty()) {
+         evictFirst();
+      }
+      entry.node = new Node(entry, entrySize, nodeCtr++);
+      resident.add(entry.node);
+   }
+
+   private void evictFirst() {
+      Node node = resident.pollFirst();
+      CachedIndex<?> entry = node.get();
+      if (entry == null) {
+         // no longer referenced, but not yet removed by removeUnreferenced
+         size -= node.size;
+      } else if (entry.lastUsed != node.lastUsed || entry.uses != node.uses) {
+         // used since it was ordered
+         node.reorder(entry);
+         resident.add(node);
+      } else {
+         size -= node.size;
+         evictionCount++;
+         entry.node = null;
+         entry.index = null;
+      }
+   }
+
+   private void removeUnreferenced() {
+      Node node;
+      while ((node = (Node) unreferenced.poll()) != null) {
+         if (resident.remove(node)) {
+            size -= node.size;
+         }
+      }
+   }
+
+   private synchronized void release(CachedIndex<?> entry) {
+      entry.isReleased = true;
+      entry.index = null;
+      if (entry.node != null && resident.remove(entry.node)) {
+         size -= entry.node.size;
+      }
+      entry.node = null;
+   }
+
+   /**
+    * A structure, used to select clauses, whose memory is limited by an {@link IndexCache}.
+    */
+   interface Cacheable {
+      /**
+       * Returns an estimate of the number of bytes used by this structure.
+       * <p>
+       * Assumes compressed references, and does not include the clauses themselves.
+       */
+      long getEstimatedSize();
+   }
+
+   /**
+    * Holds an index that is created when first needed, and may later be discarded by the {@link IndexCache}.
+    * <p>
+    * Reading an index that already exists does not require a lock. Creating an index only blocks other threads that
+    * need the same index, which wait for it to be created rather than each creating their own copy.
+    */
+   final class CachedIndex<T extends Cacheable> {
+      private final Supplier<T> factory;
+      private volatile T index;
+      /** The position of the index in the cache, while it exists. Only accessed while holding the cache's lock. */
+      private Node node;
+      private volatile boolean isReleased;
+      private long lastUsed;
+      private long uses;
+
+      private CachedIndex(Supplier<T> factory) {
+         this.factory = factory;
+      }
+
+      T get() {
+         T result = index;
+         if (result == null) {
+            result = create();
+         }
+         lastUsed = ++clock;
+         uses++;
+         return result;
+      }
+
+      /**
+       * Returns the index if it currently exists, without creating it or recording it as used.
+       *
+       * @return {@code null} if the index does not currently exist
+       */
+      T getIfResident() {
+         return index;
+      }
+
+      /** Returns {@code true} if the index currently exists. */
+      boolean isResident() {
+         return index != null;
+      }
+
+      /**
+       * Discards the index, and stops it counting against the budget, as it is no longer needed.
+       * <p>
+       * Subsequent calls to {@link #get()}, by calls that were already in progress, create an index that is not kept.
+       */
+      void release() {
+         IndexCache.this.release(this);
+      }
+
+      private synchronized T create() {
+         if (isReleased) {
+            return factory.get();
+         }
+         T result = index;
+         if (result == null) {
+            long start = System.nanoTime();
+            result = factory.get();
+            long duration = System.nanoTime() - start;
+            index = result;
+            added(this, result.getEstimatedSize(), duration);
+         }
+         return result;
+      }
+   }
+
+   /**
+    * The position of a {@link CachedIndex} in the order indexes are discarded.
+    * <p>
+    * Weakly refers to its entry, so that an entry that is no longer referenced by the predicate factory that created
+    * it is removed from the cache.
+    */
+   private final class Node extends WeakReference<CachedIndex<?>> {
+      final long size;
+      final long id;
+      long lastUsed;
+      long uses;
+
+      Node(CachedIndex<?> entry, long size, long id) {
+         super(entry, unreferenced);
+         this.size = size;
+         this.id = id;
+         reorder(entry);
+      }
+
+      /** Must only be called while the node is not in {@link IndexCache#resident}, as it changes its order. */
+      void reorder(CachedIndex<?> entry) {
+         lastUsed = entry.lastUsed;
+         uses = entry.uses;
+      }
+   }
+}
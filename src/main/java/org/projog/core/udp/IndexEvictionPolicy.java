@@ -0,0 +1,30 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+/**
+ * Determines which index is discarded when the indexes of a {@link org.projog.core.KnowledgeBase} exceed their memory
+ * budget.
+ *
+ * @see org.projog.core.ProjogProperties#getIndexEvictionPolicy()
+ * @see IndexCache
+ */
+public enum IndexEvictionPolicy {
+   /** Discard the index that was least recently used. */
+   LEAST_RECENTLY_USED,
+   /** Discard the index that has been used the fewest times since it was created. */
+   LEAST_FREQUENTLY_USED
+}
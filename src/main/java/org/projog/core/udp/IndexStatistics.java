@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of how calls to a user defined predicate, with a particular combination of immutable arguments, have been
+ * indexed.
+ * <p>
+ * A "hit" is a call for which the index selected at least one clause. A "rejection" is a call that a Bloom filter
+ * identified as not matching any clause, without using an index.
+ *
+ * @see StaticUserDefinedPredicateFactory#getIndexStatistics()
+ */
+public final class IndexStatistics {
+   private final int[] boundArguments;
+   private final int[] indexedArguments;
+   private final int clauseCount;
+   private final long callCount;
+   private final long hitCount;
+   private final long matchCount;
+   private final long rejectionCount;
+
+   IndexStatistics(int[] boundArguments, int[] indexedArguments, int clauseCount, long callCount, long hitCount, long matchCount, long rejectionCount) {
+      this.boundArguments = boundArguments;
+      this.indexedArguments = indexedArguments;
+      this.clauseCount = clauseCount;
+      this.callCount = callCount;
+      this.hitCount = hitCount;
+      this.matchCount = matchCount;
+      this.rejectionCount = rejectionCount;
+   }
+
+   /**
+    * Returns the (zero-based) positions of the indexable arguments that were immutable in the calls.
+    */
+   public int[] getBoundArguments() {
+      return boundArguments.clone();
+   }
+
+   /**
+    * Returns the (zero-based) positions of the arguments used to index the calls.
+    * <p>
+    * The positions are chosen from {@link #getBoundArguments()} as the combination that is most selective for the
+    * clauses of the predicate. Empty if every call has been rejected by a Bloom filter, as no index has been needed.
+    */
+   public int[] getIndexedArguments() {
+      return indexedArguments.clone();
+   }
+
+   /**
+    * Returns the total number of clauses of the predicate.
+    */
+   public int getClauseCount() {
+      return clauseCount;
+   }
+
+   /**
+    * Returns the number of calls.
+    */
+   public long getCallCount() {
+      return callCount;
+   }
+
+   /**
+    * Returns the number of calls for which the index selected at least one clause.
+    */
+   public long getHitCount() {
+      return hitCount;
+   }
+
+   /**
+    * Returns the proportion of calls for which the index selected at least one clause.
+    *
+    * @return a value between {@code 0} and {@code 1}, or {@code 0} if there have been no calls
+    */
+   public double getHitRate() {
+      return callCount == 0 ? 0 : (double) hitCount / callCount;
+   }
+
+   /**
+    * Returns the average number of clauses selected by each call.
+    *
+    * @return the average number of clauses selected, or {@code 0} if there have been no calls
+    */
+   public double getAverageMatches() {
+      return callCount == 0 ? 0 : (double) matchCount / callCount;
+   }
+
+   /**
+    * Returns the number of calls that a Bloom filter identified as not matching any clause.
+    *
+    * @see org.projog.core.ProjogProperties#isBloomFilterEnabled()
+    */
+   public long getRejectionCount() {
+      return rejectionCount;
+   }
+
+   /**
+    * Returns the proportion of calls that did not match any clause but were not rejected by a Bloom filter.
+    * <p>
+    * Each such call required an index to be used to find that it did not match any clause. When Bloom filters are not
+    * enabled every call that does not match any clause is a false positive.
+    *
+    * @return a value between {@code 0} and {@code 1}, or {@code 0} if every call has been a hit
+    */
+   public double getFalsePositiveRate() {
+      long misses = callCount - hitCount;
+      return misses == 0 ? 0 : (double) (misses - rejectionCount) / misses;
+   }
+
+   @Override
+   public String toString() {
+      return "bound=" + Arrays.toString(boundArguments) + " indexed=" + Arrays.toString(indexedArguments) + " clauses=" + clauseCount + " calls=" + callCount + " hits=" + hitCount + " rejections=" + rejectionCount + " average matches=" + getAverageMatches();
+   }
+}
@@ -15,44 +15,96 @@
  */
 package org.projog.core.udp;
 
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.projog.core.term.Term;
-import org.projog.core.udp.KeyFactories.KeyFactory;
+import org.projog.core.udp.IndexCache.CachedIndex;
 import org.projog.core.udp.interpreter.ClauseAction;
 import org.projog.core.udp.interpreter.Clauses;
 
+/**
+ * Selects the clauses that could match a call using the arguments that are immutable in every clause.
+ * <p>
+ * Each combination of indexable arguments that are immutable in a call (a "call mode") is mapped to the combination
+ * of those arguments that is estimated to be most selective - i.e. results in the fewest clauses being selected, on
+ * average - for the clauses of the predicate. The estimates are derived from statistics of each argument, calculated
+ * in a single pass over the clauses, so no index is created in order to choose which index to create. An
+ * {@link Index} is created for that combination the first time it is needed. As call modes whose most selective
+ * combination is the same share an index, only the indexes for the ways the predicate is actually called are created.
+ * <p>
+ * The memory used by indexes is limited by an {@link IndexCache}, which may discard indexes that have not been used
+ * recently. Once a call mode has been used, looking up its index does not require a lock - so calls to a predicate
+ * are not blocked while another call mode of the same predicate has its index created.
+ * <p>
+ * Optionally, a {@link BloomFilter} of each indexable argument can be used to identify calls that cannot match any
+ * clause. Such calls fail without the index of their call mode being created or used - which, for large tables of
+ * facts that are mostly queried for values they do not contain, avoids creating indexes that are rarely useful.
+ * <p>
+ * The number of calls, and the number of clauses selected, for each call mode is recorded so that the effectiveness
+ * of indexing can be monitored using {@link #getStatistics()} and {@link #getBloomFilterStatistics()}.
+ */
 final class Indexes {
    /**
     * Maximum number of arguments of a clause that will be considered indexable.
     * <p>
     * Note that this is not the same as the maximum number of arguments that can be included in a single index.
     */
-   private static final int MAX_INDEXABLE_ARGS = 9;
+   private static final int MAX_INDEXABLE_ARGS = Integer.SIZE - 1;
+   private static final int INITIAL_CALL_MODES_CAPACITY = 8;
 
    private final ClauseAction[] masterData;
+   private final IndexCache cache;
    private final Object lock = new Object();
-   private final SoftReference<Index>[] indexes;
+   /** Indexes keyed by the bitmask of the indexable arguments they use. Guarded by {@link #lock}. */
+   private final Map<Integer, CachedIndex<Index>> indexes = new HashMap<>();
+   /** The call modes in the order they were first used. Guarded by {@link #lock}. */
+   private final List<CallMode> callModesInOrder = new ArrayList<>();
+   /**
+    * Open addressing hash table of call modes, keyed by bitmask. Replaced, rather than altered, when a mode is added.
+    */
+   private volatile CallMode[] callModes = new CallMode[INITIAL_CALL_MODES_CAPACITY];
+   /** The average number of clauses selected when indexing on each indexable argument. Guarded by {@link #lock}. */
+   private double[] argumentSelectivity;
+   /** The number of distinct values of each indexable argument. Guarded by {@link #lock}. */
+   private int[] distinctValues;
+   /**
+    * Bloom filters of each indexable argument, or {@code null} if Bloom filters are not used.
+    * <p>
+    * Each filter is created the first time it is needed and, like the indexes, its memory is limited by the
+    * {@link IndexCache}. As the fields of a {@link BloomFilter} that are used to check a call are {@code final}, a
+    * filter can be read without holding {@link #lock}.
+    */
+   private final List<CachedIndex<BloomFilter>> bloomFilters;
    private final int[] indexableArgs;
    private final int numIndexableArgs;
 
-   @SuppressWarnings("unchecked")
-   Indexes(Clauses clauses) {
+   /**
+    * @param cache limits the memory used by the indexes
+    * @param clauses the clauses to index
+    * @param useBloomFilters {@code true} if calls should be checked against a Bloom filter of each immutable argument
+    * before an index is used
+    */
+   Indexes(IndexCache cache, Clauses clauses, boolean useBloomFilters) {
+      this.cache = cache;
       this.indexableArgs = clauses.getImmutableColumns();
       this.masterData = clauses.getClauseActions();
       this.numIndexableArgs = Math.min(indexableArgs.length, MAX_INDEXABLE_ARGS);
       if (numIndexableArgs == 0) {
          throw new IllegalArgumentException();
       }
-      int size = 0;
-      for (int i = 0, b = 1; i < numIndexableArgs; i++, b *= 2) {
-         size += b;
+      this.bloomFilters = useBloomFilters ? createBloomFilters() : null;
+   }
+
+   private List<CachedIndex<BloomFilter>> createBloomFilters() {
+      List<CachedIndex<BloomFilter>> result = new ArrayList<>(numIndexableArgs);
+      for (int i = 0; i < numIndexableArgs; i++) {
+         int position = indexableArgs[i];
+         result.add(cache.createEntry(() -> new BloomFilter(masterData, position)));
       }
-      indexes = new SoftReference[size + 1];
+      return result;
    }
 
    ClauseAction[] index(Term[] args) { // TODO rename
@@ -61,7 +113,31 @@ final class Indexes {
       if (bitmask == 0) {
          return masterData;
       } else {
-         return getOrCreateIndex(bitmask).getMatches(args);
+         CallMode callMode = getOrCreateCallMode(bitmask);
+         if (bloomFilters != null && !mightMatch(args, bitmask)) {
+            callMode.recordRejection();
+            return Index.NO_MATCHES;
+         }
+         ClauseAction[] matches = callMode.getIndex().getMatches(args);
+         callMode.record(matches.length);
+         return matches;
+      }
+   }
+
+   /**
+    * Discards the indexes and Bloom filters, so they no longer count against the budget of the {@link IndexCache}, as
+    * this object is no longer going to be used to select clauses.
+    */
+   void release() {
+      synchronized (lock) {
+         for (CachedIndex<Index> index : indexes.values()) {
+            index.release();
+         }
+      }
+      if (bloomFilters != null) {
+         for (CachedIndex<BloomFilter> bloomFilter : bloomFilters) {
+            bloomFilter.release();
+         }
       }
    }
 
@@ -69,46 +145,217 @@ final class Indexes {
       return masterData.length;
    }
 
+   /**
+    * Returns statistics for each of the call modes this object has been used for, in the order they were first used.
+    */
+   List<IndexStatistics> getStatistics() {
+      synchronized (lock) {
+         List<IndexStatistics> result = new ArrayList<>(callModesInOrder.size());
+         for (CallMode callMode : callModesInOrder) {
+            result.add(callMode.getStatistics());
+         }
+         return result;
+      }
+   }
+
+   /**
+    * Returns statistics for the Bloom filter of each indexable argument that currently exists.
+    *
+    * @return statistics in the order of the position of the argument of each filter, or an empty list if Bloom filters
+    * are not used
+    */
+   List<BloomFilterStatistics> getBloomFilterStatistics() {
+      List<BloomFilterStatistics> result = new ArrayList<>();
+      if (bloomFilters != null) {
+         for (CachedIndex<BloomFilter> entry : bloomFilters) {
+            BloomFilter bloomFilter = entry.getIfResident();
+            if (bloomFilter != null) {
+               result.add(bloomFilter.getStatistics());
+            }
+         }
+      }
+      return result;
+   }
+
+   private boolean mightMatch(Term[] args, int bitmask) {
+      for (int i = 0, b = 1; i < numIndexableArgs; i++, b *= 2) {
+         if ((bitmask & b) != 0 && !bloomFilters.get(i).get().mightMatch(args)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
    private int createBitmask(Term[] args) {
       int bitmask = 0;
-      for (int i = 0, b = 1, bitCount = 0; i < numIndexableArgs; i++, b *= 2) {
+      for (int i = 0, b = 1; i < numIndexableArgs; i++, b *= 2) {
          if (args[indexableArgs[i]].isImmutable()) {
             bitmask += b;
-            if (++bitCount == KeyFactories.MAX_ARGUMENTS_PER_INDEX) {
-               return bitmask;
-            }
          }
       }
       return bitmask;
    }
 
-   private Index getOrCreateIndex(int bitmask) {
-      SoftReference<Index> ref = indexes[bitmask];
-      Index index = ref != null ? ref.get() : null;
-
-      if (index == null) {
+   private CallMode getOrCreateCallMode(int bitmask) {
+      CallMode callMode = getCallMode(callModes, bitmask);
+      if (callMode == null) {
          synchronized (lock) {
-            while (index == null) {
-               ref = indexes[bitmask];
-               index = ref != null ? ref.get() : null;
+            callMode = getCallMode(callModes, bitmask);
+            if (callMode == null) {
+               callMode = new CallMode(bitmask);
+               addCallMode(callMode);
+            }
+         }
+      }
+      return callMode;
+   }
+
+   private static CallMode getCallMode(CallMode[] table, int bitmask) {
+      int mask = table.length - 1;
+      for (int i = hash(bitmask) & mask;; i = (i + 1) & mask) {
+         CallMode callMode = table[i];
+         if (callMode == null || callMode.bitmask == bitmask) {
+            return callMode;
+         }
+      }
+   }
+
+   private static int hash(int bitmask) {
+      return bitmask ^ (bitmask >>> 7) ^ (bitmask >>> 17);
+   }
+
+   private void addCallMode(CallMode callMode) {
+      callModesInOrder.add(callMode);
+      int capacity = callModes.length;
+      while (callModesInOrder.size() * 2 > capacity) {
+         capacity *= 2;
+      }
+      CallMode[] table = new CallMode[capacity];
+      for (CallMode m : callModesInOrder) {
+         int mask = capacity - 1;
+         int i = hash(m.bitmask) & mask;
+         while (table[i] != null) {
+            i = (i + 1) & mask;
+         }
+         table[i] = m;
+      }
+      callModes = table;
+   }
+
+   /**
+    * Returns the most selective combination of the specified indexable arguments.
+    * <p>
+    * Starting with the argument that, on its own, selects the fewest clauses on average, arguments are added while they
+    * reduce the estimated average number of clauses selected and the limit of {@link Index#MAX_ARGUMENTS_PER_INDEX} has
+    * not been reached. Where arguments are equally selective the one that occurs first is used.
+    *
+    * @param bitmask the indexable arguments that are immutable in a call
+    * @return bitmask of the indexable arguments to use in the index
+    * @see #estimateSelectivity(int)
+    */
+   private int selectIndexBitmask(int bitmask) {
+      calculateArgumentStatistics();
+      int selected = 0;
+      double best = Double.MAX_VALUE;
+      for (int i = 0, b = 1; i < numIndexableArgs; i++, b *= 2) {
+         if ((bitmask & b) != 0 && argumentSelectivity[i] < best) {
+            selected = b;
+            best = argumentSelectivity[i];
+         }
+      }
 
-               if (index == null) {
-                  index = createIndex(bitmask);
-                  indexes[bitmask] = new SoftReference<>(index);
+      for (int bitCount = 1; bitCount < Index.MAX_ARGUMENTS_PER_INDEX; bitCount++) {
+         int candidate = 0;
+         for (int i = 0, b = 1; i < numIndexableArgs; i++, b *= 2) {
+            if ((bitmask & b) != 0 && (selected & b) == 0) {
+               double s = estimateSelectivity(selected | b);
+               if (s < best) {
+                  candidate = b;
+                  best = s;
                }
             }
          }
+         if (candidate == 0) {
+            break;
+         }
+         selected |= candidate;
       }
 
-      return index;
+      return selected;
    }
 
-   private Index createIndex(int bitmask) {
-      int[] positions = createPositionsFromBitmask(bitmask);
+   /**
+    * Calculates, in a single pass over the clauses, the selectivity and number of distinct values of each indexable
+    * argument.
+    * <p>
+    * The selectivity of an argument is the sum of the squares of the number of clauses with each value divided by the
+    * total number of clauses - i.e. the average number of clauses selected, assuming the values used in calls have the
+    * same distribution as the values of the clauses. The counts of each value are discarded once the statistics have
+    * been calculated, so no memory is retained other than two numbers per argument.
+    */
+   private void calculateArgumentStatistics() {
+      if (argumentSelectivity != null) {
+         return;
+      }
 
-      Map<Object, List<ClauseAction>> map = groupDataByPositions(positions);
+      List<Map<Term, int[]>> counts = new ArrayList<>(numIndexableArgs);
+      for (int i = 0; i < numIndexableArgs; i++) {
+         counts.add(new HashMap<>());
+      }
+      for (ClauseAction clause : masterData) {
+         for (int i = 0; i < numIndexableArgs; i++) {
+            counts.get(i).computeIfAbsent(Index.getArgument(clause, indexableArgs[i]), k -> new int[1])[0]++;
+         }
+      }
 
-      return new Index(positions, convertListsToArrays(map));
+      double[] selectivity = new double[numIndexableArgs];
+      int[] distinct = new int[numIndexableArgs];
+      for (int i = 0; i < numIndexableArgs; i++) {
+         long sumOfSquares = 0;
+         for (int[] count : counts.get(i).values()) {
+            sumOfSquares += (long) count[0] * count[0];
+         }
+         selectivity[i] = (double) sumOfSquares / masterData.length;
+         distinct[i] = counts.get(i).size();
+      }
+      distinctValues = distinct;
+      argumentSelectivity = selectivity;
+   }
+
+   /**
+    * Returns an estimate of the average number of clauses that would be selected by an index of the specified
+    * arguments.
+    * <p>
+    * Estimated, without creating the index, from the statistics of each argument by assuming the values of different
+    * arguments are independent - i.e. the probability of two clauses having the same values for all of the arguments is
+    * the product of the probabilities of them having the same value for each argument. As an index cannot have more
+    * keys than the product of the number of distinct values of each argument, or than the number of clauses, the
+    * estimate is never less than the average number of clauses per key that would imply.
+    */
+   private double estimateSelectivity(int bitmask) {
+      double numClauses = masterData.length;
+      double independent = numClauses;
+      double maxKeys = 1;
+      for (int i = 0, b = 1; i < numIndexableArgs; i++, b *= 2) {
+         if ((bitmask & b) != 0) {
+            independent *= argumentSelectivity[i] / numClauses;
+            maxKeys = Math.min(numClauses, maxKeys * distinctValues[i]);
+         }
+      }
+      return Math.max(independent, numClauses / maxKeys);
+   }
+
+   private CachedIndex<Index> getOrCreateCachedIndex(int bitmask) {
+      CachedIndex<Index> index = indexes.get(bitmask);
+      if (index == null) {
+         index = cache.createEntry(() -> createIndex(bitmask));
+         indexes.put(bitmask, index);
+      }
+      return index;
+   }
+
+   private Index createIndex(int bitmask) {
+      return Index.create(createPositionsFromBitmask(bitmask), masterData);
    }
 
    private int[] createPositionsFromBitmask(int bitmask) {
@@ -122,48 +369,88 @@ final class Indexes {
       return positions;
    }
 
-   private Map<Object, List<ClauseAction>> groupDataByPositions(int[] positions) {
-      Map<Object, List<ClauseAction>> map = new HashMap<>();
-      KeyFactory keyFactory = KeyFactories.getKeyFactory(positions.length);
-      for (ClauseAction clause : masterData) {
-         Object key = keyFactory.createKey(positions, clause.getModel().getConsequent().getArgs());
-         List<ClauseAction> list = map.get(key);
-         if (list == null) {
-            list = new ArrayList<>();
-            map.put(key, list);
-         }
-         list.add(clause);
+   // only used by tests
+   double getEstimatedMatches(int bitmask) {
+      synchronized (lock) {
+         calculateArgumentStatistics();
+         return estimateSelectivity(bitmask);
       }
-      return map;
    }
 
-   private Map<Object, ClauseAction[]> convertListsToArrays(Map<Object, List<ClauseAction>> map) {
-      Map<Object, ClauseAction[]> result = new HashMap<>(map.size());
-      for (Map.Entry<Object, List<ClauseAction>> e : map.entrySet()) {
-         result.put(e.getKey(), e.getValue().toArray(new ClauseAction[e.getValue().size()]));
+   // only used by tests
+   int countReferences() {
+      synchronized (lock) {
+         return indexes.size();
       }
-      return result;
    }
 
    // only used by tests
-   int countReferences() {
-      int ctr = 0;
-      for (int i = 0; i < indexes.length; i++) {
-         if (indexes[i] != null) {
-            ctr++;
+   int countClearedReferences() {
+      synchronized (lock) {
+         int ctr = 0;
+         for (CachedIndex<Index> index : indexes.values()) {
+            if (!index.isResident()) {
+               ctr++;
+            }
          }
+         return ctr;
       }
-      return ctr;
    }
 
-   // only used by tests
-   int countClearedReferences() {
-      int ctr = 0;
-      for (int i = 0; i < indexes.length; i++) {
-         if (indexes[i] != null && indexes[i].get() == null) {
-            ctr++;
+   /**
+    * A combination of indexable arguments that are immutable in a call, and the index used for it.
+    * <p>
+    * The index is selected the first time a call is not rejected by the Bloom filters - so no index is created for a
+    * call mode whose calls have all been rejected.
+    * <p>
+    * The counters are not updated atomically so, when the predicate is called concurrently, may undercount.
+    */
+   private final class CallMode {
+      final int bitmask;
+      /** Guarded by {@link Indexes#lock}. */
+      private int indexBitmask;
+      private volatile CachedIndex<Index> index;
+      private long calls;
+      private long hits;
+      private long matches;
+      private long rejections;
+
+      CallMode(int bitmask) {
+         this.bitmask = bitmask;
+      }
+
+      Index getIndex() {
+         CachedIndex<Index> result = index;
+         if (result == null) {
+            synchronized (lock) {
+               result = index;
+               if (result == null) {
+                  indexBitmask = selectIndexBitmask(bitmask);
+                  result = getOrCreateCachedIndex(indexBitmask);
+                  index = result;
+               }
+            }
          }
+         return result.get();
+      }
+
+      void record(int numberOfMatches) {
+         calls++;
+         if (numberOfMatches > 0) {
+            hits++;
+            matches += numberOfMatches;
+         }
+      }
+
+      void recordRejection() {
+         calls++;
+         rejections++;
+      }
+
+      /** Must be called while holding {@link Indexes#lock}. */
+      IndexStatistics getStatistics() {
+         int[] indexedArguments = index == null ? new int[0] : createPositionsFromBitmask(indexBitmask);
+         return new IndexStatistics(createPositionsFromBitmask(bitmask), indexedArguments, masterData.length, calls, hits, matches, rejections);
       }
-      return ctr;
    }
 }
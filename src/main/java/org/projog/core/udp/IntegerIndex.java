@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import org.projog.core.term.IntegerNumber;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * An {@link Index} of a single argument that is an integer in every clause.
+ * <p>
+ * Implemented as an open addressing hash table with {@code long} keys, so that looking up the clauses for a call
+ * neither boxes the value of the argument nor uses {@link IntegerNumber#equals(Object)} and
+ * {@link IntegerNumber#hashCode()}.
+ */
+final class IntegerIndex extends Index {
+   private final int position;
+   private final long[] keys;
+   private final ClauseAction[][] values;
+   private final int mask;
+
+   /** @see Index#create(int[], ClauseAction[]) */
+   IntegerIndex(int position, ClauseAction[] clauses) {
+      this.position = position;
+
+      // as keys are never removed, a capacity of at least twice the number of clauses guarantees empty slots
+      int capacity = Integer.highestOneBit(Math.max(1, clauses.length)) * 4;
+      this.keys = new long[capacity];
+      this.values = new ClauseAction[capacity][];
+      this.mask = capacity - 1;
+
+      // first pass counts the clauses for each key, second pass populates the arrays
+      int[] counts = new int[capacity];
+      long[] clauseKeys = new long[clauses.length];
+      for (int i = 0; i < clauses.length; i++) {
+         long key = getLong(getArgument(clauses[i], position));
+         clauseKeys[i] = key;
+         int slot = getSlot(key);
+         if (values[slot] == null) {
+            keys[slot] = key;
+            values[slot] = NO_MATCHES;
+         }
+         counts[slot]++;
+      }
+      for (int i = 0; i < clauses.length; i++) {
+         int slot = getSlot(clauseKeys[i]);
+         if (values[slot] == NO_MATCHES) {
+            values[slot] = new ClauseAction[counts[slot]];
+            counts[slot] = 0;
+         }
+         values[slot][counts[slot]++] = clauses[i];
+      }
+   }
+
+   @Override
+   ClauseAction[] getMatches(Term[] args) {
+      Term arg = args[position];
+      if (arg.getType() != TermType.INTEGER) {
+         return NO_MATCHES;
+      }
+      long key = getLong(arg);
+      for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+         ClauseAction[] value = values[i];
+         if (value == null) {
+            return NO_MATCHES;
+         }
+         if (keys[i] == key) {
+            return value;
+         }
+      }
+   }
+
+   @Override
+   public long getEstimatedSize() {
+      return getEstimatedArraySize(keys.length, Long.BYTES) + getEstimatedSize(values);
+   }
+
+   /** Returns the slot that either contains, or should contain, the specified key. */
+   private int getSlot(long key) {
+      int i = hash(key) & mask;
+      while (values[i] != null && keys[i] != key) {
+         i = (i + 1) & mask;
+      }
+      return i;
+   }
+
+   private static int hash(long key) {
+      // spread the bits, as consecutive integers would otherwise be in consecutive slots
+      int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+   private static long getLong(Term t) {
+      return ((IntegerNumber) t).getLong();
+   }
+}
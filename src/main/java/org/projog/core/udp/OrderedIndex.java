@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import static org.projog.core.term.TermComparator.TERM_COMPARATOR;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.projog.core.term.Term;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * Selects the clauses whose value for an argument is within a range.
+ * <p>
+ * The clauses that have an immutable term for the argument are sorted, using the standard order of terms, so that the
+ * clauses within a range can be found using a binary search. Clauses that have a mutable term for the argument could
+ * match any value, so are included in every range.
+ * <p>
+ * The clauses selected for a range are in the same order as they were defined. When the clauses are already defined in
+ * order of the argument (e.g. a table of facts with timestamps in ascending order) the clauses within a range are
+ * contiguous and do not need to be reordered.
+ *
+ * @see RangeIndexes
+ * @see IndexCache
+ */
+final class OrderedIndex implements IndexCache.Cacheable {
+   private static final ClauseAction[] NO_MATCHES = new ClauseAction[0];
+
+   private final ClauseAction[] clauses;
+   /** The immutable values of the argument, in ascending order. */
+   private final Term[] keys;
+   /** The position, in {@link #clauses}, of the clause that has the key at the same position in {@link #keys}. */
+   private final int[] positions;
+   /** The positions, in {@link #clauses}, of clauses that have a mutable term for the argument. */
+   private final int[] unordered;
+   /** {@code true} if {@link #positions} is in ascending order and there are no {@link #unordered} clauses. */
+   private final boolean inClauseOrder;
+
+   /**
+    * @param clauses the clauses to index
+    * @param position the position of the argument to index
+    */
+   OrderedIndex(ClauseAction[] clauses, int position) {
+      this.clauses = clauses;
+
+      List<Integer> ordered = new ArrayList<>();
+      List<Integer> unordered = new ArrayList<>();
+      for (int i = 0; i < clauses.length; i++) {
+         if (getArgument(clauses[i], position).isImmutable()) {
+            ordered.add(i);
+         } else {
+            unordered.add(i);
+         }
+      }
+      // sort is stable, so clauses with equal keys remain in the order they were defined
+      ordered.sort((a, b) -> TERM_COMPARATOR.compare(getArgument(clauses[a], position), getArgument(clauses[b], position)));
+
+      this.keys = new Term[ordered.size()];
+      this.positions = new int[ordered.size()];
+      boolean inClauseOrder = unordered.isEmpty();
+      for (int i = 0; i < keys.length; i++) {
+         positions[i] = ordered.get(i);
+         keys[i] = getArgument(clauses[positions[i]], position);
+         inClauseOrder &= positions[i] == i;
+      }
+      this.unordered = toArray(unordered);
+      this.inClauseOrder = inClauseOrder;
+   }
+
+   private static Term getArgument(ClauseAction clause, int position) {
+      return clause.getModel().getConsequent().getArgument(position);
+   }
+
+   private static int[] toArray(List<Integer> list) {
+      int[] result = new int[list.size()];
+      for (int i = 0; i < result.length; i++) {
+         result[i] = list.get(i);
+      }
+      return result;
+   }
+
+   @Override
+   public long getEstimatedSize() {
+      return Index.getEstimatedArraySize(keys.length, Index.REFERENCE_SIZE) + Index.getEstimatedArraySize(positions.length, Integer.BYTES) + Index.getEstimatedArraySize(unordered.length, Integer.BYTES);
+   }
+
+   /**
+    * Returns the clauses that could have a value for the argument that is greater than or equal to {@code from} and less
+    * than {@code to}.
+    *
+    * @return the matching clauses, in the order they were defined
+    */
+   ClauseAction[] getMatches(Term from, Term to) {
+      int start = getFirstPositionNotLessThan(from);
+      int end = Math.max(start, getFirstPositionNotLessThan(to));
+      if (inClauseOrder) {
+         return start == end ? NO_MATCHES : Arrays.copyOfRange(clauses, start, end);
+      }
+
+      int[] selected = new int[end - start + unordered.length];
+      System.arraycopy(positions, start, selected, 0, end - start);
+      System.arraycopy(unordered, 0, selected, end - start, unordered.length);
+      Arrays.sort(selected);
+      ClauseAction[] result = new ClauseAction[selected.length];
+      for (int i = 0; i < selected.length; i++) {
+         result[i] = clauses[selected[i]];
+      }
+      return result;
+   }
+
+   /** Returns the position, in {@link #keys}, of the first key that is not less than the specified term. */
+   private int getFirstPositionNotLessThan(Term t) {
+      int low = 0;
+      int high = keys.length;
+      while (low < high) {
+         int mid = (low + high) >>> 1;
+         if (TERM_COMPARATOR.compare(keys[mid], t) < 0) {
+            low = mid + 1;
+         } else {
+            high = mid;
+         }
+      }
+      return low;
+   }
+}
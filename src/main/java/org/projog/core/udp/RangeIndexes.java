@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.projog.core.PredicateKey;
+
+/**
+ * Records which argument, if any, of each user defined predicate has been declared as having a range index.
+ * <p>
+ * A declaration can be made before or after the clauses of the predicate have been consulted. The index itself is
+ * created by {@link StaticUserDefinedPredicateFactory} the first time it is needed.
+ *
+ * @see org.projog.core.function.kb.DeclareRangeIndex
+ * @see org.projog.core.function.kb.InRange
+ */
+public final class RangeIndexes {
+   private final Map<PredicateKey, Integer> positions = new ConcurrentHashMap<>();
+
+   /**
+    * Declares that calls to the specified predicate should be able to select clauses by a range of values of the
+    * specified argument.
+    * <p>
+    * Replaces any previous declaration for the predicate.
+    *
+    * @param key the predicate
+    * @param position the (zero-based) position of the argument
+    */
+   public void declare(PredicateKey key, int position) {
+      positions.put(key, position);
+   }
+
+   /**
+    * Returns the (zero-based) position of the argument of the specified predicate that has a range index.
+    *
+    * @param key the predicate
+    * @return the position of the argument, or {@code -1} if no range index has been declared for the predicate
+    */
+   public int getPosition(PredicateKey key) {
+      Integer position = positions.get(key);
+      return position == null ? -1 : position;
+   }
+}
@@ -15,12 +15,13 @@
  */
 package org.projog.core.udp;
 
-import org.projog.core.CutException;
+import org.projog.core.CutBarrier;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.ProjogException;
 import org.projog.core.SpyPoints;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.interpreter.ClauseAction;
 
 final class SingleNonRetryableRulePredicate implements PredicateFactory {
@@ -38,11 +39,13 @@ final class SingleNonRetryableRulePredicate implements PredicateFactory {
    }
 
    static Predicate evaluateClause(ClauseAction clause, SpyPoints.SpyPoint spyPoint, Term[] args) {
+      Trail trail = Trail.getCurrent();
+      CutBarrier previousCutBarrier = trail.setCutBarrier(new CutBarrier());
       try {
          if (spyPoint.isEnabled()) {
             spyPoint.logCall(SingleNonRetryableRulePredicate.class, args);
 
-            final boolean result = clause.getPredicate(args).evaluate();
+            final boolean result = clause.getPredicate(args, trail).evaluate();
 
             if (result) {
                spyPoint.logExit(SingleNonRetryableRulePredicate.class, args, clause.getModel());
@@ -52,13 +55,8 @@ final class SingleNonRetryableRulePredicate implements PredicateFactory {
 
             return PredicateUtils.toPredicate(result);
          } else {
-            return PredicateUtils.toPredicate(clause.getPredicate(args).evaluate());
+            return PredicateUtils.toPredicate(clause.getPredicate(args, trail).evaluate());
          }
-      } catch (CutException e) {
-         if (spyPoint.isEnabled()) {
-            spyPoint.logFail(SingleNonRetryableRulePredicate.class, args);
-         }
-         return PredicateUtils.FALSE;
       } catch (ProjogException pe) {
          pe.addClause(clause.getModel());
          throw pe;
@@ -66,6 +64,8 @@ final class SingleNonRetryableRulePredicate implements PredicateFactory {
          ProjogException pe = new ProjogException("Exception processing: " + spyPoint.getPredicateKey(), t);
          pe.addClause(clause.getModel());
          throw pe;
+      } finally {
+         trail.setCutBarrier(previousCutBarrier);
       }
    }
 
@@ -15,12 +15,13 @@
  */
 package org.projog.core.udp;
 
-import org.projog.core.CutException;
+import org.projog.core.CutBarrier;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.ProjogException;
 import org.projog.core.SpyPoints;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.interpreter.ClauseAction;
 
 final class SingleRetryableRulePredicateFactory implements PredicateFactory {
@@ -47,7 +48,9 @@ final class SingleRetryableRulePredicateFactory implements PredicateFactory {
       private final ClauseAction clause;
       private final SpyPoints.SpyPoint spyPoint;
       private final boolean isSpyPointEnabled;
+      private final CutBarrier cutBarrier = new CutBarrier();
       private Predicate p;
+      private Trail trail;
 
       public RetryableRulePredicate(ClauseAction clause, SpyPoints.SpyPoint spyPoint, Term[] queryArgs) {
          this.clause = clause;
@@ -58,12 +61,16 @@ final class SingleRetryableRulePredicateFactory implements PredicateFactory {
 
       @Override
       public boolean evaluate() {
+         if (trail == null) {
+            trail = Trail.getCurrent();
+         }
+         CutBarrier previousCutBarrier = trail.setCutBarrier(cutBarrier);
          try {
             if (p == null) {
                if (isSpyPointEnabled) {
                   spyPoint.logCall(this, args);
                }
-               p = clause.getPredicate(args);
+               p = clause.getPredicate(args, trail);
             } else if (isSpyPointEnabled) {
                spyPoint.logRedo(this, args);
             }
@@ -79,11 +86,6 @@ final class SingleRetryableRulePredicateFactory implements PredicateFactory {
                }
                return false;
             }
-         } catch (CutException e) {
-            if (isSpyPointEnabled) {
-               spyPoint.logFail(SingleNonRetryableRulePredicate.class, args);
-            }
-            return false;
          } catch (ProjogException pe) {
             pe.addClause(clause.getModel());
             throw pe;
@@ -91,12 +93,14 @@ final class SingleRetryableRulePredicateFactory implements PredicateFactory {
             ProjogException pe = new ProjogException("Exception processing: " + spyPoint.getPredicateKey(), t);
             pe.addClause(clause.getModel());
             throw pe;
+         } finally {
+            trail.setCutBarrier(previousCutBarrier);
          }
       }
 
       @Override
       public boolean couldReevaluationSucceed() {
-         return p == null || p.couldReevaluationSucceed();
+         return p == null || (!cutBarrier.isCut() && p.couldReevaluationSucceed());
       }
    }
 }
@@ -17,22 +17,32 @@ package org.projog.core.udp;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.projog.core.KnowledgeBase;
+import org.projog.core.KnowledgeBaseServiceLocator;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.PredicateKey;
 import org.projog.core.PreprocessablePredicateFactory;
 import org.projog.core.ProjogException;
 import org.projog.core.SpyPoints;
+import org.projog.core.term.GroundTermTable;
 import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
 import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
+import org.projog.core.udp.IndexCache.CachedIndex;
+import org.projog.core.udp.compiler.PredicateCompiler;
 import org.projog.core.udp.interpreter.ClauseAction;
 import org.projog.core.udp.interpreter.Clauses;
 import org.projog.core.udp.interpreter.InterpretedTailRecursivePredicateFactory;
 import org.projog.core.udp.interpreter.InterpretedUserDefinedPredicate;
+import org.projog.core.udp.wam.WamCompiler;
 
 /**
  * Maintains a record of the clauses that represents a "static" user defined predicate.
@@ -44,14 +54,29 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
    private final PredicateKey predicateKey;
    private final KnowledgeBase kb;
    private final SpyPoints.SpyPoint spyPoint;
+   private final boolean isLastCallOptimisationEnabled;
    private final List<ClauseModel> implications;
-   private PredicateFactory compiledPredicateFactory;
+   /** Range indexes keyed by the position of the argument they index. */
+   private final Map<Integer, CachedIndex<OrderedIndex>> orderedIndexes = new ConcurrentHashMap<>();
+   /**
+    * The clauses created when this predicate was compiled, used to create range indexes.
+    * <p>
+    * Only assigned before {@link #compiledPredicateFactory}, so is visible to any thread that has seen that.
+    */
+   private ClauseAction[] clauseActions;
+   private volatile PredicateFactory compiledPredicateFactory;
    private int setCompiledPredicateFactoryInvocationCtr;
+   private volatile ExecutionTier executionTier = ExecutionTier.INTERPRETED;
+   /** {@code true} while calls are being counted to decide when to compile this predicate. */
+   private volatile boolean isCountingInvocations;
+   /** Not synchronized, as an approximate count is sufficient to decide when to compile this predicate. */
+   private int invocationCtr;
 
    public StaticUserDefinedPredicateFactory(KnowledgeBase kb, PredicateKey predicateKey) {
       this.predicateKey = predicateKey;
       this.kb = kb;
       this.spyPoint = kb.getSpyPoints().getSpyPoint(predicateKey);
+      this.isLastCallOptimisationEnabled = kb.getProjogProperties().isLastCallOptimisationEnabled();
       this.implications = new ArrayList<>();
    }
 
@@ -71,18 +96,35 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
     * Adds new clause to list of clauses for this predicate.
     * <p>
     * Note: it is not possible to add clauses to a <i>static</i> user defined predicate once it has been compiled.
+    * <p>
+    * If {@link org.projog.core.ProjogProperties#isGroundTermSharingEnabled()} then the ground terms contained in the
+    * clause will be replaced with equal instances shared with other clauses.
     *
     * @throws IllegalStateException if the predicate has already been compiled.
     */
    @Override
    public void addLast(ClauseModel clauseModel) {
       if (compiledPredicateFactory == null) {
+         if (kb.getProjogProperties().isGroundTermSharingEnabled()) {
+            clauseModel = shareGroundTerms(clauseModel);
+         }
          implications.add(clauseModel);
       } else {
          throw new IllegalStateException(predicateKey + " already compiled so cannot add: " + clauseModel);
       }
    }
 
+   private IndexCache getIndexCache() {
+      return KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(IndexCache.class);
+   }
+
+   private ClauseModel shareGroundTerms(ClauseModel clauseModel) {
+      GroundTermTable groundTerms = KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(GroundTermTable.class);
+      Term original = clauseModel.getOriginal();
+      Term shared = groundTerms.share(original);
+      return shared == original ? clauseModel : ClauseModel.createClauseModel(shared);
+   }
+
    public void compile() {
       // make sure we only call setCompiledPredicateFactory once per instance
       if (compiledPredicateFactory == null) {
@@ -95,15 +137,27 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
    }
 
    private void setCompiledPredicateFactory() {
-      setCompiledPredicateFactoryInvocationCtr++;
+      // a nested invocation (caused by a cyclic predicate) is replaced by the outermost so is never worth compiling
+      boolean isOutermostInvocation = setCompiledPredicateFactoryInvocationCtr++ == 0;
+      boolean isCompilable = isOutermostInvocation && kb.getProjogProperties().isRuntimeCompilationEnabled();
       // TODO always create Clauses here - can we move creation until InterpretedUserDefinedPredicatePredicateFactory
       final Clauses clauses = Clauses.createFromModels(kb, implications);
-      compiledPredicateFactory = createPredicateFactoryFromClauseActions(clauses);
+      clauseActions = clauses.getClauseActions();
+      PredicateFactory pf = createPredicateFactoryFromClauseActions(clauses, isCompilable);
+      if (isOutermostInvocation && kb.getProjogProperties().isWamEnabled()) {
+         WamCompiler wamCompiler = KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(WamCompiler.class);
+         PredicateFactory wam = wamCompiler.compile(predicateKey, pf);
+         if (wam != null) {
+            isCountingInvocations = false;
+            pf = wam;
+         }
+      }
+      compiledPredicateFactory = pf;
    }
 
-   private PredicateFactory createPredicateFactoryFromClauseActions(Clauses clauses) {
+   private PredicateFactory createPredicateFactoryFromClauseActions(Clauses clauses, boolean isCompilable) {
       List<ClauseModel> clauseModels = getCopyOfImplications(); // TODO do we need to copy here?
-      return createInterpretedPredicateFactoryFromClauseActions(clauses, clauseModels);
+      return createInterpretedPredicateFactoryFromClauseActions(clauses, clauseModels, isCompilable);
    }
 
    private List<ClauseModel> getCopyOfImplications() {
@@ -129,24 +183,75 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
       return setCompiledPredicateFactoryInvocationCtr > 1;
    }
 
-   private PredicateFactory createInterpretedPredicateFactoryFromClauseActions(Clauses clauses, List<ClauseModel> clauseModels) {
+   private PredicateFactory createInterpretedPredicateFactoryFromClauseActions(Clauses clauses, List<ClauseModel> clauseModels, boolean isCompilable) {
       TailRecursivePredicateMetaData tailRecursiveMetaData = TailRecursivePredicateMetaData.create(kb, clauseModels);
       if (tailRecursiveMetaData != null) {
+         // not compiled, as evaluating a tail recursive predicate iteratively avoids the stack growing with each call
          return new InterpretedTailRecursivePredicateFactory(kb, tailRecursiveMetaData);
+      } else if (isCompilable && kb.getProjogProperties().getRuntimeCompilationThreshold() == 0) {
+         Clauses compiled = getPredicateCompiler().compile(predicateKey, clauses);
+         if (compiled != clauses) {
+            setExecutionTier(ExecutionTier.COMPILED);
+         }
+         return createInterpretedPredicateFactoryFromClauses(compiled);
       } else {
+         isCountingInvocations = isCompilable;
          return createInterpretedPredicateFactoryFromClauses(clauses);
       }
    }
 
+   private PredicateCompiler getPredicateCompiler() {
+      return KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(PredicateCompiler.class);
+   }
+
+   /**
+    * Requests that a background thread compiles this predicate.
+    * <p>
+    * Calls continue to be interpreted until compilation has completed, at which point the compiled version replaces
+    * {@link #compiledPredicateFactory}. Calls that were started before then continue to use the interpreted version, but
+    * its entries in the {@link IndexCache} are released.
+    */
+   private void scheduleCompilation() {
+      synchronized (lock) {
+         if (!isCountingInvocations) {
+            // already scheduled by another thread
+            return;
+         }
+         setExecutionTier(ExecutionTier.COMPILING);
+         isCountingInvocations = false;
+      }
+      getPredicateCompiler().compileInBackground(predicateKey, () -> Clauses.createFromModels(kb, implications), compiled -> {
+         if (compiled == null) {
+            setExecutionTier(ExecutionTier.INTERPRETED);
+         } else {
+            PredicateFactory replaced = compiledPredicateFactory;
+            compiledPredicateFactory = createInterpretedPredicateFactoryFromClauses(compiled);
+            if (replaced instanceof IndexablePredicateFactory) {
+               // as its indexes would otherwise be kept until evicted - which, as they have been used the most, would be last
+               ((IndexablePredicateFactory) replaced).release();
+            }
+            setExecutionTier(ExecutionTier.COMPILED);
+         }
+      });
+   }
+
+   private void setExecutionTier(ExecutionTier executionTier) {
+      this.executionTier = executionTier;
+      kb.getProjogListeners().notifyInfo(predicateKey + " execution tier: " + executionTier);
+   }
+
    private PredicateFactory createInterpretedPredicateFactoryFromClauses(Clauses clauses) {
-      if (clauses.getClauseActions().length == 1) {
+      if (clauses.getClauseActions().length == 1 && !isEvaluatedByInterpretedUserDefinedPredicate(clauses.getClauseActions()[0])) {
          return createSingleClausePredicateFactory(clauses.getClauseActions()[0]);
       } else if (clauses.getClauseActions().length == 0) {
          return new NeverSucceedsPredicateFactory();
-      } else if (clauses.getImmutableColumns().length == 0) {
+      }
+
+      int[] functorIndexPositions = FunctorIndex.getCandidatePositions(clauses.getClauseActions());
+      if (clauses.getImmutableColumns().length == 0 && functorIndexPositions.length == 0) {
          return new NotIndexablePredicateFactory(clauses);
       } else {
-         return new IndexablePredicateFactory(clauses);
+         return new IndexablePredicateFactory(clauses, functorIndexPositions);
       }
    }
 
@@ -158,14 +263,23 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
       }
    }
 
+   /**
+    * Returns {@code true} if a single clause should be evaluated by an {@link InterpretedUserDefinedPredicate}, rather
+    * than by a predicate specific to single clauses, so that last call optimisation can be applied to it.
+    *
+    * @see org.projog.core.ProjogProperties#isLastCallOptimisationEnabled()
+    */
+   private boolean isEvaluatedByInterpretedUserDefinedPredicate(ClauseAction clause) {
+      return isLastCallOptimisationEnabled && clause.isRetryable();
+   }
+
    private Predicate createPredicate(Term[] args, ClauseAction[] clauses) {
-      switch (clauses.length) {
-         case 0:
-            return PredicateUtils.createFailurePredicate(spyPoint, args);
-         case 1:
-            return PredicateUtils.createSingleClausePredicate(clauses[0], spyPoint, args);
-         default:
-            return new InterpretedUserDefinedPredicate(new ActionIterator(clauses), spyPoint, args);
+      if (clauses.length == 0) {
+         return PredicateUtils.createFailurePredicate(spyPoint, args);
+      } else if (clauses.length == 1 && !isEvaluatedByInterpretedUserDefinedPredicate(clauses[0])) {
+         return PredicateUtils.createSingleClausePredicate(clauses[0], spyPoint, args);
+      } else {
+         return new InterpretedUserDefinedPredicate(new ActionIterator(clauses), spyPoint, args, isLastCallOptimisationEnabled);
       }
    }
 
@@ -175,9 +289,59 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
          throw new ProjogException("User defined predicate: " + predicateKey + " is being called with the wrong number of arguments: " + args.length + " " + Arrays.toString(args));
       }
       compile();
+      if (isCountingInvocations && ++invocationCtr >= kb.getProjogProperties().getRuntimeCompilationThreshold()) {
+         scheduleCompilation();
+      }
       return compiledPredicateFactory.getPredicate(args);
    }
 
+   /**
+    * Indicates how this predicate is currently being evaluated.
+    *
+    * @return {@link ExecutionTier#COMPILED} if this predicate has been compiled, {@link ExecutionTier#COMPILING} if it
+    * is being compiled by a background thread, else {@link ExecutionTier#INTERPRETED}
+    * @see org.projog.core.ProjogProperties#getRuntimeCompilationThreshold()
+    */
+   public ExecutionTier getExecutionTier() {
+      return executionTier;
+   }
+
+   /**
+    * Returns the number of calls counted while deciding whether to compile this predicate.
+    * <p>
+    * Calls are only counted if {@link org.projog.core.ProjogProperties#isRuntimeCompilationEnabled()}, and stop being
+    * counted once the {@link org.projog.core.ProjogProperties#getRuntimeCompilationThreshold()} is reached. As calls are
+    * counted without synchronization, the count may be lower than the actual number of calls made by multiple threads.
+    *
+    * @return the number of calls counted while deciding whether to compile this predicate
+    */
+   public int getInvocationCount() {
+      return invocationCtr;
+   }
+
+   /**
+    * Returns a predicate that only attempts the clauses whose argument, at the specified position, could be within the
+    * specified range.
+    * <p>
+    * A clause is attempted if its argument is a variable, or if its argument is greater than or equal to {@code from}
+    * and less than {@code to} using the standard order of terms. The clauses are attempted in the order they were
+    * defined. Callers are responsible for checking that the argument of each solution is within the range.
+    * <p>
+    * The index used to select the clauses is created, from the clauses created when this predicate was compiled, the
+    * first time this method is called for the position. Its memory is limited by the {@link IndexCache}.
+    *
+    * @param args the arguments of the call
+    * @param position the (zero-based) position of the argument to select clauses by
+    * @param from the inclusive lower bound of the range
+    * @param to the exclusive upper bound of the range
+    * @see RangeIndexes
+    */
+   public Predicate getPredicateInRange(Term[] args, int position, Term from, Term to) {
+      compile();
+      CachedIndex<OrderedIndex> index = orderedIndexes.computeIfAbsent(position, p -> getIndexCache().createEntry(() -> new OrderedIndex(clauseActions, p)));
+      return createPredicate(args, index.get().getMatches(from, to));
+   }
+
    @Override
    public PredicateKey getPredicateKey() {
       return predicateKey;
@@ -188,6 +352,39 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
       return compiledPredicateFactory;
    }
 
+   /**
+    * Returns statistics on how calls to this predicate have been indexed.
+    * <p>
+    * Only calls where at least one of the arguments that are immutable in every clause was immutable are included.
+    *
+    * @return statistics for each combination of immutable arguments this predicate has been called with, or an empty
+    * list if this predicate has not been indexed
+    */
+   public List<IndexStatistics> getIndexStatistics() {
+      PredicateFactory pf = compiledPredicateFactory;
+      if (pf instanceof IndexablePredicateFactory && ((IndexablePredicateFactory) pf).index != null) {
+         return ((IndexablePredicateFactory) pf).index.getStatistics();
+      } else {
+         return Collections.emptyList();
+      }
+   }
+
+   /**
+    * Returns statistics on how the Bloom filters of the arguments of this predicate have been used.
+    *
+    * @return statistics for each argument that has a Bloom filter, or an empty list if this predicate has not been
+    * indexed or Bloom filters are not enabled
+    * @see org.projog.core.ProjogProperties#isBloomFilterEnabled()
+    */
+   public List<BloomFilterStatistics> getBloomFilterStatistics() {
+      PredicateFactory pf = compiledPredicateFactory;
+      if (pf instanceof IndexablePredicateFactory && ((IndexablePredicateFactory) pf).index != null) {
+         return ((IndexablePredicateFactory) pf).index.getBloomFilterStatistics();
+      } else {
+         return Collections.emptyList();
+      }
+   }
+
    /**
     * Returns an iterator over the clauses of this user defined predicate.
     * <p>
@@ -204,6 +401,12 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
       return new ImplicationsIterator(implications);
    }
 
+   /** Returns all the clauses of the predicate, as the clauses of a static predicate are not indexed until compiled. */
+   @Override
+   public Iterator<ClauseModel> getImplications(Term[] args) {
+      return getImplications();
+   }
+
    @Override
    public boolean isDynamic() {
       return false;
@@ -232,12 +435,16 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
          compile();
       }
 
-      if (compiledPredicateFactory instanceof PreprocessablePredicateFactory) {
-         return ((PreprocessablePredicateFactory) compiledPredicateFactory).preprocess(arg);
-      } else if (compiledPredicateFactory != null) {
-         return compiledPredicateFactory;
-      } else {
+      // while compiledPredicateFactory may still be replaced by a compiled version callers need to call this object
+      boolean isReplaceable = isCountingInvocations || executionTier == ExecutionTier.COMPILING;
+      PredicateFactory pf = compiledPredicateFactory;
+      if (pf instanceof PreprocessablePredicateFactory) {
+         pf = ((PreprocessablePredicateFactory) pf).preprocess(arg);
+      }
+      if (pf == null || isReplaceable) {
          return this;
+      } else {
+         return pf;
       }
    }
 
@@ -283,16 +490,40 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
       }
    }
 
+   /**
+    * Uses {@link Indexes}, for arguments that are immutable in every clause, and {@link FunctorIndex}, for arguments that
+    * are a variable or compound term in some clauses, to select the clauses that could match a call.
+    * <p>
+    * The {@code FunctorIndex} is not created until a call is not narrowed down by {@code Indexes}, and is subject to the
+    * budget of the {@link IndexCache}.
+    */
    private final class IndexablePredicateFactory implements PreprocessablePredicateFactory {
+      private final ClauseAction[] data;
       private final Indexes index;
+      private final int[] functorIndexPositions;
+      private final CachedIndex<FunctorIndex> functorIndex;
 
-      private IndexablePredicateFactory(Clauses clauses) {
-         this.index = new Indexes(clauses);
+      private IndexablePredicateFactory(Clauses clauses, int[] functorIndexPositions) {
+         this.data = clauses.getClauseActions();
+         this.functorIndexPositions = functorIndexPositions;
+         this.index = clauses.getImmutableColumns().length == 0 ? null : new Indexes(getIndexCache(), clauses, kb.getProjogProperties().isBloomFilterEnabled());
+         this.functorIndex = functorIndexPositions.length == 0 ? null : getIndexCache().createEntry(() -> FunctorIndex.create(data, functorIndexPositions));
       }
 
       @Override
       public Predicate getPredicate(Term[] args) {
-         return createPredicate(args, index.index(args));
+         return createPredicate(args, getMatches(args));
+      }
+
+      private ClauseAction[] getMatches(Term[] args) {
+         ClauseAction[] matches = index == null ? data : index.index(args);
+         if (matches.length == data.length && functorIndex != null && isAnyInstantiated(args, functorIndexPositions)) {
+            ClauseAction[] functorMatches = functorIndex.get().getMatches(args);
+            if (functorMatches != null) {
+               return functorMatches;
+            }
+         }
+         return matches;
       }
 
       @Override
@@ -300,11 +531,21 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
          return true;
       }
 
+      /** Discards the indexes of this factory, as it has been replaced. */
+      private void release() {
+         if (index != null) {
+            index.release();
+         }
+         if (functorIndex != null) {
+            functorIndex.release();
+         }
+      }
+
       @Override
       public PredicateFactory preprocess(Term arg) {
-         ClauseAction[] data = index.index(arg.getArgs());
-         List<ClauseAction> result = optimisePredicateFactory(kb, data, arg);
-         if (result.size() < index.getClauseCount()) {
+         ClauseAction[] matches = getMatches(arg.getArgs());
+         List<ClauseAction> result = optimisePredicateFactory(kb, matches, arg);
+         if (result.size() < data.length) {
             final Clauses clauses = new Clauses(kb, result);
             return createInterpretedPredicateFactoryFromClauses(clauses);
          } else {
@@ -313,6 +554,15 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
       }
    }
 
+   private static boolean isAnyInstantiated(Term[] args, int[] positions) {
+      for (int position : positions) {
+         if (args[position].getType() != TermType.VARIABLE) {
+            return true;
+         }
+      }
+      return false;
+   }
+
    private final class NotIndexablePredicateFactory implements PreprocessablePredicateFactory {
       private final ClauseAction[] data;
 
@@ -322,7 +572,7 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
 
       @Override
       public Predicate getPredicate(Term[] args) {
-         return new InterpretedUserDefinedPredicate(new ActionIterator(data), spyPoint, args);
+         return new InterpretedUserDefinedPredicate(new ActionIterator(data), spyPoint, args, isLastCallOptimisationEnabled);
       }
 
       @Override
@@ -345,12 +595,14 @@ public class StaticUserDefinedPredicateFactory implements UserDefinedPredicateFa
    private static List<ClauseAction> optimisePredicateFactory(KnowledgeBase kb, ClauseAction[] data, Term arg) {
       List<ClauseAction> result = new ArrayList<>();
       Term[] queryArgs = TermUtils.copy(arg.getArgs());
+      Trail trail = Trail.getCurrent();
       for (ClauseAction action : data) {
+         int mark = trail.mark();
          Term[] clauseArgs = TermUtils.copy(action.getModel().getConsequent().getArgs());
          if (TermUtils.unify(queryArgs, clauseArgs)) {
             result.add(action);
          }
-         TermUtils.backtrack(queryArgs);
+         trail.undo(mark);
       }
       if (result.isEmpty()) {
          kb.getProjogListeners().notifyWarn(arg + " will never succeed");
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import java.util.Arrays;
+
+import org.projog.core.term.Term;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * An {@link Index} of arguments that can be of any type.
+ * <p>
+ * Implemented as an open addressing hash table that stores the key terms of each entry in place, so that looking up
+ * the clauses for a call can hash and compare the arguments of the call directly - rather than first creating a key
+ * object to look up in a {@code java.util.Map}.
+ */
+final class TermIndex extends Index {
+   private static final int MIN_CAPACITY = 4;
+
+   private final int[] positions;
+   private final int numPositions;
+   /** The key of the entry at slot {@code i} is stored at {@code keys[i * numPositions]} onwards. */
+   private final Term[] keys;
+   private final int[] hashes;
+   private final ClauseAction[][] values;
+   private final int mask;
+
+   /** @see Index#create(int[], ClauseAction[]) */
+   TermIndex(int[] positions, ClauseAction[] clauses) {
+      this.positions = positions;
+      this.numPositions = positions.length;
+
+      Builder builder = new Builder(clauses.length);
+      for (ClauseAction clause : clauses) {
+         builder.add(clause);
+      }
+      this.keys = builder.keys;
+      this.hashes = builder.hashes;
+      this.mask = builder.hashes.length - 1;
+      this.values = builder.values;
+      for (int i = 0; i < values.length; i++) {
+         if (values[i] != null && values[i].length != builder.counts[i]) {
+            values[i] = Arrays.copyOf(values[i], builder.counts[i]);
+         }
+      }
+   }
+
+   @Override
+   ClauseAction[] getMatches(Term[] args) {
+      int hash = hash(args);
+      for (int i = hash & mask;; i = (i + 1) & mask) {
+         ClauseAction[] value = values[i];
+         if (value == null) {
+            return NO_MATCHES;
+         }
+         if (hashes[i] == hash && isKey(keys, i, args)) {
+            return value;
+         }
+      }
+   }
+
+   @Override
+   public long getEstimatedSize() {
+      return getEstimatedArraySize(keys.length, REFERENCE_SIZE) + getEstimatedArraySize(hashes.length, Integer.BYTES) + getEstimatedSize(values);
+   }
+
+   private int hash(Term[] args) {
+      int h = args[positions[0]].hashCode();
+      for (int i = 1; i < numPositions; i++) {
+         h = 31 * h + args[positions[i]].hashCode();
+      }
+      // spread the bits, as the hash codes of consecutive integers are consecutive
+      h *= 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+   private boolean isKey(Term[] keys, int slot, Term[] args) {
+      int offset = slot * numPositions;
+      for (int i = 0; i < numPositions; i++) {
+         if (!keys[offset + i].equals(args[positions[i]])) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /** Groups clauses by key, growing as required. */
+   private final class Builder {
+      Term[] keys;
+      int[] hashes;
+      /** The clauses of each slot, which may have unused elements after the first {@link #counts} of the slot. */
+      ClauseAction[][] values;
+      int[] counts;
+      int size;
+
+      Builder(int expectedSize) {
+         allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize / 4)) * 2));
+      }
+
+      private void allocate(int capacity) {
+         keys = new Term[capacity * numPositions];
+         hashes = new int[capacity];
+         values = new ClauseAction[capacity][];
+         counts = new int[capacity];
+      }
+
+      void add(ClauseAction clause) {
+         Term[] args = clause.getModel().getConsequent().getArgs();
+         int hash = hash(args);
+         int mask = hashes.length - 1;
+         int i = hash & mask;
+         while (values[i] != null) {
+            if (hashes[i] == hash && isKey(keys, i, args)) {
+               if (counts[i] == values[i].length) {
+                  values[i] = Arrays.copyOf(values[i], counts[i] * 2);
+               }
+               values[i][counts[i]++] = clause;
+               return;
+            }
+            i = (i + 1) & mask;
+         }
+
+         insert(i, hash, args, clause);
+         if (++size * 2 > hashes.length) {
+            resize();
+         }
+      }
+
+      private void insert(int slot, int hash, Term[] args, ClauseAction clause) {
+         hashes[slot] = hash;
+         values[slot] = new ClauseAction[] {clause};
+         counts[slot] = 1;
+         for (int p = 0; p < numPositions; p++) {
+            keys[slot * numPositions + p] = args[positions[p]];
+         }
+      }
+
+      private void resize() {
+         Term[] oldKeys = keys;
+         int[] oldHashes = hashes;
+         ClauseAction[][] oldValues = values;
+         int[] oldCounts = counts;
+         allocate(oldHashes.length * 2);
+         int mask = hashes.length - 1;
+         for (int j = 0; j < oldHashes.length; j++) {
+            if (oldValues[j] != null) {
+               int i = oldHashes[j] & mask;
+               while (values[i] != null) {
+                  i = (i + 1) & mask;
+               }
+               hashes[i] = oldHashes[j];
+               values[i] = oldValues[j];
+               counts[i] = oldCounts[j];
+               System.arraycopy(oldKeys, j * numPositions, keys, i * numPositions, numPositions);
+            }
+         }
+      }
+   }
+}
@@ -19,6 +19,7 @@ import java.util.Iterator;
 
 import org.projog.core.PredicateFactory;
 import org.projog.core.PredicateKey;
+import org.projog.core.term.Term;
 
 /**
  * Maintains a record of the clauses that define a user defined predicate.
@@ -54,6 +55,19 @@ public interface UserDefinedPredicateFactory extends PredicateFactory {
     */
    Iterator<ClauseModel> getImplications();
 
+   /**
+    * Returns an iterator over the clauses in the predicate, in proper sequence, that could match the specified
+    * arguments.
+    * <p>
+    * Allows the clauses to be selected using an index. The clauses returned are a superset of the clauses whose
+    * consequent can be unified with the arguments - callers still need to attempt the unification.
+    *
+    * @param args the arguments of the consequent of the clauses to return
+    * @return an iterator over the clauses in the predicate, in proper sequence, that could match {@code args}
+    * @see #getImplications()
+    */
+   Iterator<ClauseModel> getImplications(Term[] args);
+
    /**
     * Returns {@code true} is this predicate is dynamic.
     * <p>
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.compiler;
+
+import org.projog.core.udp.ClauseModel;
+import org.projog.core.udp.interpreter.ClauseAction;
+
+/**
+ * Superclass of the classes generated to represent a clause of a user defined predicate.
+ * <p>
+ * Each subclass is generated by {@link CompiledPredicateSourceGenerator} for a specific clause. Rather than
+ * interpreting the templates of the clause, the generated
+ * {@link #getPredicate(org.projog.core.term.Term[], org.projog.core.term.Trail)} unifies the arguments of a call with
+ * the head of the clause, and evaluates the goals of its body, using code specific to the clause.
+ * <p>
+ * Needs to be {@code public} so that it can be extended by classes loaded by a {@link CompiledPredicateClassLoader}.
+ */
+public abstract class CompiledClause implements ClauseAction {
+   private final ClauseModel model;
+   private final boolean isRetryable;
+
+   protected CompiledClause(ClauseModel model, boolean isRetryable) {
+      this.model = model;
+      this.isRetryable = isRetryable;
+   }
+
+   @Override
+   public final ClauseModel getModel() {
+      return model;
+   }
+
+   @Override
+   public final boolean isRetryable() {
+      return isRetryable;
+   }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads the classes generated by a {@link PredicateCompiler}.
+ * <p>
+ * Each {@link org.projog.core.KnowledgeBase} has its own class loader, so that the classes generated for it can be
+ * garbage collected once the knowledge base is no longer used.
+ */
+final class CompiledPredicateClassLoader extends ClassLoader {
+   /** The bytecode of classes that have been compiled but not yet loaded, keyed by class name. */
+   private final Map<String, byte[]> classes = new HashMap<>();
+
+   CompiledPredicateClassLoader(ClassLoader parent) {
+      super(parent);
+   }
+
+   synchronized void addClasses(Map<String, byte[]> compiledClasses) {
+      classes.putAll(compiledClasses);
+   }
+
+   @Override
+   protected synchronized Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytecode = classes.remove(name);
+      if (bytecode == null) {
+         throw new ClassNotFoundException(name);
+      }
+      return defineClass(name, bytecode, 0, bytecode.length);
+   }
+}
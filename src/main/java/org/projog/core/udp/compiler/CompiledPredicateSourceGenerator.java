@@ -0,0 +1,661 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.compiler;
+
+import static org.projog.core.KnowledgeBaseUtils.isConjunction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.projog.core.KnowledgeBase;
+import org.projog.core.PredicateFactory;
+import org.projog.core.PredicateKey;
+import org.projog.core.term.SymbolTable;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.term.Variable;
+import org.projog.core.udp.ClauseModel;
+
+/**
+ * Generates the Java source code of classes that represent the clauses of a user defined predicate.
+ * <p>
+ * A single top level class is generated for a predicate. For each clause it contains a subclass of
+ * {@link CompiledClause} which:
+ * <ul>
+ * <li>unifies the arguments of a call with the head of the clause using code specific to the structure of each
+ * argument - rather than interpreting a {@link org.projog.core.term.TermTemplate};</li>
+ * <li>keeps the variables of the clause in local variables and fields - rather than in an array used as a frame;</li>
+ * <li>for a body that consists of more than one goal, evaluates the goals using a generated state machine that
+ * calls the {@code PredicateFactory} of each goal directly, and handles a cut without creating a {@code Predicate} for
+ * it.</li>
+ * </ul>
+ * The behaviour of the generated code mirrors the behaviour of the interpreter (see
+ * {@link org.projog.core.udp.interpreter.ClauseActionFactory}) so that a predicate has the same results, and leaves the
+ * same choicepoints, whether or not it has been compiled.
+ * <p>
+ * The terms, predicate factories and names used by a clause are not written to the source code. They are passed to
+ * the constructor of the generated class as a "context" array - see {@link #getContext(int)}.
+ */
+final class CompiledPredicateSourceGenerator {
+   static final String PACKAGE_NAME = "org.projog.core.udp.compiler.generated";
+   private static final String FAIL = "return PredicateUtils.FALSE;";
+
+   private final KnowledgeBase kb;
+   private final String simpleClassName;
+   private final StringBuilder source = new StringBuilder();
+   private final Map<Integer, Object[]> contexts = new LinkedHashMap<>();
+
+   CompiledPredicateSourceGenerator(KnowledgeBase kb, String simpleClassName) {
+      this.kb = kb;
+      this.simpleClassName = simpleClassName;
+   }
+
+   /** Returns the fully qualified name of the top level class. */
+   String getClassName() {
+      return PACKAGE_NAME + "." + simpleClassName;
+   }
+
+   /** Returns the fully qualified name of the class generated for the clause at the specified position. */
+   String getClauseClassName(int index) {
+      return getClassName() + "$C" + index;
+   }
+
+   /** Returns the number of clauses that have been added. */
+   int getClauseCount() {
+      return contexts.size();
+   }
+
+   /**
+    * Returns the argument to pass to the constructor of the class generated for the clause at the specified position.
+    */
+   Object[] getContext(int index) {
+      return contexts.get(index);
+   }
+
+   /**
+    * Generates the source code of a class to represent the specified clause.
+    * <p>
+    * Clauses that the interpreter already evaluates without unifying or copying any terms (e.g. a fact whose arguments
+    * are all distinct variables), or that contain a variable as a goal, are not compiled.
+    *
+    * @param index the position of the clause in the predicate
+    * @param model the clause to compile
+    * @return {@code true} if the clause was compiled, {@code false} if it should continue to be interpreted
+    */
+   boolean addClause(int index, ClauseModel model) {
+      if (!isCompilable(model)) {
+         return false;
+      }
+      ClauseGenerator generator = new ClauseGenerator(index, model);
+      source.append(generator.generate());
+      contexts.put(index, generator.context.toArray());
+      return true;
+   }
+
+   /** Returns the source code of the top level class, containing the classes of all the clauses that were added. */
+   String getSource() {
+      return "package " + PACKAGE_NAME + ";\n\n" //
+             + "import org.projog.core.Predicate;\n" //
+             + "import org.projog.core.PredicateFactory;\n" //
+             + "import org.projog.core.term.ListFactory;\n" //
+             + "import org.projog.core.term.Structure;\n" //
+             + "import org.projog.core.term.Term;\n" //
+             + "import org.projog.core.term.TermType;\n" //
+             + "import org.projog.core.term.TermUtils;\n" //
+             + "import org.projog.core.term.Trail;\n" //
+             + "import org.projog.core.term.Variable;\n" //
+             + "import org.projog.core.udp.ClauseModel;\n" //
+             + "import org.projog.core.udp.PredicateUtils;\n" //
+             + "import org.projog.core.udp.compiler.CompiledClause;\n\n" //
+             + "public final class " + simpleClassName + " {\n" //
+             + "   private " + simpleClassName + "() {\n" //
+             + "   }\n" //
+             + source //
+             + "}\n";
+   }
+
+   private static boolean isCompilable(ClauseModel model) {
+      Term consequent = model.getConsequent();
+      Term antecedent = model.getAntecedent();
+      if (consequent.getNumberOfArguments() == 0 || antecedent.getType().isVariable()) {
+         return false;
+      }
+      for (Term goal : getGoals(antecedent)) {
+         if (goal.getType().isVariable()) {
+            return false;
+         }
+      }
+      return !model.isFact() || !isDistinctVariables(consequent.getArgs());
+   }
+
+   private static boolean isDistinctVariables(Term[] args) {
+      Map<Term, Boolean> variables = new IdentityHashMap<>();
+      for (Term arg : args) {
+         if (arg.getType() != TermType.VARIABLE || variables.put(arg.getTerm(), Boolean.TRUE) != null) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /** Returns the goals of the specified body, with nested conjunctions flattened. */
+   private static List<Term> getGoals(Term antecedent) {
+      List<Term> goals = new ArrayList<>();
+      addGoals(antecedent, goals);
+      return goals;
+   }
+
+   private static void addGoals(Term t, List<Term> goals) {
+      if (isConjunction(t)) {
+         addGoals(t.getArgument(0), goals);
+         addGoals(t.getArgument(1), goals);
+      } else {
+         goals.add(t);
+      }
+   }
+
+   private static boolean isCut(Term goal) {
+      return goal.getType() == TermType.ATOM && "!".equals(goal.getName());
+   }
+
+   private static boolean containsCut(Term t) {
+      if (isCut(t)) {
+         return true;
+      }
+      if (t.getType() == TermType.STRUCTURE) {
+         for (int i = 0; i < t.getNumberOfArguments(); i++) {
+            if (containsCut(t.getArgument(i))) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   /** Generates the classes for a single clause. */
+   private final class ClauseGenerator {
+      private final int index;
+      private final ClauseModel model;
+      /** The objects passed to the constructor of the generated class. The first element is {@link #isRetryable}. */
+      private final List<Object> context = new ArrayList<>();
+      private final Map<Object, String> fieldNames = new IdentityHashMap<>();
+      private final StringBuilder fields = new StringBuilder();
+      private final StringBuilder assignments = new StringBuilder();
+      /** Variables that occur more than once in the clause, mapped to the number used to name them. */
+      private final Map<Variable, Integer> slots = new HashMap<>();
+      /** Indicates which {@link #slots} have been assigned a value by the code generated so far. */
+      private boolean[] assigned;
+      /** Prefix used to refer to the fields of the clause class - differs when generating code of the body class. */
+      private String fieldPrefix = "";
+      private StringBuilder code;
+      private int indent;
+      private int localCtr;
+      private boolean isRetryable;
+
+      ClauseGenerator(int index, ClauseModel model) {
+         this.index = index;
+         this.model = model;
+         context.add(null);
+         // mirror TermTemplateFactory, which only assigns slots to variables that occur more than once
+         Map<Variable, Integer> occurrences = new LinkedHashMap<>();
+         countOccurrences(model.getConsequent(), occurrences);
+         countOccurrences(model.getAntecedent(), occurrences);
+         for (Map.Entry<Variable, Integer> e : occurrences.entrySet()) {
+            if (e.getValue() > 1) {
+               slots.put(e.getKey(), slots.size());
+            }
+         }
+         assigned = new boolean[slots.size()];
+      }
+
+      private void countOccurrences(Term t, Map<Variable, Integer> occurrences) {
+         while (!t.isImmutable()) {
+            switch (t.getType()) {
+               case VARIABLE:
+                  occurrences.merge((Variable) t.getTerm(), 1, Integer::sum);
+                  return;
+               case STRUCTURE:
+                  for (Term arg : t.getArgs()) {
+                     countOccurrences(arg, occurrences);
+                  }
+                  return;
+               case LIST:
+                  countOccurrences(t.getArgument(0), occurrences);
+                  t = t.getArgument(1);
+                  break;
+               default:
+                  return;
+            }
+         }
+      }
+
+      String generate() {
+         String clauseClass = "C" + index;
+         String bodyClass = "B" + index;
+         List<Term> goals = model.isFact() ? new ArrayList<Term>() : getGoals(model.getAntecedent());
+
+         code = new StringBuilder();
+         indent = 2;
+         line("@Override");
+         line("public Predicate getPredicate(Term[] input, Trail trail) {");
+         indent++;
+         for (int i = 0; i < slots.size(); i++) {
+            line("Term v" + i + " = null;");
+         }
+         Term[] consequentArgs = model.getConsequent().getArgs();
+         for (int i = 0; i < consequentArgs.length; i++) {
+            unify(consequentArgs[i], "input[" + i + "]");
+         }
+         String bodyCode = null;
+         if (goals.isEmpty()) {
+            line("return PredicateUtils.TRUE;");
+         } else if (goals.size() == 1) {
+            PredicateFactory pf = getPredicateFactory(goals.get(0));
+            isRetryable = pf.isRetryable();
+            Term antecedent = goals.get(0);
+            String args = antecedent.isImmutable() ? field(antecedent.getArgs(), "Term[]") : instantiateArgs(antecedent);
+            line("return " + field(pf, "PredicateFactory") + ".getPredicate(" + args + ");");
+         } else {
+            // create the variables of the clause now, before the goals of the body create any choicepoints
+            StringBuilder arguments = new StringBuilder("this");
+            for (int i = 0; i < slots.size(); i++) {
+               if (!assigned[i]) {
+                  line("v" + i + " = new Variable(" + field(getVariable(i).getId(), "String") + ", trail);");
+                  assigned[i] = true;
+               }
+               arguments.append(", v").append(i);
+            }
+            line("return new " + bodyClass + "(" + arguments + ");");
+            StringBuilder headCode = code;
+            bodyCode = generateBody(bodyClass, clauseClass, goals);
+            code = headCode;
+            indent = 3;
+         }
+         indent--;
+         line("}");
+         context.set(0, isRetryable);
+
+         StringBuilder result = new StringBuilder();
+         result.append("\n   public static final class ").append(clauseClass).append(" extends CompiledClause {\n");
+         result.append(fields);
+         result.append("\n      public ").append(clauseClass).append("(ClauseModel model, Object[] context) {\n");
+         result.append("         super(model, (Boolean) context[0]);\n");
+         result.append(assignments);
+         result.append("      }\n\n");
+         result.append(code);
+         result.append("   }\n");
+         if (bodyCode != null) {
+            result.append(bodyCode);
+         }
+         return result.toString();
+      }
+
+      private String generateBody(String bodyClass, String clauseClass, List<Term> goals) {
+         fieldPrefix = "c.";
+         code = new StringBuilder();
+         int last = goals.size() - 1;
+
+         indent = 1;
+         line("");
+         line("static final class " + bodyClass + " implements Predicate {");
+         indent++;
+         line("private final " + clauseClass + " c;");
+         for (int i = 0; i < slots.size(); i++) {
+            line("private final Term v" + i + ";");
+         }
+         for (int k = 0; k <= last; k++) {
+            isRetryable |= getPredicateFactory(goals.get(k)).isRetryable();
+            if (isCut(goals.get(k))) {
+               line("private boolean cut" + k + ";");
+            } else {
+               line("private Predicate g" + k + ";");
+               line("private int m" + k + ";");
+            }
+         }
+         line("private Trail trail;");
+         line("");
+         StringBuilder parameters = new StringBuilder(clauseClass + " c");
+         for (int i = 0; i < slots.size(); i++) {
+            parameters.append(", Term v").append(i);
+         }
+         line(bodyClass + "(" + parameters + ") {");
+         indent++;
+         line("this.c = c;");
+         for (int i = 0; i < slots.size(); i++) {
+            line("this.v" + i + " = v" + i + ";");
+         }
+         indent--;
+         line("}");
+         line("");
+
+         line("@Override");
+         line("public boolean evaluate() {");
+         indent++;
+         line("int idx;");
+         line("if (trail == null) {");
+         line("   trail = Trail.getCurrent();");
+         line("   idx = 0;");
+         line("} else {");
+         line("   idx = " + last + ";");
+         line("}");
+         line("while (true) {");
+         indent++;
+         line("switch (idx) {");
+         indent++;
+         for (int k = 0; k <= last; k++) {
+            Term goal = goals.get(k);
+            line("case " + k + ": {");
+            indent++;
+            if (isCut(goal)) {
+               line("if (!cut" + k + ") {");
+               indent++;
+               line("cut" + k + " = true;");
+               forward(k, last);
+               indent--;
+               line("}");
+               line("trail.getCutBarrier().cut();");
+               line("return false;");
+            } else {
+               String args = instantiateArgs(goal);
+               line("boolean success;");
+               line("if (g" + k + " == null) {");
+               indent++;
+               line("m" + k + " = trail.mark();");
+               line("g" + k + " = " + field(getPredicateFactory(goal), "PredicateFactory") + ".getPredicate(" + args + ");");
+               line("success = g" + k + ".evaluate();");
+               indent--;
+               line("} else {");
+               line("   success = g" + k + ".couldReevaluationSucceed() && g" + k + ".evaluate();");
+               line("}");
+               line("if (success) {");
+               indent++;
+               forward(k, last);
+               indent--;
+               line("}");
+               line("g" + k + " = null;");
+               line("trail.undo(m" + k + ");");
+               if (k == 0) {
+                  line("return false;");
+               } else {
+                  if (containsCut(goal)) {
+                     // e.g. a disjunction that backtracked to a cut in one of its alternatives
+                     line("if (trail.getCutBarrier().isCut()) return false;");
+                  }
+                  line("idx = " + (k - 1) + ";");
+                  line("break;");
+               }
+            }
+            indent--;
+            line("}");
+         }
+         line("default:");
+         line("   throw new IllegalStateException();");
+         indent--;
+         line("}");
+         indent--;
+         line("}");
+         indent--;
+         line("}");
+         line("");
+
+         line("@Override");
+         line("public boolean couldReevaluationSucceed() {");
+         indent++;
+         line("if (trail == null) {");
+         line("   return true;");
+         line("}");
+         StringBuilder condition = new StringBuilder();
+         for (int k = 0; k <= last; k++) {
+            if (k > 0) {
+               condition.append(" || ");
+            }
+            if (isCut(goals.get(k))) {
+               condition.append("cut").append(k);
+            } else {
+               condition.append("(g").append(k).append(" != null && g").append(k).append(".couldReevaluationSucceed())");
+            }
+         }
+         line("return " + condition + ";");
+         indent--;
+         line("}");
+         indent--;
+         line("}");
+         return code.toString();
+      }
+
+      private void forward(int k, int last) {
+         if (k == last) {
+            line("return true;");
+         } else {
+            line("idx = " + (k + 1) + ";");
+            line("break;");
+         }
+      }
+
+      /**
+       * Returns the factory to use to evaluate the specified goal.
+       * <p>
+       * A recursive call is not preprocessed, so that the generated code calls the predicate's current implementation
+       * - which will be the compiled version - rather than the interpreted version created while compiling it.
+       */
+      private PredicateFactory getPredicateFactory(Term goal) {
+         PredicateKey key = PredicateKey.createForTerm(goal);
+         if (key.equals(PredicateKey.createForTerm(model.getConsequent()))) {
+            return kb.getPredicates().getPredicateFactory(key);
+         } else {
+            return kb.getPredicates().getPreprocessedPredicateFactory(goal);
+         }
+      }
+
+      /** Generates code to unify the term represented by the Java expression {@code input} with {@code t}. */
+      private void unify(Term t, String input) {
+         if (t.isImmutable()) {
+            line("if (!TermUtils.unify(" + input + ", " + constant(t) + ", trail)) " + FAIL);
+            return;
+         }
+         switch (t.getType()) {
+            case VARIABLE:
+               unifyVariable((Variable) t.getTerm(), input);
+               break;
+            case STRUCTURE:
+               unifyStructure(t, input);
+               break;
+            case LIST:
+               List<Term> heads = new ArrayList<>();
+               Term tail = t;
+               do {
+                  heads.add(tail.getArgument(0));
+                  tail = tail.getArgument(1);
+               } while (tail.getType() == TermType.LIST && !tail.isImmutable());
+               String local = local();
+               line("Term " + local + " = " + input + ";");
+               unifyList(heads, 0, tail, local);
+               break;
+            default:
+               line("if (!TermUtils.unify(" + input + ", " + constant(t.getTerm()) + ", trail)) " + FAIL);
+         }
+      }
+
+      private void unifyVariable(Variable v, String input) {
+         Integer slot = slots.get(v);
+         if (slot == null) {
+            // an uninstantiated variable of a query becomes an alias of the variable of the clause
+            String local = local();
+            line("Term " + local + " = " + input + ";");
+            line("if (" + local + ".getType().isVariable() && !TermUtils.unify(" + local + ", new Variable(" + field(v.getId(), "String") + ", trail), trail)) " + FAIL);
+         } else if (assigned[slot]) {
+            line("if (!TermUtils.unify(" + input + ", v" + slot + ", trail)) " + FAIL);
+         } else {
+            // first occurrence so, unless it is a variable, can use the input term to represent it
+            String local = local();
+            line("Term " + local + " = " + input + ";");
+            line("if (" + local + ".getType().isVariable()) {");
+            line("   v" + slot + " = new Variable(" + field(v.getId(), "String") + ", trail);");
+            line("   if (!TermUtils.unify(" + local + ", v" + slot + ", trail)) " + FAIL);
+            line("} else {");
+            line("   v" + slot + " = " + local + ";");
+            line("}");
+            assigned[slot] = true;
+         }
+      }
+
+      private void unifyStructure(Term t, String input) {
+         String local = local();
+         String type = local();
+         line("Term " + local + " = " + input + ";");
+         line("TermType " + type + " = " + local + ".getType();");
+         line("if (" + type + " == TermType.STRUCTURE) {");
+         indent++;
+         // names are interned so can compare by identity
+         line("if (" + local + ".getName() != " + field(SymbolTable.intern(t.getName()), "String") + " || " + local + ".getNumberOfArguments() != " + t.getNumberOfArguments() + ") " + FAIL);
+         boolean[] before = assigned.clone();
+         for (int i = 0; i < t.getNumberOfArguments(); i++) {
+            unify(t.getArgument(i), local + ".getArgument(" + i + ")");
+         }
+         assigned = before;
+         indent--;
+         line("} else if (" + type + ".isVariable()) {");
+         line("   if (!TermUtils.unify(" + local + ", " + instantiate(t) + ", trail)) " + FAIL);
+         line("} else {");
+         line("   " + FAIL);
+         line("}");
+      }
+
+      private void unifyList(List<Term> heads, int from, Term tail, String input) {
+         if (from == heads.size()) {
+            unify(tail, input);
+            return;
+         }
+         String type = local();
+         line("TermType " + type + " = " + input + ".getType();");
+         line("if (" + type + " == TermType.LIST) {");
+         indent++;
+         boolean[] before = assigned.clone();
+         unify(heads.get(from), input + ".getArgument(0)");
+         String next = local();
+         line("Term " + next + " = " + input + ".getArgument(1);");
+         unifyList(heads, from + 1, tail, next);
+         assigned = before;
+         indent--;
+         line("} else if (" + type + ".isVariable()) {");
+         line("   if (!TermUtils.unify(" + input + ", " + instantiateList(heads, from, tail) + ", trail)) " + FAIL);
+         line("} else {");
+         line("   " + FAIL);
+         line("}");
+      }
+
+      private String instantiateArgs(Term goal) {
+         if (goal.getNumberOfArguments() == 0) {
+            return "TermUtils.EMPTY_ARRAY";
+         }
+         StringBuilder result = new StringBuilder("new Term[] {");
+         for (int i = 0; i < goal.getNumberOfArguments(); i++) {
+            if (i > 0) {
+               result.append(", ");
+            }
+            result.append(instantiate(goal.getArgument(i)));
+         }
+         return result.append("}").toString();
+      }
+
+      /** Returns a Java expression that creates a copy of the specified term. */
+      private String instantiate(Term t) {
+         if (t.isImmutable()) {
+            return constant(t);
+         }
+         switch (t.getType()) {
+            case VARIABLE:
+               Variable v = (Variable) t.getTerm();
+               Integer slot = slots.get(v);
+               if (slot == null) {
+                  return "new Variable(" + field(v.getId(), "String") + ", trail)";
+               } else if (assigned[slot]) {
+                  return "v" + slot + ".getTerm()";
+               } else {
+                  assigned[slot] = true;
+                  return "(v" + slot + " = new Variable(" + field(v.getId(), "String") + ", trail))";
+               }
+            case STRUCTURE:
+               return "Structure.createStructure(" + field(SymbolTable.intern(t.getName()), "String") + ", " + instantiateArgs(t) + ")";
+            case LIST:
+               List<Term> heads = new ArrayList<>();
+               Term tail = t;
+               do {
+                  heads.add(tail.getArgument(0));
+                  tail = tail.getArgument(1);
+               } while (tail.getType() == TermType.LIST && !tail.isImmutable());
+               return instantiateList(heads, 0, tail);
+            default:
+               return constant(t.getTerm());
+         }
+      }
+
+      private String instantiateList(List<Term> heads, int from, Term tail) {
+         StringBuilder result = new StringBuilder("ListFactory.createList(new Term[] {");
+         for (int i = from; i < heads.size(); i++) {
+            if (i > from) {
+               result.append(", ");
+            }
+            result.append(instantiate(heads.get(i)));
+         }
+         return result.append("}, ").append(instantiate(tail)).append(")").toString();
+      }
+
+      private Variable getVariable(int slot) {
+         for (Map.Entry<Variable, Integer> e : slots.entrySet()) {
+            if (e.getValue() == slot) {
+               return e.getKey();
+            }
+         }
+         throw new IllegalArgumentException("Unknown slot: " + slot);
+      }
+
+      private String constant(Term t) {
+         return field(t, "Term");
+      }
+
+      /** Returns the name of a field of the generated clause class that will refer to the specified object. */
+      private String field(Object o, String type) {
+         String name = fieldNames.get(o);
+         if (name == null) {
+            name = "k" + context.size();
+            fieldNames.put(o, name);
+            fields.append("      final ").append(type).append(' ').append(name).append(";\n");
+            assignments.append("         ").append(name).append(" = (").append(type).append(") context[").append(context.size()).append("];\n");
+            context.add(o);
+         }
+         return fieldPrefix + name;
+      }
+
+      private String local() {
+         return "t" + (localCtr++);
+      }
+
+      private void line(String s) {
+         if (!s.isEmpty()) {
+            for (int i = 0; i < indent; i++) {
+               code.append("   ");
+            }
+            code.append(s);
+         }
+         code.append('\n');
+      }
+   }
+}
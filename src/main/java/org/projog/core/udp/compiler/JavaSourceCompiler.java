@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.projog.core.ProjogException;
+
+/**
+ * Compiles Java source code in memory.
+ * <p>
+ * Uses the compiler provided by {@link ToolProvider#getSystemJavaCompiler()} - so is only available when running on a
+ * JDK, rather than a JRE. Neither the source code nor the resulting bytecode are written to the file system.
+ */
+final class JavaSourceCompiler {
+   private final JavaCompiler compiler;
+   private final List<String> options;
+
+   JavaSourceCompiler() {
+      this.compiler = ToolProvider.getSystemJavaCompiler();
+      this.options = Arrays.asList("-classpath", getClassPath(), "-proc:none", "-g:source,lines");
+   }
+
+   /**
+    * Returns the class path of the running application, including the location of the classes of this project.
+    * <p>
+    * The location of the classes of this project is included explicitly as it may not be included in the
+    * {@code java.class.path} system property - e.g. when loaded by a custom class loader.
+    */
+   private static String getClassPath() {
+      String classPath = System.getProperty("java.class.path", "");
+      try {
+         URI location = CompiledClause.class.getProtectionDomain().getCodeSource().getLocation().toURI();
+         return Paths.get(location).toString() + File.pathSeparator + classPath;
+      } catch (Exception e) {
+         return classPath;
+      }
+   }
+
+   /** Returns {@code true} if a Java compiler is available. */
+   boolean isAvailable() {
+      return compiler != null;
+   }
+
+   /**
+    * Compiles the specified source code.
+    *
+    * @param className the fully qualified name of the top level class defined by {@code source}
+    * @param source the Java source code to compile
+    * @return the bytecode of the top level class, and any classes nested in it, keyed by fully qualified class name
+    * @throws ProjogException if the source code could not be compiled
+    */
+   Map<String, byte[]> compile(String className, String source) {
+      DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+      List<JavaFileObject> compilationUnits = Collections.singletonList(new SourceFile(className, source));
+      try (InMemoryFileManager fileManager = new InMemoryFileManager(compiler.getStandardFileManager(diagnostics, null, null))) {
+         if (!compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits).call()) {
+            StringBuilder message = new StringBuilder("Could not compile: ").append(className);
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+               message.append(System.lineSeparator()).append(d);
+            }
+            throw new ProjogException(message.toString());
+         }
+         return fileManager.getClasses();
+      } catch (IOException e) {
+         throw new ProjogException("Could not compile: " + className, e);
+      }
+   }
+
+   private static URI createUri(String className, Kind kind) {
+      return URI.create("string:///" + className.replace('.', '/') + kind.extension);
+   }
+
+   private static final class SourceFile extends SimpleJavaFileObject {
+      private final String source;
+
+      SourceFile(String className, String source) {
+         super(createUri(className, Kind.SOURCE), Kind.SOURCE);
+         this.source = source;
+      }
+
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+         return source;
+      }
+   }
+
+   private static final class ClassFile extends SimpleJavaFileObject {
+      private final ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+
+      ClassFile(String className) {
+         super(createUri(className, Kind.CLASS), Kind.CLASS);
+      }
+
+      @Override
+      public OutputStream openOutputStream() {
+         return bytecode;
+      }
+   }
+
+   /** Records the classes output by the compiler in memory, rather than writing them to the file system. */
+   private static final class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+      private final Map<String, ClassFile> classFiles = new HashMap<>();
+
+      InMemoryFileManager(StandardJavaFileManager fileManager) {
+         super(fileManager);
+      }
+
+      @Override
+      public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String className, Kind kind, FileObject sibling) {
+         ClassFile classFile = new ClassFile(className);
+         classFiles.put(className, classFile);
+         return classFile;
+      }
+
+      Map<String, byte[]> getClasses() {
+         Map<String, byte[]> result = new HashMap<>();
+         for (Map.Entry<String, ClassFile> e : classFiles.entrySet()) {
+            result.put(e.getKey(), e.getValue().bytecode.toByteArray());
+         }
+         return result;
+      }
+   }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.compiler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.projog.core.KnowledgeBase;
+import org.projog.core.PredicateKey;
+import org.projog.core.ProjogException;
+import org.projog.core.udp.ClauseModel;
+import org.projog.core.udp.interpreter.ClauseAction;
+import org.projog.core.udp.interpreter.Clauses;
+
+/**
+ * Compiles the clauses of static user defined predicates into Java classes at runtime.
+ * <p>
+ * Each clause that can be compiled is replaced with an instance of a generated subclass of {@link CompiledClause}.
+ * The compiled clauses are used in exactly the same way as the interpreted clauses they replace - so the selection of
+ * clauses (using indexes), the handling of cuts, spy points and the reporting of whether a call could succeed again
+ * are unaffected.
+ * <p>
+ * If the clauses cannot be compiled - e.g. because no Java compiler is available at runtime - then the interpreted
+ * clauses are used.
+ * <p>
+ * One instance of this class is shared by all the predicates of a {@link KnowledgeBase}. The generated classes are
+ * loaded by a class loader specific to the {@code KnowledgeBase} so they can be garbage collected along with it.
+ * Predicates can be compiled by the calling thread, using {@link #compile(PredicateKey, Clauses)}, or by a background
+ * thread, using {@link #compileInBackground(PredicateKey, Supplier, Consumer)}. The background thread is only kept
+ * alive while there are predicates waiting to be compiled.
+ *
+ * @see org.projog.core.ProjogProperties#isRuntimeCompilationEnabled()
+ */
+public final class PredicateCompiler {
+   /** Predicates with more clauses than this are not compiled, to limit the time spent compiling large tables. */
+   private static final int MAX_CLAUSES = 100;
+
+   private final KnowledgeBase kb;
+   private final JavaSourceCompiler compiler = new JavaSourceCompiler();
+   private final CompiledPredicateClassLoader classLoader = new CompiledPredicateClassLoader(PredicateCompiler.class.getClassLoader());
+   private boolean isUnavailableWarningReported;
+   private int classCtr;
+   private ExecutorService executor;
+
+   public PredicateCompiler(KnowledgeBase kb) {
+      this.kb = kb;
+   }
+
+   /**
+    * Returns clauses that contain compiled versions of the specified clauses.
+    *
+    * @param key identifies the predicate the clauses belong to
+    * @param clauses the interpreted clauses of the predicate
+    * @return clauses where each clause that could be compiled has been replaced with a {@link CompiledClause}, or
+    * {@code clauses} if none of the clauses could be compiled
+    */
+   public synchronized Clauses compile(PredicateKey key, Clauses clauses) {
+      ClauseAction[] actions = clauses.getClauseActions();
+      if (actions.length > MAX_CLAUSES || !isCompilerAvailable()) {
+         return clauses;
+      }
+
+      CompiledPredicateSourceGenerator generator = new CompiledPredicateSourceGenerator(kb, createClassName(key));
+      for (int i = 0; i < actions.length; i++) {
+         generator.addClause(i, actions[i].getModel());
+      }
+      if (generator.getClauseCount() == 0) {
+         return clauses;
+      }
+
+      try {
+         Map<String, byte[]> classes = compiler.compile(generator.getClassName(), generator.getSource());
+         classLoader.addClasses(classes);
+         for (int i = 0; i < actions.length; i++) {
+            Object[] context = generator.getContext(i);
+            if (context != null) {
+               actions[i] = createCompiledClause(generator.getClauseClassName(i), actions[i].getModel(), context);
+            }
+         }
+      } catch (Exception e) {
+         kb.getProjogListeners().notifyWarn("Could not compile: " + key + " " + e.getMessage());
+         return clauses;
+      }
+
+      return new Clauses(kb, Arrays.asList(actions));
+   }
+
+   /**
+    * Compiles clauses using a background thread.
+    * <p>
+    * Predicates are compiled in the order they are submitted. The calling thread does not wait for compilation to
+    * complete.
+    *
+    * @param key identifies the predicate the clauses belong to
+    * @param clauses provides the interpreted clauses of the predicate - called by the background thread
+    * @param callback called, by the background thread, with the result of compiling the clauses - or with
+    * {@code null} if none of the clauses could be compiled
+    */
+   public void compileInBackground(PredicateKey key, Supplier<Clauses> clauses, Consumer<Clauses> callback) {
+      getExecutor().execute(() -> {
+         Clauses compiled = null;
+         try {
+            Clauses interpreted = clauses.get();
+            compiled = compile(key, interpreted);
+            if (compiled == interpreted) {
+               compiled = null;
+            }
+         } catch (RuntimeException e) {
+            kb.getProjogListeners().notifyWarn("Could not compile: " + key + " " + e.getMessage());
+         }
+         callback.accept(compiled);
+      });
+   }
+
+   private synchronized ExecutorService getExecutor() {
+      if (executor == null) {
+         // no core threads, so the thread terminates once it has been idle for a second
+         executor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, "projog-predicate-compiler");
+            t.setDaemon(true);
+            return t;
+         });
+      }
+      return executor;
+   }
+
+   private boolean isCompilerAvailable() {
+      if (compiler.isAvailable()) {
+         return true;
+      }
+      if (!isUnavailableWarningReported) {
+         isUnavailableWarningReported = true;
+         kb.getProjogListeners().notifyWarn("Runtime compilation is enabled but no Java compiler is available so predicates will be interpreted");
+      }
+      return false;
+   }
+
+   private String createClassName(PredicateKey key) {
+      return "Compiled_" + key.getName().replaceAll("[^A-Za-z0-9]", "_") + "_" + key.getNumArgs() + "_" + (classCtr++);
+   }
+
+   private CompiledClause createCompiledClause(String className, ClauseModel model, Object[] context) throws ReflectiveOperationException {
+      Class<?> c = classLoader.loadClass(className);
+      if (!CompiledClause.class.isAssignableFrom(c)) {
+         throw new ProjogException(className + " is not a " + CompiledClause.class.getName());
+      }
+      return (CompiledClause) c.getConstructor(ClauseModel.class, Object[].class).newInstance(model, context);
+   }
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides functionality to implement user defined predicates (defined using Prolog syntax) by compiling them into new Java class files at runtime.
+ */
+package org.projog.core.udp.compiler;
@@ -17,10 +17,11 @@ package org.projog.core.udp.interpreter;
 
 import org.projog.core.Predicate;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.ClauseModel;
 
 public interface ClauseAction {
-   Predicate getPredicate(Term[] input);
+   Predicate getPredicate(Term[] input, Trail trail);
 
    // TODO is this method needed? should it return model.copy()
    ClauseModel getModel();
@@ -15,18 +15,20 @@
  */
 package org.projog.core.udp.interpreter;
 
-import java.util.HashMap;
+import static org.projog.core.KnowledgeBaseUtils.isConjunction;
+import static org.projog.core.KnowledgeBaseUtils.toArrayOfConjunctions;
+
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.projog.core.KnowledgeBase;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.term.Term;
+import org.projog.core.term.TermTemplate;
 import org.projog.core.term.TermType;
 import org.projog.core.term.TermUtils;
-import org.projog.core.term.Variable;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.ClauseModel;
 import org.projog.core.udp.PredicateUtils;
 
@@ -44,6 +46,12 @@ public final class ClauseActionFactory {
       }
 
       boolean isFact = model.isFact();
+      if (!isFact && kb.getProjogProperties().isStructureSharingEnabled() && isConjunction(antecedent)) {
+         Term[] goals = toArrayOfConjunctions(antecedent);
+         if (!containsVariable(goals)) {
+            return new SharedBodyRule(model, kb, goals);
+         }
+      }
 
       Term consequent = model.getConsequent();
       if (consequent.getNumberOfArguments() == 0) {
@@ -90,16 +98,13 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
-         Term[] consequentArgs = model.getConsequent().getArgs();
-         Map<Variable, Variable> sharedVariables = new HashMap<>();
-         for (int i = 0; i < input.length; i++) {
-            if (!input[i].unify(consequentArgs[i].copy(sharedVariables))) {
-               return PredicateUtils.FALSE;
-            }
+      public Predicate getPredicate(Term[] input, Trail trail) {
+         Term[] frame = model.createFrame();
+         if (!unifyConsequent(model, input, frame, trail)) {
+            return PredicateUtils.FALSE;
          }
 
-         Term antecedant = model.getAntecedent().copy(sharedVariables);
+         Term antecedant = model.getAntecedentTemplate().instantiate(frame, trail).getTerm();
          return kb.getPredicates().getPredicateFactory(antecedant).getPredicate(antecedant.getArgs());
       }
 
@@ -122,7 +127,7 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
+      public Predicate getPredicate(Term[] input, Trail trail) {
          return PredicateUtils.TRUE;
       }
 
@@ -147,12 +152,12 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
+      public Predicate getPredicate(Term[] input, Trail trail) {
          Term antecedent = model.getAntecedent();
          if (antecedent.isImmutable()) {
             return pf.getPredicate(antecedent.getArgs());
          } else {
-            return pf.getPredicate(TermUtils.copy(antecedent.getArgs()));
+            return pf.getPredicate(instantiateAntecedentArgs(model, model.createFrame(), trail));
          }
       }
 
@@ -175,10 +180,10 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
+      public Predicate getPredicate(Term[] input, Trail trail) {
          Term[] consequentArgs = model.getConsequent().getArgs();
          for (int i = 0; i < input.length; i++) {
-            if (!input[i].unify(consequentArgs[i])) {
+            if (!TermUtils.unify(input[i], consequentArgs[i], trail)) {
                return PredicateUtils.FALSE;
             }
          }
@@ -207,10 +212,10 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
+      public Predicate getPredicate(Term[] input, Trail trail) {
          Term[] consequentArgs = model.getConsequent().getArgs();
          for (int i = 0; i < input.length; i++) {
-            if (!input[i].unify(consequentArgs[i])) {
+            if (!TermUtils.unify(input[i], consequentArgs[i], trail)) {
                return PredicateUtils.FALSE;
             }
          }
@@ -219,7 +224,7 @@ public final class ClauseActionFactory {
          if (antecedent.isImmutable()) {
             return pf.getPredicate(antecedent.getArgs());
          } else {
-            return pf.getPredicate(TermUtils.copy(antecedent.getArgs()));
+            return pf.getPredicate(instantiateAntecedentArgs(model, model.createFrame(), trail));
          }
       }
 
@@ -242,17 +247,12 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
-         // TODO would be a performance improvement if no clause variable is created unless is a shared variable
-         Term[] consequentArgs = model.getConsequent().getArgs();
-         Map<Variable, Variable> sharedVariables = new HashMap<>();
-         for (int i = 0; i < input.length; i++) {
-            if (!input[i].unify(consequentArgs[i].copy(sharedVariables))) {
-               return PredicateUtils.FALSE;
-            }
+      public Predicate getPredicate(Term[] input, Trail trail) {
+         if (unifyConsequent(model, input, model.createFrame(), trail)) {
+            return PredicateUtils.TRUE;
+         } else {
+            return PredicateUtils.FALSE;
          }
-
-         return PredicateUtils.TRUE;
       }
 
       @Override
@@ -276,25 +276,17 @@ public final class ClauseActionFactory {
       }
 
       @Override
-      public Predicate getPredicate(Term[] input) {
-         Term[] consequentArgs = model.getConsequent().getArgs();
-         Map<Variable, Variable> sharedVariables = new HashMap<>();
-         for (int i = 0; i < input.length; i++) {
-            if (!input[i].unify(consequentArgs[i].copy(sharedVariables))) {
-               return PredicateUtils.FALSE;
-            }
+      public Predicate getPredicate(Term[] input, Trail trail) {
+         Term[] frame = model.createFrame();
+         if (!unifyConsequent(model, input, frame, trail)) {
+            return PredicateUtils.FALSE;
          }
 
          Term antecedent = model.getAntecedent();
          if (antecedent.isImmutable()) {
             return pf.getPredicate(antecedent.getArgs());
          } else {
-            Term[] originalAntecedentArgs = antecedent.getArgs();
-            Term[] copyAntecedentArgs = new Term[originalAntecedentArgs.length];
-            for (int i = 0; i < originalAntecedentArgs.length; i++) {
-               copyAntecedentArgs[i] = originalAntecedentArgs[i].copy(sharedVariables);
-            }
-            return pf.getPredicate(copyAntecedentArgs);
+            return pf.getPredicate(instantiateAntecedentArgs(model, frame, trail));
          }
       }
 
@@ -309,5 +301,97 @@ public final class ClauseActionFactory {
       }
    }
 
-   // TODO add variation for where antecedent is conjuction of non-retryable predicates
+   /**
+    * A rule whose body is a conjunction of goals that is shared, rather than copied, between invocations.
+    * <p>
+    * Used when {@link org.projog.core.ProjogProperties#isStructureSharingEnabled()} is {@code true}.
+    *
+    * @see SharedBodyPredicate
+    */
+   static final class SharedBodyRule implements ClauseAction {
+      private final ClauseModel model;
+      private final PredicateFactory[] goalFactories;
+      private final TermTemplate[][] goalArgs;
+      private final boolean isRetryable;
+
+      private SharedBodyRule(ClauseModel model, KnowledgeBase kb, Term[] goals) {
+         this.model = model;
+         this.goalFactories = new PredicateFactory[goals.length];
+         this.goalArgs = new TermTemplate[goals.length][];
+         boolean isRetryable = false;
+         for (int i = 0; i < goals.length; i++) {
+            goalFactories[i] = kb.getPredicates().getPreprocessedPredicateFactory(goals[i]);
+            goalArgs[i] = model.getTemplateFactory().createTemplates(goals[i].getArgs());
+            isRetryable |= goalFactories[i].isRetryable();
+         }
+         this.isRetryable = isRetryable;
+      }
+
+      @Override
+      public Predicate getPredicate(Term[] input, Trail trail) {
+         Term[] frame = model.createFrame();
+         if (!unifyConsequent(model, input, frame, trail)) {
+            return PredicateUtils.FALSE;
+         }
+
+         // create the variables of the clause now, before the goals of the body create any choicepoints
+         model.getTemplateFactory().populateFrame(frame, trail);
+         return new SharedBodyPredicate(goalFactories, goalArgs, frame);
+      }
+
+      @Override
+      public ClauseModel getModel() {
+         return model;
+      }
+
+      @Override
+      public boolean isRetryable() {
+         return isRetryable;
+      }
+   }
+
+   private static boolean containsVariable(Term[] goals) {
+      for (Term goal : goals) {
+         if (goal.getType().isVariable()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Attempts to unify the specified query arguments with the arguments of the head of the specified clause.
+    *
+    * @param model the clause to unify with
+    * @param input the arguments of the query
+    * @param frame records the terms representing the variables of the clause
+    * @param trail the currently active trail
+    * @return {@code true} if the attempt to unify was successful
+    */
+   private static boolean unifyConsequent(ClauseModel model, Term[] input, Term[] frame, Trail trail) {
+      TermTemplate[] consequentArgs = model.getConsequentArgTemplates();
+      for (int i = 0; i < input.length; i++) {
+         if (!consequentArgs[i].unify(input[i], frame, trail)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Returns copies of the arguments of the body of the specified clause.
+    *
+    * @param model the clause to copy the body of
+    * @param frame records the terms representing the variables of the clause
+    * @param trail the currently active trail
+    * @return copies of the arguments of the body of the specified clause
+    */
+   private static Term[] instantiateAntecedentArgs(ClauseModel model, Term[] frame, Trail trail) {
+      TermTemplate[] antecedentArgs = model.getAntecedentArgTemplates();
+      Term[] copy = new Term[antecedentArgs.length];
+      for (int i = 0; i < copy.length; i++) {
+         copy[i] = antecedentArgs[i].instantiate(frame, trail);
+      }
+      return copy;
+   }
 }
@@ -15,13 +15,12 @@
  */
 package org.projog.core.udp.interpreter;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.projog.core.PredicateFactory;
 import org.projog.core.SpyPoints.SpyPoint;
 import org.projog.core.term.Term;
-import org.projog.core.term.Variable;
+import org.projog.core.term.TermTemplate;
+import org.projog.core.term.TermTemplateFactory;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.TailRecursivePredicate;
 import org.projog.core.udp.TailRecursivePredicateMetaData;
 
@@ -35,22 +34,25 @@ import org.projog.core.udp.TailRecursivePredicateMetaData;
  * @see TailRecursivePredicateMetaData
  */
 final class InterpretedTailRecursivePredicate extends TailRecursivePredicate {
-   // TODO add exception handling ProjogException and CutException
+   // TODO add exception handling ProjogException
    private final boolean isSpyPointEnabled;
    private final SpyPoint spyPoint;
    private final int numArgs;
    private final Term[] currentQueryArgs;
    private final boolean isRetryable;
    private final PredicateFactory[] firstClausePredicateFactories;
-   private final Term[] firstClauseConsequentArgs;
-   private final Term[] firstClauseOriginalTerms;
+   private final TermTemplateFactory firstClauseTemplateFactory;
+   private final TermTemplate[] firstClauseConsequentArgs;
+   private final TermTemplate[][] firstClauseOriginalTermArgs;
    private final PredicateFactory[] secondClausePredicateFactories;
-   private final Term[] secondClauseConsequentArgs;
-   private final Term[] secondClauseOriginalTerms;
-
-   InterpretedTailRecursivePredicate(SpyPoint spyPoint, Term[] inputArgs, PredicateFactory[] firstClausePredicateFactories, Term[] firstClauseConsequentArgs,
-               Term[] firstClauseOriginalTerms, PredicateFactory[] secondClausePredicateFactories, Term[] secondClauseConsequentArgs, Term[] secondClauseOriginalTerms,
-               boolean isRetryable) {
+   private final TermTemplateFactory secondClauseTemplateFactory;
+   private final TermTemplate[] secondClauseConsequentArgs;
+   private final TermTemplate[][] secondClauseOriginalTermArgs;
+   private Trail trail;
+
+   InterpretedTailRecursivePredicate(SpyPoint spyPoint, Term[] inputArgs, PredicateFactory[] firstClausePredicateFactories, TermTemplateFactory firstClauseTemplateFactory,
+               TermTemplate[] firstClauseConsequentArgs, TermTemplate[][] firstClauseOriginalTermArgs, PredicateFactory[] secondClausePredicateFactories,
+               TermTemplateFactory secondClauseTemplateFactory, TermTemplate[] secondClauseConsequentArgs, TermTemplate[][] secondClauseOriginalTermArgs, boolean isRetryable) {
       this.isSpyPointEnabled = spyPoint.isEnabled();
       this.spyPoint = spyPoint;
       this.numArgs = inputArgs.length;
@@ -60,29 +62,28 @@ final class InterpretedTailRecursivePredicate extends TailRecursivePredicate {
       }
 
       this.firstClausePredicateFactories = firstClausePredicateFactories;
+      this.firstClauseTemplateFactory = firstClauseTemplateFactory;
       this.firstClauseConsequentArgs = firstClauseConsequentArgs;
-      this.firstClauseOriginalTerms = firstClauseOriginalTerms;
+      this.firstClauseOriginalTermArgs = firstClauseOriginalTermArgs;
       this.secondClausePredicateFactories = secondClausePredicateFactories;
+      this.secondClauseTemplateFactory = secondClauseTemplateFactory;
       this.secondClauseConsequentArgs = secondClauseConsequentArgs;
-      this.secondClauseOriginalTerms = secondClauseOriginalTerms;
+      this.secondClauseOriginalTermArgs = secondClauseOriginalTermArgs;
       this.isRetryable = isRetryable;
    }
 
    @Override
    protected boolean matchFirstRule() {
-      final Map<Variable, Variable> sharedVariables = new HashMap<>();
-      final Term[] newConsequentArgs = new Term[numArgs];
-      for (int i = 0; i < numArgs; i++) {
-         newConsequentArgs[i] = firstClauseConsequentArgs[i].copy(sharedVariables);
+      if (trail == null) {
+         trail = Trail.getCurrent();
       }
-
-      if (unify(currentQueryArgs, newConsequentArgs) == false) {
+      final Term[] frame = firstClauseTemplateFactory.createFrame();
+      if (unify(currentQueryArgs, firstClauseConsequentArgs, frame, trail) == false) {
          return false;
       }
 
-      for (int i = 0; i < firstClauseOriginalTerms.length; i++) {
-         Term t = firstClauseOriginalTerms[i].copy(sharedVariables);
-         if (!firstClausePredicateFactories[i].getPredicate(t.getArgs()).evaluate()) {
+      for (int i = 0; i < firstClauseOriginalTermArgs.length; i++) {
+         if (!firstClausePredicateFactories[i].getPredicate(instantiate(firstClauseOriginalTermArgs[i], frame, trail)).evaluate()) {
             return false;
          }
       }
@@ -92,26 +93,23 @@ final class InterpretedTailRecursivePredicate extends TailRecursivePredicate {
 
    @Override
    protected boolean matchSecondRule() {
-      final Map<Variable, Variable> sharedVariables = new HashMap<>();
-      final Term[] newConsequentArgs = new Term[numArgs];
-      for (int i = 0; i < numArgs; i++) {
-         newConsequentArgs[i] = secondClauseConsequentArgs[i].copy(sharedVariables);
+      if (trail == null) {
+         trail = Trail.getCurrent();
       }
-
-      if (unify(currentQueryArgs, newConsequentArgs) == false) {
+      final Term[] frame = secondClauseTemplateFactory.createFrame();
+      if (unify(currentQueryArgs, secondClauseConsequentArgs, frame, trail) == false) {
          return false;
       }
 
-      for (int i = 0; i < secondClauseOriginalTerms.length - 1; i++) {
-         Term t = secondClauseOriginalTerms[i].copy(sharedVariables);
-         if (!secondClausePredicateFactories[i].getPredicate(t.getArgs()).evaluate()) {
+      for (int i = 0; i < secondClauseOriginalTermArgs.length - 1; i++) {
+         if (!secondClausePredicateFactories[i].getPredicate(instantiate(secondClauseOriginalTermArgs[i], frame, trail)).evaluate()) {
             return false;
          }
       }
 
-      Term finalTermArgs[] = secondClauseOriginalTerms[secondClauseOriginalTerms.length - 1].getArgs();
+      TermTemplate finalTermArgs[] = secondClauseOriginalTermArgs[secondClauseOriginalTermArgs.length - 1];
       for (int i = 0; i < numArgs; i++) {
-         currentQueryArgs[i] = finalTermArgs[i].copy(sharedVariables);
+         currentQueryArgs[i] = finalTermArgs[i].instantiate(frame, trail);
       }
 
       return true;
@@ -126,19 +124,29 @@ final class InterpretedTailRecursivePredicate extends TailRecursivePredicate {
     * (antecedent) of the rule to determine if the rule is true.
     *
     * @param inputArgs the arguments contained in the query
-    * @param consequentArgs the arguments contained in the head (consequent) of the clause
+    * @param consequentArgs templates of the arguments contained in the head (consequent) of the clause
+    * @param frame records the terms representing the variables of the clause
+    * @param trail the currently active trail
     * @return {@code true} if the attempt to unify the arguments was successful
-    * @see Term#unify(Term)
+    * @see TermTemplate#unify(Term, Term[], Trail)
     */
-   public static boolean unify(Term[] inputArgs, Term[] consequentArgs) {
+   private static boolean unify(Term[] inputArgs, TermTemplate[] consequentArgs, Term[] frame, Trail trail) {
       for (int i = 0; i < inputArgs.length; i++) {
-         if (!inputArgs[i].unify(consequentArgs[i])) {
+         if (!consequentArgs[i].unify(inputArgs[i], frame, trail)) {
             return false;
          }
       }
       return true;
    }
 
+   private static Term[] instantiate(TermTemplate[] templates, Term[] frame, Trail trail) {
+      Term[] terms = new Term[templates.length];
+      for (int i = 0; i < templates.length; i++) {
+         terms[i] = templates[i].instantiate(frame, trail);
+      }
+      return terms;
+   }
+
    @Override
    protected void logCall() {
       if (isSpyPointEnabled) {
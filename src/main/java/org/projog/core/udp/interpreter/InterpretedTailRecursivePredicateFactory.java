@@ -23,6 +23,8 @@ import org.projog.core.PredicateKey;
 import org.projog.core.SpyPoints;
 import org.projog.core.SpyPoints.SpyPoint;
 import org.projog.core.term.Term;
+import org.projog.core.term.TermTemplate;
+import org.projog.core.term.TermTemplateFactory;
 import org.projog.core.udp.ClauseModel;
 import org.projog.core.udp.TailRecursivePredicate;
 import org.projog.core.udp.TailRecursivePredicateMetaData;
@@ -43,11 +45,13 @@ public final class InterpretedTailRecursivePredicateFactory implements Predicate
    private final SpyPoint spyPoint;
    private final TailRecursivePredicateMetaData metaData;
    private final PredicateFactory[] firstClausePredicateFactories;
-   private final Term[] firstClauseConsequentArgs;
-   private final Term[] firstClauseOriginalTerms;
+   private final TermTemplateFactory firstClauseTemplateFactory;
+   private final TermTemplate[] firstClauseConsequentArgs;
+   private final TermTemplate[][] firstClauseOriginalTermArgs;
    private final PredicateFactory[] secondClausePredicateFactories;
-   private final Term[] secondClauseConsequentArgs;
-   private final Term[] secondClauseOriginalTerms;
+   private final TermTemplateFactory secondClauseTemplateFactory;
+   private final TermTemplate[] secondClauseConsequentArgs;
+   private final TermTemplate[][] secondClauseOriginalTermArgs;
 
    public InterpretedTailRecursivePredicateFactory(KnowledgeBase kb, TailRecursivePredicateMetaData metaData) {
       this.spyPoint = getSpyPoint(kb, metaData);
@@ -55,11 +59,24 @@ public final class InterpretedTailRecursivePredicateFactory implements Predicate
       ClauseModel firstClause = metaData.getFirstClause();
       ClauseModel secondClause = metaData.getSecondClause();
 
-      this.firstClauseConsequentArgs = firstClause.getConsequent().getArgs();
-      this.secondClauseConsequentArgs = secondClause.getConsequent().getArgs();
+      this.firstClauseTemplateFactory = new TermTemplateFactory(firstClause.getConsequent(), firstClause.getAntecedent());
+      this.secondClauseTemplateFactory = new TermTemplateFactory(secondClause.getConsequent(), secondClause.getAntecedent());
 
-      this.firstClauseOriginalTerms = toArrayOfConjunctions(firstClause.getAntecedent());
-      this.secondClauseOriginalTerms = toArrayOfConjunctions(secondClause.getAntecedent());
+      this.firstClauseConsequentArgs = firstClauseTemplateFactory.createTemplates(firstClause.getConsequent().getArgs());
+      this.secondClauseConsequentArgs = secondClauseTemplateFactory.createTemplates(secondClause.getConsequent().getArgs());
+
+      Term[] firstClauseOriginalTerms = toArrayOfConjunctions(firstClause.getAntecedent());
+      Term[] secondClauseOriginalTerms = toArrayOfConjunctions(secondClause.getAntecedent());
+
+      this.firstClauseOriginalTermArgs = new TermTemplate[firstClauseOriginalTerms.length][];
+      for (int i = 0; i < firstClauseOriginalTerms.length; i++) {
+         firstClauseOriginalTermArgs[i] = firstClauseTemplateFactory.createTemplates(firstClauseOriginalTerms[i].getArgs());
+      }
+
+      this.secondClauseOriginalTermArgs = new TermTemplate[secondClauseOriginalTerms.length][];
+      for (int i = 0; i < secondClauseOriginalTerms.length; i++) {
+         secondClauseOriginalTermArgs[i] = secondClauseTemplateFactory.createTemplates(secondClauseOriginalTerms[i].getArgs());
+      }
 
       this.firstClausePredicateFactories = new PredicateFactory[firstClauseOriginalTerms.length];
       for (int i = 0; i < firstClauseOriginalTerms.length; i++) {
@@ -74,8 +91,8 @@ public final class InterpretedTailRecursivePredicateFactory implements Predicate
 
    @Override
    public InterpretedTailRecursivePredicate getPredicate(Term[] args) {
-      return new InterpretedTailRecursivePredicate(spyPoint, args, firstClausePredicateFactories, firstClauseConsequentArgs, firstClauseOriginalTerms,
-                  secondClausePredicateFactories, secondClauseConsequentArgs, secondClauseOriginalTerms, isRetryable(args));
+      return new InterpretedTailRecursivePredicate(spyPoint, args, firstClausePredicateFactories, firstClauseTemplateFactory, firstClauseConsequentArgs, firstClauseOriginalTermArgs,
+                  secondClausePredicateFactories, secondClauseTemplateFactory, secondClauseConsequentArgs, secondClauseOriginalTermArgs, isRetryable(args));
    }
 
    private boolean isRetryable(Term[] args) {
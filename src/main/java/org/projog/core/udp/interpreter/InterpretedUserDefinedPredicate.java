@@ -17,12 +17,13 @@ package org.projog.core.udp.interpreter;
 
 import java.util.Iterator;
 
-import org.projog.core.CutException;
+import org.projog.core.CutBarrier;
 import org.projog.core.Predicate;
 import org.projog.core.ProjogException;
 import org.projog.core.SpyPoints;
+import org.projog.core.TailCall;
 import org.projog.core.term.Term;
-import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
 
 /**
  * Represents a user defined predicate.
@@ -30,20 +31,52 @@ import org.projog.core.term.TermUtils;
  * @see #evaluate()
  */
 public final class InterpretedUserDefinedPredicate implements Predicate {
-   private final Iterator<ClauseAction> clauseActions;
-   private final SpyPoints.SpyPoint spyPoint;
-   private final Term[] queryArgs;
-   private final boolean debugEnabled;
+   private final boolean isLastCallOptimisationEnabled;
+   private Iterator<ClauseAction> clauseActions;
+   private SpyPoints.SpyPoint spyPoint;
+   private Term[] queryArgs;
+   private boolean debugEnabled;
+   private CutBarrier cutBarrier = new CutBarrier();
 
    private ClauseAction currentClause;
    private Predicate currentPredicate;
    private boolean retryCurrentClauseAction;
+   private boolean isRetryIndicated;
+   private Trail trail;
+   private int initialMark;
+   private int mark;
 
    public InterpretedUserDefinedPredicate(Iterator<ClauseAction> clauseActions, SpyPoints.SpyPoint spyPoint, Term[] queryArgs) {
+      this(clauseActions, spyPoint, queryArgs, false);
+   }
+
+   /**
+    * @param isLastCallOptimisationEnabled {@code true} if the last goal of a clause should, when possible, be evaluated
+    * in place of the clause rather than by a nested call
+    * @see org.projog.core.ProjogProperties#isLastCallOptimisationEnabled()
+    */
+   public InterpretedUserDefinedPredicate(Iterator<ClauseAction> clauseActions, SpyPoints.SpyPoint spyPoint, Term[] queryArgs, boolean isLastCallOptimisationEnabled) {
       this.clauseActions = clauseActions;
       this.spyPoint = spyPoint;
       this.queryArgs = queryArgs;
       this.debugEnabled = spyPoint.isEnabled();
+      this.isLastCallOptimisationEnabled = isLastCallOptimisationEnabled && !debugEnabled;
+   }
+
+   /**
+    * Returns {@code true} if the specified predicate can be offered, using a {@link TailCall}, to a user defined
+    * predicate that supports last call optimisation.
+    *
+    * @return {@code true} if {@code p} is an interpreted user defined predicate, that is not being spied on, and has not
+    * yet been evaluated
+    */
+   public static boolean isTailCallCandidate(Predicate p) {
+      if (p instanceof InterpretedUserDefinedPredicate) {
+         InterpretedUserDefinedPredicate udp = (InterpretedUserDefinedPredicate) p;
+         return udp.trail == null && !udp.debugEnabled;
+      } else {
+         return false;
+      }
    }
 
    /**
@@ -57,23 +90,34 @@ public final class InterpretedUserDefinedPredicate implements Predicate {
     * <li>If the head of the clause can be unified with the query then an attempt is made to evaluate the body
     * (antecedent) of the clause.</li>
     * <li>If the body of the clause is successfully evaluated then {@code true} is returned.</li>
-    * <li>If the body of the clause is not successfully evaluated then the arguments in the query are backtracked.</li>
+    * <li>If the body of the clause is not successfully evaluated then the variables instantiated since the predicate was
+    * first evaluated are backtracked, using the current {@link Trail}.</li>
     * <li>When there are no more clauses left to check then {@code false} is returned.</li>
     * </ul>
     * Once {@code evaluate()} has returned {@code true} subsequent invocations of {@code evaluate()} will attempt to
     * re-evaluate the antecedent of the previously successfully evaluated clause. If the body of the clause is
     * successfully re-evaluated then {@code true} is returned. If the body of the clause is not successfully
-    * re-evaluated then the arguments in the query are backtracked and the method continues to iterate through the
-    * clauses starting with the next clause in the sequence.
+    * re-evaluated then the variables instantiated since the predicate was first evaluated are backtracked and the
+    * method continues to iterate through the clauses starting with the next clause in the sequence.
+    * <p>
+    * If backtracking reaches a cut in the body of a clause then the {@link CutBarrier} of this invocation is cut and
+    * no further clauses are tried.
+    * <p>
+    * If last call optimisation is enabled then, when nothing else is left to backtrack to, the clauses of the
+    * predicate called by the last goal of a clause are tried in place of the clauses of this predicate.
     */
    @Override
    public boolean evaluate() {
+      if (trail == null) {
+         trail = Trail.getCurrent();
+      }
+      CutBarrier previousCutBarrier = trail.setCutBarrier(cutBarrier);
       try {
          if (retryCurrentClauseAction) {
             if (debugEnabled) {
                spyPoint.logRedo(this, queryArgs);
             }
-            if (currentPredicate.evaluate()) {
+            if (evaluateCurrentPredicate(false)) {
                retryCurrentClauseAction = currentPredicate.couldReevaluationSucceed();
                if (debugEnabled) {
                   spyPoint.logExit(this, queryArgs, currentClause.getModel());
@@ -82,22 +126,24 @@ public final class InterpretedUserDefinedPredicate implements Predicate {
             }
             // attempt at retrying has failed so discard it
             retryCurrentClauseAction = false;
-            TermUtils.backtrack(queryArgs);
+            trail.undo(mark);
          } else if (currentClause == null) {
             if (debugEnabled) {
                spyPoint.logCall(this, queryArgs);
             }
+            mark = trail.mark();
+            initialMark = mark;
          } else {
             if (debugEnabled) {
                spyPoint.logRedo(this, queryArgs);
             }
-            TermUtils.backtrack(queryArgs);
+            trail.undo(mark);
          }
-         // cycle though all rules until none left
-         while (clauseActions.hasNext()) {
+         // cycle though all rules until none left, or a cut is backtracked to
+         while (!cutBarrier.isCut() && clauseActions.hasNext()) {
             currentClause = clauseActions.next();
-            currentPredicate = currentClause.getPredicate(queryArgs);
-            if (currentPredicate != null && currentPredicate.evaluate()) {
+            currentPredicate = currentClause.getPredicate(queryArgs, trail);
+            if (currentPredicate != null && evaluateCurrentPredicate(true)) {
                retryCurrentClauseAction = currentPredicate.couldReevaluationSucceed();
                if (debugEnabled) {
                   spyPoint.logExit(this, queryArgs, currentClause.getModel());
@@ -105,14 +151,12 @@ public final class InterpretedUserDefinedPredicate implements Predicate {
                return true;
             } else {
                retryCurrentClauseAction = false;
-               TermUtils.backtrack(queryArgs);
+               trail.undo(mark);
             }
          }
-         if (debugEnabled) {
-            spyPoint.logFail(this, queryArgs);
-         }
-         return false;
-      } catch (CutException e) {
+         // also undo the variables instantiated by any clauses that were replaced by the clauses of their last goal
+         trail.undo(initialMark);
+         isRetryIndicated = false;
          if (debugEnabled) {
             spyPoint.logFail(this, queryArgs);
          }
@@ -124,11 +168,84 @@ public final class InterpretedUserDefinedPredicate implements Predicate {
          ProjogException pe = new ProjogException("Exception processing: " + spyPoint.getPredicateKey(), t);
          pe.addClause(currentClause.getModel());
          throw pe;
+      } finally {
+         trail.setCutBarrier(previousCutBarrier);
+      }
+   }
+
+   /**
+    * Evaluates the body of the current clause.
+    * <p>
+    * If last call optimisation is enabled, and the last goal of the body is a call to an interpreted user defined
+    * predicate, then the call is evaluated by this object - rather than by a nested call - if neither the goals that
+    * precede it in the body, nor the remaining clauses of this predicate, could be backtracked to. In that case this
+    * object continues with the clauses of the called predicate, the current clause is discarded and {@code false} is
+    * returned.
+    *
+    * @param isFirstAttempt {@code true} if the body has just been created, {@code false} if it is being retried
+    * @return {@code true} if the body of the current clause was successfully evaluated
+    * @see TailCall
+    */
+   private boolean evaluateCurrentPredicate(boolean isFirstAttempt) {
+      if (!isLastCallOptimisationEnabled) {
+         return currentPredicate.evaluate();
+      }
+
+      if (isFirstAttempt && isTailCallCandidate(currentPredicate)) {
+         // the body of the clause consists of a single call to a user defined predicate
+         if (clauseActions.hasNext()) {
+            return currentPredicate.evaluate();
+         } else {
+            replaceWith((InterpretedUserDefinedPredicate) currentPredicate, false);
+            return false;
+         }
       }
+
+      TailCall tailCall = trail.getTailCall();
+      while (true) {
+         tailCall.allow(currentPredicate);
+         boolean success = currentPredicate.evaluate();
+         tailCall.allow(null);
+         if (!success) {
+            return false;
+         } else if (!tailCall.isOffered()) {
+            return true;
+         }
+
+         boolean isReplaceable = tailCall.isDeterministic() && (tailCall.isPruned() || !clauseActions.hasNext());
+         boolean isPruned = tailCall.isPruned();
+         InterpretedUserDefinedPredicate callee = (InterpretedUserDefinedPredicate) tailCall.take();
+         if (isReplaceable) {
+            replaceWith(callee, isPruned);
+            return false;
+         } else if (callee.evaluate()) {
+            return true;
+         }
+         // the last goal has failed, so backtrack to the goals that precede it
+      }
+   }
+
+   /**
+    * Continues with the clauses of the specified predicate, rather than the remaining clauses of this predicate.
+    *
+    * @param callee the last goal of the body of the current clause, which has not yet been evaluated
+    * @param isPruned {@code true} if the last goal was preceded by a cut
+    */
+   private void replaceWith(InterpretedUserDefinedPredicate callee, boolean isPruned) {
+      clauseActions = callee.clauseActions;
+      spyPoint = callee.spyPoint;
+      queryArgs = callee.queryArgs;
+      debugEnabled = callee.debugEnabled;
+      cutBarrier = callee.cutBarrier;
+      trail.setCutBarrier(cutBarrier);
+      currentPredicate = null;
+      mark = trail.mark();
+      // a nested call would have left the cut to be backtracked to, so still indicate that a retry could succeed
+      isRetryIndicated |= isPruned;
    }
 
    @Override
    public boolean couldReevaluationSucceed() {
-      return retryCurrentClauseAction || clauseActions.hasNext();
+      return isRetryIndicated || retryCurrentClauseAction || (!cutBarrier.isCut() && clauseActions.hasNext());
    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.interpreter;
+
+import org.projog.core.Predicate;
+import org.projog.core.PredicateFactory;
+import org.projog.core.TailCall;
+import org.projog.core.function.flow.Cut;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermTemplate;
+import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
+
+/**
+ * Evaluates the goals of the body of a rule, sharing the body between invocations of the rule.
+ * <p>
+ * Rather than copying the whole body of the rule before evaluating it, the arguments of each goal are created from the
+ * templates of the shared body, and the frame of this invocation, only when that goal is reached. If a goal fails then
+ * the previous goal is re-evaluated, in the same way as a conjunction. The last goal can be offered to the predicate
+ * this clause belongs to, in the same way as the last goal of a conjunction (see {@link org.projog.core.TailCall}).
+ *
+ * @see ClauseActionFactory
+ */
+final class SharedBodyPredicate implements Predicate {
+   private final PredicateFactory[] goalFactories;
+   private final TermTemplate[][] goalArgs;
+   private final Term[] frame;
+   private final Predicate[] goals;
+   private final int[] marks;
+   private Trail trail;
+
+   SharedBodyPredicate(PredicateFactory[] goalFactories, TermTemplate[][] goalArgs, Term[] frame) {
+      this.goalFactories = goalFactories;
+      this.goalArgs = goalArgs;
+      this.frame = frame;
+      this.goals = new Predicate[goalFactories.length];
+      this.marks = new int[goalFactories.length];
+   }
+
+   @Override
+   public boolean evaluate() {
+      int idx;
+      if (trail == null) {
+         trail = Trail.getCurrent();
+         idx = 0;
+      } else {
+         idx = goals.length - 1;
+      }
+      TailCall tailCall = trail.getTailCall();
+      boolean isTailCallAllowed = tailCall.isAllowed(this);
+
+      while (true) {
+         boolean success;
+         boolean isOfferable = isTailCallAllowed && idx == goals.length - 1;
+         Predicate goal = goals[idx];
+         if (goal == null) {
+            marks[idx] = trail.mark();
+            goal = goalFactories[idx].getPredicate(instantiate(goalArgs[idx]));
+            goals[idx] = goal;
+            if (isOfferable && InterpretedUserDefinedPredicate.isTailCallCandidate(goal)) {
+               tailCall.offer(goal);
+               recordPrecedingGoals(tailCall);
+               return true;
+            }
+            if (isOfferable) {
+               tailCall.allow(goal);
+            }
+            success = goal.evaluate();
+         } else {
+            if (isOfferable) {
+               tailCall.allow(goal);
+            }
+            success = goal.couldReevaluationSucceed() && goal.evaluate();
+         }
+
+         if (success) {
+            if (idx == goals.length - 1) {
+               if (isOfferable && tailCall.isOffered()) {
+                  recordPrecedingGoals(tailCall);
+               }
+               return true;
+            }
+            idx++;
+         } else {
+            goals[idx] = null;
+            trail.undo(marks[idx]);
+            if (idx == 0 || trail.getCutBarrier().isCut()) {
+               return false;
+            }
+            idx--;
+         }
+      }
+   }
+
+   /** Records the goals before the last goal, which has been offered to the predicate this clause belongs to. */
+   private void recordPrecedingGoals(TailCall tailCall) {
+      for (int i = goals.length - 2; i > -1 && !tailCall.isPruned(); i--) {
+         tailCall.precededBy(goals[i], Cut.isCut(goals[i]));
+      }
+   }
+
+   private Term[] instantiate(TermTemplate[] templates) {
+      if (templates.length == 0) {
+         return TermUtils.EMPTY_ARRAY;
+      }
+      Term[] args = new Term[templates.length];
+      for (int i = 0; i < templates.length; i++) {
+         args[i] = templates[i].instantiate(frame, trail);
+      }
+      return args;
+   }
+
+   @Override
+   public boolean couldReevaluationSucceed() {
+      if (trail == null) {
+         return true;
+      }
+      for (Predicate goal : goals) {
+         if (goal != null && goal.couldReevaluationSucceed()) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
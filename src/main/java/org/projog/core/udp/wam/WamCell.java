@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+/**
+ * Encodes the cells stored in the registers, heap and stack of a {@link WamMachine}.
+ * <p>
+ * Each cell is a {@code long} whose lowest three bits are a tag identifying its type and whose remaining bits are its
+ * value:
+ * <ul>
+ * <li>{@link #REF} - a reference to the heap address of a variable (an unbound variable refers to itself)</li>
+ * <li>{@link #STR} - a reference to the heap address of the functor cell of a structure, which is followed by the
+ * arguments of the structure</li>
+ * <li>{@link #FUN} - the identifier of the name and arity of a structure</li>
+ * <li>{@link #CON} - the identifier of an atomic term, such as an atom or decimal fraction</li>
+ * <li>{@link #INT} - an integer (that fits in 61 bits)</li>
+ * <li>{@link #LIS} - a reference to the heap address of the head of a list, which is followed by its tail</li>
+ * </ul>
+ */
+final class WamCell {
+   static final int REF = 0;
+   static final int STR = 1;
+   static final int FUN = 2;
+   static final int CON = 3;
+   static final int INT = 4;
+   static final int LIS = 5;
+
+   private static final int TAG_BITS = 3;
+   private static final long TAG_MASK = (1 << TAG_BITS) - 1;
+   private static final long MIN_INT = Long.MIN_VALUE >> TAG_BITS;
+   private static final long MAX_INT = Long.MAX_VALUE >> TAG_BITS;
+
+   /**
+    * Private constructor as all methods are static.
+    */
+   private WamCell() {
+      // do nothing
+   }
+
+   static long create(int tag, long value) {
+      return (value << TAG_BITS) | tag;
+   }
+
+   static int tag(long cell) {
+      return (int) (cell & TAG_MASK);
+   }
+
+   /** Returns the address (or identifier) referred to by a cell. */
+   static int address(long cell) {
+      return (int) (cell >>> TAG_BITS);
+   }
+
+   /** Returns the value of an {@link #INT} cell. */
+   static long intValue(long cell) {
+      return cell >> TAG_BITS;
+   }
+
+   /** Returns {@code true} if the specified value can be represented by an {@link #INT} cell. */
+   static boolean isInt(long value) {
+      return value >= MIN_INT && value <= MAX_INT;
+   }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+import org.projog.core.KnowledgeBase;
+import org.projog.core.PredicateFactory;
+import org.projog.core.PredicateKey;
+
+/**
+ * Compiles static user defined predicates into programs executed by a {@link WamMachine}.
+ * <p>
+ * One instance of this class is shared by all the predicates of a {@link KnowledgeBase}, so the procedure of a
+ * predicate is compiled once and then called by the programs of every predicate that depends on it.
+ *
+ * @see org.projog.core.ProjogProperties#isWamEnabled()
+ */
+public final class WamCompiler {
+   private final WamProgramBuilder builder;
+
+   public WamCompiler(KnowledgeBase kb) {
+      this.builder = new WamProgramBuilder(kb);
+   }
+
+   /**
+    * Returns a {@code PredicateFactory} that evaluates the specified predicate using a {@link WamMachine}.
+    *
+    * @param key the predicate to compile
+    * @param interpreted the factory to use when a spy point is enabled for the predicate, or for any predicate it calls
+    * @return a factory that evaluates the predicate using a {@link WamMachine}, or {@code null} if the predicate, or
+    * any predicate it calls, cannot be compiled
+    */
+   public synchronized PredicateFactory compile(PredicateKey key, PredicateFactory interpreted) {
+      WamProgram program = builder.build(key);
+      if (program == null) {
+         return null;
+      }
+      return new WamPredicateFactory(program, builder.getProcedureId(key), interpreted);
+   }
+}
@@ -0,0 +1,1080 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+import static org.projog.core.udp.wam.WamCell.CON;
+import static org.projog.core.udp.wam.WamCell.FUN;
+import static org.projog.core.udp.wam.WamCell.INT;
+import static org.projog.core.udp.wam.WamCell.LIS;
+import static org.projog.core.udp.wam.WamCell.REF;
+import static org.projog.core.udp.wam.WamCell.STR;
+import static org.projog.core.udp.wam.WamCell.address;
+import static org.projog.core.udp.wam.WamCell.create;
+import static org.projog.core.udp.wam.WamCell.tag;
+import static org.projog.core.udp.wam.WamOpcodes.ALLOCATE;
+import static org.projog.core.udp.wam.WamOpcodes.BUILTIN;
+import static org.projog.core.udp.wam.WamOpcodes.CALL;
+import static org.projog.core.udp.wam.WamOpcodes.CUT;
+import static org.projog.core.udp.wam.WamOpcodes.DEALLOCATE;
+import static org.projog.core.udp.wam.WamOpcodes.EXECUTE;
+import static org.projog.core.udp.wam.WamOpcodes.FAIL;
+import static org.projog.core.udp.wam.WamOpcodes.GET_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.GET_LEVEL;
+import static org.projog.core.udp.wam.WamOpcodes.GET_LIST;
+import static org.projog.core.udp.wam.WamOpcodes.GET_STRUCTURE;
+import static org.projog.core.udp.wam.WamOpcodes.GET_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.GET_VARIABLE;
+import static org.projog.core.udp.wam.WamOpcodes.HALT;
+import static org.projog.core.udp.wam.WamOpcodes.NECK_CUT;
+import static org.projog.core.udp.wam.WamOpcodes.PROCEED;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_LIST;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_STRUCTURE;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_VARIABLE;
+import static org.projog.core.udp.wam.WamOpcodes.RETRY;
+import static org.projog.core.udp.wam.WamOpcodes.SET_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.SET_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.SET_VARIABLE;
+import static org.projog.core.udp.wam.WamOpcodes.SWITCH_ON_TERM;
+import static org.projog.core.udp.wam.WamOpcodes.TRUST;
+import static org.projog.core.udp.wam.WamOpcodes.TRY;
+import static org.projog.core.udp.wam.WamOpcodes.UNIFY_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.UNIFY_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.UNIFY_VARIABLE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.projog.core.PredicateKey;
+import org.projog.core.term.IntegerNumber;
+import org.projog.core.term.IntegerNumberCache;
+import org.projog.core.term.ListFactory;
+import org.projog.core.term.Structure;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.term.Variable;
+
+/**
+ * Executes the instructions of a {@link WamProgram}.
+ * <p>
+ * All the state of an evaluation is held in arrays of primitives:
+ * <ul>
+ * <li>the <i>registers</i> - the arguments of the procedure being called and the temporary variables of the clause
+ * being evaluated;</li>
+ * <li>the <i>heap</i> - the variables, structures and lists created during the evaluation;</li>
+ * <li>the <i>stack</i> - the <i>environments</i> that store the permanent variables, and continuation, of clauses
+ * that call more than one predicate;</li>
+ * <li>the <i>choicepoints</i> - the state to restore when backtracking to try the next clause of a procedure;</li>
+ * <li>the <i>trail</i> - the addresses of variables that need to be reset when backtracking.</li>
+ * </ul>
+ * Terms are converted to cells when an evaluation is started, and the results converted back to terms when it
+ * succeeds. Predicates implemented in Java are evaluated by converting the contents of the argument registers to terms
+ * and then converting any variables the predicate instantiated back to cells.
+ * <p>
+ * <b>Note:</b> a {@code WamMachine} is not thread-safe. Instances are reused, by the thread that created them, via
+ * {@link #acquire()} and {@link #release(WamMachine)}.
+ */
+final class WamMachine {
+   private static final int MAX_POOLED_MACHINES = 8;
+   /** Machines whose heap has grown larger than this are not reused, so their memory can be reclaimed. */
+   private static final int MAX_POOLED_HEAP_SIZE = 1 << 16;
+   private static final ThreadLocal<ArrayDeque<WamMachine>> POOL = new ThreadLocal<ArrayDeque<WamMachine>>() {
+      @Override
+      protected ArrayDeque<WamMachine> initialValue() {
+         return new ArrayDeque<>();
+      }
+   };
+
+   // offsets of the values stored in an environment, which are followed by its permanent variables
+   private static final int ENV_CE = 0;
+   private static final int ENV_CP = 1;
+   private static final int ENV_N = 2;
+   private static final int ENV_SIZE = 3;
+
+   // offsets of the values stored in a choicepoint, which are followed by a copy of the argument registers
+   private static final int CP_B = 0;
+   private static final int CP_E = 1;
+   private static final int CP_CP = 2;
+   private static final int CP_ALT = 3;
+   private static final int CP_TR = 4;
+   private static final int CP_H = 5;
+   private static final int CP_ENV_TOP = 6;
+   private static final int CP_B0 = 7;
+   private static final int CP_N = 8;
+   private static final int CP_IS_RETRY_INDICATED = 9;
+   private static final int CP_SIZE = 10;
+
+   private WamProgram program;
+   private long[] x = new long[32];
+   private long[] heap = new long[1024];
+   /** The names of the variables on the heap, indexed by their address, used when converting cells to terms. */
+   private String[] names = new String[1024];
+   /**
+    * The compound terms, keyed by heap address, already found by {@link #isGround(long)} to be ground.
+    * <p>
+    * An element is only valid if it equals {@link #groundEpoch}, which is incremented whenever bindings are undone.
+    */
+   private int[] groundEpochs = new int[1024];
+   private int groundEpoch;
+   /** Used by {@link #isGround(long)} to record the addresses of the compound terms it has visited. */
+   private int[] visited = new int[64];
+   private long[] stack = new long[256];
+   private long[] choicepoints = new long[256];
+   private int[] trail = new int[64];
+   /** Used by {@link #unify(long, long)} to keep track of the pairs of cells still to be unified. */
+   private long[] pdl = new long[64];
+   /** The top of the heap. */
+   private int h;
+   /** The heap address below which a variable must be trailed when it is bound. */
+   private int hb;
+   /** The current environment. */
+   private int e;
+   /** The most recent choicepoint, or {@code -1} if there are none. */
+   private int b;
+   /** The most recent choicepoint at the time the current procedure was called. */
+   private int b0;
+   /** The top of the trail. */
+   private int tr;
+   /** The address of the next instruction. */
+   private int p;
+   /** The address to continue at when the current procedure succeeds. */
+   private int cp;
+   /** The arity of the current procedure. */
+   private int numArgs;
+   /** The heap address of the next argument to be read by a {@code unify_*} instruction. */
+   private int s;
+   private boolean writeMode;
+   /**
+    * Set when the evaluation has done something that means the interpreter would indicate that it could be retried,
+    * even when the machine has no choicepoints - e.g. executed a cut.
+    * <p>
+    * Means {@link #couldRedoSucceed()} gives the same answer as
+    * {@link org.projog.core.Predicate#couldReevaluationSucceed()} would for an interpreted predicate.
+    */
+   private boolean isRetryIndicated;
+
+   /** The cells of the arguments the evaluation was started with. */
+   private long[] arguments;
+   private boolean[] isImmutable;
+   /** The variables of the arguments the evaluation was started with, keyed by their heap address. */
+   private final Map<Integer, Variable> queryVariables = new HashMap<>();
+   /** Atomic terms, and the names and arities of structures, encountered at runtime that are not in the program. */
+   private final List<Term> runtimeConstants = new ArrayList<>();
+   private final Map<Term, Integer> runtimeConstantIds = new HashMap<>();
+   private final List<PredicateKey> runtimeFunctors = new ArrayList<>();
+   private final Map<PredicateKey, Integer> runtimeFunctorIds = new HashMap<>();
+   // reused by each call to a Java implemented predicate
+   private final Map<Integer, Variable> builtinVariables = new HashMap<>();
+   private final Map<Variable, Integer> builtinAddresses = new IdentityHashMap<>();
+
+   /** Returns a machine that is not currently being used by the calling thread. */
+   static WamMachine acquire() {
+      WamMachine machine = POOL.get().poll();
+      return machine == null ? new WamMachine() : machine;
+   }
+
+   /** Makes a machine, that is no longer needed, available to be returned by future calls to {@link #acquire()}. */
+   static void release(WamMachine machine) {
+      machine.program = null;
+      machine.arguments = null;
+      machine.isImmutable = null;
+      machine.queryVariables.clear();
+      machine.runtimeConstants.clear();
+      machine.runtimeConstantIds.clear();
+      machine.runtimeFunctors.clear();
+      machine.runtimeFunctorIds.clear();
+      ArrayDeque<WamMachine> pool = POOL.get();
+      if (machine.heap.length <= MAX_POOLED_HEAP_SIZE && pool.size() < MAX_POOLED_MACHINES) {
+         pool.push(machine);
+      }
+   }
+
+   /**
+    * Attempts to find the first solution of the specified procedure.
+    *
+    * @param program the program containing the procedure
+    * @param procedure the index of the procedure in {@link WamProgram#procedureKeys}
+    * @param args the arguments to call the procedure with
+    * @return {@code true} if a solution was found, else {@code false}
+    */
+   boolean start(WamProgram program, int procedure, Term[] args) {
+      this.program = program;
+      h = 0;
+      hb = 0;
+      tr = 0;
+      b = -1;
+      b0 = -1;
+      e = 0;
+      isRetryIndicated = false;
+      nextGroundEpoch();
+      stack[ENV_CE] = 0;
+      stack[ENV_CP] = WamProgram.HALT_ADDRESS;
+      stack[ENV_N] = 0;
+      if (x.length < Math.max(program.numberOfRegisters, args.length)) {
+         x = new long[Math.max(program.numberOfRegisters, args.length)];
+      }
+
+      Map<Variable, Integer> variables = new IdentityHashMap<>();
+      arguments = new long[args.length];
+      isImmutable = new boolean[args.length];
+      for (int i = 0; i < args.length; i++) {
+         arguments[i] = x[i] = encode(args[i], variables);
+         isImmutable[i] = args[i].isImmutable();
+      }
+      for (Map.Entry<Variable, Integer> entry : variables.entrySet()) {
+         queryVariables.put(entry.getValue(), entry.getKey());
+      }
+
+      cp = WamProgram.HALT_ADDRESS;
+      numArgs = args.length;
+      p = program.procedureEntries[procedure];
+      checkTailRecursion(procedure);
+      return run();
+   }
+
+   /**
+    * Attempts to find the next solution.
+    *
+    * @return {@code true} if another solution was found, else {@code false}
+    */
+   boolean redo() {
+      return backtrack() && run();
+   }
+
+   /** Returns {@code true} if there are clauses still to be tried, meaning {@link #redo()} could succeed. */
+   boolean couldRedoSucceed() {
+      return b >= 0 || isRetryIndicated;
+   }
+
+   /**
+    * Returns the values of the arguments the evaluation was started with.
+    *
+    * @return the current values of the arguments, where an element is {@code null} if the argument it represents was
+    * immutable (and so cannot have been changed by the evaluation)
+    */
+   Term[] getArguments() {
+      Map<Integer, Variable> variables = new HashMap<>(queryVariables);
+      Term[] result = new Term[arguments.length];
+      for (int i = 0; i < result.length; i++) {
+         if (!isImmutable[i]) {
+            result[i] = decode(arguments[i], variables);
+         }
+      }
+      return result;
+   }
+
+   /** Returns the current size, in cells, of the heap. */
+   int getHeapSize() {
+      return h;
+   }
+
+   private boolean run() {
+      final int[] code = program.code;
+      while (true) {
+         switch (code[p]) {
+            case GET_VARIABLE:
+               set(code[p + 1], alias(x[code[p + 2]]));
+               p += 3;
+               break;
+            case GET_VALUE:
+               if (!unify(get(code[p + 1]), x[code[p + 2]])) {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 3;
+               break;
+            case GET_CONSTANT:
+               if (!unifyConstant(program.literals[code[p + 1]], x[code[p + 2]])) {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 3;
+               break;
+            case GET_STRUCTURE: {
+               long functor = create(FUN, code[p + 1]);
+               long cell = deref(x[code[p + 2]]);
+               int tag = tag(cell);
+               if (tag == REF) {
+                  ensureHeapCapacity(1);
+                  heap[h] = functor;
+                  bind(address(cell), create(STR, h));
+                  h++;
+                  writeMode = true;
+               } else if (tag == STR && heap[address(cell)] == functor) {
+                  s = address(cell) + 1;
+                  writeMode = false;
+               } else {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 3;
+               break;
+            }
+            case GET_LIST: {
+               long cell = deref(x[code[p + 1]]);
+               int tag = tag(cell);
+               if (tag == REF) {
+                  bind(address(cell), create(LIS, h));
+                  writeMode = true;
+               } else if (tag == LIS) {
+                  s = address(cell);
+                  writeMode = false;
+               } else {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 2;
+               break;
+            }
+            case UNIFY_VARIABLE:
+               if (writeMode) {
+                  set(code[p + 1], newVariable(program.variableNames[p]));
+               } else {
+                  set(code[p + 1], alias(heap[s++]));
+               }
+               p += 2;
+               break;
+            case UNIFY_VALUE:
+               if (writeMode) {
+                  push(get(code[p + 1]));
+               } else if (!unify(get(code[p + 1]), heap[s++])) {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 2;
+               break;
+            case UNIFY_CONSTANT:
+               if (writeMode) {
+                  push(program.literals[code[p + 1]]);
+               } else if (!unifyConstant(program.literals[code[p + 1]], heap[s++])) {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 2;
+               break;
+            case PUT_VARIABLE: {
+               long variable = newVariable(program.variableNames[p]);
+               set(code[p + 1], variable);
+               x[code[p + 2]] = variable;
+               p += 3;
+               break;
+            }
+            case PUT_VALUE:
+               x[code[p + 2]] = get(code[p + 1]);
+               p += 3;
+               break;
+            case PUT_CONSTANT:
+               x[code[p + 2]] = program.literals[code[p + 1]];
+               p += 3;
+               break;
+            case PUT_STRUCTURE:
+               x[code[p + 2]] = create(STR, h);
+               push(create(FUN, code[p + 1]));
+               p += 3;
+               break;
+            case PUT_LIST:
+               x[code[p + 1]] = create(LIS, h);
+               p += 2;
+               break;
+            case SET_VARIABLE:
+               set(code[p + 1], newVariable(program.variableNames[p]));
+               p += 2;
+               break;
+            case SET_VALUE:
+               push(get(code[p + 1]));
+               p += 2;
+               break;
+            case SET_CONSTANT:
+               push(program.literals[code[p + 1]]);
+               p += 2;
+               break;
+            case ALLOCATE: {
+               int n = code[p + 1];
+               int newE = getStackTop();
+               if (newE + ENV_SIZE + n > stack.length) {
+                  stack = Arrays.copyOf(stack, Math.max(stack.length * 2, newE + ENV_SIZE + n));
+               }
+               stack[newE + ENV_CE] = e;
+               stack[newE + ENV_CP] = cp;
+               stack[newE + ENV_N] = n;
+               e = newE;
+               p += 2;
+               break;
+            }
+            case DEALLOCATE:
+               cp = (int) stack[e + ENV_CP];
+               e = (int) stack[e + ENV_CE];
+               p += 1;
+               break;
+            case CALL: {
+               int procedure = code[p + 1];
+               cp = p + 2;
+               b0 = b;
+               numArgs = program.procedureKeys[procedure].getNumArgs();
+               p = program.procedureEntries[procedure];
+               checkTailRecursion(procedure);
+               break;
+            }
+            case EXECUTE: {
+               int procedure = code[p + 1];
+               b0 = b;
+               numArgs = program.procedureKeys[procedure].getNumArgs();
+               p = program.procedureEntries[procedure];
+               checkTailRecursion(procedure);
+               break;
+            }
+            case PROCEED:
+               p = cp;
+               break;
+            case TRY: {
+               int first = p;
+               while (!isCandidate(code[first + 2])) {
+                  if (code[first] == TRUST) {
+                     first = -1;
+                     break;
+                  }
+                  first += 3;
+               }
+               if (first == -1) {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               int next = getNextCandidate(first);
+               if (next != -1) {
+                  pushChoicepoint(next);
+               }
+               p = code[first + 1];
+               break;
+            }
+            case RETRY: {
+               int next = getNextCandidate(p);
+               if (next == -1) {
+                  popChoicepoint();
+               } else {
+                  choicepoints[b + CP_ALT] = next;
+               }
+               p = code[p + 1];
+               break;
+            }
+            case TRUST:
+               popChoicepoint();
+               p = code[p + 1];
+               break;
+            case SWITCH_ON_TERM: {
+               long cell = deref(x[0]);
+               switch (tag(cell)) {
+                  case REF:
+                     p = code[p + 1];
+                     break;
+                  case LIS:
+                     p = code[p + 3];
+                     break;
+                  case STR:
+                     p = program.switchTables[code[p + 4]].get(heap[address(cell)]);
+                     break;
+                  default:
+                     p = program.switchTables[code[p + 2]].get(cell);
+               }
+               break;
+            }
+            case NECK_CUT:
+               cut(b0);
+               p += 1;
+               break;
+            case GET_LEVEL:
+               set(code[p + 1], b0);
+               p += 2;
+               break;
+            case CUT:
+               cut((int) get(code[p + 1]));
+               p += 2;
+               break;
+            case BUILTIN:
+               if (!callBuiltin(code[p + 1])) {
+                  if (!backtrack()) {
+                     return false;
+                  }
+                  break;
+               }
+               p += 2;
+               break;
+            case FAIL:
+               if (!backtrack()) {
+                  return false;
+               }
+               break;
+            case HALT:
+               return true;
+            default:
+               throw new IllegalStateException("Unknown opcode: " + code[p] + " at: " + p);
+         }
+      }
+   }
+
+   private long get(int register) {
+      return register < 0 ? stack[e + ENV_N - register] : x[register];
+   }
+
+   private void set(int register, long cell) {
+      if (register < 0) {
+         stack[e + ENV_N - register] = cell;
+      } else {
+         x[register] = cell;
+      }
+   }
+
+   private long newVariable(String name) {
+      long variable = create(REF, h);
+      ensureHeapCapacity(1);
+      names[h] = name;
+      heap[h++] = variable;
+      return variable;
+   }
+
+   /**
+    * Returns the cell to store in the register of the first occurrence of a variable of a clause.
+    * <p>
+    * If the cell is an unbound variable then it is bound to a new variable with the name of the variable of the clause.
+    * This is consistent with the interpreter, where an unbound variable of a query becomes an alias of the variable of
+    * the clause - so the names of the variables in results are the same as when the predicate is interpreted.
+    */
+   private long alias(long cell) {
+      long value = deref(cell);
+      if (tag(value) == REF) {
+         long variable = newVariable(program.variableNames[p]);
+         bind(address(value), variable);
+         return variable;
+      }
+      return value;
+   }
+
+   private void push(long cell) {
+      ensureHeapCapacity(1);
+      heap[h++] = cell;
+   }
+
+   private void ensureHeapCapacity(int n) {
+      if (h + n > heap.length) {
+         int capacity = Math.max(heap.length * 2, h + n);
+         heap = Arrays.copyOf(heap, capacity);
+         names = Arrays.copyOf(names, capacity);
+         groundEpochs = Arrays.copyOf(groundEpochs, capacity);
+      }
+   }
+
+   /** Indicates that a retry could succeed if the specified procedure is tail recursive and may have other solutions. */
+   private void checkTailRecursion(int procedure) {
+      boolean[] singleResultIfArgumentImmutable = program.singleResultIfArgumentImmutable[procedure];
+      if (singleResultIfArgumentImmutable == null || isRetryIndicated) {
+         return;
+      }
+      for (int i = 0; i < singleResultIfArgumentImmutable.length; i++) {
+         if (singleResultIfArgumentImmutable[i] && isGround(x[i])) {
+            return;
+         }
+      }
+      isRetryIndicated = true;
+   }
+
+   /**
+    * Returns {@code true} if the specified cell does not contain any unbound variables.
+    * <p>
+    * Compound terms found to be ground are remembered, so that repeatedly checking the remainder of a list (as a
+    * recursive predicate iterates over it) does not cost time proportional to the length of the list each time.
+    */
+   private boolean isGround(long cell) {
+      int top = 0;
+      int numberVisited = 0;
+      pdl[top++] = cell;
+      while (top > 0) {
+         long d = deref(pdl[--top]);
+         int tag = tag(d);
+         if (tag == STR || tag == LIS) {
+            int a = address(d);
+            if (groundEpochs[a] == groundEpoch) {
+               continue;
+            }
+            if (numberVisited == visited.length) {
+               visited = Arrays.copyOf(visited, numberVisited * 2);
+            }
+            visited[numberVisited++] = a;
+         }
+         switch (tag) {
+            case REF:
+               return false;
+            case STR: {
+               int a = address(d);
+               int arity = getArity(address(heap[a]));
+               if (top + arity > pdl.length) {
+                  pdl = Arrays.copyOf(pdl, Math.max(pdl.length * 2, top + arity));
+               }
+               for (int i = 1; i <= arity; i++) {
+                  pdl[top++] = heap[a + i];
+               }
+               break;
+            }
+            case LIS:
+               if (top + 2 > pdl.length) {
+                  pdl = Arrays.copyOf(pdl, pdl.length * 2);
+               }
+               pdl[top++] = heap[address(d)];
+               pdl[top++] = heap[address(d) + 1];
+               break;
+            default:
+               // atomic
+         }
+      }
+      for (int i = 0; i < numberVisited; i++) {
+         groundEpochs[visited[i]] = groundEpoch;
+      }
+      return true;
+   }
+
+   /** Invalidates everything recorded in {@link #groundEpochs}, as bindings they depended on may have been undone. */
+   private void nextGroundEpoch() {
+      if (++groundEpoch == 0) {
+         Arrays.fill(groundEpochs, 0);
+         groundEpoch = 1;
+      }
+   }
+
+   /** Returns the index of the first element of the stack not used by an environment that may still be needed. */
+   private int getStackTop() {
+      int top = e + ENV_SIZE + (int) stack[e + ENV_N];
+      if (b >= 0) {
+         top = Math.max(top, (int) choicepoints[b + CP_ENV_TOP]);
+      }
+      return top;
+   }
+
+   private void pushChoicepoint(int alternative) {
+      int newB = b < 0 ? 0 : b + CP_SIZE + (int) choicepoints[b + CP_N];
+      if (newB + CP_SIZE + numArgs > choicepoints.length) {
+         choicepoints = Arrays.copyOf(choicepoints, Math.max(choicepoints.length * 2, newB + CP_SIZE + numArgs));
+      }
+      choicepoints[newB + CP_ENV_TOP] = getStackTop();
+      choicepoints[newB + CP_B] = b;
+      choicepoints[newB + CP_E] = e;
+      choicepoints[newB + CP_CP] = cp;
+      choicepoints[newB + CP_ALT] = alternative;
+      choicepoints[newB + CP_TR] = tr;
+      choicepoints[newB + CP_H] = h;
+      choicepoints[newB + CP_B0] = b0;
+      choicepoints[newB + CP_N] = numArgs;
+      choicepoints[newB + CP_IS_RETRY_INDICATED] = isRetryIndicated ? 1 : 0;
+      System.arraycopy(x, 0, choicepoints, newB + CP_SIZE, numArgs);
+      b = newB;
+      hb = h;
+   }
+
+   private void popChoicepoint() {
+      b = (int) choicepoints[b + CP_B];
+      hb = b < 0 ? 0 : (int) choicepoints[b + CP_H];
+   }
+
+   /**
+    * Returns the address of the first {@code retry} or {@code trust} instruction, after the {@code try}, {@code retry}
+    * or {@code trust} instruction at {@code address}, whose clause could match the current arguments.
+    *
+    * @return the address of the next instruction to try, or {@code -1} if none of the remaining clauses could match
+    */
+   private int getNextCandidate(int address) {
+      final int[] code = program.code;
+      while (code[address] != TRUST) {
+         address += 3;
+         if (isCandidate(code[address + 2])) {
+            return address;
+         }
+      }
+      return -1;
+   }
+
+   /** Returns {@code false} if the head of the specified clause cannot unify with the current arguments. */
+   private boolean isCandidate(int clause) {
+      long[] signature = program.clauseSignatures[clause];
+      Term[] groundArguments = program.clauseGroundArguments[clause];
+      for (int i = 0; i < signature.length; i++) {
+         long expected = signature[i];
+         if (expected != 0) {
+            long actual = deref(x[i]);
+            switch (tag(actual)) {
+               case REF:
+                  break;
+               case STR:
+                  if (heap[address(actual)] != expected || (groundArguments[i] != null && !isMatch(actual, groundArguments[i]))) {
+                     return false;
+                  }
+                  break;
+               case LIS:
+                  if (tag(expected) != LIS || (groundArguments[i] != null && !isMatch(actual, groundArguments[i]))) {
+                     return false;
+                  }
+                  break;
+               default:
+                  if (actual != expected) {
+                     return false;
+                  }
+            }
+         }
+      }
+      return true;
+   }
+
+   /** Returns {@code false} if the specified cell cannot unify with the specified ground term. */
+   private boolean isMatch(long cell, Term t) {
+      cell = deref(cell);
+      switch (tag(cell)) {
+         case REF:
+            return true;
+         case STR: {
+            int a = address(cell);
+            int functor = address(heap[a]);
+            if (t.getType() != TermType.STRUCTURE || t.getNumberOfArguments() != getArity(functor) || !t.getName().equals(getName(functor))) {
+               return false;
+            }
+            for (int i = 0; i < t.getNumberOfArguments(); i++) {
+               if (!isMatch(heap[a + 1 + i], t.getArgument(i))) {
+                  return false;
+               }
+            }
+            return true;
+         }
+         case LIS: {
+            if (t.getType() != TermType.LIST) {
+               return false;
+            }
+            int a = address(cell);
+            return isMatch(heap[a], t.getArgument(0)) && isMatch(heap[a + 1], t.getArgument(1));
+         }
+         case INT:
+            return t.getType() == TermType.INTEGER && ((IntegerNumber) t).getLong() == WamCell.intValue(cell);
+         default:
+            return t.equals(getConstant(address(cell)));
+      }
+   }
+
+   /**
+    * Restores the state recorded by the most recent choicepoint and continues at its alternative.
+    *
+    * @return {@code false} if there are no choicepoints to backtrack to
+    */
+   private boolean backtrack() {
+      if (b < 0) {
+         return false;
+      }
+      int trailMark = (int) choicepoints[b + CP_TR];
+      while (tr > trailMark) {
+         int address = trail[--tr];
+         heap[address] = create(REF, address);
+      }
+      nextGroundEpoch();
+      e = (int) choicepoints[b + CP_E];
+      cp = (int) choicepoints[b + CP_CP];
+      h = (int) choicepoints[b + CP_H];
+      b0 = (int) choicepoints[b + CP_B0];
+      numArgs = (int) choicepoints[b + CP_N];
+      isRetryIndicated = choicepoints[b + CP_IS_RETRY_INDICATED] == 1;
+      System.arraycopy(choicepoints, b + CP_SIZE, x, 0, numArgs);
+      hb = h;
+      p = (int) choicepoints[b + CP_ALT];
+      return true;
+   }
+
+   /** Discards all the choicepoints more recent than {@code level}. */
+   private void cut(int level) {
+      // the interpreter indicates a clause that contains a cut could be retried
+      isRetryIndicated = true;
+      if (b > level) {
+         b = level;
+         hb = b < 0 ? 0 : (int) choicepoints[b + CP_H];
+      }
+   }
+
+   private long deref(long cell) {
+      while (tag(cell) == REF) {
+         long value = heap[address(cell)];
+         if (value == cell) {
+            return cell;
+         }
+         cell = value;
+      }
+      return cell;
+   }
+
+   private void bind(int address, long cell) {
+      heap[address] = cell;
+      if (address < hb) {
+         if (tr == trail.length) {
+            trail = Arrays.copyOf(trail, tr * 2);
+         }
+         trail[tr++] = address;
+      }
+   }
+
+   private boolean unifyConstant(long constant, long cell) {
+      cell = deref(cell);
+      if (tag(cell) == REF) {
+         bind(address(cell), constant);
+         return true;
+      } else {
+         return cell == constant;
+      }
+   }
+
+   private boolean unify(long c1, long c2) {
+      int top = 0;
+      pdl[top++] = c1;
+      pdl[top++] = c2;
+      while (top > 0) {
+         long d2 = deref(pdl[--top]);
+         long d1 = deref(pdl[--top]);
+         if (d1 == d2) {
+            continue;
+         }
+         int t1 = tag(d1);
+         int t2 = tag(d2);
+         if (t2 == REF) {
+            // consistent with the interpreter, where a variable of a query is bound to the term of the clause
+            bind(address(d2), d1);
+         } else if (t1 == REF) {
+            bind(address(d1), d2);
+         } else if (t1 != t2) {
+            return false;
+         } else if (t1 == STR) {
+            int a1 = address(d1);
+            int a2 = address(d2);
+            if (heap[a1] != heap[a2]) {
+               return false;
+            }
+            int arity = getArity(address(heap[a1]));
+            if (top + arity * 2 > pdl.length) {
+               pdl = Arrays.copyOf(pdl, Math.max(pdl.length * 2, top + arity * 2));
+            }
+            for (int i = arity; i > 0; i--) {
+               pdl[top++] = heap[a1 + i];
+               pdl[top++] = heap[a2 + i];
+            }
+         } else if (t1 == LIS) {
+            int a1 = address(d1);
+            int a2 = address(d2);
+            if (top + 4 > pdl.length) {
+               pdl = Arrays.copyOf(pdl, pdl.length * 2);
+            }
+            // push the tails first so that the heads are unified first
+            pdl[top++] = heap[a1 + 1];
+            pdl[top++] = heap[a2 + 1];
+            pdl[top++] = heap[a1];
+            pdl[top++] = heap[a2];
+         } else {
+            // different constants
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Evaluates a predicate implemented in Java using the contents of the argument registers.
+    *
+    * @return {@code true} if the predicate succeeded, else {@code false}
+    */
+   private boolean callBuiltin(int index) {
+      Term[] args = new Term[program.builtinArities[index]];
+      builtinVariables.clear();
+      for (int i = 0; i < args.length; i++) {
+         args[i] = decode(x[i], builtinVariables);
+      }
+      if (!program.builtins[index].getPredicate(args).evaluate()) {
+         return false;
+      }
+      if (builtinVariables.isEmpty()) {
+         return true;
+      }
+
+      builtinAddresses.clear();
+      for (Map.Entry<Integer, Variable> entry : builtinVariables.entrySet()) {
+         builtinAddresses.put(entry.getValue(), entry.getKey());
+      }
+      for (Map.Entry<Integer, Variable> entry : builtinVariables.entrySet()) {
+         Term value = entry.getValue().getTerm();
+         if (value != entry.getValue() && !unify(encode(value, builtinAddresses), create(REF, entry.getKey()))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Converts a term into a cell, creating any structures and lists it contains on the heap.
+    *
+    * @param variables the heap addresses of variables that have already been encoded
+    */
+   private long encode(Term t, Map<Variable, Integer> variables) {
+      t = t.getTerm();
+      switch (t.getType()) {
+         case VARIABLE: {
+            Integer address = variables.get(t);
+            if (address == null) {
+               address = h;
+               variables.put((Variable) t, address);
+               newVariable(((Variable) t).getId());
+            }
+            return create(REF, address);
+         }
+         case STRUCTURE: {
+            Term[] args = t.getArgs();
+            int start = h;
+            ensureHeapCapacity(args.length + 1);
+            heap[start] = create(FUN, getFunctorId(t));
+            h += args.length + 1;
+            for (int i = 0; i < args.length; i++) {
+               long cell = encode(args[i], variables);
+               heap[start + 1 + i] = cell;
+            }
+            return create(STR, start);
+         }
+         case LIST: {
+            long result = 0;
+            int previousTail = -1;
+            while (t.getType() == TermType.LIST) {
+               int start = h;
+               ensureHeapCapacity(2);
+               h += 2;
+               if (previousTail == -1) {
+                  result = create(LIS, start);
+               } else {
+                  heap[previousTail] = create(LIS, start);
+               }
+               long head = encode(t.getArgument(0), variables);
+               heap[start] = head;
+               previousTail = start + 1;
+               t = t.getArgument(1).getTerm();
+            }
+            long tail = encode(t, variables);
+            heap[previousTail] = tail;
+            return result;
+         }
+         case INTEGER:
+            long value = ((IntegerNumber) t).getLong();
+            if (WamCell.isInt(value)) {
+               return create(INT, value);
+            }
+            // integers too large to fit in a cell are represented as a constant
+            return create(CON, getConstantId(t));
+         default:
+            return create(CON, getConstantId(t));
+      }
+   }
+
+   /** Converts a cell into a term. */
+   private Term decode(long cell, Map<Integer, Variable> variables) {
+      cell = deref(cell);
+      switch (tag(cell)) {
+         case REF: {
+            int address = address(cell);
+            Variable v = variables.get(address);
+            if (v == null) {
+               v = new Variable(names[address]);
+               variables.put(address, v);
+            }
+            return v;
+         }
+         case INT:
+            return IntegerNumberCache.valueOf(WamCell.intValue(cell));
+         case CON:
+            return getConstant(address(cell));
+         case STR: {
+            int address = address(cell);
+            int functor = address(heap[address]);
+            Term[] args = new Term[getArity(functor)];
+            for (int i = 0; i < args.length; i++) {
+               args[i] = decode(heap[address + 1 + i], variables);
+            }
+            return Structure.createStructure(getName(functor), args);
+         }
+         case LIS: {
+            List<Term> elements = new ArrayList<>();
+            while (tag(cell) == LIS) {
+               int address = address(cell);
+               elements.add(decode(heap[address], variables));
+               cell = deref(heap[address + 1]);
+            }
+            return ListFactory.createList(elements.toArray(new Term[elements.size()]), decode(cell, variables));
+         }
+         default:
+            throw new IllegalStateException("Cannot decode: " + cell);
+      }
+   }
+
+   private Term getConstant(int id) {
+      return id < program.numberOfConstants ? program.constants[id] : runtimeConstants.get(id - program.numberOfConstants);
+   }
+
+   private int getConstantId(Term t) {
+      Integer id = program.constantIds.get(t);
+      if (id == null || id >= program.numberOfConstants) {
+         id = runtimeConstantIds.get(t);
+         if (id == null) {
+            id = program.numberOfConstants + runtimeConstants.size();
+            runtimeConstants.add(t);
+            runtimeConstantIds.put(t, id);
+         }
+      }
+      return id;
+   }
+
+   private int getFunctorId(Term t) {
+      PredicateKey key = new PredicateKey(t.getName(), t.getNumberOfArguments());
+      Integer id = program.functorIds.get(key);
+      if (id == null || id >= program.numberOfFunctors) {
+         id = runtimeFunctorIds.get(key);
+         if (id == null) {
+            id = program.numberOfFunctors + runtimeFunctors.size();
+            runtimeFunctors.add(key);
+            runtimeFunctorIds.put(key, id);
+         }
+      }
+      return id;
+   }
+
+   private int getArity(int functor) {
+      return functor < program.numberOfFunctors ? program.functorArities[functor] : runtimeFunctors.get(functor - program.numberOfFunctors).getNumArgs();
+   }
+
+   private String getName(int functor) {
+      return functor < program.numberOfFunctors ? program.functorNames[functor] : runtimeFunctors.get(functor - program.numberOfFunctors).getName();
+   }
+}
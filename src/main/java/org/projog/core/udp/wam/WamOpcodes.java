@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+/**
+ * The instructions executed by a {@link WamMachine}.
+ * <p>
+ * Each instruction is stored in a {@link WamProgram} as its opcode followed by its operands. Operands that refer to a
+ * register are positive (or zero) for a temporary (X) register - the first of which are also used as the argument (A)
+ * registers - and negative for a permanent (Y) register stored in the current environment, where {@code -1} is the
+ * first permanent register.
+ */
+final class WamOpcodes {
+   /** {@code get_variable Vn, Ai} - copies argument register {@code Ai} into {@code Vn} */
+   static final int GET_VARIABLE = 0;
+   /** {@code get_value Vn, Ai} - unifies {@code Vn} with argument register {@code Ai} */
+   static final int GET_VALUE = 1;
+   /** {@code get_constant c, Xi} - unifies {@code Xi} with the constant {@code c} */
+   static final int GET_CONSTANT = 2;
+   /** {@code get_structure f, Xi} - unifies {@code Xi} with a structure with functor {@code f} */
+   static final int GET_STRUCTURE = 3;
+   /** {@code get_list Xi} - unifies {@code Xi} with a list */
+   static final int GET_LIST = 4;
+   /** {@code unify_variable Vn} - in read mode copies the next argument into {@code Vn}, else creates a variable */
+   static final int UNIFY_VARIABLE = 5;
+   /** {@code unify_value Vn} - in read mode unifies the next argument with {@code Vn}, else pushes {@code Vn} */
+   static final int UNIFY_VALUE = 6;
+   /** {@code unify_constant c} - in read mode unifies the next argument with {@code c}, else pushes {@code c} */
+   static final int UNIFY_CONSTANT = 7;
+   /** {@code put_variable Vn, Ai} - creates a new variable and stores it in {@code Vn} and {@code Ai} */
+   static final int PUT_VARIABLE = 8;
+   /** {@code put_value Vn, Ai} - copies {@code Vn} into argument register {@code Ai} */
+   static final int PUT_VALUE = 9;
+   /** {@code put_constant c, Ai} - stores the constant {@code c} in argument register {@code Ai} */
+   static final int PUT_CONSTANT = 10;
+   /** {@code put_structure f, Xi} - creates a structure with functor {@code f} whose arguments are pushed by set_* */
+   static final int PUT_STRUCTURE = 11;
+   /** {@code put_list Xi} - creates a list whose head and tail are pushed by set_* */
+   static final int PUT_LIST = 12;
+   /** {@code set_variable Vn} - pushes a new variable and stores it in {@code Vn} */
+   static final int SET_VARIABLE = 13;
+   /** {@code set_value Vn} - pushes {@code Vn} */
+   static final int SET_VALUE = 14;
+   /** {@code set_constant c} - pushes the constant {@code c} */
+   static final int SET_CONSTANT = 15;
+   /** {@code allocate N} - creates an environment with {@code N} permanent registers */
+   static final int ALLOCATE = 16;
+   /** {@code deallocate} - discards the current environment */
+   static final int DEALLOCATE = 17;
+   /** {@code call p} - calls procedure {@code p}, continuing with the next instruction when it succeeds */
+   static final int CALL = 18;
+   /** {@code execute p} - calls procedure {@code p} as the last goal of a clause */
+   static final int EXECUTE = 19;
+   /** {@code proceed} - continues with the continuation of the current procedure */
+   static final int PROCEED = 20;
+   /**
+    * {@code try L, C} - continues at clause {@code C}, whose address is {@code L}, creating a choicepoint whose
+    * alternative is the next instruction - unless no subsequent clause could match the arguments
+    */
+   static final int TRY = 21;
+   /** {@code retry L, C} - updates the alternative of the current choicepoint and continues at clause {@code C} */
+   static final int RETRY = 22;
+   /** {@code trust L, C} - discards the current choicepoint and continues at clause {@code C} */
+   static final int TRUST = 23;
+   /**
+    * {@code switch_on_term Lv, Tc, Ll, Ts} - continues at an address determined by the type of the first argument: a
+    * variable ({@code Lv}), a constant (looked up in table {@code Tc}), a list ({@code Ll}) or a structure (looked up in
+    * table {@code Ts})
+    */
+   static final int SWITCH_ON_TERM = 24;
+   /** {@code neck_cut} - discards the choicepoints created since the current procedure was called */
+   static final int NECK_CUT = 25;
+   /** {@code get_level Yn} - records the choicepoint that a cut in the current clause will return to */
+   static final int GET_LEVEL = 26;
+   /** {@code cut Yn} - discards the choicepoints created since the level recorded in {@code Yn} */
+   static final int CUT = 27;
+   /** {@code builtin b} - evaluates the Java implemented predicate {@code b} using the argument registers */
+   static final int BUILTIN = 28;
+   /** {@code fail} - backtracks to the most recent choicepoint */
+   static final int FAIL = 29;
+   /** {@code halt} - the query has succeeded */
+   static final int HALT = 30;
+
+   private static final String[] NAMES = {"get_variable", "get_value", "get_constant", "get_structure", "get_list", "unify_variable", "unify_value", "unify_constant", "put_variable", "put_value", "put_constant", "put_structure", "put_list", "set_variable", "set_value", "set_constant", "allocate", "deallocate", "call", "execute", "proceed", "try", "retry", "trust", "switch_on_term", "neck_cut", "get_level", "cut", "builtin", "fail", "halt"};
+   private static final int[] NUMBER_OF_OPERANDS = {2, 2, 2, 2, 1, 1, 1, 1, 2, 2, 2, 2, 1, 1, 1, 1, 1, 0, 1, 1, 0, 2, 2, 2, 4, 0, 1, 1, 1, 0, 0};
+
+   /**
+    * Private constructor as all methods are static.
+    */
+   private WamOpcodes() {
+      // do nothing
+   }
+
+   static String getName(int opcode) {
+      return NAMES[opcode];
+   }
+
+   static int getNumberOfOperands(int opcode) {
+      return NUMBER_OF_OPERANDS[opcode];
+   }
+}
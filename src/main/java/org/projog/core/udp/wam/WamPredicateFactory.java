@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+import org.projog.core.Predicate;
+import org.projog.core.PredicateFactory;
+import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
+
+/**
+ * Evaluates a user defined predicate by executing a {@link WamProgram}.
+ * <p>
+ * The {@link WamMachine} used to evaluate a call is kept until the call has no more solutions, so that calls
+ * interleaved with other calls (e.g. the goals of a conjunction) each keep their own heap, stack and choicepoints.
+ */
+final class WamPredicateFactory implements PredicateFactory {
+   private final WamProgram program;
+   private final int procedure;
+   private final PredicateFactory interpreted;
+
+   WamPredicateFactory(WamProgram program, int procedure, PredicateFactory interpreted) {
+      this.program = program;
+      this.procedure = procedure;
+      this.interpreted = interpreted;
+   }
+
+   @Override
+   public Predicate getPredicate(Term[] args) {
+      if (program.isSpyPointEnabled()) {
+         // the machine does not notify spy points so use the interpreter while they are enabled
+         return interpreted.getPredicate(args);
+      }
+      return new WamPredicate(args);
+   }
+
+   @Override
+   public boolean isRetryable() {
+      return interpreted.isRetryable();
+   }
+
+   /** Returns the program used to evaluate the predicate. */
+   WamProgram getProgram() {
+      return program;
+   }
+
+   private final class WamPredicate implements Predicate {
+      private final Term[] args;
+      private WamMachine machine;
+      private Trail trail;
+      private int mark;
+      private boolean isStarted;
+
+      WamPredicate(Term[] args) {
+         this.args = args;
+      }
+
+      @Override
+      public boolean evaluate() {
+         boolean isSuccess;
+         try {
+            if (!isStarted) {
+               isStarted = true;
+               trail = Trail.getCurrent();
+               mark = trail.mark();
+               machine = WamMachine.acquire();
+               isSuccess = machine.start(program, procedure, args);
+            } else if (machine == null) {
+               return false;
+            } else {
+               trail.undo(mark);
+               isSuccess = machine.redo();
+            }
+         } catch (RuntimeException e) {
+            // do not reuse a machine that is in an unknown state
+            machine = null;
+            throw e;
+         }
+
+         if (isSuccess) {
+            Term[] results = machine.getArguments();
+            for (int i = 0; i < args.length; i++) {
+               if (results[i] != null && !args[i].unify(results[i])) {
+                  throw new IllegalStateException("Could not unify: " + args[i] + " with: " + results[i]);
+               }
+            }
+         }
+         if (!isSuccess || !machine.couldRedoSucceed()) {
+            WamMachine.release(machine);
+            machine = null;
+         }
+         return isSuccess;
+      }
+
+      @Override
+      public boolean couldReevaluationSucceed() {
+         return !isStarted || machine != null;
+      }
+   }
+}
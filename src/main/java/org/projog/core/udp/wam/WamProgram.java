@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+import java.util.Map;
+
+import org.projog.core.PredicateFactory;
+import org.projog.core.PredicateKey;
+import org.projog.core.SpyPoints;
+import org.projog.core.term.Term;
+
+/**
+ * The compiled instructions, and the tables they refer to, of a group of user defined predicates.
+ * <p>
+ * The procedures of all the predicates of a knowledge base are compiled, once each, into a single append-only image
+ * maintained by {@link WamProgramBuilder}. A program is a view of the first {@link #codeSize} instructions (and the
+ * first {@link #numberOfConstants} constants, etc.) of that image - which include a procedure for a predicate and for
+ * every user defined predicate that it (directly or indirectly) calls. The arrays of a program may be longer than
+ * these counts, and the maps may contain later identifiers, as the image continues to grow after the program is
+ * created. The part of the image a program refers to is never changed, so a program can be shared by all the
+ * {@link WamMachine}s that execute it.
+ *
+ * @see WamOpcodes
+ */
+final class WamProgram {
+   /** The address of an instruction that indicates a query has succeeded. */
+   static final int HALT_ADDRESS = 0;
+   /** The address of an instruction that backtracks. */
+   static final int FAIL_ADDRESS = 1;
+
+   final int[] code;
+   /** The number of instructions of {@link #code} that belong to this program. */
+   final int codeSize;
+   /** The cells referred to by the operands of the {@code *_constant} instructions. */
+   final long[] literals;
+   final String[] functorNames;
+   final int[] functorArities;
+   /** The number of functors of {@link #functorNames} that belong to this program. */
+   final int numberOfFunctors;
+   /**
+    * The identifiers of the {@link WamCell#FUN} cells keyed by the name and arity they represent - where identifiers
+    * not less than {@link #numberOfFunctors} do not belong to this program.
+    */
+   final Map<PredicateKey, Integer> functorIds;
+   /** The terms represented by {@link WamCell#CON} cells, indexed by their identifier. */
+   final Term[] constants;
+   /** The number of terms of {@link #constants} that belong to this program. */
+   final int numberOfConstants;
+   /**
+    * The identifiers of {@link #constants} keyed by the term they represent - where identifiers not less than
+    * {@link #numberOfConstants} do not belong to this program.
+    */
+   final Map<Term, Integer> constantIds;
+   final PredicateFactory[] builtins;
+   final int[] builtinArities;
+   final SwitchTable[] switchTables;
+   /**
+    * The cells, indexed by clause, that each argument of the head of a clause must match - where {@code 0} means the
+    * argument is a variable that matches anything.
+    * <p>
+    * Used by {@link WamOpcodes#TRY} and {@link WamOpcodes#RETRY} to avoid creating choicepoints for clauses that
+    * cannot match.
+    */
+   final long[][] clauseSignatures;
+   /**
+    * The ground structures and lists, indexed by clause, that each argument of the head of a clause must match - where
+    * {@code null} means the argument is not a ground structure or list.
+    */
+   final Term[][] clauseGroundArguments;
+   /** The name of the variable created by the instruction at each address, so results use the names of the clauses. */
+   final String[] variableNames;
+   /**
+    * Indexed by procedure, identifies the arguments of tail recursive procedures that, when immutable, mean the
+    * procedure will not produce more than one solution - or {@code null} if a procedure is not tail recursive.
+    *
+    * @see org.projog.core.udp.TailRecursivePredicateMetaData#isSingleResultIfArgumentImmutable(int)
+    */
+   final boolean[][] singleResultIfArgumentImmutable;
+   final PredicateKey[] procedureKeys;
+   final int[] procedureEntries;
+   /** The number of procedures of {@link #procedureKeys} that belong to this program. */
+   final int numberOfProcedures;
+   /** The spy points of the predicates whose procedures can be reached from the procedure the program was created for. */
+   final SpyPoints.SpyPoint[] spyPoints;
+   /** The number of X registers required to execute the program. */
+   final int numberOfRegisters;
+
+   WamProgram(int[] code, int codeSize, long[] literals, String[] functorNames, int[] functorArities, int numberOfFunctors, Map<PredicateKey, Integer> functorIds, Term[] constants, int numberOfConstants, Map<Term, Integer> constantIds, PredicateFactory[] builtins, int[] builtinArities, SwitchTable[] switchTables, long[][] clauseSignatures, Term[][] clauseGroundArguments, String[] variableNames, boolean[][] singleResultIfArgumentImmutable, PredicateKey[] procedureKeys, int[] procedureEntries, int numberOfProcedures, SpyPoints.SpyPoint[] spyPoints, int numberOfRegisters) {
+      this.code = code;
+      this.codeSize = codeSize;
+      this.literals = literals;
+      this.functorNames = functorNames;
+      this.functorArities = functorArities;
+      this.numberOfFunctors = numberOfFunctors;
+      this.functorIds = functorIds;
+      this.constants = constants;
+      this.numberOfConstants = numberOfConstants;
+      this.constantIds = constantIds;
+      this.builtins = builtins;
+      this.builtinArities = builtinArities;
+      this.switchTables = switchTables;
+      this.clauseSignatures = clauseSignatures;
+      this.clauseGroundArguments = clauseGroundArguments;
+      this.variableNames = variableNames;
+      this.singleResultIfArgumentImmutable = singleResultIfArgumentImmutable;
+      this.procedureKeys = procedureKeys;
+      this.procedureEntries = procedureEntries;
+      this.numberOfProcedures = numberOfProcedures;
+      this.spyPoints = spyPoints;
+      this.numberOfRegisters = numberOfRegisters;
+   }
+
+   /** Returns {@code true} if a spy point is enabled for any of the predicates {@link #spyPoints} refers to. */
+   boolean isSpyPointEnabled() {
+      for (SpyPoints.SpyPoint spyPoint : spyPoints) {
+         if (spyPoint.isEnabled()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /** Returns a human readable listing of the instructions of this program. */
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      int pc = 0;
+      while (pc < codeSize) {
+         for (int i = 0; i < numberOfProcedures; i++) {
+            if (procedureEntries[i] == pc) {
+               sb.append(procedureKeys[i]).append(":\n");
+            }
+         }
+         int opcode = code[pc];
+         sb.append(pc).append('\t').append(WamOpcodes.getName(opcode));
+         for (int i = 1; i <= WamOpcodes.getNumberOfOperands(opcode); i++) {
+            sb.append(i == 1 ? " " : ", ").append(code[pc + i]);
+         }
+         sb.append('\n');
+         pc += 1 + WamOpcodes.getNumberOfOperands(opcode);
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Maps the cells of the first arguments of clauses to the address of the instructions to try for them.
+    * <p>
+    * Uses open addressing, rather than a {@code java.util.Map}, to avoid boxing the cells.
+    */
+   static final class SwitchTable {
+      private final long[] keys;
+      private final int[] addresses;
+      private final boolean[] used;
+      private final int mask;
+      private final int defaultAddress;
+
+      SwitchTable(Map<Long, Integer> addresses, int defaultAddress) {
+         int capacity = Integer.highestOneBit(Math.max(2, addresses.size() * 2) - 1) << 1;
+         this.keys = new long[capacity];
+         this.addresses = new int[capacity];
+         this.used = new boolean[capacity];
+         this.mask = capacity - 1;
+         this.defaultAddress = defaultAddress;
+         for (Map.Entry<Long, Integer> e : addresses.entrySet()) {
+            int i = hash(e.getKey());
+            while (used[i]) {
+               i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = e.getKey();
+            this.addresses[i] = e.getValue();
+         }
+      }
+
+      /** Returns the address to continue at for the specified cell. */
+      int get(long key) {
+         int i = hash(key);
+         while (used[i]) {
+            if (keys[i] == key) {
+               return addresses[i];
+            }
+            i = (i + 1) & mask;
+         }
+         return defaultAddress;
+      }
+
+      private int hash(long key) {
+         long h = key * 0x9E3779B97F4A7C15L;
+         return (int) (h >>> 32) & mask;
+      }
+   }
+}
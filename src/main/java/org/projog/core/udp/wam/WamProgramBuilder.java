@@ -0,0 +1,882 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+import static org.projog.core.KnowledgeBaseUtils.isConjunction;
+import static org.projog.core.udp.wam.WamOpcodes.ALLOCATE;
+import static org.projog.core.udp.wam.WamOpcodes.BUILTIN;
+import static org.projog.core.udp.wam.WamOpcodes.CALL;
+import static org.projog.core.udp.wam.WamOpcodes.CUT;
+import static org.projog.core.udp.wam.WamOpcodes.DEALLOCATE;
+import static org.projog.core.udp.wam.WamOpcodes.EXECUTE;
+import static org.projog.core.udp.wam.WamOpcodes.FAIL;
+import static org.projog.core.udp.wam.WamOpcodes.GET_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.GET_LEVEL;
+import static org.projog.core.udp.wam.WamOpcodes.GET_LIST;
+import static org.projog.core.udp.wam.WamOpcodes.GET_STRUCTURE;
+import static org.projog.core.udp.wam.WamOpcodes.GET_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.GET_VARIABLE;
+import static org.projog.core.udp.wam.WamOpcodes.HALT;
+import static org.projog.core.udp.wam.WamOpcodes.NECK_CUT;
+import static org.projog.core.udp.wam.WamOpcodes.PROCEED;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_LIST;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_STRUCTURE;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.PUT_VARIABLE;
+import static org.projog.core.udp.wam.WamOpcodes.RETRY;
+import static org.projog.core.udp.wam.WamOpcodes.SET_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.SET_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.SET_VARIABLE;
+import static org.projog.core.udp.wam.WamOpcodes.SWITCH_ON_TERM;
+import static org.projog.core.udp.wam.WamOpcodes.TRUST;
+import static org.projog.core.udp.wam.WamOpcodes.TRY;
+import static org.projog.core.udp.wam.WamOpcodes.UNIFY_CONSTANT;
+import static org.projog.core.udp.wam.WamOpcodes.UNIFY_VALUE;
+import static org.projog.core.udp.wam.WamOpcodes.UNIFY_VARIABLE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.projog.core.KnowledgeBase;
+import org.projog.core.PredicateFactory;
+import org.projog.core.PredicateKey;
+import org.projog.core.SpyPoints;
+import org.projog.core.UnknownPredicate;
+import org.projog.core.term.IntegerNumber;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.term.Variable;
+import org.projog.core.udp.ClauseModel;
+import org.projog.core.udp.StaticUserDefinedPredicateFactory;
+import org.projog.core.udp.TailRecursivePredicateMetaData;
+import org.projog.core.udp.UserDefinedPredicateFactory;
+
+/**
+ * Compiles a user defined predicate, and the user defined predicates it calls, into a {@link WamProgram}.
+ * <p>
+ * Each procedure is compiled once and appended to an image shared by all the programs the builder creates - so the
+ * size of the image is proportional to the number of compiled clauses, rather than to the number of compiled
+ * predicates multiplied by the size of the predicates they call.
+ * <p>
+ * A predicate can only be compiled if every predicate it (directly or indirectly) calls is either:
+ * <ul>
+ * <li>a static user defined predicate that can also be compiled; or</li>
+ * <li>a predicate implemented in Java that is not retryable (e.g. {@code is/2} or {@code atom/1}), which is evaluated
+ * by calling out from the {@link WamMachine} - see {@link WamOpcodes#BUILTIN}.</li>
+ * </ul>
+ * Clauses that use a variable as a goal, call a dynamic or undefined predicate, call a retryable built-in predicate
+ * (such as a disjunction or {@code member/2}) or pass a cut to a built-in predicate prevent the predicate from being
+ * compiled.
+ * <p>
+ * The compilation scheme is a simplified version of the one described in "Warren's Abstract Machine: A Tutorial
+ * Reconstruction" by Hassan Ait-Kaci. The main simplifications are that all variables are created on the heap (so
+ * there is no need for {@code unify_local_value} or {@code put_unsafe_value}) and that argument registers are never
+ * reused for temporary variables.
+ */
+final class WamProgramBuilder {
+   /** The maximum number of clauses a single call to {@link #build(PredicateKey)} can compile. */
+   private static final int MAX_CLAUSES = 10_000;
+   private static final int INITIAL_CAPACITY = 16;
+
+   private final KnowledgeBase kb;
+   /** The most recently compiled procedure of each predicate. */
+   private final Map<PredicateKey, Procedure> procedures = new HashMap<>();
+   /** Every procedure of the image, indexed by identifier - including those superseded in {@link #procedures}. */
+   private final List<Procedure> procedureList = new ArrayList<>();
+   /** What each goal being compiled refers to - either the {@code PredicateKey} of a procedure or the factory of a built-in. */
+   private final Map<Term, Object> goalTargets = new IdentityHashMap<>();
+   /** The identifiers of the procedures called by the procedure currently being compiled. */
+   private final Set<Integer> callees = new LinkedHashSet<>();
+
+   private int[] code = new int[256];
+   private String[] variableNames = new String[256];
+   private int codeSize;
+   private long[] literals = new long[INITIAL_CAPACITY];
+   private int numberOfLiterals;
+   private final Map<Long, Integer> literalIds = new HashMap<>();
+   private String[] functorNames = new String[INITIAL_CAPACITY];
+   private int[] functorArities = new int[INITIAL_CAPACITY];
+   private int numberOfFunctors;
+   // read by machines executing earlier programs while later procedures are compiled
+   private final Map<PredicateKey, Integer> functorIds = new ConcurrentHashMap<>();
+   private Term[] constants = new Term[INITIAL_CAPACITY];
+   private int numberOfConstants;
+   private final Map<Term, Integer> constantIds = new ConcurrentHashMap<>();
+   private PredicateFactory[] builtins = new PredicateFactory[INITIAL_CAPACITY];
+   private int[] builtinArities = new int[INITIAL_CAPACITY];
+   private int numberOfBuiltins;
+   private WamProgram.SwitchTable[] switchTables = new WamProgram.SwitchTable[INITIAL_CAPACITY];
+   private int numberOfSwitchTables;
+   private long[][] clauseSignatures = new long[INITIAL_CAPACITY][];
+   private Term[][] clauseGroundArguments = new Term[INITIAL_CAPACITY][];
+   private int numberOfClauses;
+   private PredicateKey[] procedureKeys = new PredicateKey[INITIAL_CAPACITY];
+   private int[] procedureEntries = new int[INITIAL_CAPACITY];
+   private boolean[][] singleResultIfArgumentImmutable = new boolean[INITIAL_CAPACITY][];
+   private int numberOfRegisters;
+
+   /**
+    * Creates a builder whose image is shared by all the programs it builds.
+    *
+    * @param kb the knowledge base the compiled predicates belong to
+    */
+   WamProgramBuilder(KnowledgeBase kb) {
+      this.kb = kb;
+      emit(HALT);
+      emit(FAIL);
+   }
+
+   /**
+    * Compiles the specified predicate.
+    * <p>
+    * Only the procedures that are not already part of the image are compiled - a program calls the existing procedures
+    * of the image rather than containing its own copy of them. A procedure is compiled again if its predicate has been
+    * replaced, or had clauses added, since it was compiled - existing procedures that call it continue to use the
+    * version they were compiled with.
+    *
+    * @param key the predicate to compile
+    * @return a program containing a procedure for the predicate - see {@link #getProcedureId(PredicateKey)} - or
+    * {@code null} if the predicate cannot be compiled
+    */
+   WamProgram build(PredicateKey key) {
+      Map<PredicateKey, List<ClauseModel>> newProcedures = new LinkedHashMap<>();
+      try {
+         if (!collectProcedures(key, newProcedures)) {
+            return null;
+         }
+         // allocate the identifiers first, so calls to procedures that have not been compiled yet can be emitted
+         for (Map.Entry<PredicateKey, List<ClauseModel>> e : newProcedures.entrySet()) {
+            addProcedure(e.getKey(), e.getValue());
+         }
+         for (Map.Entry<PredicateKey, List<ClauseModel>> e : newProcedures.entrySet()) {
+            compileProcedure(procedures.get(e.getKey()), e.getValue());
+         }
+      } finally {
+         goalTargets.clear();
+      }
+      return createProgram(procedures.get(key));
+   }
+
+   /** Returns the identifier of the most recently compiled procedure of the specified predicate. */
+   int getProcedureId(PredicateKey key) {
+      return procedures.get(key).id;
+   }
+
+   /**
+    * Finds every procedure that needs to be compiled, and is not already part of the image, returning {@code false}
+    * if any of them cannot be compiled.
+    */
+   private boolean collectProcedures(PredicateKey root, Map<PredicateKey, List<ClauseModel>> newProcedures) {
+      ArrayDeque<PredicateKey> pending = new ArrayDeque<>();
+      requireProcedure(root, pending, newProcedures);
+      int numberOfNewClauses = 0;
+      while (!pending.isEmpty()) {
+         PredicateKey key = pending.pop();
+         UserDefinedPredicateFactory udp = kb.getPredicates().getUserDefinedPredicates().get(key);
+         if (!(udp instanceof StaticUserDefinedPredicateFactory)) {
+            return false;
+         }
+         List<ClauseModel> clauses = new ArrayList<>();
+         for (Iterator<ClauseModel> i = udp.getImplications(); i.hasNext();) {
+            ClauseModel clause = i.next();
+            clauses.add(clause);
+            for (Term goal : getGoals(clause.getAntecedent())) {
+               if (!addGoal(goal, pending, newProcedures)) {
+                  return false;
+               }
+            }
+         }
+         numberOfNewClauses += clauses.size();
+         if (numberOfNewClauses > MAX_CLAUSES) {
+            return false;
+         }
+         newProcedures.put(key, clauses);
+      }
+      return true;
+   }
+
+   private void requireProcedure(PredicateKey key, ArrayDeque<PredicateKey> pending, Map<PredicateKey, List<ClauseModel>> newProcedures) {
+      if (!newProcedures.containsKey(key) && !isUpToDate(procedures.get(key))) {
+         newProcedures.put(key, null);
+         pending.add(key);
+      }
+   }
+
+   /** Returns {@code true} if the clauses of the predicate are the same as when the procedure was compiled. */
+   private boolean isUpToDate(Procedure procedure) {
+      if (procedure == null) {
+         return false;
+      }
+      UserDefinedPredicateFactory udp = kb.getPredicates().getUserDefinedPredicates().get(procedure.key);
+      if (udp != procedure.factory) {
+         return false;
+      }
+      int numberOfClauses = 0;
+      for (Iterator<ClauseModel> i = udp.getImplications(); i.hasNext(); i.next()) {
+         numberOfClauses++;
+      }
+      return numberOfClauses == procedure.numberOfClauses;
+   }
+
+   private boolean addGoal(Term goal, ArrayDeque<PredicateKey> pending, Map<PredicateKey, List<ClauseModel>> newProcedures) {
+      if (goal.getType().isVariable()) {
+         return false;
+      }
+      if (isCut(goal)) {
+         return true;
+      }
+      PredicateFactory pf = kb.getPredicates().getPredicateFactory(goal);
+      if (pf instanceof StaticUserDefinedPredicateFactory) {
+         PredicateKey key = PredicateKey.createForTerm(goal);
+         requireProcedure(key, pending, newProcedures);
+         goalTargets.put(goal, key);
+         return true;
+      } else if (pf instanceof UserDefinedPredicateFactory || pf instanceof UnknownPredicate || containsCut(goal)) {
+         return false;
+      }
+      pf = kb.getPredicates().getPreprocessedPredicateFactory(goal);
+      if (pf.isRetryable()) {
+         return false;
+      }
+      goalTargets.put(goal, pf);
+      return true;
+   }
+
+   private static boolean containsCut(Term t) {
+      t = t.getTerm();
+      if (isCut(t)) {
+         return true;
+      }
+      switch (t.getType()) {
+         case STRUCTURE:
+         case LIST:
+            for (Term arg : getArguments(t)) {
+               if (containsCut(arg)) {
+                  return true;
+               }
+            }
+            return false;
+         default:
+            return false;
+      }
+   }
+
+   /** Returns the arguments of a structure or list - {@code List#getArgs()} is not supported. */
+   private static Term[] getArguments(Term t) {
+      Term[] args = new Term[t.getNumberOfArguments()];
+      for (int i = 0; i < args.length; i++) {
+         args[i] = t.getArgument(i);
+      }
+      return args;
+   }
+
+   private static boolean isCut(Term t) {
+      return t.getType() == TermType.ATOM && "!".equals(t.getName());
+   }
+
+   private static boolean isTrue(Term t) {
+      return t.getType() == TermType.ATOM && "true".equals(t.getName());
+   }
+
+   /** Returns the goals of the specified body, with nested conjunctions flattened and {@code true} removed. */
+   private static List<Term> getGoals(Term antecedent) {
+      List<Term> goals = new ArrayList<>();
+      addGoals(antecedent.getTerm(), goals);
+      return goals;
+   }
+
+   private static void addGoals(Term t, List<Term> goals) {
+      if (isConjunction(t)) {
+         addGoals(t.getArgument(0).getTerm(), goals);
+         addGoals(t.getArgument(1).getTerm(), goals);
+      } else if (!isTrue(t)) {
+         goals.add(t);
+      }
+   }
+
+   private void addProcedure(PredicateKey key, List<ClauseModel> clauses) {
+      int id = procedureList.size();
+      if (id == procedureKeys.length) {
+         procedureKeys = Arrays.copyOf(procedureKeys, id * 2);
+         procedureEntries = Arrays.copyOf(procedureEntries, id * 2);
+         singleResultIfArgumentImmutable = Arrays.copyOf(singleResultIfArgumentImmutable, id * 2);
+      }
+      procedureKeys[id] = key;
+      Procedure procedure = new Procedure(id, key, kb.getPredicates().getUserDefinedPredicates().get(key), clauses.size());
+      procedureList.add(procedure);
+      procedures.put(key, procedure);
+   }
+
+   /**
+    * Returns a program for the image as it is now, with the spy points of the procedures that can be reached from the
+    * specified procedure.
+    */
+   private WamProgram createProgram(Procedure root) {
+      Set<Procedure> reachable = new LinkedHashSet<>();
+      ArrayDeque<Procedure> pending = new ArrayDeque<>();
+      reachable.add(root);
+      pending.add(root);
+      while (!pending.isEmpty()) {
+         for (int callee : pending.pop().callees) {
+            Procedure procedure = procedureList.get(callee);
+            if (reachable.add(procedure)) {
+               pending.add(procedure);
+            }
+         }
+      }
+      SpyPoints.SpyPoint[] spyPoints = new SpyPoints.SpyPoint[reachable.size()];
+      int i = 0;
+      for (Procedure procedure : reachable) {
+         spyPoints[i++] = kb.getSpyPoints().getSpyPoint(procedure.key);
+      }
+      return new WamProgram(code, codeSize, literals, functorNames, functorArities, numberOfFunctors, functorIds, constants, numberOfConstants, constantIds, builtins, builtinArities, switchTables, clauseSignatures, clauseGroundArguments, variableNames, singleResultIfArgumentImmutable, procedureKeys, procedureEntries, procedureList.size(), spyPoints, numberOfRegisters);
+   }
+
+   /** Compiles the clauses of a procedure, recording its address and the procedures it calls. */
+   private void compileProcedure(Procedure procedure, List<ClauseModel> clauses) {
+      callees.clear();
+      procedureEntries[procedure.id] = compileClauses(clauses);
+      procedure.callees = new int[callees.size()];
+      int i = 0;
+      for (int callee : callees) {
+         procedure.callees[i++] = callee;
+      }
+      TailRecursivePredicateMetaData metaData = TailRecursivePredicateMetaData.create(kb, clauses);
+      if (metaData != null) {
+         boolean[] singleResult = new boolean[clauses.get(0).getConsequent().getNumberOfArguments()];
+         for (int a = 0; a < singleResult.length; a++) {
+            singleResult[a] = metaData.isSingleResultIfArgumentImmutable(a);
+         }
+         singleResultIfArgumentImmutable[procedure.id] = singleResult;
+      }
+   }
+
+   /** Compiles the clauses of a procedure, returning the address of the procedure. */
+   private int compileClauses(List<ClauseModel> clauses) {
+      int[] clauseAddresses = new int[clauses.size()];
+      int[] clauseIds = new int[clauses.size()];
+      for (int i = 0; i < clauseAddresses.length; i++) {
+         clauseAddresses[i] = codeSize;
+         clauseIds[i] = addClause(clauses.get(i).getConsequent());
+         new ClauseCompiler(clauses.get(i)).compile();
+      }
+
+      if (clauses.isEmpty()) {
+         return WamProgram.FAIL_ADDRESS;
+      } else if (clauses.size() == 1) {
+         return clauseAddresses[0];
+      }
+
+      Map<List<Integer>, Integer> chains = new HashMap<>();
+      List<Integer> all = new ArrayList<>();
+      for (int i = 0; i < clauseAddresses.length; i++) {
+         all.add(i);
+      }
+      if (clauses.get(0).getConsequent().getNumberOfArguments() == 0) {
+         return emitChain(all, clauseAddresses, clauseIds, chains);
+      }
+
+      // index on the first argument
+      List<Integer> variables = new ArrayList<>();
+      List<Integer> lists = new ArrayList<>();
+      Map<Long, List<Integer>> byConstant = new LinkedHashMap<>();
+      Map<Long, List<Integer>> byFunctor = new LinkedHashMap<>();
+      for (int i = 0; i < clauseAddresses.length; i++) {
+         Term arg = clauses.get(i).getConsequent().getArgument(0).getTerm();
+         switch (arg.getType()) {
+            case VARIABLE:
+               variables.add(i);
+               lists.add(i);
+               for (List<Integer> l : byConstant.values()) {
+                  l.add(i);
+               }
+               for (List<Integer> l : byFunctor.values()) {
+                  l.add(i);
+               }
+               break;
+            case LIST:
+               lists.add(i);
+               break;
+            case STRUCTURE:
+               long functor = WamCell.create(WamCell.FUN, functor(arg));
+               byFunctor.computeIfAbsent(functor, k -> new ArrayList<>(variables)).add(i);
+               break;
+            default:
+               byConstant.computeIfAbsent(constantCell(arg), k -> new ArrayList<>(variables)).add(i);
+         }
+      }
+
+      int onVariable = emitChain(all, clauseAddresses, clauseIds, chains);
+      int onList = emitChain(lists, clauseAddresses, clauseIds, chains);
+      int otherwise = emitChain(variables, clauseAddresses, clauseIds, chains);
+      Map<Long, Integer> constantAddresses = new HashMap<>();
+      for (Map.Entry<Long, List<Integer>> e : byConstant.entrySet()) {
+         constantAddresses.put(e.getKey(), emitChain(e.getValue(), clauseAddresses, clauseIds, chains));
+      }
+      Map<Long, Integer> functorAddresses = new HashMap<>();
+      for (Map.Entry<Long, List<Integer>> e : byFunctor.entrySet()) {
+         functorAddresses.put(e.getKey(), emitChain(e.getValue(), clauseAddresses, clauseIds, chains));
+      }
+      int constantTable = addSwitchTable(new WamProgram.SwitchTable(constantAddresses, otherwise));
+      int functorTable = addSwitchTable(new WamProgram.SwitchTable(functorAddresses, otherwise));
+
+      int address = codeSize;
+      emit(SWITCH_ON_TERM, onVariable, constantTable, onList, functorTable);
+      return address;
+   }
+
+   /** Emits instructions to try each of the specified clauses in turn, returning their address. */
+   private int emitChain(List<Integer> clauseIndexes, int[] clauseAddresses, int[] clauseIds, Map<List<Integer>, Integer> chains) {
+      if (clauseIndexes.isEmpty()) {
+         return WamProgram.FAIL_ADDRESS;
+      } else if (clauseIndexes.size() == 1) {
+         return clauseAddresses[clauseIndexes.get(0)];
+      }
+      Integer existing = chains.get(clauseIndexes);
+      if (existing != null) {
+         return existing;
+      }
+      int address = codeSize;
+      for (int i = 0; i < clauseIndexes.size(); i++) {
+         int opcode = i == 0 ? TRY : i == clauseIndexes.size() - 1 ? TRUST : RETRY;
+         emit(opcode, clauseAddresses[clauseIndexes.get(i)], clauseIds[clauseIndexes.get(i)]);
+      }
+      chains.put(clauseIndexes, address);
+      return address;
+   }
+
+   private int addClause(Term head) {
+      if (numberOfClauses == clauseSignatures.length) {
+         clauseSignatures = Arrays.copyOf(clauseSignatures, numberOfClauses * 2);
+         clauseGroundArguments = Arrays.copyOf(clauseGroundArguments, numberOfClauses * 2);
+      }
+      clauseSignatures[numberOfClauses] = createSignature(head);
+      clauseGroundArguments[numberOfClauses] = getGroundArguments(head);
+      return numberOfClauses++;
+   }
+
+   private int addSwitchTable(WamProgram.SwitchTable switchTable) {
+      if (numberOfSwitchTables == switchTables.length) {
+         switchTables = Arrays.copyOf(switchTables, numberOfSwitchTables * 2);
+      }
+      switchTables[numberOfSwitchTables] = switchTable;
+      return numberOfSwitchTables++;
+   }
+
+   private int addBuiltin(PredicateFactory builtin, int arity) {
+      if (numberOfBuiltins == builtins.length) {
+         builtins = Arrays.copyOf(builtins, numberOfBuiltins * 2);
+         builtinArities = Arrays.copyOf(builtinArities, numberOfBuiltins * 2);
+      }
+      builtins[numberOfBuiltins] = builtin;
+      builtinArities[numberOfBuiltins] = arity;
+      return numberOfBuiltins++;
+   }
+
+   private long[] createSignature(Term head) {
+      long[] signature = new long[head.getNumberOfArguments()];
+      for (int i = 0; i < signature.length; i++) {
+         Term arg = head.getArgument(i).getTerm();
+         switch (arg.getType()) {
+            case VARIABLE:
+               signature[i] = 0;
+               break;
+            case LIST:
+               signature[i] = WamCell.create(WamCell.LIS, 0);
+               break;
+            case STRUCTURE:
+               signature[i] = WamCell.create(WamCell.FUN, functor(arg));
+               break;
+            default:
+               signature[i] = constantCell(arg);
+         }
+      }
+      return signature;
+   }
+
+   private static Term[] getGroundArguments(Term head) {
+      Term[] groundArguments = new Term[head.getNumberOfArguments()];
+      for (int i = 0; i < groundArguments.length; i++) {
+         Term arg = head.getArgument(i).getTerm();
+         if ((arg.getType() == TermType.STRUCTURE || arg.getType() == TermType.LIST) && arg.isImmutable()) {
+            groundArguments[i] = arg;
+         }
+      }
+      return groundArguments;
+   }
+
+   private int literal(Term t) {
+      return literalIds.computeIfAbsent(constantCell(t), c -> {
+         if (numberOfLiterals == literals.length) {
+            literals = Arrays.copyOf(literals, numberOfLiterals * 2);
+         }
+         literals[numberOfLiterals] = c;
+         return numberOfLiterals++;
+      });
+   }
+
+   private long constantCell(Term t) {
+      if (t.getType() == TermType.INTEGER) {
+         long value = ((IntegerNumber) t).getLong();
+         if (WamCell.isInt(value)) {
+            return WamCell.create(WamCell.INT, value);
+         }
+      }
+      Integer id = constantIds.get(t);
+      if (id == null) {
+         if (numberOfConstants == constants.length) {
+            constants = Arrays.copyOf(constants, numberOfConstants * 2);
+         }
+         id = numberOfConstants;
+         constants[numberOfConstants++] = t;
+         constantIds.put(t, id);
+      }
+      return WamCell.create(WamCell.CON, id);
+   }
+
+   private int functor(Term t) {
+      PredicateKey key = new PredicateKey(t.getName(), t.getNumberOfArguments());
+      Integer id = functorIds.get(key);
+      if (id == null) {
+         if (numberOfFunctors == functorNames.length) {
+            functorNames = Arrays.copyOf(functorNames, numberOfFunctors * 2);
+            functorArities = Arrays.copyOf(functorArities, numberOfFunctors * 2);
+         }
+         id = numberOfFunctors;
+         functorNames[numberOfFunctors] = key.getName();
+         functorArities[numberOfFunctors++] = key.getNumArgs();
+         functorIds.put(key, id);
+      }
+      return id;
+   }
+
+   private void emit(int... instruction) {
+      ensureCodeCapacity(instruction.length);
+      System.arraycopy(instruction, 0, code, codeSize, instruction.length);
+      codeSize += instruction.length;
+   }
+
+   private void ensureCodeCapacity(int length) {
+      if (codeSize + length > code.length) {
+         int capacity = Math.max(code.length * 2, codeSize + length);
+         code = Arrays.copyOf(code, capacity);
+         variableNames = Arrays.copyOf(variableNames, capacity);
+      }
+   }
+
+   /** Compiles a single clause. */
+   private final class ClauseCompiler {
+      private final Term head;
+      private final List<Term> goals;
+      /** The register assigned to each variable - see {@link WamOpcodes} for how registers are numbered. */
+      private final Map<Variable, Integer> registers = new HashMap<>();
+      /** Variables whose first occurrence has been compiled. */
+      private final Map<Variable, Boolean> seen = new IdentityHashMap<>();
+      private int numberOfPermanentVariables;
+      private int nextTemporary;
+      private int cutLevel = Integer.MIN_VALUE;
+
+      ClauseCompiler(ClauseModel clause) {
+         this.head = clause.getConsequent();
+         this.goals = getGoals(clause.getAntecedent());
+      }
+
+      void compile() {
+         // the head and the first call are the first "chunk", each subsequent call is a separate chunk
+         Map<Variable, Integer> firstChunk = new HashMap<>();
+         Map<Variable, Integer> lastChunk = new HashMap<>();
+         recordChunks(head, 0, firstChunk, lastChunk);
+         int numberOfCalls = 0;
+         boolean isCutAfterCall = false;
+         int maxArity = head.getNumberOfArguments();
+         for (Term goal : goals) {
+            if (isCut(goal)) {
+               isCutAfterCall |= numberOfCalls > 0;
+            } else {
+               recordChunks(goal, Math.max(0, numberOfCalls), firstChunk, lastChunk);
+               maxArity = Math.max(maxArity, goal.getNumberOfArguments());
+               numberOfCalls++;
+            }
+         }
+         boolean isEnvironmentRequired = numberOfCalls > 1 || isCutAfterCall;
+         if (isCutAfterCall) {
+            cutLevel = -(++numberOfPermanentVariables);
+         }
+         for (Map.Entry<Variable, Integer> e : firstChunk.entrySet()) {
+            if (!e.getValue().equals(lastChunk.get(e.getKey()))) {
+               registers.put(e.getKey(), -(++numberOfPermanentVariables));
+            }
+         }
+         nextTemporary = maxArity;
+
+         if (isEnvironmentRequired) {
+            emit(ALLOCATE, numberOfPermanentVariables);
+         }
+         if (isCutAfterCall) {
+            emit(GET_LEVEL, cutLevel);
+         }
+         if (!goals.isEmpty() || !isDistinctVariables(head)) {
+            for (int i = 0; i < head.getNumberOfArguments(); i++) {
+               // singleton variables are not skipped, as an unbound argument becomes an alias of the variable of the clause
+               get(head.getArgument(i).getTerm(), i);
+            }
+         }
+
+         int callCtr = 0;
+         for (int g = 0; g < goals.size(); g++) {
+            Term goal = goals.get(g);
+            boolean isLast = g == goals.size() - 1;
+            if (isCut(goal)) {
+               if (callCtr == 0) {
+                  emit(NECK_CUT);
+               } else {
+                  emit(CUT, cutLevel);
+               }
+               continue;
+            }
+            callCtr++;
+            for (int i = 0; i < goal.getNumberOfArguments(); i++) {
+               put(goal.getArgument(i).getTerm(), i);
+            }
+            Object target = goalTargets.get(goal);
+            if (target instanceof PredicateKey) {
+               int procedure = procedures.get(target).id;
+               callees.add(procedure);
+               if (isLast) {
+                  if (isEnvironmentRequired) {
+                     emit(DEALLOCATE);
+                  }
+                  emit(EXECUTE, procedure);
+               } else {
+                  emit(CALL, procedure);
+               }
+            } else {
+               emit(BUILTIN, addBuiltin((PredicateFactory) target, goal.getNumberOfArguments()));
+               if (isLast) {
+                  if (isEnvironmentRequired) {
+                     emit(DEALLOCATE);
+                  }
+                  emit(PROCEED);
+               }
+            }
+         }
+         if (goals.isEmpty() || isCut(goals.get(goals.size() - 1))) {
+            if (isEnvironmentRequired) {
+               emit(DEALLOCATE);
+            }
+            emit(PROCEED);
+         }
+         numberOfRegisters = Math.max(numberOfRegisters, nextTemporary);
+      }
+
+      /**
+       * Returns {@code true} if every argument of the head is a different variable, in which case (consistent with the
+       * interpreter) the arguments of a fact do not need to be examined.
+       */
+      private boolean isDistinctVariables(Term head) {
+         Map<Term, Boolean> variables = new IdentityHashMap<>();
+         for (int i = 0; i < head.getNumberOfArguments(); i++) {
+            Term arg = head.getArgument(i).getTerm();
+            if (arg.getType() != TermType.VARIABLE || variables.put(arg, Boolean.TRUE) != null) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      private void recordChunks(Term t, int chunk, Map<Variable, Integer> firstChunk, Map<Variable, Integer> lastChunk) {
+         t = t.getTerm();
+         switch (t.getType()) {
+            case VARIABLE:
+               Variable v = (Variable) t;
+               firstChunk.putIfAbsent(v, chunk);
+               lastChunk.put(v, chunk);
+               break;
+            case STRUCTURE:
+            case LIST:
+               for (Term arg : getArguments(t)) {
+                  recordChunks(arg, chunk, firstChunk, lastChunk);
+               }
+               break;
+            default:
+               // no variables
+         }
+      }
+
+      /** Emits instructions to unify the term in register {@code reg} with {@code t}. */
+      private void get(Term t, int reg) {
+         switch (t.getType()) {
+            case VARIABLE:
+               Variable v = (Variable) t;
+               if (isFirstOccurrence(v)) {
+                  emitNewVariable(GET_VARIABLE, v, register(v), reg);
+               } else {
+                  emit(GET_VALUE, register(v), reg);
+               }
+               break;
+            case STRUCTURE:
+               emit(GET_STRUCTURE, functor(t), reg);
+               unifyArguments(getArguments(t));
+               break;
+            case LIST:
+               emit(GET_LIST, reg);
+               unifyArguments(getArguments(t));
+               break;
+            default:
+               emit(GET_CONSTANT, literal(t), reg);
+         }
+      }
+
+      private void unifyArguments(Term[] args) {
+         int[] deferred = new int[args.length];
+         for (int i = 0; i < args.length; i++) {
+            Term arg = args[i].getTerm();
+            switch (arg.getType()) {
+               case VARIABLE:
+                  Variable v = (Variable) arg;
+                  if (isFirstOccurrence(v)) {
+                     emitNewVariable(UNIFY_VARIABLE, v, register(v));
+                  } else {
+                     emit(UNIFY_VALUE, register(v));
+                  }
+                  break;
+               case STRUCTURE:
+               case LIST:
+                  deferred[i] = nextTemporary++;
+                  emit(UNIFY_VARIABLE, deferred[i]);
+                  break;
+               default:
+                  emit(UNIFY_CONSTANT, literal(arg));
+            }
+         }
+         for (int i = 0; i < args.length; i++) {
+            Term arg = args[i].getTerm();
+            if (arg.getType() == TermType.STRUCTURE || arg.getType() == TermType.LIST) {
+               get(arg, deferred[i]);
+            }
+         }
+      }
+
+      /** Emits instructions to put {@code t} into argument register {@code reg}. */
+      private void put(Term t, int reg) {
+         switch (t.getType()) {
+            case VARIABLE:
+               Variable v = (Variable) t;
+               if (isFirstOccurrence(v)) {
+                  emitNewVariable(PUT_VARIABLE, v, register(v), reg);
+               } else {
+                  emit(PUT_VALUE, register(v), reg);
+               }
+               break;
+            case STRUCTURE:
+            case LIST:
+               build(t, reg);
+               break;
+            default:
+               emit(PUT_CONSTANT, literal(t), reg);
+         }
+      }
+
+      /** Emits instructions to create {@code t} on the heap, storing a reference to it in register {@code reg}. */
+      private void build(Term t, int reg) {
+         Term[] args = getArguments(t);
+         int[] nested = new int[args.length];
+         for (int i = 0; i < args.length; i++) {
+            Term arg = args[i].getTerm();
+            if (arg.getType() == TermType.STRUCTURE || arg.getType() == TermType.LIST) {
+               nested[i] = nextTemporary++;
+               build(arg, nested[i]);
+            }
+         }
+         if (t.getType() == TermType.LIST) {
+            emit(PUT_LIST, reg);
+         } else {
+            emit(PUT_STRUCTURE, functor(t), reg);
+         }
+         for (int i = 0; i < args.length; i++) {
+            Term arg = args[i].getTerm();
+            switch (arg.getType()) {
+               case VARIABLE:
+                  Variable v = (Variable) arg;
+                  if (isFirstOccurrence(v)) {
+                     emitNewVariable(SET_VARIABLE, v, register(v));
+                  } else {
+                     emit(SET_VALUE, register(v));
+                  }
+                  break;
+               case STRUCTURE:
+               case LIST:
+                  emit(SET_VALUE, nested[i]);
+                  break;
+               default:
+                  emit(SET_CONSTANT, literal(arg));
+            }
+         }
+      }
+
+      /** Emits an instruction that creates the specified variable, recording its name. */
+      private void emitNewVariable(int opcode, Variable v, int... operands) {
+         ensureCodeCapacity(operands.length + 1);
+         variableNames[codeSize] = v.getId();
+         int[] instruction = new int[operands.length + 1];
+         instruction[0] = opcode;
+         System.arraycopy(operands, 0, instruction, 1, operands.length);
+         emit(instruction);
+      }
+
+      private boolean isFirstOccurrence(Variable v) {
+         return seen.put(v, Boolean.TRUE) == null;
+      }
+
+      private int register(Variable v) {
+         Integer r = registers.get(v);
+         if (r == null) {
+            r = nextTemporary++;
+            registers.put(v, r);
+         }
+         return r;
+      }
+   }
+
+   /** A procedure of the image. */
+   private static final class Procedure {
+      final int id;
+      final PredicateKey key;
+      /** The predicate the procedure was compiled from. */
+      final UserDefinedPredicateFactory factory;
+      final int numberOfClauses;
+      /** The identifiers of the procedures this procedure calls. */
+      int[] callees = new int[0];
+
+      Procedure(int id, PredicateKey key, UserDefinedPredicateFactory factory, int numberOfClauses) {
+         this.id = id;
+         this.key = key;
+         this.factory = factory;
+         this.numberOfClauses = numberOfClauses;
+      }
+   }
+}
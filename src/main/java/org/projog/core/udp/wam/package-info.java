@@ -0,0 +1,25 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Provides an optional engine that evaluates user defined predicates using a Warren Abstract Machine (WAM).
+ * <p>
+ * The clauses of a predicate, and of the predicates it calls, are compiled into an array of instructions that are
+ * executed by a {@link org.projog.core.udp.wam.WamMachine} - whose heap, environments, choicepoints and trail are
+ * held in arrays of primitives rather than as trees of {@link org.projog.core.Predicate} objects.
+ *
+ * @see org.projog.core.ProjogProperties#isWamEnabled()
+ */
+package org.projog.core.udp.wam;
@@ -125,6 +125,8 @@
 ?- pj_add_predicate(clause/2, 'org.projog.core.function.kb.Inspect/inspectClause').
 ?- pj_add_predicate(retract/1, 'org.projog.core.function.kb.Inspect/retract').
 ?- pj_add_predicate(retractall/1, 'org.projog.core.function.kb.RetractAll').
+?- pj_add_predicate(range_index/2, 'org.projog.core.function.kb.DeclareRangeIndex').
+?- pj_add_predicate(in_range/3, 'org.projog.core.function.kb.InRange').
 ?- pj_add_predicate(consult/1, 'org.projog.core.function.kb.Consult').
 ?- pj_add_predicate('.'/2, 'org.projog.core.function.kb.ConsultList').
 ?- pj_add_predicate(ensure_loaded/1, 'org.projog.core.function.kb.EnsureLoaded').
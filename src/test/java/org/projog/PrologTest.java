@@ -27,6 +27,7 @@ import java.util.List;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.projog.api.Projog;
+import org.projog.core.ProjogDefaultProperties;
 import org.projog.core.SpyPoints.SpyPointEvent;
 import org.projog.core.SpyPoints.SpyPointExitEvent;
 import org.projog.core.event.ProjogListener;
@@ -66,6 +67,113 @@ public class PrologTest {
       assertSuccess(EXTRACTED_PROLOG_TESTS_DIR);
    }
 
+   @Test
+   public void prologTestsStructureSharingMode() {
+      assertSuccess(SOURCE_PROLOG_TESTS_DIR, createStructureSharingSupplier());
+   }
+
+   @Test
+   public void extractedTestsStructureSharingMode() {
+      assertSuccess(EXTRACTED_PROLOG_TESTS_DIR, createStructureSharingSupplier());
+   }
+
+   private static ProjogSupplier createStructureSharingSupplier() {
+      return new ProjogSupplier() {
+         @Override
+         public Projog get() {
+            return new Projog(new ProjogDefaultProperties() {
+               @Override
+               public boolean isStructureSharingEnabled() {
+                  return true;
+               }
+            });
+         }
+      };
+   }
+
+   @Test
+   public void prologTestsCompiledMode() {
+      assertSuccess(SOURCE_PROLOG_TESTS_DIR, createRuntimeCompilationSupplier(0));
+   }
+
+   @Test
+   public void extractedTestsCompiledMode() {
+      assertSuccess(EXTRACTED_PROLOG_TESTS_DIR, createRuntimeCompilationSupplier(0));
+   }
+
+   /** Predicates are compiled by a background thread while queries continue to be evaluated. */
+   @Test
+   public void prologTestsTieredCompilationMode() {
+      assertSuccess(SOURCE_PROLOG_TESTS_DIR, createRuntimeCompilationSupplier(2));
+   }
+
+   private static ProjogSupplier createRuntimeCompilationSupplier(int threshold) {
+      return new ProjogSupplier() {
+         @Override
+         public Projog get() {
+            return new Projog(new ProjogDefaultProperties() {
+               @Override
+               public boolean isRuntimeCompilationEnabled() {
+                  return true;
+               }
+
+               @Override
+               public int getRuntimeCompilationThreshold() {
+                  return threshold;
+               }
+            });
+         }
+      };
+   }
+
+   @Test
+   public void prologTestsWamMode() {
+      assertSuccess(SOURCE_PROLOG_TESTS_DIR, createWamSupplier());
+   }
+
+   @Test
+   public void extractedTestsWamMode() {
+      assertSuccess(EXTRACTED_PROLOG_TESTS_DIR, createWamSupplier());
+   }
+
+   private static ProjogSupplier createWamSupplier() {
+      return new ProjogSupplier() {
+         @Override
+         public Projog get() {
+            return new Projog(new ProjogDefaultProperties() {
+               @Override
+               public boolean isWamEnabled() {
+                  return true;
+               }
+            });
+         }
+      };
+   }
+
+   @Test
+   public void prologTestsLastCallOptimisationMode() {
+      assertSuccess(SOURCE_PROLOG_TESTS_DIR, createLastCallOptimisationSupplier());
+   }
+
+   @Test
+   public void extractedTestsLastCallOptimisationMode() {
+      assertSuccess(EXTRACTED_PROLOG_TESTS_DIR, createLastCallOptimisationSupplier());
+   }
+
+   private static ProjogSupplier createLastCallOptimisationSupplier() {
+      return new ProjogSupplier() {
+         @Override
+         public Projog get() {
+            return new Projog(new ProjogDefaultProperties() {
+               @Override
+               public boolean isLastCallOptimisationEnabled() {
+                  return true;
+               }
+            });
+         }
+      };
+   }
+
    /** Test that a user-defined predicate with many clauses can be interpreted. */
    @Test
    public void predicateWithManyClauses() throws FileNotFoundException {
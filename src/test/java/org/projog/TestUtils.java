@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import org.mockito.stubbing.Answer;
 import org.projog.core.KnowledgeBase;
 import org.projog.core.KnowledgeBaseUtils;
 import org.projog.core.Operands;
@@ -41,6 +42,7 @@ import org.projog.core.term.Structure;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermFormatter;
 import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
 import org.projog.core.term.Variable;
 import org.projog.core.udp.ClauseModel;
 
@@ -52,6 +54,11 @@ public class TestUtils {
    public static final PredicateKey ADD_ARITHMETIC_OPERATOR_KEY = new PredicateKey("pj_add_arithmetic_operator", 2);
    public static final File BOOTSTRAP_FILE = new File("src/main/resources/projog-bootstrap.pl");
    public static final ProjogProperties PROJOG_DEFAULT_PROPERTIES = new ProjogDefaultProperties();
+   /** Used to mock a {@code Predicate} whose evaluation backtracks to a cut. */
+   public static final Answer<Boolean> BACKTRACK_TO_CUT = invocation -> {
+      Trail.getCurrent().getCutBarrier().cut();
+      return false;
+   };
 
    private static final File TEMP_DIR = new File("target");
 
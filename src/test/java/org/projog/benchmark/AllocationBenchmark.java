@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the number of bytes allocated per logical inference when evaluating Prolog programs.
+ * <p>
+ * The number of logical inferences performed by each query is calculated from the program being evaluated (e.g.
+ * naive reverse of a 30 element list performs 496 logical inferences).
+ */
+public final class AllocationBenchmark {
+   private static final int WARMUP_ITERATIONS = 20;
+   private static final int MEASURED_ITERATIONS = 50;
+
+   private static final String NREV = "app([],L,L). app([H|T],L,[H|R]) :- app(T,L,R)." //
+                                      + "nrev([],[]). nrev([H|T],R) :- nrev(T,RT), app(RT,[H],R)." //
+                                      + "range(N,N,[N]) :- !. range(M,N,[M|Ns]) :- M<N, M1 is M+1, range(M1,N,Ns).";
+   private static final String FACTS = "colour(red,1). colour(green,2). colour(blue,3). colour(yellow,4). colour(black,5)." //
+                                       + "lookup(X,Y) :- colour(X,Y).";
+
+   public static void main(String[] args) {
+      report("nrev30", NREV, "range(1,30,L), nrev(L,R).", 496 + 30 * 4);
+      // hanoi(10) = hanoi/1 + (2^10-1) * (move/4, is/2, inform/2, write/1, nl/0) + 2^10 * (move/4, !/0)
+      report("towers-of-hanoi(10)", new File("src/test/prolog/applications/towers-of-hanoi.pl"), "hanoi(10).", 1 + 1023 * 5 + 1024 * 2);
+      // 5 solutions of lookup/2 each requiring a call to colour/2 and =/2
+      report("fact lookup", FACTS, "lookup(X,Y), Y=Y.", 1 + 5 + 5);
+   }
+
+   private static void report(String description, String program, String query, int inferencesPerQuery) {
+      Projog projog = createProjog();
+      projog.consultReader(new StringReader(program));
+      report(description, projog, query, inferencesPerQuery);
+   }
+
+   private static void report(String description, File program, String query, int inferencesPerQuery) {
+      Projog projog = createProjog();
+      projog.consultFile(program);
+      report(description, projog, query, inferencesPerQuery);
+   }
+
+   private static Projog createProjog() {
+      Projog projog = new Projog();
+      projog.setUserOutput(new PrintStream(new OutputStream() {
+         @Override
+         public void write(int b) {
+            // discard
+         }
+      }));
+      return projog;
+   }
+
+   private static void report(String description, Projog projog, String query, int inferencesPerQuery) {
+      QueryPlan plan = projog.createPlan(query);
+      long bytesPerQuery = BenchmarkUtils.getAllocatedBytesPerQuery(plan, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+      System.out.println(String.format("%-25s %10d bytes/query %8.1f bytes/inference", description, bytesPerQuery, (double) bytesPerQuery / inferencesPerQuery));
+   }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import org.projog.core.term.Atom;
+import org.projog.core.term.Structure;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermUtils;
+import org.projog.core.term.Trail;
+import org.projog.core.term.Variable;
+
+/**
+ * Compares the cost of backtracking by walking every argument of a query against backtracking using a {@link Trail}.
+ * <p>
+ * Simulates attempting to match a clause that instantiates a single variable of a query before failing. The query has
+ * a deeply nested, non-ground, argument. Walking the arguments costs time proportional to the size of the arguments
+ * whereas undoing the trail costs time proportional to the number of variables instantiated.
+ */
+public final class BacktrackBenchmark {
+   private static final int ATTEMPTS_PER_INVOCATION = 10000;
+   private static final Atom VALUE = new Atom("a");
+
+   public static void main(String[] args) {
+      Trail trail = new Trail();
+      Trail previous = Trail.activate(trail);
+      try {
+         for (int depth : new int[] {1, 10, 100, 1000}) {
+            Variable x = new Variable("X");
+            Term[] queryArgs = {createDeepTerm(depth), x};
+            BenchmarkUtils.time("walk  depth=" + depth, ATTEMPTS_PER_INVOCATION, () -> walk(queryArgs, x));
+            BenchmarkUtils.time("trail depth=" + depth, ATTEMPTS_PER_INVOCATION, () -> trail(trail, x));
+         }
+      } finally {
+         Trail.activate(previous);
+      }
+   }
+
+   /** Returns a term of the form {@code f(V1,f(V2,f(V3,...)))} nested to the specified depth. */
+   private static Term createDeepTerm(int depth) {
+      Term t = new Variable("Tail");
+      for (int i = 0; i < depth; i++) {
+         t = Structure.createStructure("f", new Term[] {new Variable("V" + i), t});
+      }
+      return t;
+   }
+
+   private static long walk(Term[] queryArgs, Variable x) {
+      long ctr = 0;
+      for (int i = 0; i < ATTEMPTS_PER_INVOCATION; i++) {
+         if (x.unify(VALUE)) {
+            ctr++;
+         }
+         TermUtils.backtrack(queryArgs);
+      }
+      return ctr;
+   }
+
+   private static long trail(Trail trail, Variable x) {
+      long ctr = 0;
+      for (int i = 0; i < ATTEMPTS_PER_INVOCATION; i++) {
+         int mark = trail.mark();
+         if (x.unify(VALUE)) {
+            ctr++;
+         }
+         trail.undo(mark);
+      }
+      return ctr;
+   }
+}
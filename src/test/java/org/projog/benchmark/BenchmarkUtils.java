@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+import org.projog.api.QueryPlan;
+import org.projog.api.QueryResult;
+
+/**
+ * Helper methods for timing the operations measured by benchmarks.
+ */
+final class BenchmarkUtils {
+   private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+   private static final int DEFAULT_MEASURED_ITERATIONS = 10;
+
+   /**
+    * Private constructor as all methods are static.
+    */
+   private BenchmarkUtils() {
+      // do nothing
+   }
+
+   /**
+    * Returns the total number of bytes allocated by the current thread.
+    * <p>
+    * Relies on the HotSpot specific extension of {@code java.lang.management.ThreadMXBean}.
+    */
+   static long getAllocatedBytes() {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+
+   /**
+    * Returns the average number of bytes allocated by evaluating all solutions of the specified query.
+    *
+    * @param plan the query to evaluate
+    * @param warmupIterations the number of times to evaluate the query before measuring
+    * @param measuredIterations the number of times to evaluate the query while measuring
+    */
+   static long getAllocatedBytesPerQuery(QueryPlan plan, int warmupIterations, int measuredIterations) {
+      for (int i = 0; i < warmupIterations; i++) {
+         evaluateAll(plan);
+      }
+      long start = getAllocatedBytes();
+      for (int i = 0; i < measuredIterations; i++) {
+         evaluateAll(plan);
+      }
+      return (getAllocatedBytes() - start) / measuredIterations;
+   }
+
+   /**
+    * Evaluates the specified query, finding all its solutions, and returns the number of solutions found.
+    */
+   static long evaluateAll(QueryPlan plan) {
+      long ctr = 0;
+      QueryResult r = plan.createStatement().executeQuery();
+      while (r.next()) {
+         ctr++;
+      }
+      return ctr;
+   }
+
+   /**
+    * Times the specified operation and prints the average duration of each invocation.
+    *
+    * @param description describes the operation being measured
+    * @param operationsPerInvocation the number of operations performed by each invocation of {@code operation}
+    * @param operation the operation to time - returns a value so the work it performs cannot be optimised away
+    * @return the average number of nanoseconds taken to perform a single operation
+    */
+   static double time(String description, int operationsPerInvocation, LongSupplier operation) {
+      long result = 0;
+      for (int i = 0; i < DEFAULT_WARMUP_ITERATIONS; i++) {
+         result += operation.getAsLong();
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < DEFAULT_MEASURED_ITERATIONS; i++) {
+         result += operation.getAsLong();
+      }
+      long duration = System.nanoTime() - start;
+      double nanosPerOperation = (double) duration / DEFAULT_MEASURED_ITERATIONS / operationsPerInvocation;
+      System.out.println(String.format("%-60s %12.1f ns/op (%d)", description, nanosPerOperation, result));
+      return nanosPerOperation;
+   }
+}
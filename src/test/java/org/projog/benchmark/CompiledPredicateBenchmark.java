@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+import org.projog.core.ProjogDefaultProperties;
+
+/**
+ * Compares the time taken to evaluate user defined predicates when they are interpreted and when they are compiled
+ * into Java classes at runtime.
+ *
+ * @see org.projog.core.ProjogProperties#isRuntimeCompilationEnabled()
+ */
+public final class CompiledPredicateBenchmark {
+   private static final String PROGRAM = "" //
+                                         // a rule with a body of several goals, called recursively
+                                         + "fib(0, 0).\n" //
+                                         + "fib(1, 1).\n" //
+                                         + "fib(N, F) :- N > 1, N1 is N-1, N2 is N-2, fib(N1, F1), fib(N2, F2), F is F1+F2.\n" //
+                                         // unification of lists in the head of clauses
+                                         + "app([], L, L).\n" //
+                                         + "app([H|T], L, [H|R]) :- app(T, L, R).\n" //
+                                         + "nrev([], []).\n" //
+                                         + "nrev([H|T], R) :- nrev(T, RT), app(RT, [H], R).\n" //
+                                         // selection of clauses by the structure of their arguments
+                                         + "eval(n(X), X).\n" //
+                                         + "eval(add(X, Y), Z) :- eval(X, A), eval(Y, B), Z is A+B.\n" //
+                                         + "eval(mul(X, Y), Z) :- eval(X, A), eval(Y, B), Z is A*B.\n" //
+                                         + "tree(0, n(1)) :- !.\n" //
+                                         + "tree(D, add(L, mul(R, n(2)))) :- D1 is D-1, tree(D1, L), tree(D1, R).\n";
+
+   public static void main(String[] args) {
+      Projog interpreted = createProjog(false);
+      Projog compiled = createProjog(true);
+      StringBuilder list = new StringBuilder("[1");
+      for (int i = 2; i <= 30; i++) {
+         list.append(",").append(i);
+      }
+      list.append("]");
+      compare(interpreted, compiled, "fib(18)", "fib(18, F).");
+      compare(interpreted, compiled, "nrev of 30 elements (x1000)", "between(1, 1000, _), nrev(" + list + ", _), fail ; true.");
+      compare(interpreted, compiled, "eval tree of depth 12", "tree(12, T), eval(T, V).");
+   }
+
+   private static void compare(Projog interpreted, Projog compiled, String description, String query) {
+      QueryPlan i = interpreted.createPlan(query);
+      QueryPlan c = compiled.createPlan(query);
+      BenchmarkUtils.time("interpreted " + description, 1, () -> BenchmarkUtils.evaluateAll(i));
+      BenchmarkUtils.time("compiled " + description, 1, () -> BenchmarkUtils.evaluateAll(c));
+   }
+
+   private static Projog createProjog(boolean isRuntimeCompilationEnabled) {
+      Projog projog = new Projog(new ProjogDefaultProperties() {
+         @Override
+         public boolean isRuntimeCompilationEnabled() {
+            return isRuntimeCompilationEnabled;
+         }
+      });
+      projog.consultReader(new StringReader(PROGRAM));
+      return projog;
+   }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the number of bytes allocated per call of rules whose bodies are conjunctions.
+ * <p>
+ * Each query calls the rule being measured {@link #CALLS_PER_QUERY} times.
+ */
+public final class ConjunctionBenchmark {
+   private static final int CALLS_PER_QUERY = 100;
+   private static final int WARMUP_ITERATIONS = 50;
+   private static final int MEASURED_ITERATIONS = 200;
+
+   private static final String PROGRAM = "" //
+                                         // each goal binds variables used by the goals that follow it
+                                         + "bind(X,Y,Z) :- X = f(A), Y = g(A,B), A = 1, B = h(X), Z = i(X,Y,A,B)." //
+                                         // generate and test, so the later goals are retried
+                                         + "pairs(X,Y) :- member(X,[1,2,3,4,5]), member(Y,[1,2,3,4,5]), X < Y, S is X+Y, S > 8." //
+                                         // a long sequence of deterministic goals
+                                         + "sequence(X,Z) :- A is X+1, B is A+1, C is B+1, D is C+1, E is D+1, F is E+1, G is F+1, Z = [A,B,C,D,E,F,G]." //
+                                         // a disjunction containing conjunctions
+                                         + "branch(X,Y) :- (X > 5, Y = big(X) ; X < 0, Y = negative(X) ; Y = small(X)).";
+
+   public static void main(String[] args) {
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(PROGRAM));
+      report(projog, "bind(X,Y,Z)", "bind(_,_,_)");
+      report(projog, "pairs(X,Y)", "pairs(_,_), fail ; true");
+      report(projog, "sequence(X,Z)", "sequence(1,_)");
+      report(projog, "branch(X,Y)", "member(X,[7,-1,3]), branch(X,_), fail ; true");
+   }
+
+   private static void report(Projog projog, String description, String goal) {
+      QueryPlan plan = projog.createPlan("between(1, " + CALLS_PER_QUERY + ", _), (" + goal + "), fail ; true.");
+      long bytesPerQuery = BenchmarkUtils.getAllocatedBytesPerQuery(plan, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+      System.out.println(String.format("%-25s %8d bytes/call", description, bytesPerQuery / CALLS_PER_QUERY));
+   }
+}
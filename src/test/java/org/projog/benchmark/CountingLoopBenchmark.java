@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+import org.projog.core.ProjogDefaultProperties;
+
+/**
+ * Reports the number of bytes allocated per iteration of counting loops.
+ * <p>
+ * Each loop is measured using the default range of cached integers and using a range that includes every value the
+ * loop counts through.
+ *
+ * @see org.projog.core.ProjogProperties#getMaxCachedIntegerValue()
+ */
+public final class CountingLoopBenchmark {
+   private static final int BETWEEN_ITERATIONS = 10000000;
+   private static final int ITERATIONS = 1000000;
+   private static final int WARMUP_ITERATIONS = 3;
+   private static final int MEASURED_ITERATIONS = 5;
+
+   private static final String PROGRAM = "" //
+                                         + "increment(N) :- between(1,N,X), Y is X+1, fail. increment(_)." //
+                                         + "expression(N) :- between(1,N,X), Y is (X*2+1)*3-X, fail. expression(_).";
+
+   public static void main(String[] args) {
+      report("default cache", new ProjogDefaultProperties());
+      report("cache 0.." + BETWEEN_ITERATIONS, new ProjogDefaultProperties() {
+         @Override
+         public long getMinCachedIntegerValue() {
+            return 0;
+         }
+
+         @Override
+         public long getMaxCachedIntegerValue() {
+            return BETWEEN_ITERATIONS;
+         }
+      });
+   }
+
+   private static void report(String description, ProjogDefaultProperties properties) {
+      Projog projog = new Projog(properties);
+      projog.consultReader(new StringReader(PROGRAM));
+      System.out.println(description);
+      report(projog, "between(1," + BETWEEN_ITERATIONS + ",X), fail ; true.", BETWEEN_ITERATIONS);
+      report(projog, "increment(" + ITERATIONS + ").", ITERATIONS);
+      report(projog, "expression(" + ITERATIONS + ").", ITERATIONS);
+   }
+
+   private static void report(Projog projog, String query, int iterations) {
+      QueryPlan plan = projog.createPlan(query);
+      long bytesPerQuery = BenchmarkUtils.getAllocatedBytesPerQuery(plan, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+      BenchmarkUtils.time("   " + query, iterations, () -> BenchmarkUtils.evaluateAll(plan));
+      System.out.println(String.format("   %-60s %8.1f bytes/iteration", query, (double) bytesPerQuery / iterations));
+   }
+}
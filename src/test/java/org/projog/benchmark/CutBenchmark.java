@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Measures the time taken to backtrack to cuts.
+ * <p>
+ * Each query is followed by {@code fail} so that, after every solution, backtracking reaches the cuts that were
+ * evaluated while finding it.
+ *
+ * @see org.projog.core.CutBarrier
+ */
+public final class CutBenchmark {
+   private static final int ITERATIONS = 100000;
+   private static final int LIST_LENGTH = 1000;
+   private static final int LIST_ITERATIONS = ITERATIONS / LIST_LENGTH;
+
+   private static final String PROGRAM = "" //
+                                         // every clause ends with a cut, as in an if-then-else chain
+                                         + "classify(X, small) :- X < 10, !.\n" //
+                                         + "classify(X, medium) :- X < 1000, !.\n" //
+                                         + "classify(_, large).\n" //
+                                         // deterministic recursion with a cut in every clause
+                                         + "len([], N, N) :- !.\n" //
+                                         + "len([_|T], N0, N) :- !, N1 is N0+1, len(T, N1, N).\n" //
+                                         // a cut in the body of a single clause rule
+                                         + "first(X, L) :- member(X, L), !.\n";
+
+   public static void main(String[] args) {
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(PROGRAM));
+      time(projog, "classify/2", ITERATIONS, "between(1, " + ITERATIONS + ", X), classify(X, _), fail ; true.");
+      time(projog, "len/3 per element", ITERATIONS, "findall(X, between(1, " + LIST_LENGTH + ", X), L), between(1, " + LIST_ITERATIONS + ", _), len(L, 0, _), fail ; true.");
+      time(projog, "first/2", ITERATIONS, "between(1, " + ITERATIONS + ", X), first(_, [a,b,c]), fail ; true.");
+   }
+
+   private static void time(Projog projog, String description, int operationsPerQuery, String query) {
+      QueryPlan plan = projog.createPlan(query);
+      BenchmarkUtils.time(description, operationsPerQuery, () -> BenchmarkUtils.evaluateAll(plan));
+   }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the time taken to assert a large number of dynamic facts, and to query them by their second and third
+ * arguments.
+ * <p>
+ * The facts are of the form {@code d(I, I mod 1000, I mod 97)} so a call with the second argument bound matches 100
+ * facts and a call with the third argument bound matches about 1000 facts.
+ */
+public final class DynamicFactsBenchmark {
+   private static final int NUM_FACTS = 100000;
+   private static final int ITERATIONS = 1000;
+
+   private static final String PROGRAM = "" //
+                                         + ":- dynamic(d/3)." //
+                                         + "populate(N) :- between(1,N,I), B is I mod 1000, C is I mod 97, assertz(d(I,B,C)), fail." //
+                                         + "populate(_)." //
+                                         + "lookup2(N) :- between(1,N,X), B is X mod 1000, d(_,B,_), fail." //
+                                         + "lookup2(_)." //
+                                         + "lookup3(N) :- between(1,N,X), C is X mod 97, d(_,_,C), fail." //
+                                         + "lookup3(_).";
+
+   public static void main(String[] args) {
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(PROGRAM));
+
+      long start = System.nanoTime();
+      BenchmarkUtils.evaluateAll(projog.createPlan("populate(" + NUM_FACTS + ")."));
+      System.out.println(String.format("%-60s %12.1f ns/op", "assertz", (double) (System.nanoTime() - start) / NUM_FACTS));
+
+      report(projog, "lookup2(" + ITERATIONS + ").");
+      report(projog, "lookup3(" + ITERATIONS + ").");
+   }
+
+   private static void report(Projog projog, String query) {
+      QueryPlan plan = projog.createPlan(query);
+      BenchmarkUtils.time(query, ITERATIONS, () -> BenchmarkUtils.evaluateAll(plan));
+   }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+import org.projog.core.ProjogDefaultProperties;
+
+/**
+ * Reports the heap retained by a program consisting of many facts that repeat the same ground terms, with and
+ * without ground term sharing enabled.
+ *
+ * @see org.projog.core.ProjogProperties#isGroundTermSharingEnabled()
+ */
+public final class GroundTermSharingBenchmark {
+   private static final int NUMBER_OF_FACTS = 200000;
+   private static final String[] COUNTRIES = {"gb", "fr", "de", "es", "it", "us", "jp", "br"};
+   private static final String[] STATUSES = {"pending", "active", "shipped", "cancelled"};
+
+   public static void main(String[] args) {
+      String program = createProgram();
+      report("sharing disabled", program, false);
+      report("sharing enabled", program, true);
+   }
+
+   /**
+    * Returns facts of the form {@code order(1,country(gb),status(pending),line([widget,2],price(1.5))).}
+    */
+   private static String createProgram() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < NUMBER_OF_FACTS; i++) {
+         sb.append("order(").append(i);
+         sb.append(",country(").append(COUNTRIES[i % COUNTRIES.length]).append(')');
+         sb.append(",status(").append(STATUSES[i % STATUSES.length]).append(')');
+         sb.append(",line([widget,").append(i % 5).append("],price(").append(i % 3).append(".5))).\n");
+      }
+      return sb.toString();
+   }
+
+   private static void report(String description, String program, boolean isSharingEnabled) {
+      long before = getUsedHeap();
+      long start = System.nanoTime();
+      Projog projog = new Projog(new ProjogDefaultProperties() {
+         @Override
+         public boolean isGroundTermSharingEnabled() {
+            return isSharingEnabled;
+         }
+      });
+      projog.consultReader(new StringReader(program));
+      long consultMillis = (System.nanoTime() - start) / 1000000;
+      long retained = getUsedHeap() - before;
+
+      System.out.println(String.format("%-20s %10d bytes retained %6d bytes/fact %6d ms consult", description, retained, retained / NUMBER_OF_FACTS, consultMillis));
+
+      QueryPlan plan = projog.createPlan("order(_,country(gb),status(S),_), S == shipped, fail ; true.");
+      BenchmarkUtils.time(description + " query", NUMBER_OF_FACTS, () -> BenchmarkUtils.evaluateAll(plan));
+   }
+
+   private static long getUsedHeap() {
+      MemoryMXBean bean = ManagementFactory.getMemoryMXBean();
+      for (int i = 0; i < 5; i++) {
+         System.gc();
+      }
+      return bean.getHeapMemoryUsage().getUsed();
+   }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the time taken, and the number of bytes allocated, by calls to facts that are indexed on one, two and three
+ * arguments.
+ * <p>
+ * The facts are of the form {@code p(I, B, C, D)} where {@code I} is unique and {@code B}, {@code C} and {@code D} are
+ * each shared by many facts, and by many facts when any two of them are combined, but are unique when all three are
+ * combined. Each iteration also evaluates {@code between/3} and the arithmetic used to create the arguments of the call,
+ * so the results are only comparable with other results for the same query.
+ */
+public final class IndexLookupBenchmark {
+   private static final int NUM_FACTS = 8000;
+   private static final int ITERATIONS = 200000;
+   private static final int WARMUP_ITERATIONS = 3;
+   private static final int MEASURED_ITERATIONS = 5;
+
+   private static final String PROGRAM = "" //
+                                         + "lookup1(N) :- between(1,N,X), I is X mod " + NUM_FACTS + ", p(I,_,_,_), fail." //
+                                         + "lookup1(_)." //
+                                         + "lookup2(N) :- between(1,N,X), C is (X // 20) mod 20, D is X mod 20, p(_,_,C,D), fail." //
+                                         + "lookup2(_)." //
+                                         + "lookup3(N) :- between(1,N,X), B is (X // 400) mod 20, C is (X // 20) mod 20, D is X mod 20, p(_,B,C,D), fail." //
+                                         + "lookup3(_).";
+
+   public static void main(String[] args) {
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(PROGRAM + createFacts()));
+      report(projog, "lookup1(" + ITERATIONS + ").");
+      report(projog, "lookup2(" + ITERATIONS + ").");
+      report(projog, "lookup3(" + ITERATIONS + ").");
+   }
+
+   private static String createFacts() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < NUM_FACTS; i++) {
+         sb.append("p(").append(i).append(',').append(i / 400).append(',').append((i / 20) % 20).append(',').append(i % 20).append(").");
+      }
+      return sb.toString();
+   }
+
+   private static void report(Projog projog, String query) {
+      QueryPlan plan = projog.createPlan(query);
+      long bytesPerQuery = BenchmarkUtils.getAllocatedBytesPerQuery(plan, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+      BenchmarkUtils.time(query, ITERATIONS, () -> BenchmarkUtils.evaluateAll(plan));
+      System.out.println(String.format("%-60s %12.1f bytes/iteration", query, (double) bytesPerQuery / ITERATIONS));
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the time taken by calls to a large table of facts that is indexed by an integer "id" argument.
+ * <p>
+ * The ids of the {@code dense/1} facts are consecutive, and the ids of the {@code sparse/1} facts are multiples of
+ * {@code 7}, so the two tables are indexed using different implementations. The facts are looked up in a scattered
+ * order, so that successive lookups do not access adjacent memory. Each iteration also evaluates {@code between/3}
+ * and the arithmetic used to create the id, so the results are only comparable with other results for the same
+ * query.
+ * <p>
+ * The number of facts in each table defaults to 1 million, and can be changed using the
+ * {@code projog.benchmark.facts} system property. As the clauses of a predicate are copied when it is first called, a
+ * table of 10 million facts requires a maximum heap size of more than 5GB.
+ */
+public final class IntegerKeyedFactsBenchmark {
+   private static final int NUM_FACTS = Integer.getInteger("projog.benchmark.facts", 1_000_000);
+   private static final int ITERATIONS = 1_000_000;
+
+   public static void main(String[] args) {
+      run("dense", 1);
+      run("sparse", 7);
+   }
+
+   /** Each table is consulted by a separate {@code Projog} so that only one is in memory at a time. */
+   private static void run(String name, int multiplier) {
+      Projog projog = new Projog();
+      long start = System.nanoTime();
+      projog.consultReader(new FactsReader(name, multiplier));
+      System.out.println(String.format("Consulted %d %s facts in %.1fs", NUM_FACTS, name, (System.nanoTime() - start) / 1e9));
+      projog.consultReader(new StringReader("" //
+                                                    + "lookup(N) :- between(1,N,X), I is ((X * 7919) mod " + NUM_FACTS + ") * " + multiplier + ", " + name + "(I), fail." //
+                                                    + "lookup(_)."));
+      QueryPlan plan = projog.createPlan("lookup(" + ITERATIONS + ").");
+      BenchmarkUtils.time(name, ITERATIONS, () -> BenchmarkUtils.evaluateAll(plan));
+   }
+
+   /** Generates the source of the facts as it is read, rather than holding all of it in memory. */
+   private static final class FactsReader extends Reader {
+      private final String name;
+      private final int multiplier;
+      private String current = "";
+      private int offset;
+      private int count;
+
+      FactsReader(String name, int multiplier) {
+         this.name = name;
+         this.multiplier = multiplier;
+      }
+
+      @Override
+      public int read(char[] cbuf, int off, int len) {
+         if (offset == current.length()) {
+            if (count == NUM_FACTS) {
+               return -1;
+            }
+            current = name + "(" + ((long) count * multiplier) + ").\n";
+            offset = 0;
+            count++;
+         }
+         int n = Math.min(len, current.length() - offset);
+         current.getChars(offset, offset + n, cbuf, off);
+         offset += n;
+         return n;
+      }
+
+      @Override
+      public void close() {
+      }
+   }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+import org.projog.core.ProjogDefaultProperties;
+
+/**
+ * Compares evaluating deterministic recursion with, and without, last call optimisation.
+ * <p>
+ * None of the predicates match the narrow pattern recognised by {@link org.projog.core.udp.TailRecursivePredicateMetaData}
+ * so, without last call optimisation, each level of recursion adds frames to the Java stack.
+ *
+ * @see org.projog.core.ProjogProperties#isLastCallOptimisationEnabled()
+ */
+public final class LastCallOptimisationBenchmark {
+   private static final int DEPTH = 1000000;
+
+   private static final String PROGRAM = "" //
+                                         // more than two clauses, with a cut in the first two
+                                         + "countdown(0) :- !.\n" //
+                                         + "countdown(N) :- N < 0, !, fail.\n" //
+                                         + "countdown(N) :- N1 is N-1, countdown(N1).\n" //
+                                         // mutual recursion
+                                         + "even(0) :- !.\n" //
+                                         + "even(N) :- N1 is N-1, odd(N1).\n" //
+                                         + "odd(N) :- N > 0, N1 is N-1, even(N1).\n" //
+                                         // an accumulator, with the recursive call in more than one clause
+                                         + "total([], S, S).\n" //
+                                         + "total([H|T], A, S) :- H < 0, !, total(T, A, S).\n" //
+                                         + "total([H|T], A, S) :- A1 is A+H, total(T, A1, S).\n" //
+                                         // the recursive call in the branch of an if-then-else
+                                         + "loop(N) :- (N =:= 0 -> true ; N1 is N-1, loop(N1)).\n";
+
+   public static void main(String[] args) {
+      Projog nested = createProjog(false);
+      Projog optimised = createProjog(true);
+      compare(nested, optimised, "countdown/1", "countdown(" + DEPTH + ").");
+      compare(nested, optimised, "even/1 and odd/1", "even(" + DEPTH + ").");
+      compare(nested, optimised, "total/3", "findall(X, between(1, " + DEPTH + ", X), L), total(L, 0, S).");
+      compare(nested, optimised, "loop/1", "loop(" + DEPTH + ").");
+   }
+
+   private static void compare(Projog nested, Projog optimised, String description, String query) {
+      time("nested " + description, nested.createPlan(query));
+      time("optimised " + description, optimised.createPlan(query));
+   }
+
+   private static void time(String description, QueryPlan plan) {
+      try {
+         BenchmarkUtils.time(description, DEPTH, () -> BenchmarkUtils.evaluateAll(plan));
+      } catch (RuntimeException | StackOverflowError e) {
+         System.out.println(String.format("%-60s %s", description, isStackOverflow(e) ? "stack overflow" : e));
+      }
+   }
+
+   private static boolean isStackOverflow(Throwable t) {
+      while (t != null) {
+         if (t instanceof StackOverflowError) {
+            return true;
+         }
+         t = t.getCause();
+      }
+      return false;
+   }
+
+   private static Projog createProjog(boolean isLastCallOptimisationEnabled) {
+      Projog projog = new Projog(new ProjogDefaultProperties() {
+         @Override
+         public boolean isLastCallOptimisationEnabled() {
+            return isLastCallOptimisationEnabled;
+         }
+      });
+      projog.consultReader(new StringReader(PROGRAM));
+      return projog;
+   }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+import org.projog.core.KnowledgeBaseServiceLocator;
+import org.projog.core.ProjogDefaultProperties;
+import org.projog.core.udp.IndexCache;
+
+/**
+ * Compares existence checks against a large table of facts, most of which fail, with and without Bloom filters.
+ * <p>
+ * The facts are of the form {@code known(Id, Group)}. Each check calls {@code known(Id, _)}. The checks are first run
+ * with ids that never occur in the table, and then with ids that always occur in the table. For each, reports the time
+ * taken by the first batch of checks (which includes creating any index or Bloom filter), the time taken by each check
+ * once warmed up, and the memory used by indexes. Note that, as the Bloom filter has a false positive rate of
+ * approximately 1%, an index is still created during the first batch of checks that never match.
+ * <p>
+ * The number of facts defaults to 1 million, and can be changed using the {@code projog.benchmark.facts} system
+ * property.
+ */
+public final class NegativeLookupBenchmark {
+   private static final int NUM_FACTS = Integer.getInteger("projog.benchmark.facts", 1_000_000);
+   private static final int ITERATIONS = 100_000;
+
+   public static void main(String[] args) {
+      run(false);
+      run(true);
+   }
+
+   private static void run(boolean bloomFilterEnabled) {
+      Projog projog = new Projog(new ProjogDefaultProperties() {
+         @Override
+         public boolean isBloomFilterEnabled() {
+            return bloomFilterEnabled;
+         }
+      });
+      StringBuilder program = new StringBuilder();
+      for (int i = 0; i < NUM_FACTS; i++) {
+         program.append("known(").append(i * 8L).append(", g").append(i % 100).append(").\n");
+      }
+      program.append("check(N, Offset) :- between(1,N,X), I is ((X * 7919) mod " + NUM_FACTS + ") * 8 + Offset, known(I, _), fail.\n");
+      program.append("check(_, _).\n");
+      projog.consultReader(new StringReader(program.toString()));
+      program = null;
+
+      String description = "Bloom filter " + (bloomFilterEnabled ? "enabled" : "disabled");
+      check(projog, description + " all misses", 1);
+      check(projog, description + " all hits", 0);
+   }
+
+   private static void check(Projog projog, String description, int offset) {
+      QueryPlan plan = projog.createPlan("check(" + ITERATIONS + ", " + offset + ").");
+      long start = System.nanoTime();
+      BenchmarkUtils.evaluateAll(plan);
+      System.out.println(String.format("%s first %d checks: %.1fms", description, ITERATIONS, (System.nanoTime() - start) / 1e6));
+      BenchmarkUtils.time(description, ITERATIONS, () -> BenchmarkUtils.evaluateAll(plan));
+      IndexCache cache = KnowledgeBaseServiceLocator.getServiceLocator(projog.getKnowledgeBase()).getInstance(IndexCache.class);
+      System.out.println(description + " " + cache);
+   }
+}
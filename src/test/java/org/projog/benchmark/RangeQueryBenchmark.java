@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Compares the time taken to find the facts within a range using {@code in_range/3} and using comparison operators.
+ * <p>
+ * The facts are of the form {@code event(Timestamp, Value)}, in ascending order of timestamp. The number of facts
+ * defaults to 1 million, and can be changed using the {@code projog.benchmark.facts} system property. Each query finds
+ * the 100 facts with timestamps within a range.
+ */
+public final class RangeQueryBenchmark {
+   private static final int NUM_FACTS = Integer.getInteger("projog.benchmark.facts", 1_000_000);
+   private static final int RANGE = 100;
+
+   public static void main(String[] args) {
+      StringBuilder program = new StringBuilder("?- range_index(event/2, 1).\n");
+      for (int i = 0; i < NUM_FACTS; i++) {
+         program.append("event(").append(i).append(", v").append(i % 10).append(").\n");
+      }
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(program.toString()));
+
+      int from = NUM_FACTS / 2;
+      int to = from + RANGE;
+      QueryPlan comparison = projog.createPlan("event(T, V), T >= " + from + ", T < " + to + ".");
+      QueryPlan inRange = projog.createPlan("in_range(event(T, V), " + from + ", " + to + ").");
+      BenchmarkUtils.time("comparison of " + NUM_FACTS + " facts", 1, () -> BenchmarkUtils.evaluateAll(comparison));
+      BenchmarkUtils.time("in_range of " + NUM_FACTS + " facts", 1, () -> BenchmarkUtils.evaluateAll(inRange));
+   }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the time taken to update a large table of dynamic facts by retracting a fact and asserting its replacement.
+ * <p>
+ * The facts are of the form {@code counter(Key, Value)}. Each iteration retracts the fact for a key, and asserts a new
+ * fact for the key with the value incremented. The number of facts defaults to 1 million, and can be changed using the
+ * {@code projog.benchmark.facts} system property. The number of iterations can be changed using the
+ * {@code projog.benchmark.iterations} system property.
+ */
+public final class RetractChurnBenchmark {
+   private static final int NUM_FACTS = Integer.getInteger("projog.benchmark.facts", 1_000_000);
+   private static final int ITERATIONS = Integer.getInteger("projog.benchmark.iterations", 100_000);
+
+   private static final String PROGRAM = "" //
+                                         + ":- dynamic(counter/2)." //
+                                         + "populate(N) :- between(1,N,K), assertz(counter(K,0)), fail." //
+                                         + "populate(_)." //
+                                         + "churn(N) :- between(1,N,X), K is ((X * 7919) mod " + NUM_FACTS + ") + 1, retract(counter(K,V)), V1 is V+1, assertz(counter(K,V1)), fail." //
+                                         + "churn(_).";
+
+   public static void main(String[] args) {
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(PROGRAM));
+      BenchmarkUtils.evaluateAll(projog.createPlan("populate(" + NUM_FACTS + ")."));
+
+      QueryPlan plan = projog.createPlan("churn(" + ITERATIONS + ").");
+      BenchmarkUtils.time("churn(" + ITERATIONS + ") of " + NUM_FACTS + " facts", ITERATIONS, () -> BenchmarkUtils.evaluateAll(plan));
+   }
+}
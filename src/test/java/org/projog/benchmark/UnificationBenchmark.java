@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+
+/**
+ * Reports the time taken, and the number of bytes allocated, by programs whose cost is dominated by unification.
+ * <p>
+ * <ul>
+ * <li>{@code nrev} - naive reverse of a 30 element list (496 logical inferences)</li>
+ * <li>{@code zebra} - the "zebra puzzle", which unifies partially instantiated structures</li>
+ * </ul>
+ */
+public final class UnificationBenchmark {
+   private static final int NREV_ITERATIONS = 2000;
+   private static final int ZEBRA_ITERATIONS = 20;
+   private static final int WARMUP_ITERATIONS = 3;
+   private static final int MEASURED_ITERATIONS = 5;
+
+   private static final String PROGRAM = "" //
+                                         + "app([],L,L)." //
+                                         + "app([H|T],L,[H|R]) :- app(T,L,R)." //
+                                         + "nrev([],[])." //
+                                         + "nrev([H|T],R) :- nrev(T,RT), app(RT,[H],R)." //
+                                         + "range(N,N,[N]) :- !." //
+                                         + "range(M,N,[M|Ns]) :- M1 is M+1, range(M1,N,Ns)." //
+                                         + "nrev30(N) :- range(1,30,L), between(1,N,_), nrev(L,_), fail." //
+                                         + "nrev30(_)." //
+
+                                         + "right_of(A,B,[B,A|_])." //
+                                         + "right_of(A,B,[_|Y]) :- right_of(A,B,Y)." //
+                                         + "next_to(A,B,[A,B|_])." //
+                                         + "next_to(A,B,[B,A|_])." //
+                                         + "next_to(A,B,[_|Y]) :- next_to(A,B,Y)." //
+                                         + "mymember(X,[X|_])." //
+                                         + "mymember(X,[_|Y]) :- mymember(X,Y)." //
+                                         + "houses([h(_,norwegian,_,_,_),_,h(_,_,_,milk,_),_,_])." //
+                                         + "zebra(Owner) :- houses(Hs)," //
+                                         + "mymember(h(red,english,_,_,_),Hs)," //
+                                         + "mymember(h(_,spanish,dog,_,_),Hs)," //
+                                         + "mymember(h(green,_,_,coffee,_),Hs)," //
+                                         + "mymember(h(_,ukrainian,_,tea,_),Hs)," //
+                                         + "right_of(h(green,_,_,_,_),h(ivory,_,_,_,_),Hs)," //
+                                         + "mymember(h(_,_,snails,_,oldgold),Hs)," //
+                                         + "mymember(h(yellow,_,_,_,kools),Hs)," //
+                                         + "next_to(h(_,_,_,_,chesterfield),h(_,_,fox,_,_),Hs)," //
+                                         + "next_to(h(_,_,_,_,kools),h(_,_,horse,_,_),Hs)," //
+                                         + "mymember(h(_,_,_,orange_juice,luckystrike),Hs)," //
+                                         + "mymember(h(_,japanese,_,_,parliament),Hs)," //
+                                         + "next_to(h(_,norwegian,_,_,_),h(blue,_,_,_,_),Hs)," //
+                                         + "mymember(h(_,Owner,zebra,_,_),Hs)." //
+                                         + "zebra_loop(N) :- between(1,N,_), zebra(_), fail." //
+                                         + "zebra_loop(_).";
+
+   public static void main(String[] args) {
+      Projog projog = new Projog();
+      projog.consultReader(new StringReader(PROGRAM));
+      report(projog, "nrev30(" + NREV_ITERATIONS + ").", NREV_ITERATIONS);
+      report(projog, "zebra_loop(" + ZEBRA_ITERATIONS + ").", ZEBRA_ITERATIONS);
+   }
+
+   private static void report(Projog projog, String query, int iterations) {
+      QueryPlan plan = projog.createPlan(query);
+      long bytesPerQuery = BenchmarkUtils.getAllocatedBytesPerQuery(plan, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+      BenchmarkUtils.time(query, iterations, () -> BenchmarkUtils.evaluateAll(plan));
+      System.out.println(String.format("%-60s %12.1f bytes/iteration", query, (double) bytesPerQuery / iterations));
+   }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.benchmark;
+
+import java.io.StringReader;
+
+import org.projog.api.Projog;
+import org.projog.api.QueryPlan;
+import org.projog.core.ProjogDefaultProperties;
+
+/**
+ * Compares the time taken to evaluate user defined predicates when they are interpreted and when they are evaluated
+ * by a Warren Abstract Machine (WAM).
+ *
+ * @see org.projog.core.ProjogProperties#isWamEnabled()
+ */
+public final class WamBenchmark {
+   private static final String PROGRAM = "" //
+                                         // unification of lists in the head of clauses
+                                         + "app([], L, L).\n" //
+                                         + "app([H|T], L, [H|R]) :- app(T, L, R).\n" //
+                                         + "nrev([], []).\n" //
+                                         + "nrev([H|T], R) :- nrev(T, RT), app(RT, [H], R).\n" //
+                                         + "range(N, N, [N]) :- !.\n" //
+                                         + "range(M, N, [M|Ns]) :- M < N, M1 is M+1, range(M1, N, Ns).\n" //
+                                         // arithmetic evaluated by built-in predicates
+                                         + "fib(0, 0).\n" //
+                                         + "fib(1, 1).\n" //
+                                         + "fib(N, F) :- N > 1, N1 is N-1, N2 is N-2, fib(N1, F1), fib(N2, F2), F is F1+F2.\n" //
+                                         // deep search with backtracking
+                                         + "queens(N, Qs) :- range(1, N, Ns), permutation(Ns, Qs), safe(Qs).\n" //
+                                         + "permutation([], []).\n" //
+                                         + "permutation(Xs, [X|Ys]) :- del(X, Xs, Rest), permutation(Rest, Ys).\n" //
+                                         + "del(X, [X|Xs], Xs).\n" //
+                                         + "del(X, [Y|Ys], [Y|Zs]) :- del(X, Ys, Zs).\n" //
+                                         + "safe([]).\n" //
+                                         + "safe([Q|Qs]) :- no_attack(Q, Qs, 1), safe(Qs).\n" //
+                                         + "no_attack(_, [], _).\n" //
+                                         + "no_attack(Q, [Q1|Qs], D) :- Q =\\= Q1 + D, Q =\\= Q1 - D, D1 is D+1, no_attack(Q, Qs, D1).\n";
+
+   public static void main(String[] args) {
+      Projog interpreted = createProjog(false);
+      Projog wam = createProjog(true);
+      compare(interpreted, wam, "nrev of 30 elements (x1000)", "range(1, 30, L), between(1, 1000, _), nrev(L, _), fail ; true.");
+      compare(interpreted, wam, "fib(18)", "fib(18, F).");
+      compare(interpreted, wam, "all solutions of 8 queens", "queens(8, Qs).");
+   }
+
+   private static void compare(Projog interpreted, Projog wam, String description, String query) {
+      QueryPlan i = interpreted.createPlan(query);
+      QueryPlan w = wam.createPlan(query);
+      BenchmarkUtils.time("interpreted " + description, 1, () -> BenchmarkUtils.evaluateAll(i));
+      BenchmarkUtils.time("wam " + description, 1, () -> BenchmarkUtils.evaluateAll(w));
+   }
+
+   private static Projog createProjog(boolean isWamEnabled) {
+      Projog projog = new Projog(new ProjogDefaultProperties() {
+         @Override
+         public boolean isWamEnabled() {
+            return isWamEnabled;
+         }
+      });
+      projog.consultReader(new StringReader(PROGRAM));
+      return projog;
+   }
+}
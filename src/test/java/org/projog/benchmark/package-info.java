@@ -0,0 +1,7 @@
+/**
+ * Provides simple benchmarks for measuring the performance of the core engine.
+ * <p>
+ * Each benchmark is a class with a <code>main</code> method that prints timings to standard output. They are not run as
+ * part of the unit tests.
+ */
+package org.projog.benchmark;
@@ -16,6 +16,7 @@
 package org.projog.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import org.junit.Test;
 
@@ -26,4 +27,24 @@ public class ProjogDefaultPropertiesTest {
    public void testGetBootstrapScript() {
       assertEquals("projog-bootstrap.pl", properties.getBootstrapScript());
    }
+
+   @Test
+   public void testIsStructureSharingEnabled() {
+      assertFalse(properties.isStructureSharingEnabled());
+   }
+
+   @Test
+   public void testIsGroundTermSharingEnabled() {
+      assertFalse(properties.isGroundTermSharingEnabled());
+   }
+
+   @Test
+   public void testGetMinCachedIntegerValue() {
+      assertEquals(-128, properties.getMinCachedIntegerValue());
+   }
+
+   @Test
+   public void testGetMaxCachedIntegerValue() {
+      assertEquals(127, properties.getMaxCachedIntegerValue());
+   }
 }
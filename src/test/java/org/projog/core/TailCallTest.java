@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.projog.core.udp.PredicateUtils;
+
+public class TailCallTest {
+   private final TailCall testObject = new TailCall();
+   private final Predicate callee = PredicateUtils.TRUE;
+
+   @Test
+   public void testAllow() {
+      Predicate body = PredicateUtils.TRUE;
+      assertFalse(testObject.isAllowed(body));
+
+      testObject.allow(body);
+      assertFalse(testObject.isAllowed(PredicateUtils.FALSE));
+      assertTrue(testObject.isAllowed(body));
+      // permission only applies once
+      assertFalse(testObject.isAllowed(body));
+
+      testObject.allow(body);
+      testObject.allow(null);
+      assertFalse(testObject.isAllowed(body));
+   }
+
+   @Test
+   public void testOfferAndTake() {
+      assertFalse(testObject.isOffered());
+      assertNull(testObject.take());
+
+      testObject.offer(callee);
+      assertTrue(testObject.isOffered());
+      assertTrue(testObject.isDeterministic());
+      assertFalse(testObject.isPruned());
+
+      assertSame(callee, testObject.take());
+      assertFalse(testObject.isOffered());
+   }
+
+   @Test
+   public void testPrecededByDeterministicGoal() {
+      testObject.offer(callee);
+      testObject.precededBy(createPredicate(false), false);
+      assertTrue(testObject.isDeterministic());
+      assertFalse(testObject.isPruned());
+   }
+
+   @Test
+   public void testPrecededByRetryableGoal() {
+      testObject.offer(callee);
+      testObject.precededBy(createPredicate(true), false);
+      assertFalse(testObject.isDeterministic());
+      assertFalse(testObject.isPruned());
+   }
+
+   @Test
+   public void testRetryableGoalBeforeCut() {
+      testObject.offer(callee);
+      testObject.precededBy(createPredicate(false), false);
+      testObject.precededBy(createPredicate(true), true);
+      testObject.precededBy(createPredicate(true), false);
+      assertTrue(testObject.isDeterministic());
+      assertTrue(testObject.isPruned());
+   }
+
+   @Test
+   public void testRetryableGoalAfterCut() {
+      testObject.offer(callee);
+      testObject.precededBy(createPredicate(true), false);
+      testObject.precededBy(createPredicate(true), true);
+      assertFalse(testObject.isDeterministic());
+      assertTrue(testObject.isPruned());
+   }
+
+   @Test
+   public void testOfferResetsState() {
+      testObject.offer(callee);
+      testObject.precededBy(createPredicate(true), false);
+      testObject.precededBy(createPredicate(true), true);
+      testObject.take();
+
+      testObject.offer(callee);
+      assertTrue(testObject.isDeterministic());
+      assertFalse(testObject.isPruned());
+   }
+
+   private static Predicate createPredicate(boolean couldReevaluationSucceed) {
+      return new Predicate() {
+         @Override
+         public boolean evaluate() {
+            throw new UnsupportedOperationException();
+         }
+
+         @Override
+         public boolean couldReevaluationSucceed() {
+            return couldReevaluationSucceed;
+         }
+      };
+   }
+}
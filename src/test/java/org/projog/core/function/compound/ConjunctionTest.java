@@ -24,9 +24,12 @@ import static org.projog.TestUtils.parseTerm;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.projog.core.KnowledgeBase;
+import org.projog.core.KnowledgeBaseUtils;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.term.IntegerNumber;
@@ -36,6 +39,29 @@ import org.projog.core.term.Variable;
 import org.projog.core.udp.PredicateUtils;
 
 public class ConjunctionTest {
+   @Test
+   public void testCutEvaluatedOutsideOfQuery() throws Exception {
+      // use a new thread so the predicates are evaluated using a newly created default trail
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         executor.submit(() -> {
+            KnowledgeBase kb = createKnowledgeBase();
+            Predicate cut = KnowledgeBaseUtils.getPredicate(kb, parseTerm("true, !."));
+            assertTrue(cut.evaluate());
+            assertFalse(cut.evaluate());
+
+            // the cut does not prevent predicates that are subsequently evaluated on the same thread from backtracking
+            Predicate repeat = KnowledgeBaseUtils.getPredicate(kb, parseTerm("repeat(2), true."));
+            assertTrue(repeat.evaluate());
+            assertTrue(repeat.evaluate());
+            assertFalse(repeat.evaluate());
+            return null;
+         }).get();
+      } finally {
+         executor.shutdown();
+      }
+   }
+
    @Test
    public void testPreprocess_cannot_optimise_when_both_arguments_are_variables() {
       KnowledgeBase kb = createKnowledgeBase();
@@ -16,6 +16,7 @@
 package org.projog.core.function.math;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -28,11 +29,13 @@ import static org.projog.TestUtils.structure;
 import static org.projog.TestUtils.variable;
 
 import org.junit.Test;
+import org.projog.core.KnowledgeBase;
 import org.projog.core.ProjogException;
 import org.projog.core.term.IntegerNumber;
 import org.projog.core.term.Numeric;
 import org.projog.core.term.Structure;
 import org.projog.core.term.Term;
+import org.projog.core.term.Variable;
 
 public class AbstractArithmeticOperatorTest {
    // a non-abstract implementation of ArithmeticOperator (so we can create and test it)
@@ -222,4 +225,38 @@ public class AbstractArithmeticOperatorTest {
       };
       assertTrue(c.isPure());
    }
+
+   @Test
+   public void testPreprocessedLongArithmetic() {
+      KnowledgeBase kb = createKnowledgeBase();
+      Variable a = variable("A");
+      Variable b = variable("B");
+      Structure expression = structure("*", structure("+", a, integerNumber(2)), structure("-", b));
+      LongArithmeticOperator o = (LongArithmeticOperator) kb.getArithmeticOperators().getPreprocessedArithmeticOperator(expression);
+
+      a.unify(integerNumber(3));
+      b.unify(integerNumber(4));
+      assertTrue(o.isLong(expression.getArgs()));
+      assertEquals(-20, o.calculateLong(expression.getArgs()));
+      assertEquals(integerNumber(-20), o.calculate(expression.getArgs()));
+
+      b.backtrack();
+      b.unify(decimalFraction(1.5));
+      assertFalse(o.isLong(expression.getArgs()));
+      assertEquals(decimalFraction(-7.5), o.calculate(expression.getArgs()));
+   }
+
+   @Test
+   public void testLongArithmeticNotSupported() {
+      KnowledgeBase kb = createKnowledgeBase();
+      Variable a = variable("A");
+      Structure expression = structure("/", structure("+", a, integerNumber(2)), integerNumber(2));
+      LongArithmeticOperator o = (LongArithmeticOperator) kb.getArithmeticOperators().getPreprocessedArithmeticOperator(expression);
+
+      a.unify(integerNumber(5));
+      // "/" can return a fraction even when its arguments are integers
+      assertFalse(o.isLong(expression.getArgs()));
+      assertEquals(decimalFraction(3.5), o.calculate(expression.getArgs()));
+      assertFalse(new DummyArithmeticOperator().isLong(new Term[] {integerNumber(1)}));
+   }
 }
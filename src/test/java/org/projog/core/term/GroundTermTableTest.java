@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.parseTerm;
+import static org.projog.TestUtils.write;
+
+import org.junit.Test;
+
+public class GroundTermTableTest {
+   private final GroundTermTable table = new GroundTermTable();
+
+   @Test
+   public void testAtomicTerms() {
+      for (String syntax : new String[] {"a", "12345678", "1.5"}) {
+         Term first = parseTerm(syntax);
+         Term second = parseTerm(syntax);
+         assertSame(first, table.share(first));
+         assertSame(first, table.share(second));
+      }
+   }
+
+   @Test
+   public void testTermsOfDifferentTypesNotShared() {
+      Term integer = parseTerm("1");
+      Term decimal = parseTerm("1.0");
+      Term atom = parseTerm("'1'");
+      assertSame(integer, table.share(integer));
+      assertSame(decimal, table.share(decimal));
+      assertSame(atom, table.share(atom));
+   }
+
+   @Test
+   public void testGroundStructure() {
+      Term first = parseTerm("p(a, q(b), [c,d])");
+      Term second = parseTerm("p(a, q(b), [c,d])");
+      assertSame(first, table.share(first));
+      assertSame(first, table.share(second));
+      // arguments are also shared
+      Term q = parseTerm("q(b)");
+      assertSame(first.getArgument(1), table.share(q));
+   }
+
+   @Test
+   public void testArgumentsOfNewStructureReplacedWithSharedInstances() {
+      Term a = table.share(parseTerm("a"));
+      Term list = table.share(parseTerm("[x,y,z]"));
+      Term shared = table.share(parseTerm("p(a, [x,y,z])"));
+      assertSame(a, shared.getArgument(0));
+      assertSame(list, shared.getArgument(1));
+   }
+
+   @Test
+   public void testNonGroundStructure() {
+      Term first = parseTerm("p(X, q(b), [a,b|T])");
+      Term second = parseTerm("p(X, q(b), [a,b|T])");
+      Term sharedFirst = table.share(first);
+      Term sharedSecond = table.share(second);
+      assertNotSame(sharedFirst, sharedSecond);
+      assertSame(first.getArgument(0), sharedFirst.getArgument(0));
+      assertSame(second.getArgument(0), sharedSecond.getArgument(0));
+      assertSame(sharedFirst.getArgument(1), sharedSecond.getArgument(1));
+      assertSame(sharedFirst.getArgument(2).getArgument(0), sharedSecond.getArgument(2).getArgument(0));
+      assertEquals(write(first), write(sharedFirst));
+   }
+
+   @Test
+   public void testLongList() {
+      StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < 10000; i++) {
+         sb.append(i == 0 ? "" : ",").append("f(").append(i % 10).append(")");
+      }
+      sb.append(",X]");
+      Term list = table.share(parseTerm(sb.toString()));
+      assertEquals(10001, ListUtils.getLength(list));
+      assertSame(ListUtils.getElement(list, 0), ListUtils.getElement(list, 10));
+      // f(0) to f(9), 0 to 9 and []
+      assertTrue(table.size() <= 21);
+   }
+}
@@ -18,13 +18,20 @@ package org.projog.core.term;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import org.junit.After;
 import org.junit.Test;
 
 public class IntegerNumberCacheTest {
    private static final int MIN_CACHED_VALUE = -128;
    private static final int MAX_CACHED_VALUE = 127;
 
+   @After
+   public void resetCache() {
+      IntegerNumberCache.reset();
+   }
+
    @Test
    public void testZero() {
       assertEquals(new IntegerNumber(0), IntegerNumberCache.ZERO);
@@ -64,4 +71,55 @@ public class IntegerNumberCacheTest {
       assertNotSame(IntegerNumberCache.valueOf(Long.MAX_VALUE), IntegerNumberCache.valueOf(Long.MAX_VALUE));
       assertEquals(new IntegerNumber(Long.MAX_VALUE), IntegerNumberCache.valueOf(Long.MAX_VALUE));
    }
+
+   @Test
+   public void testDefaultRange() {
+      assertEquals(MIN_CACHED_VALUE, IntegerNumberCache.getMin());
+      assertEquals(MAX_CACHED_VALUE, IntegerNumberCache.getMax());
+   }
+
+   @Test
+   public void testEnsureCached() {
+      IntegerNumber existing = IntegerNumberCache.valueOf(100);
+
+      IntegerNumberCache.ensureCached(0, 1000);
+      assertEquals(MIN_CACHED_VALUE, IntegerNumberCache.getMin());
+      assertEquals(1000, IntegerNumberCache.getMax());
+      assertSame(existing, IntegerNumberCache.valueOf(100));
+      assertSame(IntegerNumberCache.ZERO, IntegerNumberCache.valueOf(0));
+      assertSame(IntegerNumberCache.valueOf(1000), IntegerNumberCache.valueOf(1000));
+      assertEquals(new IntegerNumber(1000), IntegerNumberCache.valueOf(1000));
+      assertNotSame(IntegerNumberCache.valueOf(1001), IntegerNumberCache.valueOf(1001));
+
+      IntegerNumber cached = IntegerNumberCache.valueOf(500);
+      IntegerNumberCache.ensureCached(-1000, 10);
+      // range is never reduced
+      assertEquals(-1000, IntegerNumberCache.getMin());
+      assertEquals(1000, IntegerNumberCache.getMax());
+      assertSame(cached, IntegerNumberCache.valueOf(500));
+      assertSame(IntegerNumberCache.valueOf(-1000), IntegerNumberCache.valueOf(-1000));
+      assertEquals(new IntegerNumber(-1000), IntegerNumberCache.valueOf(-1000));
+      assertNotSame(IntegerNumberCache.valueOf(-1001), IntegerNumberCache.valueOf(-1001));
+   }
+
+   @Test
+   public void testEnsureCachedInvalidRange() {
+      try {
+         IntegerNumberCache.ensureCached(10, 9);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("Minimum: 10 is greater than maximum: 9", e.getMessage());
+      }
+   }
+
+   @Test
+   public void testEnsureCachedTooLarge() {
+      try {
+         IntegerNumberCache.ensureCached(Long.MIN_VALUE, Long.MAX_VALUE);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("Cannot cache more than 2147483639 values. Requested: -9223372036854775808 to 9223372036854775807", e.getMessage());
+      }
+      assertEquals(MAX_CACHED_VALUE, IntegerNumberCache.getMax());
+   }
 }
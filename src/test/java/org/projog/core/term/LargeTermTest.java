@@ -0,0 +1,290 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.projog.TestUtils.createTermFormatter;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests that operations on very long lists and deeply nested structures do not cause a {@code StackOverflowError}.
+ * <p>
+ * Each test is run in a thread with a small stack so that any operation whose Java stack depth grows with the size of
+ * the term will fail.
+ */
+public class LargeTermTest {
+   private static final int SIZE = 1000000;
+   private static final long STACK_SIZE = 256 * 1024;
+
+   @Test
+   public void testLongList() {
+      runWithSmallStack(new Runnable() {
+         @Override
+         public void run() {
+            Variable[] variables = createVariables();
+            Term variablesList = ListFactory.createList(variables);
+            Term numbersList = createNumbersList();
+
+            assertEquals(numbersList, createNumbersList());
+            assertEquals(numbersList.hashCode(), createNumbersList().hashCode());
+            assertNotEquals(numbersList, variablesList);
+            assertSame(numbersList, numbersList.getTerm());
+            assertSame(variablesList, variablesList.getTerm());
+
+            Set<Variable> found = TermUtils.getAllVariablesInTerm(variablesList);
+            assertEquals(SIZE, found.size());
+
+            assertTrue(variablesList.unify(numbersList));
+            assertEquals(new IntegerNumber(SIZE - 1), variables[SIZE - 1].getTerm());
+            Term resolved = variablesList.getTerm();
+            assertTrue(resolved.isImmutable());
+            assertEquals(numbersList, resolved);
+
+            String formatted = createTermFormatter().formatTerm(variablesList);
+            assertTrue(formatted.startsWith("[0,1,2,"));
+            assertTrue(formatted.endsWith("," + (SIZE - 1) + "]"));
+
+            variablesList.backtrack();
+            for (Variable v : variables) {
+               assertSame(v, v.getTerm());
+            }
+
+            Term copy = variablesList.copy(new HashMap<Variable, Variable>());
+            assertNotSame(variablesList, copy);
+            assertEquals(SIZE, TermUtils.getAllVariablesInTerm(copy).size());
+            assertTrue(copy.unify(numbersList));
+            assertEquals(numbersList, copy.getTerm());
+            assertSame(variables[0], variables[0].getTerm());
+         }
+      });
+   }
+
+   @Test
+   public void testUnifyLongListsFailure() {
+      runWithSmallStack(new Runnable() {
+         @Override
+         public void run() {
+            Term[] terms = new Term[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+               terms[i] = new IntegerNumber(i);
+            }
+            terms[SIZE - 1] = new Atom("z");
+            Term other = ListFactory.createList(terms);
+            Term numbersList = createNumbersList();
+
+            assertFalse(numbersList.unify(other));
+            assertFalse(other.unify(numbersList));
+            assertNotEquals(numbersList, other);
+         }
+      });
+   }
+
+   /** Tests a list where each tail is a variable that has been instantiated with the rest of the list. */
+   @Test
+   public void testListWithVariableTails() {
+      runWithSmallStack(new Runnable() {
+         @Override
+         public void run() {
+            Term partial = EmptyList.EMPTY_LIST;
+            for (int i = SIZE - 1; i > -1; i--) {
+               Variable tail = new Variable("T");
+               tail.unify(partial);
+               partial = new List(new IntegerNumber(i), tail);
+            }
+            Term numbersList = createNumbersList();
+
+            assertTrue(partial.unify(numbersList));
+            assertTrue(numbersList.unify(partial));
+            assertEquals(numbersList, partial.getTerm());
+            assertEquals(numbersList, partial.copy(new HashMap<Variable, Variable>()));
+            assertEquals(createTermFormatter().formatTerm(numbersList), createTermFormatter().formatTerm(partial));
+         }
+      });
+   }
+
+   @Test
+   public void testDeeplyNestedStructure() {
+      runWithSmallStack(new Runnable() {
+         @Override
+         public void run() {
+            Variable x = new Variable("X");
+            Term structure = createNestedStructure(x);
+            Term ground = createNestedStructure(new Atom("a"));
+
+            assertEquals(ground, createNestedStructure(new Atom("a")));
+            assertEquals(ground.hashCode(), createNestedStructure(new Atom("a")).hashCode());
+            assertNotEquals(structure, ground);
+            assertSame(structure, structure.getTerm());
+            assertEquals(1, TermUtils.getAllVariablesInTerm(structure).size());
+
+            Term copy = structure.copy(new HashMap<Variable, Variable>());
+            assertNotSame(structure, copy);
+            assertFalse(copy.unify(createNestedStructure(new Atom("b"), "t")));
+            assertTrue(copy.unify(createNestedStructure(new Atom("b"))));
+            assertSame(x, x.getTerm());
+
+            assertTrue(structure.unify(ground));
+            assertEquals(new Atom("a"), x.getTerm());
+            assertEquals(ground, structure.getTerm());
+            assertTrue(createTermFormatter().formatTerm(structure).endsWith("s(a" + closingBrackets(SIZE)));
+
+            structure.backtrack();
+            assertSame(x, x.getTerm());
+         }
+      });
+   }
+
+   @Test
+   public void testLongConjunction() {
+      runWithSmallStack(new Runnable() {
+         @Override
+         public void run() {
+            Term conjunction = new Atom("z");
+            for (int i = 0; i < SIZE; i++) {
+               conjunction = Structure.createStructure(",", new Term[] {new Atom("a"), conjunction});
+            }
+
+            String formatted = createTermFormatter().formatTerm(conjunction);
+            assertTrue(formatted.startsWith("a , (a , (a , "));
+            assertTrue(formatted.endsWith(" , (a , z" + closingBrackets(SIZE - 1)));
+         }
+      });
+   }
+
+   /** Tests that a cyclic list causes a StackOverflowError (as it did when operations were recursive). */
+   @Test
+   public void testCyclicList() {
+      runWithSmallStack(new Runnable() {
+         @Override
+         public void run() {
+            final Variable x = new Variable("X");
+            x.unify(new List(new Atom("a"), x));
+            final Variable y = new Variable("Y");
+            y.unify(new List(new Atom("a"), y));
+
+            assertStackOverflow(new Runnable() {
+               @Override
+               public void run() {
+                  x.getTerm();
+               }
+            });
+            assertStackOverflow(new Runnable() {
+               @Override
+               public void run() {
+                  x.copy(new HashMap<Variable, Variable>());
+               }
+            });
+            assertStackOverflow(new Runnable() {
+               @Override
+               public void run() {
+                  x.unify(y);
+               }
+            });
+            assertStackOverflow(new Runnable() {
+               @Override
+               public void run() {
+                  TermUtils.getAllVariablesInTerm(x);
+               }
+            });
+            assertStackOverflow(new Runnable() {
+               @Override
+               public void run() {
+                  createTermFormatter().formatTerm(x);
+               }
+            });
+         }
+      });
+   }
+
+   private static void assertStackOverflow(Runnable r) {
+      try {
+         r.run();
+         fail();
+      } catch (StackOverflowError e) {
+         // expected
+      }
+   }
+
+   private static Variable[] createVariables() {
+      Variable[] variables = new Variable[SIZE];
+      for (int i = 0; i < SIZE; i++) {
+         variables[i] = new Variable("X" + i);
+      }
+      return variables;
+   }
+
+   private static Term createNumbersList() {
+      Term[] terms = new Term[SIZE];
+      for (int i = 0; i < SIZE; i++) {
+         terms[i] = new IntegerNumber(i);
+      }
+      return ListFactory.createList(terms);
+   }
+
+   private static Term createNestedStructure(Term innermost) {
+      return createNestedStructure(innermost, "s");
+   }
+
+   private static Term createNestedStructure(Term innermost, String outermostName) {
+      Term t = innermost;
+      for (int i = 1; i < SIZE; i++) {
+         t = Structure.createStructure("s", new Term[] {t});
+      }
+      return Structure.createStructure(outermostName, new Term[] {t});
+   }
+
+   private static String closingBrackets(int n) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < n; i++) {
+         sb.append(')');
+      }
+      return sb.toString();
+   }
+
+   private static void runWithSmallStack(final Runnable r) {
+      final AtomicReference<Throwable> error = new AtomicReference<>();
+      Thread t = new Thread(null, new Runnable() {
+         @Override
+         public void run() {
+            try {
+               r.run();
+            } catch (Throwable e) {
+               error.set(e);
+            }
+         }
+      }, "LargeTermTest", STACK_SIZE);
+      t.start();
+      try {
+         t.join();
+      } catch (InterruptedException e) {
+         throw new RuntimeException(e);
+      }
+      if (error.get() != null) {
+         throw new AssertionError(error.get());
+      }
+   }
+}
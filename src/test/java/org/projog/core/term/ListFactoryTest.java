@@ -71,6 +71,43 @@ public class ListFactoryTest {
       assertEquals(listFromCollection, listFromArray);
    }
 
+   @Test
+   public void testGroundListIsArrayBacked() {
+      final Term[] args = createGroundArguments();
+      List l = (List) ListFactory.createList(args);
+      assertTrue(l.isArrayBacked());
+      assertEquals(args.length, l.getArrayLength());
+
+      // altering the array after the list has been created should not alter the list
+      Term first = args[0];
+      args[0] = new Atom("changed");
+      assertSame(first, l.getArgument(0));
+   }
+
+   @Test
+   public void testGroundListFromJavaCollectionIsArrayBacked() {
+      List l = (List) ListFactory.createList(Arrays.asList(createGroundArguments()));
+      assertTrue(l.isArrayBacked());
+   }
+
+   @Test
+   public void testNonGroundListIsNotArrayBacked() {
+      List l = (List) ListFactory.createList(new Term[] {new Atom("a"), new Variable("X")});
+      assertFalse(l.isArrayBacked());
+   }
+
+   @Test
+   public void testListWithTailIsNotArrayBacked() {
+      List l = (List) ListFactory.createList(createGroundArguments(), new Atom("tail"));
+      assertFalse(l.isArrayBacked());
+   }
+
+   @Test
+   public void testSingleElementListIsNotArrayBacked() {
+      List l = (List) ListFactory.createList(new Term[] {new Atom("a")});
+      assertFalse(l.isArrayBacked());
+   }
+
    @Test
    public void testCreateListOfLengthZero() {
       assertSame(EmptyList.EMPTY_LIST, ListFactory.createListOfLength(0));
@@ -142,6 +179,10 @@ public class ListFactoryTest {
       return new Term[] {atom(), structure(), integerNumber(), decimalFraction(), variable()};
    }
 
+   private Term[] createGroundArguments() {
+      return new Term[] {atom(), structure(), integerNumber(), decimalFraction()};
+   }
+
    private void testIsList(Term l) {
       assertEquals(".", l.getName());
       assertEquals(TermType.LIST, l.getType());
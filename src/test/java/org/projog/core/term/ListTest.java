@@ -326,4 +326,65 @@ public class ListTest {
       assertSame(l1, l1.getTerm());
       assertSame(l2, l2.getTerm());
    }
+
+   @Test
+   public void testArrayBackedListEqualToConsList() {
+      Term[] elements = {atom("a"), integerNumber(1), structure("p", atom("b")), decimalFraction(1.5)};
+      List arrayBacked = new List(elements.clone());
+      Term consList = EmptyList.EMPTY_LIST;
+      for (int i = elements.length - 1; i > -1; i--) {
+         consList = new List(elements[i], consList);
+      }
+
+      Term a = arrayBacked;
+      Term c = consList;
+      for (int i = 0; i < elements.length; i++) {
+         assertStrictEquality(a, c, true);
+         assertEquals(a.hashCode(), c.hashCode());
+         assertTrue(a.unify(c));
+         assertTrue(c.unify(a));
+         assertSame(elements[i], a.getArgument(0));
+         a = a.getArgument(1);
+         c = c.getArgument(1);
+      }
+      assertSame(EmptyList.EMPTY_LIST, a);
+   }
+
+   @Test
+   public void testArrayBackedListTail() {
+      List l = new List(new Term[] {atom("a"), atom("b"), atom("c")});
+      assertTrue(l.isImmutable());
+      assertSame(l, l.getTerm());
+      assertSame(l, l.copy(new HashMap<Variable, Variable>()));
+
+      // the tail is only created once
+      List tail = (List) l.getArgument(1);
+      assertSame(tail, l.getArgument(1));
+      assertTrue(tail.isArrayBacked());
+      assertEquals(2, tail.getArrayLength());
+      assertEquals(atom("b"), tail.getArrayElement(0));
+      assertEquals("[b,c]", TestUtils.write(tail));
+   }
+
+   @Test
+   public void testArrayBackedListsNotEqual() {
+      List l1 = new List(new Term[] {atom("a"), atom("b"), atom("c")});
+      List l2 = new List(new Term[] {atom("a"), atom("b"), atom("d")});
+      List l3 = new List(new Term[] {atom("a"), atom("b")});
+      assertStrictEquality(l1, l2, false);
+      assertStrictEquality(l1, l3, false);
+      assertFalse(l1.unify(l2));
+      assertFalse(l1.unify(l3));
+   }
+
+   @Test
+   public void testArrayBackedListUnifyWithVariables() {
+      List l = new List(new Term[] {atom("a"), atom("b"), atom("c")});
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      List pattern = new List(x, new List(atom("b"), y));
+      assertTrue(l.unify(pattern));
+      assertEquals(atom("a"), x.getTerm());
+      assertEquals("[c]", TestUtils.write(y.getTerm()));
+   }
 }
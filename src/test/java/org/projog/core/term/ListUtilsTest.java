@@ -152,4 +152,59 @@ public class ListUtilsTest {
    private Term[] createArguments() {
       return new Term[] {atom(), structure(), integerNumber(), decimalFraction(), variable()};
    }
+
+   @Test
+   public void testGetLength() {
+      assertEquals(0, ListUtils.getLength(EMPTY_LIST));
+      assertEquals(3, ListUtils.getLength(parseTerm("[a,b,c]")));
+      assertEquals(3, ListUtils.getLength(parseTerm("[X,b,c]")));
+      assertEquals(4, ListUtils.getLength(new List(variable(), parseTerm("[a,b,c]"))));
+      assertEquals(-1, ListUtils.getLength(parseTerm("[a,b|X]")));
+      assertEquals(-1, ListUtils.getLength(atom("a")));
+      Variable v = variable();
+      v.unify(parseTerm("[a,b,c]"));
+      assertEquals(3, ListUtils.getLength(v));
+   }
+
+   @Test
+   public void testGetElement() {
+      for (String input : new String[] {"[a,b,c]", "[X,b,c]"}) {
+         Term list = parseTerm(input);
+         assertSame(list.getArgument(0), ListUtils.getElement(list, 0));
+         assertEquals(atom("b"), ListUtils.getElement(list, 1));
+         assertEquals(atom("c"), ListUtils.getElement(list, 2));
+         assertNull(ListUtils.getElement(list, -1));
+         assertNull(ListUtils.getElement(list, 3));
+      }
+      Term list = new List(variable(), parseTerm("[a,b,c]"));
+      assertEquals(atom("a"), ListUtils.getElement(list, 1));
+      assertEquals(atom("c"), ListUtils.getElement(list, 3));
+      assertNull(ListUtils.getElement(list, 4));
+      assertNull(ListUtils.getElement(parseTerm("[a,b|X]"), 0));
+      assertNull(ListUtils.getElement(EMPTY_LIST, 0));
+      assertNull(ListUtils.getElement(atom("a"), 0));
+   }
+
+   @Test
+   public void testGetLastElement() {
+      assertEquals(atom("c"), ListUtils.getLastElement(parseTerm("[a,b,c]")));
+      assertEquals(atom("c"), ListUtils.getLastElement(parseTerm("[X,b,c]")));
+      assertEquals(atom("c"), ListUtils.getLastElement(new List(variable(), parseTerm("[a,b,c]"))));
+      assertEquals(atom("a"), ListUtils.getLastElement(parseTerm("[a]")));
+      assertNull(ListUtils.getLastElement(parseTerm("[a,b|X]")));
+      assertNull(ListUtils.getLastElement(EMPTY_LIST));
+      assertNull(ListUtils.getLastElement(atom("a")));
+   }
+
+   @Test
+   public void testToJavaUtilListArrayBacked() {
+      Term list = parseTerm("[c,a,b]");
+      java.util.List<Term> javaList = ListUtils.toJavaUtilList(list);
+      assertEquals(3, javaList.size());
+      javaList.add(atom("d"));
+      java.util.List<Term> sorted = ListUtils.toSortedJavaUtilList(list);
+      assertEquals("[a, b, c]", sorted.toString());
+      // sorting should not alter the original list
+      assertEquals("[c,a,b]", write(list));
+   }
 }
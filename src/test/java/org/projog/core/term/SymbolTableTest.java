@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SymbolTableTest {
+   @Test
+   public void testIntern() {
+      String name = new String("symbol_table_test_intern");
+      String copy = new String(name);
+      assertNotSame(name, copy);
+      String interned = SymbolTable.intern(name);
+      assertSame(interned, SymbolTable.intern(copy));
+      assertEquals(name, interned);
+   }
+
+   @Test
+   public void testGetAtom() {
+      Atom a = SymbolTable.getAtom(new String("symbol_table_test_atom"));
+      assertSame(a, SymbolTable.getAtom(new String("symbol_table_test_atom")));
+      assertEquals("symbol_table_test_atom", a.getName());
+   }
+
+   @Test
+   public void testAtomsShareName() {
+      Atom a1 = new Atom(new String("symbol_table_test_share"));
+      Atom a2 = new Atom(new String("symbol_table_test_share"));
+      assertNotSame(a1, a2);
+      assertSame(a1.getName(), a2.getName());
+      assertSame(SymbolTable.getAtom("symbol_table_test_share").getName(), a1.getName());
+      assertEquals(a1, a2);
+      assertTrue(a1.unify(a2));
+   }
+
+   @Test
+   public void testStructuresShareFunctor() {
+      Term[] args = {new Atom("a")};
+      Term s1 = Structure.createStructure(new String("symbol_table_test_functor"), args);
+      Term s2 = Structure.createStructure(new String("symbol_table_test_functor"), args);
+      assertSame(s1.getName(), s2.getName());
+      assertEquals(s1, s2);
+      assertTrue(s1.unify(s2));
+   }
+
+   @Test
+   public void testSize() {
+      String name = SymbolTable.intern("symbol_table_test_size");
+      assertTrue(SymbolTable.size() > 0);
+      assertSame(name, SymbolTable.intern(new String("symbol_table_test_size")));
+   }
+
+   @Test
+   public void testConcurrentIntern() throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+         List<Future<Atom>> futures = new ArrayList<>();
+         for (int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> SymbolTable.getAtom(new String("symbol_table_test_concurrent"))));
+         }
+         Atom first = futures.get(0).get();
+         for (Future<Atom> future : futures) {
+            assertSame(first, future.get());
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testNamesNoLongerReferredToAreRemoved() throws InterruptedException {
+      WeakReference<String> name = new WeakReference<>(SymbolTable.intern(new String("symbol_table_test_removed")));
+      WeakReference<Atom> atom = new WeakReference<>(SymbolTable.getAtom(new String("symbol_table_test_removed_atom")));
+      for (int i = 0; i < 100 && (name.get() != null || atom.get() != null); i++) {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assertNull(name.get());
+      assertNull(atom.get());
+   }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.list;
+import static org.projog.TestUtils.structure;
+
+import org.junit.Test;
+
+public class TermTemplateFactoryTest {
+   private final Trail trail = Trail.getCurrent();
+   @Test
+   public void testImmutable() {
+      Term t = structure("p", atom("a"), list(integerNumber(1), integerNumber(2)));
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+      assertEquals(0, f.getNumberOfSlots());
+      assertSame(TermUtils.EMPTY_ARRAY, f.createFrame());
+      assertSame(t, template.instantiate(f.createFrame(), trail));
+   }
+
+   @Test
+   public void testInstantiate() {
+      Variable x = new Variable("X");
+      Variable y = new Variable("Y");
+      Term t = structure("p", x, list(y, x), structure("q", atom("a"), y));
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+      assertEquals(2, f.getNumberOfSlots());
+
+      Term[] frame = f.createFrame();
+      Term copy1 = template.instantiate(frame, trail);
+      assertEquals("p(X, .(Y, .(X, [])), q(a, Y))", copy1.toString());
+      assertNotSame(x, copy1.getArgument(0));
+      assertSame(copy1.getArgument(0), copy1.getArgument(1).getArgument(1).getArgument(0));
+      assertSame(copy1.getArgument(1).getArgument(0), copy1.getArgument(2).getArgument(1));
+
+      // using the same frame again returns the same variables
+      Term copy2 = template.instantiate(frame, trail);
+      assertNotSame(copy1, copy2);
+      assertSame(copy1.getArgument(0), copy2.getArgument(0));
+
+      // using a new frame returns new variables
+      Term copy3 = template.instantiate(f.createFrame(), trail);
+      assertNotSame(copy1.getArgument(0), copy3.getArgument(0));
+
+      // original variables are not altered
+      assertSame(x, x.getTerm());
+      assertSame(y, y.getTerm());
+   }
+
+   @Test
+   public void testSharedAcrossTerms() {
+      Variable x = new Variable("X");
+      Term head = structure("p", x);
+      Term body = structure("q", x);
+      TermTemplateFactory f = new TermTemplateFactory(head, body);
+      TermTemplate headTemplate = f.createTemplate(head);
+      TermTemplate bodyTemplate = f.createTemplate(body);
+
+      Term[] frame = f.createFrame();
+      assertTrue(headTemplate.unify(structure("p", atom("a")), frame, trail));
+      assertEquals(structure("q", atom("a")), bodyTemplate.instantiate(frame, trail));
+   }
+
+   @Test
+   public void testUnifyDoesNotCreateVariablesForInstantiatedInput() {
+      Variable x = new Variable("X");
+      Term t = structure("p", x, x);
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+
+      Term[] frame = f.createFrame();
+      Structure input = structure("p", atom("a"), atom("a"));
+      assertTrue(template.unify(input, frame, trail));
+      assertSame(input.getArgument(0), frame[0]);
+
+      assertFalse(template.unify(structure("p", atom("a"), atom("b")), f.createFrame(), trail));
+   }
+
+   @Test
+   public void testUnifyWithUninstantiatedVariable() {
+      Variable x = new Variable("X");
+      Term t = structure("p", x, x, new Variable("Y"));
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+
+      Variable input = new Variable("Z");
+      Term[] frame = f.createFrame();
+      assertTrue(template.unify(input, frame, trail));
+      assertEquals("p(X, X, Y)", input.toString());
+      assertSame(input.getArgument(0), frame[0]);
+   }
+
+   @Test
+   public void testUnifyVariableArguments() {
+      Variable x = new Variable("X");
+      Term t = structure("p", x, new Variable("Y"));
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+
+      // variables of input become aliases of the variables of the template so they are named after them
+      Variable a = new Variable("A");
+      Variable b = new Variable("B");
+      assertTrue(template.unify(structure("p", a, b), f.createFrame(), trail));
+      assertEquals("X", a.toString());
+      assertEquals("Y", b.toString());
+   }
+
+   @Test
+   public void testUnifyMismatch() {
+      Term t = structure("p", new Variable("X"), atom("a"));
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+
+      assertFalse(template.unify(structure("q", atom("b"), atom("a")), f.createFrame(), trail));
+      assertFalse(template.unify(structure("p", atom("b")), f.createFrame(), trail));
+      assertFalse(template.unify(structure("p", atom("b"), atom("c")), f.createFrame(), trail));
+      assertFalse(template.unify(atom("p"), f.createFrame(), trail));
+      assertTrue(template.unify(structure("p", atom("b"), atom("a")), f.createFrame(), trail));
+   }
+
+   @Test
+   public void testUnifyList() {
+      Variable x = new Variable("X");
+      Variable tail = new Variable("T");
+      Term t = structure("p", ListFactory.createList(new Term[] {x, atom("b"), x}, tail), tail);
+      TermTemplateFactory f = new TermTemplateFactory(t);
+      TermTemplate template = f.createTemplate(t);
+
+      Term[] frame = f.createFrame();
+      assertTrue(template.unify(structure("p", list(atom("a"), atom("b"), atom("a"), atom("c")), list(atom("c"))), frame, trail));
+      assertEquals(atom("a"), frame[0]);
+      assertEquals(list(atom("c")), frame[1]);
+
+      assertFalse(template.unify(structure("p", list(atom("a"), atom("b"), atom("c")), EmptyList.EMPTY_LIST), f.createFrame(), trail));
+      assertFalse(template.unify(structure("p", list(atom("a")), EmptyList.EMPTY_LIST), f.createFrame(), trail));
+
+      // partial list
+      Variable v = new Variable("V");
+      Term partial = ListFactory.createList(new Term[] {atom("z")}, v);
+      frame = f.createFrame();
+      assertTrue(template.unify(structure("p", partial, EmptyList.EMPTY_LIST), frame, trail));
+      assertEquals(list(atom("z"), atom("b"), atom("z")), partial.getTerm());
+   }
+
+   @Test
+   public void testUnknownVariable() {
+      TermTemplateFactory f = new TermTemplateFactory(atom("a"));
+      try {
+         f.createTemplate(new Variable("X"));
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("X not contained in terms passed to constructor", e.getMessage());
+      }
+   }
+
+   @Test
+   public void testFrameSlotsStartEmpty() {
+      Variable x = new Variable("X");
+      TermTemplateFactory f = new TermTemplateFactory(structure("p", x, x));
+      Term[] frame = f.createFrame();
+      assertEquals(1, frame.length);
+      assertNull(frame[0]);
+   }
+}
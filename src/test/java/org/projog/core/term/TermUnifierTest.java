@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.decimalFraction;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.structure;
+import static org.projog.TestUtils.variable;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class TermUnifierTest {
+   @Test
+   public void testAtoms() {
+      assertTrue(TermUnifier.unify(atom("a"), atom("a")));
+      assertFalse(TermUnifier.unify(atom("a"), atom("b")));
+   }
+
+   @Test
+   public void testIntegers() {
+      assertTrue(TermUnifier.unify(new IntegerNumber(1000), new IntegerNumber(1000)));
+      assertFalse(TermUnifier.unify(integerNumber(1), integerNumber(2)));
+   }
+
+   @Test
+   public void testDecimalFractions() {
+      assertTrue(TermUnifier.unify(decimalFraction(1.5), decimalFraction(1.5)));
+      assertFalse(TermUnifier.unify(decimalFraction(1.5), decimalFraction(2.5)));
+   }
+
+   @Test
+   public void testEmptyLists() {
+      assertTrue(TermUnifier.unify(EmptyList.EMPTY_LIST, EmptyList.EMPTY_LIST));
+   }
+
+   @Test
+   public void testDifferentTypes() {
+      Term[] terms = {atom("1"), integerNumber(1), decimalFraction(1), EmptyList.EMPTY_LIST, structure("1", atom()), ListFactory.createList(atom(), atom())};
+      for (int i = 0; i < terms.length; i++) {
+         for (int j = 0; j < terms.length; j++) {
+            assertEquals(i == j, TermUnifier.unify(terms[i], terms[j]));
+         }
+      }
+   }
+
+   @Test
+   public void testVariables() {
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      Atom a = atom("a");
+
+      assertTrue(TermUnifier.unify(x, y));
+      assertTrue(TermUnifier.unify(a, y));
+      assertSame(a, x.getTerm());
+      assertSame(a, y.getTerm());
+      assertTrue(TermUnifier.unify(x, a));
+      assertFalse(TermUnifier.unify(atom("b"), x));
+   }
+
+   @Test
+   public void testVariableUnifiedWithItself() {
+      Variable x = variable("X");
+      assertTrue(TermUnifier.unify(x, x));
+      assertSame(x, x.getTerm());
+   }
+
+   @Test
+   public void testStructures() {
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      Structure a = structure("p", atom("a"), x, structure("q", integerNumber(1), y));
+      Structure b = structure("p", atom("a"), integerNumber(2), structure("q", integerNumber(1), atom("c")));
+
+      assertTrue(TermUnifier.unify(a, b));
+      assertEquals(integerNumber(2), x.getTerm());
+      assertEquals(atom("c"), y.getTerm());
+   }
+
+   @Test
+   public void testStructuresWithDifferentFunctors() {
+      assertFalse(TermUnifier.unify(structure("p", atom()), structure("q", atom())));
+      assertFalse(TermUnifier.unify(structure("p", atom()), structure("p", atom(), atom())));
+      assertFalse(TermUnifier.unify(structure("p", atom("a"), atom("b")), structure("p", atom("a"), atom("c"))));
+   }
+
+   @Test
+   public void testArrayBackedAndLinkedLists() {
+      Term arrayBacked = ListFactory.createList(new Term[] {atom("a"), atom("b"), atom("c")});
+      assertTrue(((List) arrayBacked).isArrayBacked());
+      Variable x = variable("X");
+      Term linked = ListFactory.createList(new Term[] {atom("a"), x}, ListFactory.createList(atom("c"), EmptyList.EMPTY_LIST));
+
+      assertTrue(TermUnifier.unify(arrayBacked, linked));
+      assertEquals(atom("b"), x.getTerm());
+      assertTrue(TermUnifier.unify(arrayBacked, ListFactory.createList(new Term[] {atom("a"), atom("b"), atom("c")})));
+      assertFalse(TermUnifier.unify(arrayBacked, ListFactory.createList(new Term[] {atom("a"), atom("b"), atom("d")})));
+   }
+
+   @Test
+   public void testImplementationDefinedOutsidePackage() {
+      final java.util.List<Term> unifiedWith = new ArrayList<>();
+      Term t = (Term) Proxy.newProxyInstance(Term.class.getClassLoader(), new Class<?>[] {Term.class}, (proxy, method, args) -> {
+         if ("unify".equals(method.getName())) {
+            unifiedWith.add((Term) args[0]);
+            return true;
+         } else {
+            throw new UnsupportedOperationException(method.getName());
+         }
+      });
+
+      Atom a = atom("a");
+      assertTrue(TermUnifier.unify(t, a));
+      assertTrue(TermUnifier.unify(a, t));
+      assertEquals(2, unifiedWith.size());
+      assertSame(a, unifiedWith.get(0));
+      assertSame(a, unifiedWith.get(1));
+   }
+}
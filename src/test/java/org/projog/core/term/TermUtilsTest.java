@@ -82,6 +82,34 @@ public class TermUtilsTest {
       assertEquals(id, ((Variable) t).getId());
    }
 
+   @Test
+   public void testGetTermsUnchanged() {
+      Term[] input = {atom("a"), variable("X"), structure("p", variable("Y"))};
+      assertSame(input, TermUtils.getTerms(input));
+   }
+
+   @Test
+   public void testGetTermsChanged() {
+      Atom a = atom("a");
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      Structure p = structure("p", y);
+      Term[] input = {a, x, p};
+      x.unify(atom("b"));
+      y.unify(atom("c"));
+
+      Term[] output = TermUtils.getTerms(input);
+
+      assertNotSame(input, output);
+      assertEquals(3, output.length);
+      assertSame(a, output[0]);
+      assertEquals(atom("b"), output[1]);
+      assertEquals(structure("p", atom("c")), output[2]);
+      // input array unchanged
+      assertSame(x, input[1]);
+      assertSame(p, input[2]);
+   }
+
    @Test
    public void testBacktrack() {
       // setup input terms
@@ -132,6 +160,16 @@ public class TermUtilsTest {
       assertSame(c, z.getTerm());
    }
 
+   @Test
+   public void testUnifyTerms() {
+      Variable x = variable("X");
+      Atom a = atom("a");
+
+      assertTrue(TermUtils.unify(structure("p", x), structure("p", a)));
+      assertSame(a, x.getTerm());
+      assertFalse(TermUtils.unify(structure("p", x), structure("p", atom("b"))));
+   }
+
    @Test
    public void testUnifyFailure() {
       // setup input terms
@@ -147,12 +185,10 @@ public class TermUtilsTest {
       // attempt unification
       assertFalse(TermUtils.unify(input1, input2));
 
-      // assert all variables in input1 were backed tracked
+      // assert all variables were backed tracked
       assertSame(x, x.getTerm());
+      assertSame(y, y.getTerm());
       assertSame(z, z.getTerm());
-
-      // as javadocs states, terms passed in second argument to unify may not be backtracked
-      assertSame(b, y.getTerm());
    }
 
    @Test
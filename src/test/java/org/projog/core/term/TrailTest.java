@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.term;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.structure;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.projog.core.CutBarrier;
+
+public class TrailTest {
+   private final Trail trail = new Trail();
+   private Trail previous;
+
+   @Before
+   public void activate() {
+      previous = Trail.activate(trail);
+   }
+
+   @After
+   public void restore() {
+      assertSame(trail, Trail.activate(previous));
+   }
+
+   @Test
+   public void testGetCurrent() {
+      assertSame(trail, Trail.getCurrent());
+   }
+
+   @Test
+   public void testCutBarrier() {
+      CutBarrier root = trail.getCutBarrier();
+      CutBarrier nested = new CutBarrier();
+
+      assertSame(root, trail.setCutBarrier(nested));
+      assertSame(nested, trail.getCutBarrier());
+      trail.getCutBarrier().cut();
+      assertSame(nested, trail.setCutBarrier(root));
+
+      assertTrue(nested.isCut());
+      assertFalse(root.isCut());
+   }
+
+   @Test
+   public void testUndo() {
+      Variable x = new Variable("X");
+      Variable y = new Variable("Y");
+      Variable z = new Variable("Z");
+      Structure s = structure("p", x, structure("q", y));
+
+      int mark = trail.mark();
+      assertTrue(x.unify(atom("a")));
+      assertTrue(y.unify(z));
+      assertEquals(2, trail.size());
+      assertEquals("p(a, q(Z))", s.toString());
+
+      trail.undo(mark);
+      assertEquals(0, trail.size());
+      assertSame(x, x.getTerm());
+      assertSame(y, y.getTerm());
+      assertSame(z, z.getTerm());
+      assertEquals("p(X, q(Y))", s.toString());
+   }
+
+   @Test
+   public void testNestedChoicepoints() {
+      Variable x = new Variable("X");
+      Variable y = new Variable("Y");
+
+      int mark1 = trail.mark();
+      assertTrue(x.unify(atom("a")));
+      int mark2 = trail.mark();
+      assertTrue(y.unify(atom("b")));
+
+      trail.undo(mark2);
+      assertEquals(atom("a"), x.getTerm());
+      assertSame(y, y.getTerm());
+
+      trail.undo(mark1);
+      assertSame(x, x.getTerm());
+      assertSame(y, y.getTerm());
+   }
+
+   @Test
+   public void testVariableCreatedAfterMostRecentChoicepointNotRecorded() {
+      trail.mark();
+      Variable x = new Variable("X", trail);
+      assertTrue(x.unify(atom("a")));
+      assertEquals(0, trail.size());
+
+      // once a new choicepoint has been created the variable is recorded
+      x.backtrack();
+      trail.mark();
+      assertTrue(x.unify(atom("a")));
+      assertEquals(1, trail.size());
+   }
+
+   @Test
+   public void testVariableCreatedUsingDifferentTrailRecorded() {
+      Variable x = new Variable("X", trail);
+      Trail other = new Trail();
+      Trail.activate(other);
+      try {
+         int mark = other.mark();
+         Variable y = new Variable("Y", other);
+         assertTrue(y.unify(x));
+         assertEquals(0, other.size());
+         assertTrue(x.unify(atom("a")));
+         assertEquals(1, other.size());
+
+         other.undo(mark);
+         assertSame(x, x.getTerm());
+         assertSame(x, y.getTerm());
+      } finally {
+         Trail.activate(trail);
+      }
+   }
+
+   @Test
+   public void testVariableCreatedWithoutTrailRecorded() {
+      trail.mark();
+      Variable x = new Variable("X");
+      assertTrue(x.unify(atom("a")));
+      assertEquals(1, trail.size());
+   }
+
+   @Test
+   public void testUnifyUsingSpecifiedTrail() {
+      Variable x = new Variable("X");
+      Variable y = new Variable("Y");
+      Trail other = new Trail();
+      int mark = other.mark();
+      assertTrue(TermUtils.unify(structure("p", x, y), structure("p", atom("a"), atom("b")), other));
+      assertEquals(2, other.size());
+      assertEquals(0, trail.size());
+
+      other.undo(mark);
+      assertSame(x, x.getTerm());
+      assertSame(y, y.getTerm());
+   }
+
+   @Test
+   public void testUnifyWithSelfNotRecorded() {
+      Variable x = new Variable("X");
+      trail.mark();
+      assertTrue(x.unify(x));
+      assertEquals(0, trail.size());
+   }
+}
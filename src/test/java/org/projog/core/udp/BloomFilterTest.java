@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.structure;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.term.Term;
+import org.projog.core.udp.interpreter.ClauseAction;
+import org.projog.core.udp.interpreter.ClauseActionFactory;
+
+public class BloomFilterTest {
+   private static final KnowledgeBase KB = TestUtils.createKnowledgeBase();
+   private static final int NUM_CLAUSES = 10000;
+
+   @Test
+   public void testNoFalseNegatives() {
+      BloomFilter f = createFilter();
+      for (int i = 0; i < NUM_CLAUSES; i++) {
+         assertTrue(f.mightMatch(args(i * 3)));
+      }
+      assertEquals(0, f.getStatistics().getRejectionCount());
+   }
+
+   @Test
+   public void testFalsePositiveRate() {
+      BloomFilter f = createFilter();
+      int falsePositives = 0;
+      for (int i = 0; i < NUM_CLAUSES; i++) {
+         if (f.mightMatch(args(i * 3 + 1))) {
+            falsePositives++;
+         }
+      }
+
+      BloomFilterStatistics statistics = f.getStatistics();
+      assertEquals(1, statistics.getArgument());
+      assertEquals(1 << 17, statistics.getBitCount());
+      assertEquals(NUM_CLAUSES, statistics.getProbeCount());
+      assertEquals(NUM_CLAUSES - falsePositives, statistics.getRejectionCount());
+      // 10 bits per clause should result in a false positive rate of approximately 1%
+      assertTrue(statistics.getExpectedFalsePositiveRate() < 0.01);
+      assertTrue(falsePositives < NUM_CLAUSES * 0.02);
+   }
+
+   @Test
+   public void testAtoms() {
+      ClauseAction[] clauses = {clause(atom("a")), clause(atom("b")), clause(atom("c"))};
+      BloomFilter f = new BloomFilter(clauses, 1);
+      assertTrue(f.mightMatch(new Term[] {atom("x"), atom("a")}));
+      assertTrue(f.mightMatch(new Term[] {atom("x"), atom("b")}));
+      assertTrue(f.mightMatch(new Term[] {atom("x"), atom("c")}));
+      assertFalse(f.mightMatch(new Term[] {atom("x"), atom("d")}));
+   }
+
+   private BloomFilter createFilter() {
+      ClauseAction[] clauses = new ClauseAction[NUM_CLAUSES];
+      for (int i = 0; i < NUM_CLAUSES; i++) {
+         clauses[i] = clause(integerNumber(i * 3));
+      }
+      return new BloomFilter(clauses, 1);
+   }
+
+   private static Term[] args(long i) {
+      return new Term[] {atom("x"), integerNumber(i)};
+   }
+
+   private static ClauseAction clause(Term t) {
+      return ClauseActionFactory.createClauseAction(KB, ClauseModel.createClauseModel(structure("test", atom("x"), t)));
+   }
+}
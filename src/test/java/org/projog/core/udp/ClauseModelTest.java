@@ -16,12 +16,16 @@
 package org.projog.core.udp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.projog.TestUtils;
 import org.projog.core.term.Term;
+import org.projog.core.term.TermTemplate;
+import org.projog.core.term.Trail;
 
 public class ClauseModelTest {
+   private final Trail trail = Trail.getCurrent();
    @Test
    public void testSingleTerm() {
       assertClauseModel("a.", "a", "true");
@@ -42,6 +46,24 @@ public class ClauseModelTest {
       assertClauseModel("a --> b, c.", "a(A2, A0)", ",(b(A2, A1), c(A1, A0))");
    }
 
+   @Test
+   public void testTemplates() {
+      ClauseModel ci = TestUtils.createClauseModel("p(X, Y, q(Z)) :- r(Y, Z, W).");
+      TermTemplate[] consequentArgs = ci.getConsequentArgTemplates();
+      TermTemplate[] antecedentArgs = ci.getAntecedentArgTemplates();
+      assertEquals(3, consequentArgs.length);
+      assertEquals(3, antecedentArgs.length);
+
+      Term[] frame = ci.createFrame();
+      // Y and Z occur more than once so require a slot in the frame
+      assertEquals(2, frame.length);
+      assertTrue(consequentArgs[1].unify(TestUtils.atom("a"), frame, trail));
+      assertTrue(consequentArgs[2].unify(TestUtils.structure("q", TestUtils.atom("b")), frame, trail));
+      assertToString("r(a, b, W)", ci.getAntecedentTemplate().instantiate(frame, trail));
+      assertToString("a", antecedentArgs[0].instantiate(frame, trail));
+      assertToString("b", antecedentArgs[1].instantiate(frame, trail));
+   }
+
    private void assertClauseModel(String inputSyntax, String consequentSyntax, String antecedentSyntax) {
       ClauseModel ci = TestUtils.createClauseModel(inputSyntax);
       assertToString(consequentSyntax, ci.getConsequent());
@@ -33,6 +33,7 @@ import org.projog.core.Predicate;
 import org.projog.core.PredicateKey;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermType;
+import org.projog.core.term.Variable;
 
 public class DynamicUserDefinedPredicateFactoryTest {
    private static final String TEST_PREDICATE_NAME = "test";
@@ -106,7 +107,8 @@ public class DynamicUserDefinedPredicateFactoryTest {
       assertIterator(dp, "a", "d");
       assertIterator(itr1, "a", "d");
       assertIterator(itr2, "d");
-      assertIterator(itr3, "c", "d");
+      // c skipped as it has been removed
+      assertIterator(itr3, "d");
       assertIterator(itr4, "d");
    }
 
@@ -228,9 +230,152 @@ public class DynamicUserDefinedPredicateFactoryTest {
       assertSame(inputArg, args[0].getTerm());
    }
 
+   @Test
+   public void testIndexedBySecondAndThirdArguments() {
+      DynamicUserDefinedPredicateFactory dp = createDynamicPredicate(3);
+      addLast(dp, "a,x,1");
+      addLast(dp, "b,y,2");
+      addLast(dp, "c,x,2");
+      addFirst(dp, "d,x,3");
+      addLast(dp, "e,y,1");
+
+      assertMatches(dp, "A,x,C", "d,x,3", "a,x,1", "c,x,2");
+      assertMatches(dp, "A,y,C", "b,y,2", "e,y,1");
+      assertMatches(dp, "A,B,2", "b,y,2", "c,x,2");
+      assertMatches(dp, "A,x,2", "c,x,2");
+      assertMatches(dp, "A,y,3");
+      assertMatches(dp, "A,z,C");
+      assertMatches(dp, "A,B,C", "d,x,3", "a,x,1", "b,y,2", "c,x,2", "e,y,1");
+
+      // remove "c,x,2"
+      Iterator<ClauseModel> itr = dp.getImplications();
+      for (int i = 0; i < 4; i++) {
+         itr.next();
+      }
+      itr.remove();
+
+      assertMatches(dp, "A,x,C", "d,x,3", "a,x,1");
+      assertMatches(dp, "A,B,2", "b,y,2");
+      assertMatches(dp, "c,B,C");
+      assertIterator(dp, "d, x, 3", "a, x, 1", "b, y, 2", "e, y, 1");
+   }
+
+   @Test
+   public void testIndexedIterationSkipsRemovedClauses() {
+      DynamicUserDefinedPredicateFactory dp = createDynamicPredicate(2);
+      addLast(dp, "a,x");
+      addLast(dp, "b,y");
+      addLast(dp, "c,x");
+      addLast(dp, "d,x");
+
+      Variable v = variable("V");
+      Predicate p = dp.getPredicate(new Term[] {v, atom("x")});
+      assertTrue(p.evaluate());
+      assertEquals("a", v.getTerm().toString());
+
+      // remove "a,x" and "c,x" while the predicate is being evaluated
+      Iterator<ClauseModel> itr = dp.getImplications();
+      itr.next();
+      itr.remove();
+      itr.next();
+      itr.next();
+      itr.remove();
+
+      assertTrue(p.evaluate());
+      assertEquals("d", v.getTerm().toString());
+      assertFalse(p.evaluate());
+
+      assertMatches(dp, "A,x", "d,x");
+   }
+
+   @Test
+   public void testArgumentNotIndexedOnceMutable() {
+      DynamicUserDefinedPredicateFactory dp = createDynamicPredicate(2);
+      addLast(dp, "a,x");
+      addLast(dp, "b,y");
+      addLast(dp, "c,Z");
+      addLast(dp, "d,x");
+
+      // second argument no longer indexed but first argument still is
+      assertMatches(dp, "A,x", "a,x", "c,x", "d,x");
+      assertMatches(dp, "c,y", "c,y");
+      assertMatches(dp, "e,B");
+
+      Iterator<ClauseModel> itr = dp.getImplications();
+      while (itr.hasNext()) {
+         itr.next();
+         itr.remove();
+      }
+
+      // once all clauses have been removed the second argument can be indexed again
+      addLast(dp, "a,x");
+      addLast(dp, "b,y");
+      assertMatches(dp, "A,x", "a,x");
+      assertMatches(dp, "A,z");
+   }
+
+   @Test
+   public void testGetImplicationsForArguments() {
+      DynamicUserDefinedPredicateFactory dp = createDynamicPredicate(2);
+      addLast(dp, "a,x");
+      addLast(dp, "b,y");
+      addLast(dp, "c,x");
+      addFirst(dp, "d,x");
+
+      assertIterator(dp.getImplications(args("A,x")), "d, x", "a, x", "c, x");
+      assertIterator(dp.getImplications(args("b,B")), "b, y");
+      assertIterator(dp.getImplications(args("b,x")), "b, y");
+      assertIterator(dp.getImplications(args("e,x")));
+      assertIterator(dp.getImplications(args("A,B")), "d, x", "a, x", "b, y", "c, x");
+
+      // remove "a,x" using an iterator of the clauses selected by the second argument
+      Iterator<ClauseModel> itr = dp.getImplications(args("A,x"));
+      itr.next();
+      itr.next();
+      itr.remove();
+      assertIterator(itr, "c, x");
+
+      assertIterator(dp, "d, x", "b, y", "c, x");
+      assertIterator(dp.getImplications(args("A,x")), "d, x", "c, x");
+      assertIterator(dp.getImplications(args("a,B")));
+   }
+
+   private Term[] args(String argumentSyntax) {
+      return TestUtils.parseSentence(createStructureSyntax(argumentSyntax) + ".").getArgs();
+   }
+
+   private void assertMatches(DynamicUserDefinedPredicateFactory dp, String query, String... expected) {
+      Term[] args = args(query);
+      Predicate p = dp.getPredicate(args);
+      for (String e : expected) {
+         assertTrue(p.evaluate());
+         assertEquals(e, toString(args));
+         if (!p.couldReevaluationSucceed()) {
+            assertSame(e, expected[expected.length - 1]);
+            return;
+         }
+      }
+      assertFalse(p.evaluate());
+   }
+
+   private String toString(Term[] args) {
+      StringBuilder sb = new StringBuilder();
+      for (Term arg : args) {
+         if (sb.length() > 0) {
+            sb.append(',');
+         }
+         sb.append(arg.getTerm());
+      }
+      return sb.toString();
+   }
+
    private DynamicUserDefinedPredicateFactory createDynamicPredicate() {
+      return createDynamicPredicate(1);
+   }
+
+   private DynamicUserDefinedPredicateFactory createDynamicPredicate(int numArgs) {
       KnowledgeBase kb = TestUtils.createKnowledgeBase();
-      PredicateKey key = new PredicateKey(TEST_PREDICATE_NAME, 1);
+      PredicateKey key = new PredicateKey(TEST_PREDICATE_NAME, numArgs);
       DynamicUserDefinedPredicateFactory dp = new DynamicUserDefinedPredicateFactory(kb, key);
       assertEquals(key, dp.getPredicateKey());
       assertTrue(dp.isDynamic());
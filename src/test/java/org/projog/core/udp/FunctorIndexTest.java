@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.array;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.createClauseModel;
+import static org.projog.TestUtils.decimalFraction;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.list;
+import static org.projog.TestUtils.parseTerm;
+import static org.projog.TestUtils.structure;
+import static org.projog.TestUtils.variable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.term.EmptyList;
+import org.projog.core.term.Term;
+import org.projog.core.term.Variable;
+import org.projog.core.udp.interpreter.ClauseAction;
+import org.projog.core.udp.interpreter.Clauses;
+
+public class FunctorIndexTest {
+   @Test
+   public void testList() {
+      ClauseAction[] clauses = createClauses("p([],X).", "p([H|T],X) :- p(T,X).");
+      FunctorIndex index = FunctorIndex.create(clauses);
+
+      assertMatches(index, array(EmptyList.EMPTY_LIST, v()), clauses[0]);
+      assertMatches(index, array(list(atom("a"), atom("b")), v()), clauses[1]);
+      assertMatches(index, array(parseTerm("[X|Y]"), v()), clauses[1]);
+      assertMatches(index, array(atom("a"), v()));
+      assertNull(index.getMatches(array(v(), v())));
+   }
+
+   @Test
+   public void testStructures() {
+      ClauseAction[] clauses = createClauses("eval(plus(A,B),X) :- X is A+B.", "eval(times(A,B),X) :- X is A*B.", "eval(plus(A,B,C),X) :- X is A+B+C.", "eval(plus(A,1),X) :- X is A+1.");
+      FunctorIndex index = FunctorIndex.create(clauses);
+
+      assertMatches(index, array(structure("plus", v(), v()), v()), clauses[0], clauses[3]);
+      assertMatches(index, array(structure("times", integerNumber(1), integerNumber(2)), v()), clauses[1]);
+      assertMatches(index, array(structure("plus", v(), v(), v()), v()), clauses[2]);
+      assertMatches(index, array(structure("minus", v(), v()), v()));
+      assertMatches(index, array(atom("plus"), v()));
+   }
+
+   @Test
+   public void testAtomsAndNumbers() {
+      ClauseAction[] clauses = createClauses("p(a,X).", "p(1,X).", "p(1.5,X).", "p(a,X) :- X = y.", "p(f(a),X).");
+      FunctorIndex index = FunctorIndex.create(clauses);
+
+      assertMatches(index, array(atom("a"), v()), clauses[0], clauses[3]);
+      assertMatches(index, array(integerNumber(1), v()), clauses[1]);
+      assertMatches(index, array(decimalFraction(1.5), v()), clauses[2]);
+      assertMatches(index, array(decimalFraction(2.5), v()), clauses[2]);
+      assertMatches(index, array(structure("f", v()), v()), clauses[4]);
+      assertMatches(index, array(atom("b"), v()));
+      assertMatches(index, array(integerNumber(2), v()));
+   }
+
+   @Test
+   public void testInstantiatedVariable() {
+      ClauseAction[] clauses = createClauses("p([],X).", "p([H|T],X) :- p(T,X).");
+      FunctorIndex index = FunctorIndex.create(clauses);
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      assertTrue(x.unify(y));
+      assertTrue(y.unify(EmptyList.EMPTY_LIST));
+
+      assertMatches(index, array(x, v()), clauses[0]);
+   }
+
+   @Test
+   public void testFirstInstantiatedArgumentUsed() {
+      ClauseAction[] clauses = createClauses("p([],f(X)).", "p([_|_],g(X)).", "p([_|_],f(X)).");
+      FunctorIndex index = FunctorIndex.create(clauses);
+
+      assertMatches(index, array(EmptyList.EMPTY_LIST, v()), clauses[0]);
+      assertMatches(index, array(v(), structure("f", v())), clauses[0], clauses[2]);
+      assertMatches(index, array(list(atom("a")), structure("f", v())), clauses[1], clauses[2]);
+   }
+
+   @Test
+   public void testVariables() {
+      ClauseAction[] clauses = createClauses("p(a,1).", "p(X,default).", "p(b,2).", "p(a,3).", "p(Y,other).", "p([],4).", "p([_|_],5).");
+      FunctorIndex index = FunctorIndex.create(clauses);
+
+      // clauses with a variable are included, in order, with the clauses that match the key
+      assertMatches(index, array(atom("a"), v()), clauses[0], clauses[1], clauses[3], clauses[4]);
+      assertMatches(index, array(atom("b"), v()), clauses[1], clauses[2], clauses[4]);
+      assertMatches(index, array(EmptyList.EMPTY_LIST, v()), clauses[1], clauses[4], clauses[5]);
+      assertMatches(index, array(list(atom("a")), v()), clauses[1], clauses[4], clauses[6]);
+      // key not used by any clause
+      assertMatches(index, array(atom("c"), v()), clauses[1], clauses[4]);
+      assertMatches(index, array(integerNumber(1), v()), clauses[1], clauses[4]);
+      // second argument is not indexed as it is atomic in every clause
+      assertNull(index.getMatches(array(v(), integerNumber(3))));
+      assertNull(index.getMatches(array(v(), v())));
+   }
+
+   @Test
+   public void testSingleKeyWithVariables() {
+      // not indexed as every key would select every clause
+      assertNull(FunctorIndex.create(createClauses("p(X,a).", "p([],b).", "p(Y,c).")));
+   }
+
+   @Test
+   public void testTooManyVariables() {
+      List<String> clauses = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+         clauses.add("p(f" + i + "(X)).");
+      }
+      for (int i = 0; i < 5; i++) {
+         clauses.add("p(X) :- X = " + i + ".");
+      }
+      // each of the 10 keys selects 6 of the 15 clauses, using 60 references
+      assertMatches(FunctorIndex.create(createClauses(clauses.toArray(new String[0]))), array(structure("f0", v())), 6);
+
+      // each of the 10 keys would select 7 of the 16 clauses, using 70 references
+      clauses.add("p(X) :- X = 5.");
+      assertNull(FunctorIndex.create(createClauses(clauses.toArray(new String[0]))));
+   }
+
+   @Test
+   public void testNotIndexable() {
+      // every clause has the same functor
+      assertNull(FunctorIndex.create(createClauses("p([X]).", "p([X,Y]).")));
+      // every clause has a variable
+      assertNull(FunctorIndex.create(createClauses("p(X).", "p(Y) :- Y = a.")));
+      // single clause
+      assertNull(FunctorIndex.create(createClauses("p([]).")));
+      // no arguments
+      assertNull(FunctorIndex.create(createClauses("p.", "p :- true.")));
+   }
+
+   @Test
+   public void testCandidatePositions() {
+      // atomic in every clause, so left to Indexes
+      assertCandidatePositions(createClauses("p(a,b).", "p(c,d)."));
+      // variable in every clause
+      assertCandidatePositions(createClauses("p(X,a).", "p(Y,b)."));
+      // same functor in every clause
+      assertCandidatePositions(createClauses("p([X]).", "p([X,Y])."));
+      // variable or compound in at least one clause
+      assertCandidatePositions(createClauses("p(X,a,[],W).", "p(b,f(c),[x],Y).", "p(c,d,[],Z)."), 0, 1, 2);
+      // single clause
+      assertCandidatePositions(createClauses("p([])."));
+      // no arguments
+      assertCandidatePositions(createClauses("p.", "p :- true."));
+   }
+
+   @Test
+   public void testNoIndexedArguments() {
+      ClauseAction[] clauses = createClauses("p([X]).", "p([X,Y]).");
+      FunctorIndex index = FunctorIndex.create(clauses, new int[] {0});
+      assertNull(index.getMatches(array(list(atom("a")))));
+   }
+
+   @Test
+   public void testEstimatedSize() {
+      FunctorIndex small = FunctorIndex.create(createClauses("p([],X).", "p([H|T],X) :- p(T,X)."));
+      FunctorIndex large = FunctorIndex.create(createClauses("p(f(a)).", "p(g(b)).", "p(h(c)).", "p(i(d)).", "p(X)."));
+      assertTrue(small.getEstimatedSize() > 0);
+      assertTrue(large.getEstimatedSize() > small.getEstimatedSize());
+   }
+
+   private void assertMatches(FunctorIndex index, Term[] input, int expectedLength) {
+      assertEquals(expectedLength, index.getMatches(input).length);
+   }
+
+   private void assertCandidatePositions(ClauseAction[] clauses, int... expected) {
+      assertArrayEquals(expected, FunctorIndex.getCandidatePositions(clauses));
+   }
+
+   private void assertMatches(FunctorIndex index, Term[] input, ClauseAction... expected) {
+      ClauseAction[] actual = index.getMatches(input);
+      assertSame(actual, index.getMatches(input)); // assert same object gets returned for multiple calls
+      assertEquals(expected.length, actual.length);
+      for (int i = 0; i < actual.length; i++) {
+         assertSame(expected[i], actual[i]);
+      }
+   }
+
+   private ClauseAction[] createClauses(String... clauses) {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase();
+      List<ClauseModel> models = new ArrayList<>();
+      for (String clause : clauses) {
+         models.add(createClauseModel(clause));
+      }
+      return Clauses.createFromModels(kb, models).getClauseActions();
+   }
+
+   private Variable v() {
+      return variable();
+   }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.structure;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.ProjogDefaultProperties;
+import org.projog.core.udp.IndexCache.CachedIndex;
+import org.projog.core.udp.interpreter.ClauseAction;
+import org.projog.core.udp.interpreter.ClauseActionFactory;
+
+public class IndexCacheTest {
+   private static final KnowledgeBase KB = TestUtils.createKnowledgeBase();
+   private static final ClauseAction[] CLAUSES = {clause("a"), clause("b"), clause("c")};
+   private static final long INDEX_SIZE = createIndex().getEstimatedSize();
+
+   @Test
+   public void testDefaultProperties() {
+      IndexCache cache = new IndexCache(TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+         @Override
+         public long getIndexMemoryBudget() {
+            return 42;
+         }
+
+         @Override
+         public IndexEvictionPolicy getIndexEvictionPolicy() {
+            return IndexEvictionPolicy.LEAST_FREQUENTLY_USED;
+         }
+      }));
+      assertEquals(42, cache.getBudget());
+      assertSame(IndexEvictionPolicy.LEAST_FREQUENTLY_USED, cache.getPolicy());
+   }
+
+   @Test
+   public void testIndexCreatedOnce() {
+      AtomicInteger ctr = new AtomicInteger();
+      IndexCache cache = new IndexCache(Long.MAX_VALUE, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+      CachedIndex<Index> entry = cache.createEntry(() -> {
+         ctr.incrementAndGet();
+         return createIndex();
+      });
+
+      assertFalse(entry.isResident());
+      assertEquals(0, cache.getIndexCount());
+      assertEquals(0, ctr.get());
+
+      Index index = entry.get();
+      assertTrue(entry.isResident());
+      assertSame(index, entry.get());
+      assertSame(index, entry.get());
+      assertEquals(1, ctr.get());
+
+      assertEquals(1, cache.getIndexCount());
+      assertEquals(1, cache.getBuildCount());
+      assertEquals(0, cache.getEvictionCount());
+      assertEquals(INDEX_SIZE, cache.getSize());
+      assertTrue(cache.getBuildTime() > 0);
+   }
+
+   @Test
+   public void testLeastRecentlyUsed() {
+      IndexCache cache = new IndexCache(INDEX_SIZE * 2, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+      CachedIndex<Index> e1 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e2 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e3 = cache.createEntry(IndexCacheTest::createIndex);
+
+      e1.get();
+      e1.get();
+      e1.get();
+      e2.get();
+      e1.get();
+      assertEquals(2, cache.getIndexCount());
+
+      // e2 is discarded as it is the least recently used, even though it has been used less often than e1
+      e3.get();
+      assertTrue(e1.isResident());
+      assertFalse(e2.isResident());
+      assertTrue(e3.isResident());
+      assertEquals(2, cache.getIndexCount());
+      assertEquals(INDEX_SIZE * 2, cache.getSize());
+      assertEquals(3, cache.getBuildCount());
+      assertEquals(1, cache.getEvictionCount());
+
+      // e1 is discarded when e2 is recreated, as e3 has been used more recently
+      Index original = e1.get();
+      e3.get();
+      e2.get();
+      assertFalse(e1.isResident());
+      assertTrue(e2.isResident());
+      assertTrue(e3.isResident());
+      assertEquals(4, cache.getBuildCount());
+      assertEquals(2, cache.getEvictionCount());
+      assertNotSame(original, e1.get());
+   }
+
+   @Test
+   public void testLeastFrequentlyUsed() {
+      IndexCache cache = new IndexCache(INDEX_SIZE * 2, IndexEvictionPolicy.LEAST_FREQUENTLY_USED);
+      CachedIndex<Index> e1 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e2 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e3 = cache.createEntry(IndexCacheTest::createIndex);
+
+      e1.get();
+      e1.get();
+      e1.get();
+      e2.get();
+      e2.get();
+      e1.get();
+
+      // e2 is discarded as it has been used the fewest times, even though it has been used more recently than e1
+      e2.get();
+      e3.get();
+      assertTrue(e1.isResident());
+      assertFalse(e2.isResident());
+      assertTrue(e3.isResident());
+      assertEquals(1, cache.getEvictionCount());
+   }
+
+   @Test
+   public void testIndexLargerThanBudget() {
+      IndexCache cache = new IndexCache(INDEX_SIZE - 1, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+      CachedIndex<Index> e1 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e2 = cache.createEntry(IndexCacheTest::createIndex);
+
+      // an index is kept, even if larger than the budget, until another index is created
+      e1.get();
+      assertTrue(e1.isResident());
+      assertEquals(0, cache.getEvictionCount());
+
+      e2.get();
+      assertFalse(e1.isResident());
+      assertTrue(e2.isResident());
+      assertEquals(1, cache.getEvictionCount());
+      assertEquals(INDEX_SIZE, cache.getSize());
+   }
+
+   @Test
+   public void testRelease() {
+      IndexCache cache = new IndexCache(INDEX_SIZE * 2, IndexEvictionPolicy.LEAST_FREQUENTLY_USED);
+      CachedIndex<Index> e1 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e2 = cache.createEntry(IndexCacheTest::createIndex);
+      CachedIndex<Index> e3 = cache.createEntry(IndexCacheTest::createIndex);
+
+      for (int i = 0; i < 10; i++) {
+         e1.get();
+      }
+      e2.get();
+
+      // once released e1 no longer counts against the budget, even though it has been used the most often
+      e1.release();
+      assertFalse(e1.isResident());
+      assertEquals(1, cache.getIndexCount());
+      assertEquals(INDEX_SIZE, cache.getSize());
+
+      e3.get();
+      assertTrue(e2.isResident());
+      assertTrue(e3.isResident());
+      assertEquals(0, cache.getEvictionCount());
+
+      // a released entry can still be used, but its index is not kept
+      Index index = e1.get();
+      assertNotSame(index, e1.get());
+      assertFalse(e1.isResident());
+      assertEquals(2, cache.getIndexCount());
+      assertEquals(INDEX_SIZE * 2, cache.getSize());
+   }
+
+   @Test
+   public void testUnreferencedEntriesRemoved() throws InterruptedException {
+      IndexCache cache = new IndexCache(Long.MAX_VALUE, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+      CachedIndex<Index> e1 = cache.createEntry(IndexCacheTest::createIndex);
+      e1.get();
+      cache.createEntry(IndexCacheTest::createIndex).get();
+      assertEquals(2, cache.getIndexCount());
+
+      for (int i = 0; i < 100 && cache.getIndexCount() > 1; i++) {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assertEquals(1, cache.getIndexCount());
+      assertEquals(INDEX_SIZE, cache.getSize());
+      assertTrue(e1.isResident());
+   }
+
+   private static Index createIndex() {
+      return Index.create(new int[] {0}, CLAUSES);
+   }
+
+   private static ClauseAction clause(String name) {
+      return ClauseActionFactory.createClauseAction(KB, ClauseModel.createClauseModel(structure("p", atom(name))));
+   }
+}
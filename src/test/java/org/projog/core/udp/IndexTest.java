@@ -15,20 +15,19 @@
  */
 package org.projog.core.udp;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.integerNumber;
 import static org.projog.TestUtils.structure;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.junit.Test;
 import org.projog.TestUtils;
 import org.projog.core.KnowledgeBase;
 import org.projog.core.term.Atom;
 import org.projog.core.term.Term;
-import org.projog.core.udp.KeyFactories.KeyFactory;
 import org.projog.core.udp.interpreter.ClauseAction;
 import org.projog.core.udp.interpreter.ClauseActionFactory;
 
@@ -43,23 +42,22 @@ public class IndexTest {
    @Test
    public void testSingleArg() {
       // Create terms of 3 args, indexed by the 2nd argument.
-      int[] positions = new int[] {1};
-      Map<Object, ClauseAction[]> clauses = new HashMap<>();
-      ClauseAction[] e1 = new ClauseAction[] {clause(A, B, C), clause(C, B, A)};
-      clauses.put(B, e1);
-      ClauseAction[] e2 = new ClauseAction[] {clause(A, C, B)};
-      clauses.put(C, e2);
+      ClauseAction c1 = clause(A, B, C);
+      ClauseAction c2 = clause(A, C, B);
+      ClauseAction c3 = clause(C, B, A);
 
       // Create index to be tested.
-      Index i = new Index(positions, clauses);
+      Index i = Index.create(new int[] {1}, new ClauseAction[] {c1, c2, c3});
 
       // Assert getting matches where 2nd arg = B.
-      assertSame(e1, i.getMatches(new Term[] {A, B, C}));
+      ClauseAction[] e1 = i.getMatches(new Term[] {A, B, C});
+      assertArrayEquals(new ClauseAction[] {c1, c3}, e1);
       assertSame(e1, i.getMatches(new Term[] {C, B, A}));
       assertSame(e1, i.getMatches(new Term[] {D, B, E}));
 
       // Assert getting matches where 2nd arg = C.
-      assertSame(e2, i.getMatches(new Term[] {A, C, B}));
+      ClauseAction[] e2 = i.getMatches(new Term[] {A, C, B});
+      assertArrayEquals(new ClauseAction[] {c2}, e2);
       assertSame(e2, i.getMatches(new Term[] {D, C, E}));
 
       // Assert when no match the same zero length arrays are always returned.
@@ -71,51 +69,46 @@ public class IndexTest {
    @Test
    public void testTwoArgs() {
       // Create terms of 3 args, indexed by the 1st and 3rd arguments.
-      int[] positions = new int[] {0, 2};
-      KeyFactory kf = KeyFactories.getKeyFactory(positions.length);
-      Map<Object, ClauseAction[]> clauses = new HashMap<>();
-      ClauseAction[] e1 = new ClauseAction[] {clause(A, B, C), clause(A, D, C)};
-      clauses.put(kf.createKey(positions, new Term[] {A, B, C}), e1);
-      ClauseAction[] e2 = new ClauseAction[] {clause(A, B, D)};
-      clauses.put(kf.createKey(positions, new Term[] {A, B, D}), e2);
+      ClauseAction c1 = clause(A, B, C);
+      ClauseAction c2 = clause(A, B, D);
+      ClauseAction c3 = clause(A, D, C);
 
       // Create index to be tested.
-      Index i = new Index(positions, clauses);
+      Index i = Index.create(new int[] {0, 2}, new ClauseAction[] {c1, c2, c3});
 
       // Assert getting matches where 1st arg = A and 3rd arg = C.
-      assertSame(e1, i.getMatches(new Term[] {A, B, C}));
+      ClauseAction[] e1 = i.getMatches(new Term[] {A, B, C});
+      assertArrayEquals(new ClauseAction[] {c1, c3}, e1);
       assertSame(e1, i.getMatches(new Term[] {A, D, C}));
       assertSame(e1, i.getMatches(new Term[] {A, E, C}));
 
-      // Assert getting matches where 1st arg = A and 3rd arg = C.
-      assertSame(e2, i.getMatches(new Term[] {A, B, D}));
+      // Assert getting matches where 1st arg = A and 3rd arg = D.
+      ClauseAction[] e2 = i.getMatches(new Term[] {A, B, D});
+      assertArrayEquals(new ClauseAction[] {c2}, e2);
       assertSame(e2, i.getMatches(new Term[] {A, C, D}));
 
       // Assert when no match the same zero length arrays are always returned.
       ClauseAction[] noMatches = i.getMatches(new Term[] {A, C, B});
       assertEquals(0, noMatches.length);
       assertSame(noMatches, i.getMatches(new Term[] {D, A, E}));
+      // same values in different order
+      assertSame(noMatches, i.getMatches(new Term[] {C, A, A}));
    }
 
    @Test
    public void testThreeArgs() {
       // Create terms of 3 args, indexed by all its arguments.
-      int[] positions = new int[] {0, 1, 2};
-      KeyFactory kf = KeyFactories.getKeyFactory(positions.length);
-      Map<Object, ClauseAction[]> clauses = new HashMap<>();
-      ClauseAction[] e1 = new ClauseAction[] {clause(A, B, C)};
-      clauses.put(kf.createKey(positions, new Term[] {A, B, C}), e1);
-      ClauseAction[] e2 = new ClauseAction[] {clause(A, B, D)};
-      clauses.put(kf.createKey(positions, new Term[] {A, B, D}), e2);
+      ClauseAction c1 = clause(A, B, C);
+      ClauseAction c2 = clause(A, B, D);
 
       // Create index to be tested.
-      Index i = new Index(positions, clauses);
+      Index i = Index.create(new int[] {0, 1, 2}, new ClauseAction[] {c1, c2});
 
       // Assert getting matches where 1st arg = A, 2nd arg = B and 3rd arg = C.
-      assertSame(e1, i.getMatches(new Term[] {A, B, C}));
+      assertArrayEquals(new ClauseAction[] {c1}, i.getMatches(new Term[] {A, B, C}));
 
       // Assert getting matches where 1st arg = A, 2nd arg = B and 3rd arg = D.
-      assertSame(e2, i.getMatches(new Term[] {A, B, D}));
+      assertArrayEquals(new ClauseAction[] {c2}, i.getMatches(new Term[] {A, B, D}));
 
       // Assert when no match the same zero length arrays are always returned.
       ClauseAction[] noMatches = i.getMatches(new Term[] {A, C, B});
@@ -123,6 +116,107 @@ public class IndexTest {
       assertSame(noMatches, i.getMatches(new Term[] {A, C, E}));
    }
 
+   @Test
+   public void testManyKeys() {
+      // enough keys for the table to be resized many times
+      int numClauses = 10000;
+      ClauseAction[] clauses = new ClauseAction[numClauses];
+      for (int n = 0; n < numClauses; n++) {
+         clauses[n] = clause(integerNumber(n / 100), integerNumber(n % 100), structure("f", integerNumber(n)));
+      }
+
+      Index i = Index.create(new int[] {0, 1}, clauses);
+
+      for (int n = 0; n < numClauses; n++) {
+         assertArrayEquals(new ClauseAction[] {clauses[n]}, i.getMatches(new Term[] {integerNumber(n / 100), integerNumber(n % 100), A}));
+      }
+      assertEquals(0, i.getMatches(new Term[] {integerNumber(100), integerNumber(0), A}).length);
+   }
+
+   @Test
+   public void testIntegerIndex() {
+      // integers too far apart for a dense index
+      ClauseAction c1 = clause(A, integerNumber(7), B);
+      ClauseAction c2 = clause(B, integerNumber(-1000), B);
+      ClauseAction c3 = clause(C, integerNumber(7), B);
+      ClauseAction c4 = clause(D, integerNumber(Long.MAX_VALUE), B);
+
+      Index i = Index.create(new int[] {1}, new ClauseAction[] {c1, c2, c3, c4});
+      assertSame(IntegerIndex.class, i.getClass());
+
+      assertIntegerMatches(i, 7, c1, c3);
+      assertIntegerMatches(i, -1000, c2);
+      assertIntegerMatches(i, Long.MAX_VALUE, c4);
+      assertIntegerMatches(i, 8);
+      assertIntegerMatches(i, Long.MIN_VALUE);
+      assertEquals(0, i.getMatches(new Term[] {A, A, A}).length);
+   }
+
+   @Test
+   public void testDenseIntegerIndex() {
+      ClauseAction c1 = clause(A, integerNumber(3), B);
+      ClauseAction c2 = clause(B, integerNumber(5), B);
+      ClauseAction c3 = clause(C, integerNumber(3), B);
+
+      Index i = Index.create(new int[] {1}, new ClauseAction[] {c1, c2, c3});
+      assertSame(DenseIntegerIndex.class, i.getClass());
+
+      assertIntegerMatches(i, 3, c1, c3);
+      assertIntegerMatches(i, 5, c2);
+      assertIntegerMatches(i, 4);
+      assertIntegerMatches(i, 2);
+      assertIntegerMatches(i, 6);
+      assertIntegerMatches(i, Long.MIN_VALUE);
+      assertIntegerMatches(i, Long.MAX_VALUE);
+      assertEquals(0, i.getMatches(new Term[] {A, A, A}).length);
+   }
+
+   @Test
+   public void testDenseIntegerIndexOfExtremeValues() {
+      ClauseAction c1 = clause(A, integerNumber(Long.MAX_VALUE), B);
+      ClauseAction c2 = clause(B, integerNumber(Long.MAX_VALUE - 1), B);
+
+      Index i = Index.create(new int[] {1}, new ClauseAction[] {c1, c2});
+      assertSame(DenseIntegerIndex.class, i.getClass());
+
+      assertIntegerMatches(i, Long.MAX_VALUE, c1);
+      assertIntegerMatches(i, Long.MAX_VALUE - 1, c2);
+      assertIntegerMatches(i, Long.MIN_VALUE);
+      assertIntegerMatches(i, -1);
+   }
+
+   @Test
+   public void testMixedTypesNotIndexedAsIntegers() {
+      ClauseAction c1 = clause(A, integerNumber(1), B);
+      ClauseAction c2 = clause(B, A, B);
+
+      Index i = Index.create(new int[] {1}, new ClauseAction[] {c1, c2});
+      assertSame(TermIndex.class, i.getClass());
+
+      assertIntegerMatches(i, 1, c1);
+      assertArrayEquals(new ClauseAction[] {c2}, i.getMatches(new Term[] {A, A, A}));
+   }
+
+   @Test
+   public void testInvalidNumberOfPositions() {
+      ClauseAction[] clauses = {clause(A, B, C)};
+      assertInvalidNumberOfPositions(new int[] {}, clauses);
+      assertInvalidNumberOfPositions(new int[] {0, 1, 2, 3}, clauses);
+   }
+
+   private void assertInvalidNumberOfPositions(int[] positions, ClauseAction[] clauses) {
+      try {
+         Index.create(positions, clauses);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals("Invalid number of positions: " + positions.length, e.getMessage());
+      }
+   }
+
+   private void assertIntegerMatches(Index i, long value, ClauseAction... expected) {
+      assertArrayEquals(expected, i.getMatches(new Term[] {A, integerNumber(value), A}));
+   }
+
    private ClauseAction clause(Term t1, Term t2, Term t3) {
       return ClauseActionFactory.createClauseAction(KB, ClauseModel.createClauseModel(structure("test", t1, t2, t3)));
    }
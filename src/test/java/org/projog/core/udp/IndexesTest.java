@@ -15,6 +15,7 @@
  */
 package org.projog.core.udp;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -52,7 +53,7 @@ public class IndexesTest {
       ClauseAction third = clauses.getClauseActions()[2];
       ClauseAction fourth = clauses.getClauseActions()[3];
 
-      Indexes indexes = new Indexes(clauses);
+      Indexes indexes = createIndexes(clauses);
       assertEquals(0, indexes.countReferences());
 
       // 1 arg indexes
@@ -74,11 +75,14 @@ public class IndexesTest {
       assertMatches(indexes, array(a, d, c),fourth);
       assertNoMatches(indexes, array(c, a, b));
 
-      assertEquals(7, indexes.countReferences());
+      // 6 rather than 7 indexes as, when all three arguments are immutable, the index of the first and second arguments
+      // is used as it is estimated to already identify a single clause (note that, as the estimate assumes arguments
+      // are independent, the first argument is included in the index used when the first and third are immutable)
+      assertEquals(6, indexes.countReferences());
    }
 
    @Test
-   public void testMaxThreeArgsPerIndex() {
+   public void testMostSelectiveArgsUsed() {
       Atom a = atom("a");
       Atom b = atom("b");
       Atom c = atom("c");
@@ -89,16 +93,46 @@ public class IndexesTest {
       ClauseAction second = clauses.getClauseActions()[1];
       ClauseAction third = clauses.getClauseActions()[2];
 
-      Indexes indexes = new Indexes(clauses);
+      Indexes indexes = createIndexes(clauses);
 
-      // a maximum of the first 3 immutable args will be used in the index
-      assertMatches(indexes, array(a, b, c, d, e), first, second, third);
-      assertMatches(indexes, array(v(), b, c, d, e), first, second);
+      // the last arg is used in the index as it has a different value in every clause
+      assertMatches(indexes, array(a, b, c, d, e), first);
+      assertMatches(indexes, array(v(), b, c, d, e), first);
       assertMatches(indexes, array(v(), v(), c, d, e), first);
+      assertEquals(1, indexes.countReferences());
+
+      // the fourth arg is more selective than the third arg
+      assertMatches(indexes, array(a, b, c, d, v()), first, second);
+      assertEquals(2, indexes.countReferences());
    }
 
    @Test
-   public void testMaxNineArgsIndexable() {
+   public void testCombinationOfArgsUsed() {
+      Atom a = atom("a");
+      Atom b = atom("b");
+      Atom x = atom("x");
+      Atom y = atom("y");
+      Clauses clauses = createClauses("p(a,x,1).", "p(a,y,2).", "p(b,x,2).", "p(b,y,1).");
+      ClauseAction first = clauses.getClauseActions()[0];
+      ClauseAction second = clauses.getClauseActions()[1];
+      ClauseAction third = clauses.getClauseActions()[2];
+      ClauseAction fourth = clauses.getClauseActions()[3];
+
+      IndexCache cache = new IndexCache(Long.MAX_VALUE, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+      Indexes indexes = new Indexes(cache, clauses, false);
+
+      // no single arg identifies a clause but any two args do
+      assertMatches(indexes, array(a, y, v()), second);
+      assertMatches(indexes, array(b, x, integerNumber(2)), third);
+      assertMatches(indexes, array(v(), y, integerNumber(1)), fourth);
+      assertMatches(indexes, array(a, v(), integerNumber(1)), first);
+      assertEquals(3, indexes.countReferences());
+      // no other indexes were created while selecting which args to use
+      assertEquals(3, cache.getBuildCount());
+   }
+
+   @Test
+   public void testMoreThanNineArgsIndexable() {
       Atom a = atom("a");
       Atom b = atom("b");
       Atom c = atom("c");
@@ -114,9 +148,8 @@ public class IndexesTest {
       ClauseAction second = clauses.getClauseActions()[1];
       ClauseAction third = clauses.getClauseActions()[2];
 
-      Indexes indexes = new Indexes(clauses);
+      Indexes indexes = createIndexes(clauses);
 
-      // a maximum of the first 9 immutable args will be considered for use in the index
       assertMatches(indexes, array(a, v(), v(), v(), v(), v(), v(), v(), v(), v()), first);
       assertMatches(indexes, array(v(), b, v(), v(), v(), v(), v(), v(), v(), v()), first);
       assertMatches(indexes, array(v(), v(), c, v(), v(), v(), v(), v(), v(), v()), first);
@@ -126,9 +159,8 @@ public class IndexesTest {
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), g, v(), v(), v()), first);
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), h, v(), v()), first);
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), i, v()), first);
-      // expect all three clauses to be returned as final argument will not be used in the index
-      assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), j), first, second, third);
-      assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), integerNumber(9)), first, second, third);
+      assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), j), first);
+      assertNoMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), integerNumber(9)));
    }
 
    @Test
@@ -148,24 +180,22 @@ public class IndexesTest {
       ClauseAction second = clauses.getClauseActions()[1];
       ClauseAction third = clauses.getClauseActions()[2];
 
-      Indexes indexes = new Indexes(clauses);
-      // 4th argument ("d") will be included in composite index.
-      // This is dispite there being a 3 arg max limit in the number of args per index.
-      // This is because the third argument is not considered for indexing as one of the clauses has
+      Indexes indexes = createIndexes(clauses);
+      // 4th argument ("d") will be used in the index as it is the most selective.
+      // The third argument is not considered for indexing as one of the clauses has
       // a mutable term (a variable named "X") in that position.
       assertMatches(indexes, array(a, b, c, d, v(), v(), v(), v(), v(), v(), v(), v()), second);
       assertMatches(indexes, array(a, b, q, d, v(), v(), v(), v(), v(), v(), v(), v()), second);
       assertMatches(indexes, array(a, b, c, z, v(), v(), v(), v(), v(), v(), v(), v()), third);
       assertMatches(indexes, array(a, b, q, z, v(), v(), v(), v(), v(), v(), v(), v()), third);
       // 3rd and 8th args not indexed as a clause has a mutable term in that position.
-      assertMatches(indexes, array(v(), v(), c, v(), v(), v(), v(), v(), v(), v(), v()), first, second, third);
+      assertMatches(indexes, array(v(), v(), c, v(), v(), v(), v(), v(), v(), v(), v(), v()), first, second, third);
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), z, v(), v(), v(), v()), first, second, third);
-      // 10th and 11th arg considered for indexing as within max of 9 mutable terms considered for indexing.
+      // 10th, 11th and 12th arg considered for indexing.
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), j, v(), v()), second, third);
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), v(), k, v()), second);
       assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), v(), x, v()), third);
-      // 12th arg not used in index as only max of 9 mutable terms considered for indexing.
-      assertMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), v(), v(), z), first, second, third);
+      assertNoMatches(indexes, array(v(), v(), v(), v(), v(), v(), v(), v(), v(), v(), v(), z));
    }
 
    @Test
@@ -182,7 +212,7 @@ public class IndexesTest {
       }
       Clauses clauses = Clauses.createFromModels(TestUtils.createKnowledgeBase(), models);
 
-      Indexes indexes = new Indexes(clauses);
+      Indexes indexes = createIndexes(clauses);
 
       Collections.shuffle(models);
       Iterator<ClauseModel> itr = models.iterator();
@@ -223,9 +253,161 @@ public class IndexesTest {
          }
       }
 
-      assertEquals(129, indexes.countReferences());
-      // TODO set numClauses to a larger number (e.g. 100,000) to verify that some indexes have been garbage collected
-      // TODO assertTrue(indexes.countClearedReferences() > 0);
+      // as every arg has a different value in every clause only single arg indexes are needed
+      assertEquals(numArgs, indexes.countReferences());
+      assertEquals(0, indexes.countClearedReferences());
+   }
+
+   @Test
+   public void testIndexesDiscardedWhenBudgetExceeded() {
+      Atom a = atom("a");
+      Atom c = atom("c");
+      Clauses clauses = createClauses("p(a,b,c).", "p(a,c,b).", "p(b,c,a).", "p(a,d,c).");
+      ClauseAction first = clauses.getClauseActions()[0];
+      ClauseAction second = clauses.getClauseActions()[1];
+      ClauseAction third = clauses.getClauseActions()[2];
+      ClauseAction fourth = clauses.getClauseActions()[3];
+      // budget only large enough for one index at a time
+      IndexCache cache = new IndexCache(1, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+
+      Indexes indexes = new Indexes(cache, clauses, false);
+
+      assertMatches(indexes, array(a, v(), v()), first, second, fourth);
+      assertEquals(1, cache.getBuildCount());
+      assertEquals(0, cache.getEvictionCount());
+      assertEquals(0, indexes.countClearedReferences());
+
+      assertMatches(indexes, array(v(), c, v()), second, third);
+      assertEquals(2, cache.getBuildCount());
+      assertEquals(1, cache.getEvictionCount());
+      assertEquals(1, indexes.countClearedReferences());
+
+      // the discarded index is recreated when needed again
+      assertMatches(indexes, array(a, v(), v()), first, second, fourth);
+      assertEquals(3, cache.getBuildCount());
+      assertEquals(2, cache.getEvictionCount());
+      assertEquals(2, indexes.countReferences());
+      assertEquals(1, indexes.countClearedReferences());
+      assertEquals(1, cache.getIndexCount());
+   }
+
+   @Test
+   public void testStatistics() {
+      Atom a = atom("a");
+      Atom b = atom("b");
+      Atom z = atom("z");
+      Clauses clauses = createClauses("p(a,1,x).", "p(a,2,y).", "p(b,3,x).", "p(b,4,y).");
+
+      Indexes indexes = createIndexes(clauses);
+      assertTrue(indexes.getStatistics().isEmpty());
+
+      indexes.index(array(a, v(), v()));
+      indexes.index(array(b, v(), v()));
+      indexes.index(array(z, v(), v()));
+      indexes.index(array(a, v(), atom("y")));
+      // calls with no immutable args are not recorded
+      indexes.index(array(v(), v(), v()));
+
+      List<IndexStatistics> statistics = indexes.getStatistics();
+      assertEquals(2, statistics.size());
+
+      IndexStatistics first = statistics.get(0);
+      assertArrayEquals(new int[] {0}, first.getBoundArguments());
+      assertArrayEquals(new int[] {0}, first.getIndexedArguments());
+      assertEquals(4, first.getClauseCount());
+      assertEquals(3, first.getCallCount());
+      assertEquals(2, first.getHitCount());
+      assertEquals(2d / 3, first.getHitRate(), 0.0001);
+      assertEquals(4d / 3, first.getAverageMatches(), 0.0001);
+      // Bloom filters are not used, so every call that did not match any clause was a false positive
+      assertEquals(0, first.getRejectionCount());
+      assertEquals(1, first.getFalsePositiveRate(), 0);
+
+      IndexStatistics second = statistics.get(1);
+      assertArrayEquals(new int[] {0, 2}, second.getBoundArguments());
+      assertArrayEquals(new int[] {0, 2}, second.getIndexedArguments());
+      assertEquals(1, second.getCallCount());
+      assertEquals(1, second.getHitCount());
+      assertEquals(1, second.getHitRate(), 0);
+      assertEquals(1, second.getAverageMatches(), 0);
+   }
+
+   @Test
+   public void testBloomFilters() {
+      Atom a = atom("a");
+      Atom z = atom("z");
+      Clauses clauses = createClauses("p(a,1,x).", "p(a,2,y).", "p(b,3,x).", "p(b,4,y).");
+      IndexCache cache = new IndexCache(Long.MAX_VALUE, IndexEvictionPolicy.LEAST_RECENTLY_USED);
+      Indexes indexes = new Indexes(cache, clauses, true);
+      assertTrue(indexes.getBloomFilterStatistics().isEmpty());
+
+      // calls rejected by the Bloom filter do not cause an index to be created
+      assertNoMatches(indexes, array(z, v(), v()));
+      assertNoMatches(indexes, array(v(), integerNumber(5), v()));
+      assertEquals(0, indexes.countReferences());
+      // the Bloom filters of the first and second arguments are held by the cache
+      assertEquals(2, cache.getBuildCount());
+      assertEquals(2, cache.getIndexCount());
+      assertTrue(cache.getSize() > 0);
+
+      assertMatches(indexes, array(a, v(), v()), clauses.getClauseActions()[0], clauses.getClauseActions()[1]);
+      assertEquals(3, cache.getBuildCount());
+
+      List<BloomFilterStatistics> bloomFilterStatistics = indexes.getBloomFilterStatistics();
+      assertEquals(2, bloomFilterStatistics.size());
+      assertEquals(0, bloomFilterStatistics.get(0).getArgument());
+      assertEquals(4, bloomFilterStatistics.get(0).getProbeCount());
+      assertEquals(2, bloomFilterStatistics.get(0).getRejectionCount());
+      assertEquals(64, bloomFilterStatistics.get(0).getBitCount());
+      assertTrue(bloomFilterStatistics.get(0).getExpectedFalsePositiveRate() > 0);
+      assertTrue(bloomFilterStatistics.get(0).getExpectedFalsePositiveRate() < 0.01);
+      assertEquals(1, bloomFilterStatistics.get(1).getArgument());
+      assertEquals(2, bloomFilterStatistics.get(1).getProbeCount());
+      assertEquals(2, bloomFilterStatistics.get(1).getRejectionCount());
+
+      List<IndexStatistics> statistics = indexes.getStatistics();
+      assertEquals(2, statistics.size());
+      IndexStatistics first = statistics.get(0);
+      assertArrayEquals(new int[] {0}, first.getIndexedArguments());
+      assertEquals(4, first.getCallCount());
+      assertEquals(2, first.getHitCount());
+      assertEquals(2, first.getRejectionCount());
+      assertEquals(0, first.getFalsePositiveRate(), 0);
+      IndexStatistics second = statistics.get(1);
+      assertArrayEquals(new int[] {1}, second.getBoundArguments());
+      // no index has been selected as every call was rejected
+      assertArrayEquals(new int[0], second.getIndexedArguments());
+      assertEquals(2, second.getCallCount());
+      assertEquals(2, second.getRejectionCount());
+      // once released, the index and Bloom filters no longer count against the budget
+      indexes.release();
+      assertEquals(0, cache.getIndexCount());
+      assertEquals(0, cache.getSize());
+      assertEquals(2, indexes.index(array(a, v(), v())).length);
+   }
+
+   @Test
+   public void testEstimatedMatches() {
+      // the sum of the squares of the number of clauses with each value, divided by the number of clauses
+      Indexes indexes = createIndexes(createClauses("p(a,b,c).", "p(a,c,b).", "p(c,b,a)."));
+      assertEquals(5d / 3, indexes.getEstimatedMatches(2), 0);
+      assertEquals(5d / 3, indexes.getEstimatedMatches(1), 0);
+
+      indexes = createIndexes(createClauses("p(a,7,b).", "p(b,-1000,b).", "p(c,7,b).", "p(d," + Long.MAX_VALUE + ",b)."));
+      assertEquals(1.5, indexes.getEstimatedMatches(2), 0);
+      assertEquals(1, indexes.getEstimatedMatches(1), 0);
+      assertEquals(4, indexes.getEstimatedMatches(4), 0);
+
+      // combinations of arguments are estimated without an index being created
+      String[] grid = new String[400];
+      for (int n = 0; n < grid.length; n++) {
+         grid[n] = "p(" + (n / 20) + "," + (n % 20) + ").";
+      }
+      indexes = createIndexes(createClauses(grid));
+      assertEquals(20, indexes.getEstimatedMatches(1), 0);
+      assertEquals(20, indexes.getEstimatedMatches(2), 0);
+      assertEquals(1, indexes.getEstimatedMatches(3), 0);
+      assertEquals(0, indexes.countReferences());
    }
 
    private void assertMatches(Indexes indexes, Term[] input, ClauseAction... expected) {
@@ -244,6 +426,10 @@ public class IndexesTest {
       assertEquals(0, actual.length);
    }
 
+   private Indexes createIndexes(Clauses clauses) {
+      return new Indexes(new IndexCache(Long.MAX_VALUE, IndexEvictionPolicy.LEAST_RECENTLY_USED), clauses, false);
+   }
+
    private Clauses createClauses(String... clauses) { // TODO move to TestUtils
       KnowledgeBase kb = TestUtils.createKnowledgeBase();
       List<ClauseModel> models = new ArrayList<>();
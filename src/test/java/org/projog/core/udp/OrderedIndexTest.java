@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.structure;
+import static org.projog.TestUtils.variable;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.term.Term;
+import org.projog.core.udp.interpreter.ClauseAction;
+import org.projog.core.udp.interpreter.ClauseActionFactory;
+
+public class OrderedIndexTest {
+   private static final KnowledgeBase KB = TestUtils.createKnowledgeBase();
+
+   @Test
+   public void testClausesInOrder() {
+      ClauseAction c1 = clause(integerNumber(1));
+      ClauseAction c2 = clause(integerNumber(3));
+      ClauseAction c3 = clause(integerNumber(3));
+      ClauseAction c4 = clause(integerNumber(7));
+      OrderedIndex i = new OrderedIndex(new ClauseAction[] {c1, c2, c3, c4}, 0);
+
+      assertMatches(i, 0, 10, c1, c2, c3, c4);
+      assertMatches(i, 1, 7, c1, c2, c3);
+      assertMatches(i, 2, 8, c2, c3, c4);
+      assertMatches(i, 3, 4, c2, c3);
+      assertMatches(i, 4, 7);
+      assertMatches(i, 8, 10);
+      assertMatches(i, 7, 1);
+   }
+
+   @Test
+   public void testClausesNotInOrder() {
+      ClauseAction c1 = clause(integerNumber(5));
+      ClauseAction c2 = clause(atom("a"));
+      ClauseAction c3 = clause(integerNumber(2));
+      ClauseAction c4 = clause(integerNumber(5));
+      ClauseAction c5 = clause(integerNumber(9));
+      OrderedIndex i = new OrderedIndex(new ClauseAction[] {c1, c2, c3, c4, c5}, 0);
+
+      assertMatches(i, 0, 10, c1, c3, c4, c5);
+      assertMatches(i, 3, 6, c1, c4);
+      assertMatches(i, 2, 6, c1, c3, c4);
+      assertArrayEquals(new ClauseAction[] {c2, c5}, i.getMatches(integerNumber(6), atom("z")));
+   }
+
+   @Test
+   public void testClausesWithVariableArgument() {
+      ClauseAction c1 = clause(integerNumber(5));
+      ClauseAction c2 = clause(variable());
+      ClauseAction c3 = clause(integerNumber(2));
+      OrderedIndex i = new OrderedIndex(new ClauseAction[] {c1, c2, c3}, 0);
+
+      assertMatches(i, 0, 10, c1, c2, c3);
+      assertMatches(i, 0, 3, c2, c3);
+      assertMatches(i, 6, 10, c2);
+   }
+
+   @Test
+   public void testNoMatches() {
+      OrderedIndex i = new OrderedIndex(new ClauseAction[] {clause(integerNumber(5))}, 0);
+      assertEquals(0, i.getMatches(integerNumber(6), integerNumber(10)).length);
+   }
+
+   private void assertMatches(OrderedIndex i, long from, long to, ClauseAction... expected) {
+      assertArrayEquals(expected, i.getMatches(integerNumber(from), integerNumber(to)));
+   }
+
+   private ClauseAction clause(Term t) {
+      return ClauseActionFactory.createClauseAction(KB, ClauseModel.createClauseModel(structure("test", t, atom("x"))));
+   }
+}
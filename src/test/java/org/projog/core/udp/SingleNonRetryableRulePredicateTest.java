@@ -31,7 +31,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.projog.SimpleProjogListener;
 import org.projog.TestUtils;
-import org.projog.core.CutException;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateKey;
 import org.projog.core.ProjogException;
@@ -39,9 +38,11 @@ import org.projog.core.SpyPoints;
 import org.projog.core.SpyPoints.SpyPoint;
 import org.projog.core.event.ProjogListeners;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.interpreter.ClauseAction;
 
 public class SingleNonRetryableRulePredicateTest {
+   private final Trail trail = Trail.getCurrent();
    private SpyPoints spyPoints;
    private ClauseAction mockAction;
    private SingleNonRetryableRulePredicate testObject;
@@ -53,7 +54,7 @@ public class SingleNonRetryableRulePredicateTest {
    public void before() {
       this.mockPredicate = mock(Predicate.class);
       this.mockAction = mock(ClauseAction.class);
-      when(mockAction.getPredicate(queryArgs)).thenReturn(mockPredicate);
+      when(mockAction.getPredicate(queryArgs, trail)).thenReturn(mockPredicate);
 
       this.listener = new SimpleProjogListener();
       ProjogListeners observable = new ProjogListeners();
@@ -67,7 +68,7 @@ public class SingleNonRetryableRulePredicateTest {
 
    @After
    public void after() {
-      verify(mockAction).getPredicate(queryArgs);
+      verify(mockAction).getPredicate(queryArgs, trail);
       verify(mockPredicate).evaluate();
       verifyNoMoreInteractions(mockAction, mockPredicate);
    }
@@ -95,9 +96,9 @@ public class SingleNonRetryableRulePredicateTest {
    }
 
    @Test
-   public void testCutException_spy_point_disabled() {
+   public void testCut_spy_point_disabled() {
       spyPoints.setTraceEnabled(false);
-      when(mockPredicate.evaluate()).thenThrow(CutException.CUT_EXCEPTION);
+      when(mockPredicate.evaluate()).thenAnswer(TestUtils.BACKTRACK_TO_CUT);
 
       Predicate result = testObject.getPredicate(queryArgs);
 
@@ -147,9 +148,9 @@ public class SingleNonRetryableRulePredicateTest {
    }
 
    @Test
-   public void testCutException_spy_point_enabled() {
+   public void testCut_spy_point_enabled() {
       spyPoints.setTraceEnabled(true);
-      when(mockPredicate.evaluate()).thenThrow(CutException.CUT_EXCEPTION);
+      when(mockPredicate.evaluate()).thenAnswer(TestUtils.BACKTRACK_TO_CUT);
 
       Predicate result = testObject.getPredicate(queryArgs);
 
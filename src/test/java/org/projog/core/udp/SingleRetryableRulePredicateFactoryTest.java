@@ -33,7 +33,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.projog.SimpleProjogListener;
 import org.projog.TestUtils;
-import org.projog.core.CutException;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateKey;
 import org.projog.core.ProjogException;
@@ -41,10 +40,12 @@ import org.projog.core.SpyPoints;
 import org.projog.core.SpyPoints.SpyPoint;
 import org.projog.core.event.ProjogListeners;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.SingleRetryableRulePredicateFactory.RetryableRulePredicate;
 import org.projog.core.udp.interpreter.ClauseAction;
 
 public class SingleRetryableRulePredicateFactoryTest {
+   private final Trail trail = Trail.getCurrent();
    private SpyPoints spyPoints;
    private ClauseAction mockAction;
    private SingleRetryableRulePredicateFactory testObject;
@@ -56,7 +57,7 @@ public class SingleRetryableRulePredicateFactoryTest {
    public void before() {
       this.mockPredicate = mock(Predicate.class);
       this.mockAction = mock(ClauseAction.class);
-      when(mockAction.getPredicate(queryArgs)).thenReturn(mockPredicate);
+      when(mockAction.getPredicate(queryArgs, trail)).thenReturn(mockPredicate);
 
       this.listener = new SimpleProjogListener();
       ProjogListeners observable = new ProjogListeners();
@@ -70,7 +71,7 @@ public class SingleRetryableRulePredicateFactoryTest {
 
    @After
    public void after() {
-      verify(mockAction).getPredicate(queryArgs);
+      verify(mockAction).getPredicate(queryArgs, trail);
       verifyNoMoreInteractions(mockAction, mockPredicate);
    }
 
@@ -103,9 +104,9 @@ public class SingleRetryableRulePredicateFactoryTest {
    }
 
    @Test
-   public void testCutException_spy_point_disabled() {
+   public void testCut_spy_point_disabled() {
       spyPoints.setTraceEnabled(false);
-      when(mockPredicate.evaluate()).thenThrow(CutException.CUT_EXCEPTION);
+      when(mockPredicate.evaluate()).thenAnswer(TestUtils.BACKTRACK_TO_CUT);
 
       RetryableRulePredicate result = testObject.getPredicate(queryArgs);
 
@@ -163,9 +164,9 @@ public class SingleRetryableRulePredicateFactoryTest {
    }
 
    @Test
-   public void testCutException_spy_point_enabled() {
+   public void testCut_spy_point_enabled() {
       spyPoints.setTraceEnabled(true);
-      when(mockPredicate.evaluate()).thenThrow(CutException.CUT_EXCEPTION);
+      when(mockPredicate.evaluate()).thenAnswer(TestUtils.BACKTRACK_TO_CUT);
 
       RetryableRulePredicate result = testObject.getPredicate(queryArgs);
 
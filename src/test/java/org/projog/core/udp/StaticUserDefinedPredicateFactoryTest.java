@@ -15,25 +15,35 @@
  */
 package org.projog.core.udp;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.list;
 import static org.projog.TestUtils.structure;
+import static org.projog.TestUtils.variable;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 import org.projog.TestUtils;
 import org.projog.core.KnowledgeBase;
+import org.projog.core.KnowledgeBaseServiceLocator;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.PredicateKey;
 import org.projog.core.PreprocessablePredicateFactory;
+import org.projog.core.ProjogDefaultProperties;
+import org.projog.core.term.EmptyList;
 import org.projog.core.term.Structure;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermUtils;
+import org.projog.core.term.Variable;
 import org.projog.core.udp.interpreter.InterpretedTailRecursivePredicateFactory;
 import org.projog.core.udp.interpreter.InterpretedUserDefinedPredicate;
 
@@ -163,10 +173,197 @@ public class StaticUserDefinedPredicateFactoryTest {
    }
 
    @Test
-   public void testNotIndexablePredicate() {
-      // not args are indexable as none are always immutable
+   public void testFunctorIndexedPredicate() {
+      // no args are immutable in every clause but the first arg is never a variable
+      Term[] clauses = toTerms("p([],X) :- X = empty.", "p([H|T],X) :- X = H.");
+      PredicateFactory pf = getActualPredicateFactory(clauses);
+      assertIndexablePredicateFactory(pf);
+      assertTrue(pf.isRetryable());
+
+      // only the matching clause is evaluated so no choicepoint is left
+      Variable x = variable("X");
+      Predicate p = pf.getPredicate(new Term[] {list(atom("a"), atom("b")), x});
+      assertTrue(p.evaluate());
+      assertEquals(atom("a"), x.getTerm());
+      assertFalse(p.couldReevaluationSucceed());
+
+      Variable y = variable("Y");
+      p = pf.getPredicate(new Term[] {EmptyList.EMPTY_LIST, y});
+      assertTrue(p.evaluate());
+      assertEquals(atom("empty"), y.getTerm());
+      assertFalse(p.couldReevaluationSucceed());
+
+      assertSame(PredicateUtils.FALSE, pf.getPredicate(new Term[] {atom("a"), variable("Z")}));
+   }
+
+   @Test
+   public void testFunctorIndexCreatedWhenFirstNeeded() {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase(TestUtils.PROJOG_DEFAULT_PROPERTIES);
+      IndexCache cache = KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(IndexCache.class);
+      StaticUserDefinedPredicateFactory f = createFactory(kb, "p([],X) :- X = empty.", "p([H|T],X) :- X = H.");
+      assertIndexablePredicateFactory(f.getActualPredicateFactory());
+      assertEquals(0, cache.getIndexCount());
+
+      // not created when every argument is a variable
+      assertTrue(f.getPredicate(new Term[] {variable("X"), variable("Y")}).evaluate());
+      assertEquals(0, cache.getIndexCount());
+
+      assertTrue(f.getPredicate(new Term[] {EmptyList.EMPTY_LIST, variable("Y")}).evaluate());
+      assertEquals(1, cache.getIndexCount());
+      assertTrue(cache.getSize() > 0);
+   }
+
+   @Test
+   public void testRangeIndexHeldByIndexCache() {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase(TestUtils.PROJOG_DEFAULT_PROPERTIES);
+      IndexCache cache = KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(IndexCache.class);
+      StaticUserDefinedPredicateFactory f = createFactory(kb, "p(3,c).", "p(1,a).", "p(2,b).", "p(5,e).");
+      f.compile();
+      assertEquals(0, cache.getIndexCount());
+
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      Predicate p = f.getPredicateInRange(new Term[] {x, y}, 0, integerNumber(2), integerNumber(4));
+      assertTrue(p.evaluate());
+      assertEquals(atom("c"), y.getTerm());
+      assertTrue(p.evaluate());
+      assertEquals(atom("b"), y.getTerm());
+      assertFalse(p.couldReevaluationSucceed());
+      assertEquals(1, cache.getIndexCount());
+      assertTrue(cache.getSize() > 0);
+
+      // reuses the existing index
+      assertTrue(f.getPredicateInRange(new Term[] {variable("X"), variable("Y")}, 0, integerNumber(5), integerNumber(6)).evaluate());
+      assertEquals(1, cache.getBuildCount());
+   }
+
+   @Test
+   public void testPartiallyIndexablePredicate() {
+      // no args are immutable in every clause but the clauses with a variable are included in every group
       Term[] clauses = toTerms("p(a,b,c).", "p(1,2,3).", "p(X,Y,Z).");
       PredicateFactory pf = getActualPredicateFactory(clauses);
+      assertIndexablePredicateFactory(pf);
+      assertTrue(pf.isRetryable());
+   }
+
+   @Test
+   public void testIndexStatistics() {
+      StaticUserDefinedPredicateFactory f = createFactory(COMPILATION_DISABLED_KB, "p(a,1).", "p(b,2).", "p(c,2).");
+      assertTrue(f.getIndexStatistics().isEmpty());
+
+      assertTrue(f.getPredicate(new Term[] {atom("b"), variable("X")}).evaluate());
+      assertTrue(f.getPredicate(new Term[] {variable("X"), integerNumber(2)}).evaluate());
+      assertTrue(f.getPredicate(new Term[] {variable("X"), integerNumber(2)}).evaluate());
+
+      List<IndexStatistics> statistics = f.getIndexStatistics();
+      assertEquals(2, statistics.size());
+      assertArrayEquals(new int[] {0}, statistics.get(0).getIndexedArguments());
+      assertEquals(1, statistics.get(0).getCallCount());
+      assertEquals(1, statistics.get(0).getAverageMatches(), 0);
+      assertArrayEquals(new int[] {1}, statistics.get(1).getIndexedArguments());
+      assertEquals(2, statistics.get(1).getCallCount());
+      assertEquals(2, statistics.get(1).getAverageMatches(), 0);
+   }
+
+   @Test
+   public void testBloomFilterStatistics() {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+         @Override
+         public boolean isBloomFilterEnabled() {
+            return true;
+         }
+      });
+      StaticUserDefinedPredicateFactory f = createFactory(kb, "p(a,1).", "p(b,2).", "p(c,2).");
+      assertTrue(f.getBloomFilterStatistics().isEmpty());
+
+      assertTrue(f.getPredicate(new Term[] {atom("b"), variable("X")}).evaluate());
+      assertFalse(f.getPredicate(new Term[] {atom("z"), variable("X")}).evaluate());
+
+      List<BloomFilterStatistics> statistics = f.getBloomFilterStatistics();
+      assertEquals(1, statistics.size());
+      assertEquals(0, statistics.get(0).getArgument());
+      assertEquals(2, statistics.get(0).getProbeCount());
+      assertEquals(1, statistics.get(0).getRejectionCount());
+      assertEquals(1, f.getIndexStatistics().get(0).getRejectionCount());
+   }
+
+   @Test
+   public void testBloomFilterStatisticsNotEnabled() {
+      StaticUserDefinedPredicateFactory f = createFactory(COMPILATION_DISABLED_KB, "p(a,1).", "p(b,2).", "p(c,2).");
+      assertFalse(f.getPredicate(new Term[] {atom("z"), variable("X")}).evaluate());
+      assertTrue(f.getBloomFilterStatistics().isEmpty());
+      assertEquals(0, f.getIndexStatistics().get(0).getRejectionCount());
+   }
+
+   @Test
+   public void testTieredCompilation() throws InterruptedException {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+         @Override
+         public boolean isRuntimeCompilationEnabled() {
+            return true;
+         }
+
+         @Override
+         public int getRuntimeCompilationThreshold() {
+            return 3;
+         }
+      });
+      IndexCache cache = KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(IndexCache.class);
+      StaticUserDefinedPredicateFactory f = createFactory(kb, "p(a,X) :- X = 1.", "p(b,X) :- X = 2.");
+      assertSame(ExecutionTier.INTERPRETED, f.getExecutionTier());
+      // while it may still be compiled callers must not bypass the factory, as that would bypass the compiled version
+      assertSame(f, f.preprocess(TestUtils.parseTerm("p(a,X)")));
+
+      for (int i = 1; i < 3; i++) {
+         assertTrue(f.getPredicate(new Term[] {atom("a"), variable("X")}).evaluate());
+         assertEquals(i, f.getInvocationCount());
+         assertSame(ExecutionTier.INTERPRETED, f.getExecutionTier());
+      }
+      assertFalse(f.getActualPredicateFactory().getPredicate(new Term[] {atom("c"), variable("X")}).evaluate());
+      assertEquals(1, cache.getIndexCount());
+
+      // reaching the threshold causes the predicate to be compiled by a background thread
+      Variable x = variable("X");
+      assertTrue(f.getPredicate(new Term[] {atom("b"), x}).evaluate());
+      assertEquals(integerNumber(2), x.getTerm());
+      assertEquals(3, f.getInvocationCount());
+      for (int i = 0; i < 300 && f.getExecutionTier() != ExecutionTier.COMPILED; i++) {
+         Thread.sleep(100);
+      }
+      assertSame(ExecutionTier.COMPILED, f.getExecutionTier());
+      // the index of the interpreted version is released when it is replaced
+      assertEquals(0, cache.getIndexCount());
+
+      // calls are no longer counted once compiled
+      x = variable("X");
+      assertTrue(f.getPredicate(new Term[] {atom("b"), x}).evaluate());
+      assertEquals(1, cache.getIndexCount());
+      assertEquals(integerNumber(2), x.getTerm());
+      assertEquals(3, f.getInvocationCount());
+      assertNotSame(f, f.preprocess(TestUtils.parseTerm("p(a,X)")));
+   }
+
+   @Test
+   public void testTieredCompilationNotEnabled() {
+      StaticUserDefinedPredicateFactory f = createFactory(COMPILATION_DISABLED_KB, "p(a,X) :- X = 1.", "p(b,X) :- X = 2.");
+      assertTrue(f.getPredicate(new Term[] {atom("a"), variable("X")}).evaluate());
+      assertSame(ExecutionTier.INTERPRETED, f.getExecutionTier());
+      assertEquals(0, f.getInvocationCount());
+      assertNotSame(f, f.preprocess(TestUtils.parseTerm("p(a,X)")));
+   }
+
+   @Test
+   public void testIndexStatisticsNotIndexable() {
+      StaticUserDefinedPredicateFactory f = createFactory(COMPILATION_DISABLED_KB, "p(X).", "p(Y) :- Y = a.");
+      assertTrue(f.getPredicate(new Term[] {atom("b")}).evaluate());
+      assertTrue(f.getIndexStatistics().isEmpty());
+   }
+
+   @Test
+   public void testNotIndexablePredicate() {
+      // no args are indexable as every arg is either always a variable or always a non-empty list
+      Term[] clauses = toTerms("p(X,[a|T],Z).", "p(A,[b|T],C).", "p(Q,[c|T],E).");
+      PredicateFactory pf = getActualPredicateFactory(clauses);
       assertEquals("org.projog.core.udp.StaticUserDefinedPredicateFactory$NotIndexablePredicateFactory", pf.getClass().getName());
       assertTrue(pf.isRetryable());
    }
@@ -213,6 +410,41 @@ public class StaticUserDefinedPredicateFactoryTest {
       assertSingleRulePredicateFactory(pf);
    }
 
+   @Test
+   public void testGroundTermSharingDisabled() {
+      StaticUserDefinedPredicateFactory f = createFactory(COMPILATION_DISABLED_KB, "p(x, f(a,[b,c]), Y).", "p(y, f(a,[b,c]), Y).");
+      Term first = f.getClauseModel(0).getConsequent().getArgument(1);
+      Term second = f.getClauseModel(1).getConsequent().getArgument(1);
+      assertEquals(first, second);
+      assertNotSame(first, second);
+   }
+
+   @Test
+   public void testGroundTermSharingEnabled() {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+         @Override
+         public boolean isGroundTermSharingEnabled() {
+            return true;
+         }
+      });
+      StaticUserDefinedPredicateFactory f = createFactory(kb, "p(x, f(a,[b,c]), Y).", "p(y, f(a,[b,c]), Y).", "p(z, f(a,[b,c]), Y).", "p(x, f(a,[b,c]), Y).");
+      Term first = f.getClauseModel(0).getConsequent();
+      Term second = f.getClauseModel(1).getConsequent();
+      Term fourth = f.getClauseModel(3).getConsequent();
+      assertSame(first.getArgument(0), fourth.getArgument(0));
+      assertSame(first.getArgument(1), second.getArgument(1));
+      assertSame(first.getArgument(1), fourth.getArgument(1));
+      assertNotSame(first.getArgument(2), fourth.getArgument(2));
+
+      // clause for a different predicate should use the same ground terms
+      Term q = createFactory(kb, "q(f(a,[b,c])).").getClauseModel(0).getConsequent();
+      assertSame(first.getArgument(1), q.getArgument(0));
+
+      // sharing ground terms should not alter the behaviour of the predicate
+      Predicate p = f.getPredicate(new Term[] {variable("A"), structure("f", atom("a"), variable("B")), variable("C")});
+      assertTrue(p.evaluate());
+   }
+
    private void assertSingleRulePredicateFactory(PredicateFactory p) {
       assertEquals("org.projog.core.udp.SingleRetryableRulePredicateFactory", p.getClass().getName());
    }
@@ -226,6 +458,14 @@ public class StaticUserDefinedPredicateFactoryTest {
    }
 
    private PredicateFactory getActualPredicateFactory(KnowledgeBase kb, Term[] clauses) {
+      return createFactory(kb, clauses).getActualPredicateFactory();
+   }
+
+   private StaticUserDefinedPredicateFactory createFactory(KnowledgeBase kb, String... clausesSyntax) {
+      return createFactory(kb, toTerms(clausesSyntax));
+   }
+
+   private StaticUserDefinedPredicateFactory createFactory(KnowledgeBase kb, Term[] clauses) {
       StaticUserDefinedPredicateFactory f = null;
       for (Term clause : clauses) {
          ClauseModel clauseModel = ClauseModel.createClauseModel(clause);
@@ -235,7 +475,7 @@ public class StaticUserDefinedPredicateFactoryTest {
          }
          f.addLast(clauseModel);
       }
-      return f.getActualPredicateFactory();
+      return f;
    }
 
    private Term[] toTerms(String... clausesSyntax) {
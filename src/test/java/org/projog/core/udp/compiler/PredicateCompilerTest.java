@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.variable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.Predicate;
+import org.projog.core.PredicateKey;
+import org.projog.core.ProjogDefaultProperties;
+import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
+import org.projog.core.term.Variable;
+import org.projog.core.udp.ClauseModel;
+import org.projog.core.udp.interpreter.ClauseAction;
+import org.projog.core.udp.interpreter.Clauses;
+
+public class PredicateCompilerTest {
+   private final Trail trail = Trail.getCurrent();
+   private static final PredicateKey KEY = new PredicateKey("p", 2);
+
+   private final KnowledgeBase kb = TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+      @Override
+      public boolean isRuntimeCompilationEnabled() {
+         return true;
+      }
+   });
+   private final PredicateCompiler compiler = new PredicateCompiler(kb);
+
+   @Test
+   public void testCompile() {
+      ClauseAction[] actions = compile("p(a, b).", "p(X, f(X, Y)) :- atom(X), Y = X.");
+
+      assertEquals(2, actions.length);
+      assertTrue(actions[0] instanceof CompiledClause);
+      assertTrue(actions[1] instanceof CompiledClause);
+      assertFalse(actions[0].isRetryable());
+      assertFalse(actions[1].isRetryable());
+      assertEquals("p(a, b)", TestUtils.write(actions[0].getModel().getOriginal()));
+   }
+
+   @Test
+   public void testEvaluateFact() {
+      ClauseAction fact = compile("p(a, b).")[0];
+      Variable x = variable("X");
+
+      assertTrue(fact.getPredicate(new Term[] {atom("a"), x}, trail).evaluate());
+      assertEquals(atom("b"), x.getTerm());
+
+      assertFalse(fact.getPredicate(new Term[] {atom("b"), variable()}, trail).evaluate());
+   }
+
+   @Test
+   public void testEvaluateRule() {
+      ClauseAction rule = compile("p(X, f(X, Y)) :- atom(X), Y = X.")[0];
+      Variable y = variable("Y");
+
+      Predicate p = rule.getPredicate(new Term[] {atom("a"), y}, trail);
+      assertTrue(p.evaluate());
+      assertEquals("f(a, a)", TestUtils.write(y.getTerm()));
+      assertFalse(p.couldReevaluationSucceed());
+
+      assertFalse(rule.getPredicate(new Term[] {TestUtils.integerNumber(1), variable()}, trail).evaluate());
+   }
+
+   @Test
+   public void testRetryable() {
+      ClauseAction[] actions = compile("p(X, Y) :- repeat, X = Y.", "p(X, Y) :- repeat.");
+      assertTrue(actions[0] instanceof CompiledClause);
+      assertTrue(actions[0].isRetryable());
+      assertTrue(actions[1] instanceof CompiledClause);
+      assertTrue(actions[1].isRetryable());
+   }
+
+   @Test
+   public void testClausesThatAreNotCompiled() {
+      // a variable as a goal, and a fact that matches any arguments, continue to be interpreted
+      ClauseAction[] actions = compile("p(X, Y) :- X.", "p(X, Y).", "p(x, y).");
+      assertFalse(actions[0] instanceof CompiledClause);
+      assertFalse(actions[1] instanceof CompiledClause);
+      assertTrue(actions[2] instanceof CompiledClause);
+   }
+
+   @Test
+   public void testNoClausesCompiled() {
+      Clauses clauses = createClauses("p(X, Y) :- Y.");
+      assertSame(clauses, compiler.compile(KEY, clauses));
+   }
+
+   private ClauseAction[] compile(String... clauses) {
+      return compiler.compile(KEY, createClauses(clauses)).getClauseActions();
+   }
+
+   private Clauses createClauses(String... clauses) {
+      List<ClauseModel> models = new ArrayList<>();
+      for (String clause : clauses) {
+         models.add(TestUtils.createClauseModel(clause));
+      }
+      return Clauses.createFromModels(kb, models);
+   }
+}
@@ -45,9 +45,11 @@ import org.projog.core.KnowledgeBaseUtils;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateFactory;
 import org.projog.core.PredicateKey;
+import org.projog.core.ProjogDefaultProperties;
 import org.projog.core.ProjogException;
 import org.projog.core.term.Term;
 import org.projog.core.term.TermType;
+import org.projog.core.term.Trail;
 import org.projog.core.term.Variable;
 import org.projog.core.udp.ClauseModel;
 import org.projog.core.udp.PredicateUtils;
@@ -56,10 +58,12 @@ import org.projog.core.udp.interpreter.ClauseActionFactory.ImmutableConsequentRu
 import org.projog.core.udp.interpreter.ClauseActionFactory.ImmutableFact;
 import org.projog.core.udp.interpreter.ClauseActionFactory.MutableFact;
 import org.projog.core.udp.interpreter.ClauseActionFactory.MutableRule;
+import org.projog.core.udp.interpreter.ClauseActionFactory.SharedBodyRule;
 import org.projog.core.udp.interpreter.ClauseActionFactory.VariableAntecedantClauseAction;
 import org.projog.core.udp.interpreter.ClauseActionFactory.ZeroArgConsequentRule;
 
 public class ClauseActionFactoryTest {
+   private final Trail trail = Trail.getCurrent();
    private KnowledgeBase kb;
    private PredicateFactory mockPredicateFactory;
    private Predicate mockPredicate1;
@@ -92,13 +96,13 @@ public class ClauseActionFactoryTest {
    @Test
    public void testAlwaysMatchedFact_getPredicate_no_arguments() {
       AlwaysMatchedFact a = create(AlwaysMatchedFact.class, "p.");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(EMPTY_ARRAY));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(EMPTY_ARRAY, trail));
    }
 
    @Test
    public void testAlwaysMatchedFact_getPredicate_distinct_variable_arguments() {
       AlwaysMatchedFact a = create(AlwaysMatchedFact.class, "p(X,Y,Z).");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(EMPTY_ARRAY));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(EMPTY_ARRAY, trail));
    }
 
    @Test
@@ -110,13 +114,13 @@ public class ClauseActionFactoryTest {
    @Test
    public void testImmutableFact_getPredicate_query_args_match_clause() {
       ImmutableFact a = create(ImmutableFact.class, "p(a,b,c).");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), atom("c"))));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), atom("c")), trail));
    }
 
    @Test
    public void testImmutableFact_getPredicate_query_args_dont_match_clause() {
       ImmutableFact a = create(ImmutableFact.class, "p(a,b,c).");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("z"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("z")), trail));
    }
 
    @Test
@@ -126,7 +130,7 @@ public class ClauseActionFactoryTest {
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
       Variable z = new Variable("Z");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(x, y, z)));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(x, y, z), trail));
       assertEquals(atom("a"), x.getTerm());
       assertEquals(atom("b"), y.getTerm());
       assertEquals(atom("c"), z.getTerm());
@@ -138,7 +142,7 @@ public class ClauseActionFactoryTest {
 
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), x, y)));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), x, y), trail));
       assertEquals(atom("b"), x.getTerm());
       assertEquals(atom("c"), y.getTerm());
    }
@@ -149,7 +153,7 @@ public class ClauseActionFactoryTest {
 
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, y, x)));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, y, x), trail));
    }
 
    @Test
@@ -158,7 +162,7 @@ public class ClauseActionFactoryTest {
 
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(x, y, x)));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(x, y, x), trail));
       assertEquals(atom("a"), x.getTerm());
       assertEquals(atom("b"), y.getTerm());
    }
@@ -172,48 +176,48 @@ public class ClauseActionFactoryTest {
    @Test
    public void testMutableFact_getPredicate_query_args_unify_with_clause() {
       MutableFact a = create(MutableFact.class, "p(a,X,c).");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), atom("c"))));
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("d"), atom("c"))));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), atom("c")), trail));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("d"), atom("c")), trail));
    }
 
    @Test
    public void testMutableFact_getPredicate_query_args_dont_unify_with_clause() {
       MutableFact a = create(MutableFact.class, "p(a,X,c).");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("d"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("d")), trail));
    }
 
    @Test
    public void testMutableFact_getPredicate_query_args_shared_variable_doesnt_unify_with_clause() {
       MutableFact a = create(MutableFact.class, "p(a,X,c).");
       Variable x = new Variable("X");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, atom("b"), x)));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, atom("b"), x), trail));
    }
 
    @Test
    public void testMutableFact_getPredicate_query_args_shared_variable_unify_with_clause() {
       MutableFact a = create(MutableFact.class, "p(a,X,a).");
       Variable x = new Variable("X");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(x, atom("b"), x)));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(x, atom("b"), x), trail));
       assertEquals(atom("a"), x.getTerm());
    }
 
    @Test
    public void testMutableFact_getPredicate_query_args_dont_unify_with_clause_shared_variable() {
       MutableFact a = create(MutableFact.class, "p(X,b,X).");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("c"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("c")), trail));
    }
 
    @Test
    public void testMutableFact_getPredicate_query_args_unify_with_clause_shared_variable() {
       MutableFact a = create(MutableFact.class, "p(X,b,X).");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), atom("a"))));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), atom("a")), trail));
    }
 
    @Test
    public void testMutableFact_getPredicate_query_args_variable_unifies_with_clause_variable() {
       MutableFact a = create(MutableFact.class, "p(a,X,c).");
       Variable x = new Variable("X");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), x, atom("c"))));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), x, atom("c")), trail));
       assertSame(TermType.VARIABLE, x.getTerm().getType());
       // assert query variable has been unified with clause variable
       assertNotSame(x, x.getTerm());
@@ -223,7 +227,7 @@ public class ClauseActionFactoryTest {
    public void testMutableFact_getPredicate_query_args_variable_unifies_with_clause_atom() {
       MutableFact a = create(MutableFact.class, "p(a,X,c).");
       Variable x = new Variable("X");
-      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), x)));
+      assertSame(PredicateUtils.TRUE, a.getPredicate(array(atom("a"), atom("b"), x), trail));
       assertEquals(atom("c"), x.getTerm());
    }
 
@@ -237,7 +241,7 @@ public class ClauseActionFactoryTest {
    public void testVariableAntecedant_getPredicate_unassigned_variable() {
       VariableAntecedantClauseAction a = create(VariableAntecedantClauseAction.class, "p(X) :- X.");
       try {
-         a.getPredicate(array(new Variable("Z")));
+         a.getPredicate(array(new Variable("Z")), trail);
          fail();
       } catch (ProjogException e) {
          assertEquals("Expected an atom or a predicate but got a VARIABLE with value: X", e.getMessage());
@@ -247,13 +251,13 @@ public class ClauseActionFactoryTest {
    @Test
    public void testVariableAntecedant_getPredicate_unknown_predicate() {
       VariableAntecedantClauseAction a = create(VariableAntecedantClauseAction.class, "p(X) :- X.");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("an_unknown_predicate"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("an_unknown_predicate")), trail));
    }
 
    @Test
    public void testVariableAntecedant_getPredicate_query_args_dont_unify_with_clause() {
       VariableAntecedantClauseAction a = create(VariableAntecedantClauseAction.class, "p(X,a) :- X.");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("test"), atom("b"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("test"), atom("b")), trail));
    }
 
    @Test
@@ -261,8 +265,8 @@ public class ClauseActionFactoryTest {
       Term[] queryArgs = array(atom("test"));
 
       VariableAntecedantClauseAction a = create(VariableAntecedantClauseAction.class, "p(X) :- X.");
-      assertSame(mockPredicate1, a.getPredicate(queryArgs));
-      assertSame(mockPredicate2, a.getPredicate(queryArgs));
+      assertSame(mockPredicate1, a.getPredicate(queryArgs, trail));
+      assertSame(mockPredicate2, a.getPredicate(queryArgs, trail));
 
       verify(mockPredicateFactory, times(2)).getPredicate(EMPTY_ARRAY);
    }
@@ -280,8 +284,8 @@ public class ClauseActionFactoryTest {
       kb.getPredicates().addPredicateFactory(new PredicateKey("test2", 0), pf2);
 
       VariableAntecedantClauseAction a = create(VariableAntecedantClauseAction.class, "p(X) :- X.");
-      assertSame(p1, a.getPredicate(array(atom("test1"))));
-      assertSame(p2, a.getPredicate(array(atom("test2"))));
+      assertSame(p1, a.getPredicate(array(atom("test1")), trail));
+      assertSame(p2, a.getPredicate(array(atom("test2")), trail));
 
       verify(pf1, times(1)).getPredicate(EMPTY_ARRAY);
       verify(pf2, times(1)).getPredicate(EMPTY_ARRAY);
@@ -317,8 +321,8 @@ public class ClauseActionFactoryTest {
    @Test
    public void testZeroArgConsequentRule_getPredicate() {
       ZeroArgConsequentRule a = create(ZeroArgConsequentRule.class, "p :- test.");
-      assertSame(mockPredicate1, a.getPredicate(EMPTY_ARRAY));
-      assertSame(mockPredicate2, a.getPredicate(EMPTY_ARRAY));
+      assertSame(mockPredicate1, a.getPredicate(EMPTY_ARRAY, trail));
+      assertSame(mockPredicate2, a.getPredicate(EMPTY_ARRAY, trail));
 
       verify(mockPredicateFactory, times(2)).getPredicate(EMPTY_ARRAY);
    }
@@ -336,8 +340,8 @@ public class ClauseActionFactoryTest {
       when(pf.getPredicate(captor.capture())).thenReturn(p1, p2);
 
       ZeroArgConsequentRule a = create(ZeroArgConsequentRule.class, "p :- test(X,y,X,p(X),Z).");
-      assertSame(p1, a.getPredicate(EMPTY_ARRAY));
-      assertSame(p2, a.getPredicate(EMPTY_ARRAY));
+      assertSame(p1, a.getPredicate(EMPTY_ARRAY, trail));
+      assertSame(p2, a.getPredicate(EMPTY_ARRAY, trail));
 
       List<Term[]> allValues = captor.getAllValues();
       assertEquals(2, allValues.size());
@@ -389,8 +393,8 @@ public class ClauseActionFactoryTest {
    public void testImmutableConsequentRule_getPredicate_query_args_match_clause() {
       ImmutableConsequentRule a = create(ImmutableConsequentRule.class, "p(a,b,c) :- test.");
       Term[] queryArgs = array(atom("a"), atom("b"), atom("c"));
-      assertSame(mockPredicate1, a.getPredicate(queryArgs));
-      assertSame(mockPredicate2, a.getPredicate(queryArgs));
+      assertSame(mockPredicate1, a.getPredicate(queryArgs, trail));
+      assertSame(mockPredicate2, a.getPredicate(queryArgs, trail));
 
       verify(mockPredicateFactory, times(2)).getPredicate(EMPTY_ARRAY);
    }
@@ -398,7 +402,7 @@ public class ClauseActionFactoryTest {
    @Test
    public void testImmutableConsequentRule_getPredicate_query_args_dont_match_clause() {
       ImmutableConsequentRule a = create(ImmutableConsequentRule.class, "p(a,b,c) :- test.");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("z"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("z")), trail));
    }
 
    @Test
@@ -408,7 +412,7 @@ public class ClauseActionFactoryTest {
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
       Variable z = new Variable("Z");
-      assertSame(mockPredicate1, a.getPredicate(array(x, y, z)));
+      assertSame(mockPredicate1, a.getPredicate(array(x, y, z), trail));
       assertEquals(atom("a"), x.getTerm());
       assertEquals(atom("b"), y.getTerm());
       assertEquals(atom("c"), z.getTerm());
@@ -422,7 +426,7 @@ public class ClauseActionFactoryTest {
 
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
-      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), x, y)));
+      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), x, y), trail));
       assertEquals(atom("b"), x.getTerm());
       assertEquals(atom("c"), y.getTerm());
 
@@ -435,7 +439,7 @@ public class ClauseActionFactoryTest {
 
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, y, x)));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, y, x), trail));
    }
 
    @Test
@@ -444,7 +448,7 @@ public class ClauseActionFactoryTest {
 
       Variable x = new Variable("X");
       Variable y = new Variable("Y");
-      assertSame(mockPredicate1, a.getPredicate(array(x, y, x)));
+      assertSame(mockPredicate1, a.getPredicate(array(x, y, x), trail));
       assertEquals(atom("a"), x.getTerm());
       assertEquals(atom("b"), y.getTerm());
 
@@ -485,7 +489,7 @@ public class ClauseActionFactoryTest {
       Variable v2 = new Variable("B");
       Variable v3 = new Variable("C");
 
-      assertSame(mockPredicate1, a.getPredicate(array(v1, v2, v3)));
+      assertSame(mockPredicate1, a.getPredicate(array(v1, v2, v3), trail));
 
       // assert query variables have been unified with clause variables
       assertSame(TermType.VARIABLE, v1.getTerm().getType());
@@ -506,29 +510,29 @@ public class ClauseActionFactoryTest {
    @Test
    public void testMutableRule_getPredicate_query_args_unify_with_clause() {
       MutableRule a = create(MutableRule.class, "p(a,X,c)  :- test.");
-      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), atom("b"), atom("c"))));
-      assertSame(mockPredicate2, a.getPredicate(array(atom("a"), atom("d"), atom("c"))));
+      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), atom("b"), atom("c")), trail));
+      assertSame(mockPredicate2, a.getPredicate(array(atom("a"), atom("d"), atom("c")), trail));
       verify(mockPredicateFactory, times(2)).getPredicate(EMPTY_ARRAY);
    }
 
    @Test
    public void testMutableRule_getPredicate_query_args_dont_unify_with_clause() {
       MutableRule a = create(MutableRule.class, "p(a,X,c)  :- test.");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("d"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("d")), trail));
    }
 
    @Test
    public void testMutableRule_getPredicate_query_args_shared_variable_doesnt_unify_with_clause() {
       MutableRule a = create(MutableRule.class, "p(a,X,c) :- test.");
       Variable x = new Variable("X");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, atom("b"), x)));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(x, atom("b"), x), trail));
    }
 
    @Test
    public void testMutableRule_getPredicate_query_args_shared_variable_unify_with_clause() {
       MutableRule a = create(MutableRule.class, "p(a,X,a) :- test.");
       Variable x = new Variable("X");
-      assertSame(mockPredicate1, a.getPredicate(array(x, atom("b"), x)));
+      assertSame(mockPredicate1, a.getPredicate(array(x, atom("b"), x), trail));
       assertEquals(atom("a"), x.getTerm());
       verify(mockPredicateFactory).getPredicate(EMPTY_ARRAY);
    }
@@ -536,13 +540,13 @@ public class ClauseActionFactoryTest {
    @Test
    public void testMutableRule_getPredicate_query_args_dont_unify_with_clause_shared_variable() {
       MutableRule a = create(MutableRule.class, "p(X,b,X) :- test.");
-      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("c"))));
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("a"), atom("b"), atom("c")), trail));
    }
 
    @Test
    public void testMutableRule_getPredicate_query_args_unify_with_clause_shared_variable() {
       MutableRule a = create(MutableRule.class, "p(X,b,X) :- test.");
-      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), atom("b"), atom("a"))));
+      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), atom("b"), atom("a")), trail));
       verify(mockPredicateFactory).getPredicate(EMPTY_ARRAY);
    }
 
@@ -550,7 +554,7 @@ public class ClauseActionFactoryTest {
    public void testMutableRule_getPredicate_query_args_variable_unifies_with_clause_variable() {
       MutableRule a = create(MutableRule.class, "p(a,X,c) :- test.");
       Variable variable = new Variable("A");
-      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), variable, atom("c"))));
+      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), variable, atom("c")), trail));
       // assert query variable has been unified with clause variable
       assertSame(TermType.VARIABLE, variable.getTerm().getType());
       assertNotSame(variable, variable.getTerm());
@@ -562,11 +566,62 @@ public class ClauseActionFactoryTest {
    public void testMutableRule_getPredicate_query_args_variable_unifies_with_clause_atom() {
       MutableRule a = create(MutableRule.class, "p(a,X,c) :- test.");
       Variable x = new Variable("X");
-      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), atom("b"), x)));
+      assertSame(mockPredicate1, a.getPredicate(array(atom("a"), atom("b"), x), trail));
       assertEquals(atom("c"), x.getTerm());
       verify(mockPredicateFactory).getPredicate(EMPTY_ARRAY);
    }
 
+   @Test
+   public void testSharedBodyRule_notUsedByDefault() {
+      create(MutableRule.class, "p(X) :- test, test.");
+   }
+
+   @Test
+   public void testSharedBodyRule_isRetryable() {
+      enableStructureSharing();
+      SharedBodyRule a = create(SharedBodyRule.class, "p(X) :- test, test.");
+      assertFalse(a.isRetryable());
+      verify(mockPredicateFactory, times(2)).isRetryable();
+   }
+
+   @Test
+   public void testSharedBodyRule_getPredicate_query_args_dont_unify_with_clause() {
+      enableStructureSharing();
+      SharedBodyRule a = create(SharedBodyRule.class, "p(a,X) :- test, test.");
+      assertSame(PredicateUtils.FALSE, a.getPredicate(array(atom("b"), atom("c")), trail));
+      verify(mockPredicateFactory, times(2)).isRetryable();
+   }
+
+   @Test
+   public void testSharedBodyRule_getPredicate_does_not_create_goals() {
+      enableStructureSharing();
+      SharedBodyRule a = create(SharedBodyRule.class, "p(a,X) :- test, test.");
+      assertClass(SharedBodyPredicate.class, a.getPredicate(array(atom("a"), atom("c")), trail));
+      verify(mockPredicateFactory, times(2)).isRetryable();
+   }
+
+   @Test
+   public void testSharedBodyRule_notUsedWhenBodyContainsVariableGoal() {
+      enableStructureSharing();
+      create(MutableRule.class, "p(X) :- test, X.");
+   }
+
+   @Test
+   public void testSharedBodyRule_notUsedWhenBodyNotConjunction() {
+      enableStructureSharing();
+      create(MutableRule.class, "p(X) :- test.");
+   }
+
+   private void enableStructureSharing() {
+      kb = KnowledgeBaseUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+         @Override
+         public boolean isStructureSharingEnabled() {
+            return true;
+         }
+      });
+      kb.getPredicates().addPredicateFactory(new PredicateKey("test", 0), mockPredicateFactory);
+   }
+
    @SuppressWarnings("unchecked")
    private <T extends ClauseAction> T create(Class<?> type, String syntax) {
       ClauseModel model = createClauseModel(syntax);
@@ -34,7 +34,6 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.projog.TestUtils;
-import org.projog.core.CutException;
 import org.projog.core.Predicate;
 import org.projog.core.PredicateKey;
 import org.projog.core.ProjogException;
@@ -45,9 +44,11 @@ import org.projog.core.SpyPoints.SpyPointExitEvent;
 import org.projog.core.event.ProjogListener;
 import org.projog.core.event.ProjogListeners;
 import org.projog.core.term.Term;
+import org.projog.core.term.Trail;
 import org.projog.core.udp.PredicateUtils;
 
 public class InterpretedUserDefinedPredicateTest {
+   private final Trail trail = Trail.getCurrent();
    private SpyPoints spyPoints;
    private SpyPoint spyPoint;
    private ClauseAction mockAction1;
@@ -98,9 +99,9 @@ public class InterpretedUserDefinedPredicateTest {
    private void assertAllSucceedOnce() {
       InterpretedUserDefinedPredicate testObject = new InterpretedUserDefinedPredicate(Arrays.asList(mockAction1, mockAction2, mockAction3).iterator(), spyPoint, queryArgs);
 
-      when(mockAction1.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
-      when(mockAction2.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
-      when(mockAction3.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction1.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction2.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction3.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
 
       assertTrue(testObject.couldReevaluationSucceed());
       assertTrue(testObject.evaluate());
@@ -111,9 +112,9 @@ public class InterpretedUserDefinedPredicateTest {
       assertFalse(testObject.couldReevaluationSucceed());
       assertFalse(testObject.evaluate());
 
-      verify(mockAction1).getPredicate(queryArgs);
-      verify(mockAction2).getPredicate(queryArgs);
-      verify(mockAction3).getPredicate(queryArgs);
+      verify(mockAction1).getPredicate(queryArgs, trail);
+      verify(mockAction2).getPredicate(queryArgs, trail);
+      verify(mockAction3).getPredicate(queryArgs, trail);
    }
 
    @Test
@@ -137,16 +138,16 @@ public class InterpretedUserDefinedPredicateTest {
    private void assertAllFail() {
       InterpretedUserDefinedPredicate testObject = new InterpretedUserDefinedPredicate(Arrays.asList(mockAction1, mockAction2, mockAction3).iterator(), spyPoint, queryArgs);
 
-      when(mockAction1.getPredicate(queryArgs)).thenReturn(PredicateUtils.FALSE);
-      when(mockAction2.getPredicate(queryArgs)).thenReturn(PredicateUtils.FALSE);
-      when(mockAction3.getPredicate(queryArgs)).thenReturn(PredicateUtils.FALSE);
+      when(mockAction1.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.FALSE);
+      when(mockAction2.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.FALSE);
+      when(mockAction3.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.FALSE);
 
       assertTrue(testObject.couldReevaluationSucceed());
       assertFalse(testObject.evaluate());
 
-      verify(mockAction1).getPredicate(queryArgs);
-      verify(mockAction2).getPredicate(queryArgs);
-      verify(mockAction3).getPredicate(queryArgs);
+      verify(mockAction1).getPredicate(queryArgs, trail);
+      verify(mockAction2).getPredicate(queryArgs, trail);
+      verify(mockAction3).getPredicate(queryArgs, trail);
    }
 
    @Test
@@ -179,9 +180,9 @@ public class InterpretedUserDefinedPredicateTest {
       when(mockPredicate.evaluate()).thenReturn(true, true, true, true, true, false);
       when(mockPredicate.couldReevaluationSucceed()).thenReturn(true, true, true, true, true);
 
-      when(mockAction1.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
-      when(mockAction2.getPredicate(queryArgs)).thenReturn(mockPredicate);
-      when(mockAction3.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction1.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction2.getPredicate(queryArgs, trail)).thenReturn(mockPredicate);
+      when(mockAction3.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
 
       assertTrue(testObject.couldReevaluationSucceed());
       assertTrue(testObject.evaluate());
@@ -200,9 +201,9 @@ public class InterpretedUserDefinedPredicateTest {
       assertFalse(testObject.couldReevaluationSucceed());
       assertFalse(testObject.evaluate());
 
-      verify(mockAction1).getPredicate(queryArgs);
-      verify(mockAction2).getPredicate(queryArgs);
-      verify(mockAction3).getPredicate(queryArgs);
+      verify(mockAction1).getPredicate(queryArgs, trail);
+      verify(mockAction2).getPredicate(queryArgs, trail);
+      verify(mockAction3).getPredicate(queryArgs, trail);
       verify(mockPredicate, times(6)).evaluate();
       verify(mockPredicate, times(5)).couldReevaluationSucceed();
       verifyNoMoreInteractions(mockPredicate);
@@ -238,9 +239,9 @@ public class InterpretedUserDefinedPredicateTest {
       when(mockPredicate.evaluate()).thenReturn(true, true, true, true, true);
       when(mockPredicate.couldReevaluationSucceed()).thenReturn(true, true, true, true, false);
 
-      when(mockAction1.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
-      when(mockAction2.getPredicate(queryArgs)).thenReturn(mockPredicate);
-      when(mockAction3.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction1.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction2.getPredicate(queryArgs, trail)).thenReturn(mockPredicate);
+      when(mockAction3.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
 
       assertTrue(testObject.couldReevaluationSucceed());
       assertTrue(testObject.evaluate());
@@ -259,31 +260,34 @@ public class InterpretedUserDefinedPredicateTest {
       assertFalse(testObject.couldReevaluationSucceed());
       assertFalse(testObject.evaluate());
 
-      verify(mockAction1).getPredicate(queryArgs);
-      verify(mockAction2).getPredicate(queryArgs);
-      verify(mockAction3).getPredicate(queryArgs);
+      verify(mockAction1).getPredicate(queryArgs, trail);
+      verify(mockAction2).getPredicate(queryArgs, trail);
+      verify(mockAction3).getPredicate(queryArgs, trail);
       verify(mockPredicate, times(5)).evaluate();
       verify(mockPredicate, times(5)).couldReevaluationSucceed();
       verifyNoMoreInteractions(mockPredicate);
    }
 
    @Test
-   public void testSecondRuleCutException() {
+   public void testSecondRuleCut() {
       InterpretedUserDefinedPredicate testObject = new InterpretedUserDefinedPredicate(Arrays.asList(mockAction1, mockAction2, mockAction3).iterator(), spyPoint, queryArgs);
 
       Predicate mockPredicate = mock(Predicate.class);
-      when(mockPredicate.evaluate()).thenThrow(CutException.CUT_EXCEPTION);
+      when(mockPredicate.evaluate()).thenAnswer(TestUtils.BACKTRACK_TO_CUT);
 
-      when(mockAction1.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
-      when(mockAction2.getPredicate(queryArgs)).thenReturn(mockPredicate);
+      when(mockAction1.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction2.getPredicate(queryArgs, trail)).thenReturn(mockPredicate);
 
       assertTrue(testObject.couldReevaluationSucceed());
       assertTrue(testObject.evaluate());
       assertTrue(testObject.couldReevaluationSucceed());
       assertFalse(testObject.evaluate());
+      assertFalse(testObject.couldReevaluationSucceed());
+      // the cut only applies to the invocation it was evaluated in
+      assertFalse(Trail.getCurrent().getCutBarrier().isCut());
 
-      verify(mockAction1).getPredicate(queryArgs);
-      verify(mockAction2).getPredicate(queryArgs);
+      verify(mockAction1).getPredicate(queryArgs, trail);
+      verify(mockAction2).getPredicate(queryArgs, trail);
       verify(mockPredicate).evaluate();
       verifyNoMoreInteractions(mockPredicate);
    }
@@ -315,8 +319,8 @@ public class InterpretedUserDefinedPredicateTest {
       Predicate mockPredicate = mock(Predicate.class);
       when(mockPredicate.evaluate()).thenThrow(exception);
 
-      when(mockAction1.getPredicate(queryArgs)).thenReturn(PredicateUtils.TRUE);
-      when(mockAction2.getPredicate(queryArgs)).thenReturn(mockPredicate);
+      when(mockAction1.getPredicate(queryArgs, trail)).thenReturn(PredicateUtils.TRUE);
+      when(mockAction2.getPredicate(queryArgs, trail)).thenReturn(mockPredicate);
 
       assertTrue(testObject.couldReevaluationSucceed());
       assertTrue(testObject.evaluate());
@@ -329,8 +333,8 @@ public class InterpretedUserDefinedPredicateTest {
          assertSame(exception, e.getCause());
       }
 
-      verify(mockAction1).getPredicate(queryArgs);
-      verify(mockAction2).getPredicate(queryArgs);
+      verify(mockAction1).getPredicate(queryArgs, trail);
+      verify(mockAction2).getPredicate(queryArgs, trail);
       verify(mockAction2).getModel();
       verify(mockPredicate).evaluate();
       verifyNoMoreInteractions(mockPredicate);
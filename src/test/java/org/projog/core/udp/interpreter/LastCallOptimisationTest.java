@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.interpreter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.projog.api.Projog;
+import org.projog.api.QueryResult;
+import org.projog.core.ProjogDefaultProperties;
+
+/**
+ * Tests {@link InterpretedUserDefinedPredicate} when {@link org.projog.core.ProjogProperties#isLastCallOptimisationEnabled()}.
+ */
+public class LastCallOptimisationTest {
+   /** More iterations than can be evaluated by nested calls without overflowing the Java stack. */
+   private static final int DEPTH = 1000000;
+
+   private final Projog projog = createProjog();
+
+   @Test
+   public void testRecursionWithMultipleClauses() {
+      QueryResult r = projog.executeQuery("countdown(" + DEPTH + ").");
+      assertTrue(r.next());
+      assertFalse(r.next());
+   }
+
+   @Test
+   public void testMutualRecursion() {
+      assertTrue(projog.executeQuery("even(" + DEPTH + ").").next());
+      assertFalse(projog.executeQuery("even(" + (DEPTH + 1) + ").").next());
+   }
+
+   @Test
+   public void testAccumulator() {
+      QueryResult r = projog.executeQuery("findall(X, between(1, " + DEPTH + ", X), L), total(L, 0, S).");
+      assertTrue(r.next());
+      assertEquals(DEPTH * (DEPTH + 1L) / 2, r.getLong("S"));
+   }
+
+   @Test
+   public void testIfThenElse() {
+      assertTrue(projog.executeQuery("loop(" + DEPTH + ").").next());
+   }
+
+   /** The last goal is preceded by a goal that can be backtracked to, so every solution must still be found. */
+   @Test
+   public void testBacktrackingBeforeLastGoal() {
+      QueryResult r = projog.executeQuery("greater_than_one(X).");
+      assertTrue(r.next());
+      assertEquals(2, r.getLong("X"));
+      assertTrue(r.next());
+      assertEquals(3, r.getLong("X"));
+      assertFalse(r.next());
+   }
+
+   /** The last goal is preceded by a cut, so the remaining clauses must not be tried. */
+   @Test
+   public void testCutBeforeLastGoal() {
+      QueryResult r = projog.executeQuery("after_cut(5, Y).");
+      assertTrue(r.next());
+      assertEquals(1, r.getLong("Y"));
+      assertTrue(r.next());
+      assertEquals(2, r.getLong("Y"));
+      assertFalse(r.next());
+   }
+
+   /** Variables instantiated by a clause that was replaced by its last goal must be undone if the last goal fails. */
+   @Test
+   public void testBindingsUndoneWhenLastGoalFails() {
+      QueryResult r = projog.executeQuery("found(3, Y) ; Y = none.");
+      assertTrue(r.next());
+      assertEquals("none", r.getAtomName("Y"));
+      assertFalse(r.next());
+   }
+
+   private static Projog createProjog() {
+      Projog projog = new Projog(new ProjogDefaultProperties() {
+         @Override
+         public boolean isLastCallOptimisationEnabled() {
+            return true;
+         }
+      });
+      projog.consultReader(new StringReader("" //
+                                            + "countdown(0) :- !.\n" //
+                                            + "countdown(N) :- N < 0, !, fail.\n" //
+                                            + "countdown(N) :- N1 is N-1, countdown(N1).\n" //
+                                            + "even(0) :- !.\n" //
+                                            + "even(N) :- N1 is N-1, odd(N1).\n" //
+                                            + "odd(N) :- N > 0, N1 is N-1, even(N1).\n" //
+                                            + "total([], S, S).\n" //
+                                            + "total([H|T], A, S) :- H < 0, !, total(T, A, S).\n" //
+                                            + "total([H|T], A, S) :- A1 is A+H, total(T, A1, S).\n" //
+                                            + "loop(N) :- (N =:= 0 -> true ; N1 is N-1, loop(N1)).\n" //
+                                            + "greater_than_one(X) :- member(X, [1,2,3]), is_greater_than_one(X).\n" //
+                                            + "is_greater_than_one(X) :- X > 1.\n" //
+                                            + "is_greater_than_one(X) :- X > 99.\n" //
+                                            + "after_cut(X, Y) :- X > 0, !, digit(Y).\n" //
+                                            + "after_cut(_, 0).\n" //
+                                            + "digit(1).\n" //
+                                            + "digit(2).\n" //
+                                            + "found(X, Y) :- Y = found, is_one_or_two(X).\n" //
+                                            + "is_one_or_two(X) :- X == 1.\n" //
+                                            + "is_one_or_two(X) :- X == 2.\n"));
+      return projog;
+   }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.interpreter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.array;
+import static org.projog.TestUtils.assertClass;
+import static org.projog.TestUtils.createClauseModel;
+import static org.projog.TestUtils.integerNumber;
+import static org.projog.TestUtils.variable;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.Predicate;
+import org.projog.core.ProjogDefaultProperties;
+import org.projog.core.term.Term;
+import org.projog.core.term.TermType;
+import org.projog.core.term.Trail;
+import org.projog.core.term.Variable;
+
+public class SharedBodyPredicateTest {
+   private final KnowledgeBase kb = TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+      @Override
+      public boolean isStructureSharingEnabled() {
+         return true;
+      }
+   });
+
+   @Test
+   public void testBacktracking() {
+      Variable a = variable("A");
+      Variable b = variable("B");
+      Predicate p = getPredicate("p(X,Y) :- between(1, 5, X), X > 2, Y is X * 10.", a, b);
+
+      for (int i = 3; i < 6; i++) {
+         assertTrue(p.couldReevaluationSucceed());
+         assertTrue(p.evaluate());
+         assertEquals(integerNumber(i), a.getTerm());
+         assertEquals(integerNumber(i * 10), b.getTerm());
+      }
+      assertFalse(p.evaluate());
+      // query variables remain bound to the (now uninstantiated) variables of the head of the clause
+      assertSame(TermType.VARIABLE, a.getType());
+      assertSame(TermType.VARIABLE, b.getType());
+   }
+
+   @Test
+   public void testGoalArgumentsSharedVariables() {
+      Variable a = variable("A");
+      Predicate p = getPredicate("p(X) :- Y = f(Z), Z = 7, X = g(Y).", a);
+
+      assertTrue(p.evaluate());
+      assertEquals("g(f(7))", TestUtils.write(a.getTerm()));
+      assertFalse(p.couldReevaluationSucceed());
+   }
+
+   @Test
+   public void testFailure() {
+      Variable a = variable("A");
+      Predicate p = getPredicate("p(X) :- X = 1, X = 2.", a);
+
+      Trail trail = Trail.getCurrent();
+      int size = trail.size();
+      assertFalse(p.evaluate());
+      assertSame(TermType.VARIABLE, a.getType());
+      assertEquals(size, trail.size());
+   }
+
+   @Test
+   public void testGoalsCreatedWhenReached() {
+      // if the second goal was created before the first was evaluated then it would throw an exception
+      Variable a = variable("A");
+      Predicate p = getPredicate("p(X) :- Y = 3, X is Y + 1.", a);
+
+      assertTrue(p.evaluate());
+      assertEquals(integerNumber(4), a.getTerm());
+   }
+
+   private Predicate getPredicate(String clause, Term... args) {
+      ClauseAction action = ClauseActionFactory.createClauseAction(kb, createClauseModel(clause));
+      Predicate p = action.getPredicate(array(args), Trail.getCurrent());
+      assertClass(SharedBodyPredicate.class, p);
+      return p;
+   }
+}
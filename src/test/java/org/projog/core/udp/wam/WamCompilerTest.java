@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.core.udp.wam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.projog.TestUtils.atom;
+import static org.projog.TestUtils.list;
+import static org.projog.TestUtils.variable;
+import static org.projog.TestUtils.write;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.projog.TestUtils;
+import org.projog.core.KnowledgeBase;
+import org.projog.core.KnowledgeBaseServiceLocator;
+import org.projog.core.Predicate;
+import org.projog.core.PredicateFactory;
+import org.projog.core.PredicateKey;
+import org.projog.core.ProjogDefaultProperties;
+import org.projog.core.ProjogSourceReader;
+import org.projog.core.term.EmptyList;
+import org.projog.core.term.Term;
+import org.projog.core.term.Variable;
+import org.projog.core.udp.StaticUserDefinedPredicateFactory;
+
+/** Tests {@link WamCompiler} and the {@link WamPredicateFactory} instances it creates. */
+public class WamCompilerTest {
+   private static final PredicateKey CONCATENATE = new PredicateKey("concatenate", 3);
+   private static final PredicateKey FIRST = new PredicateKey("first", 2);
+   private static final PredicateKey COUNT = new PredicateKey("count", 1);
+   private static final String SOURCE = "concatenate([], L, L).\n"
+                                        + "concatenate([H|T], L, [H|R]) :- concatenate(T, L, R).\n"
+                                        + "first([X|_], Y) :- !, X = Y.\n"
+                                        + "first([_|T], Y) :- first(T, Y).\n"
+                                        + "?- assertz(counter(0)).\n"
+                                        + "count(X) :- counter(X).\n";
+
+   private final KnowledgeBase kb = createKnowledgeBase();
+
+   @Test
+   public void testCompiledWhenEnabled() {
+      assertSame(WamPredicateFactory.class, getActualPredicateFactory(CONCATENATE).getClass());
+      assertSame(WamPredicateFactory.class, getActualPredicateFactory(FIRST).getClass());
+   }
+
+   @Test
+   public void testNotCompiledWhenCallsDynamicPredicate() {
+      assertFalse(getActualPredicateFactory(COUNT) instanceof WamPredicateFactory);
+      WamCompiler compiler = KnowledgeBaseServiceLocator.getServiceLocator(kb).getInstance(WamCompiler.class);
+      assertNull(compiler.compile(COUNT, getActualPredicateFactory(COUNT)));
+   }
+
+   @Test
+   public void testNotCompiledWhenDisabled() {
+      KnowledgeBase disabled = TestUtils.createKnowledgeBase(TestUtils.PROJOG_DEFAULT_PROPERTIES);
+      consult(disabled);
+      assertFalse(getActualPredicateFactory(disabled, CONCATENATE) instanceof WamPredicateFactory);
+   }
+
+   @Test
+   public void testBacktracking() {
+      Variable x = variable("X");
+      Variable y = variable("Y");
+      Predicate p = getActualPredicateFactory(CONCATENATE).getPredicate(new Term[] {x, y, list(atom("a"), atom("b"))});
+
+      assertTrue(p.evaluate());
+      assertSame(EmptyList.EMPTY_LIST, x.getTerm());
+      assertEquals("[a,b]", write(y));
+      assertTrue(p.couldReevaluationSucceed());
+
+      assertTrue(p.evaluate());
+      assertEquals("[a]", write(x));
+      assertEquals("[b]", write(y));
+
+      assertTrue(p.evaluate());
+      assertEquals("[a,b]", write(x));
+      assertSame(EmptyList.EMPTY_LIST, y.getTerm());
+
+      assertFalse(p.evaluate());
+      assertSame(x, x.getTerm());
+      assertSame(y, y.getTerm());
+   }
+
+   @Test
+   public void testCut() {
+      Variable x = variable("X");
+      Predicate p = getActualPredicateFactory(FIRST).getPredicate(new Term[] {list(atom("a"), atom("b")), x});
+      assertTrue(p.evaluate());
+      assertEquals("a", x.toString());
+      assertFalse(p.evaluate());
+   }
+
+   @Test
+   public void testNoSolutions() {
+      Predicate p = getActualPredicateFactory(FIRST).getPredicate(new Term[] {EmptyList.EMPTY_LIST, variable("X")});
+      assertFalse(p.evaluate());
+      assertFalse(p.couldReevaluationSucceed());
+   }
+
+   @Test
+   public void testProceduresCompiledOnce() {
+      int length = 20;
+      StringBuilder source = new StringBuilder();
+      for (int i = 0; i < length - 1; i++) {
+         source.append("p").append(i).append("(X) :- p").append(i + 1).append("(X).\n");
+      }
+      source.append("p").append(length - 1).append("(a).\n");
+
+      // compile the predicates that are called before the predicates that call them
+      KnowledgeBase calleesFirst = createKnowledgeBase(source.toString());
+      WamProgram[] programs = new WamProgram[length];
+      for (int i = length - 1; i >= 0; i--) {
+         programs[i] = getProgram(calleesFirst, new PredicateKey("p" + i, 1));
+         assertEquals(length - i, programs[i].numberOfProcedures);
+         assertEquals(length - i, programs[i].spyPoints.length);
+      }
+      // the later programs call the procedures compiled for the earlier programs
+      for (int i = 0; i < length; i++) {
+         int procedure = length - 1 - i;
+         assertEquals(new PredicateKey("p" + i, 1), programs[0].procedureKeys[procedure]);
+         assertEquals(programs[i].procedureEntries[procedure], programs[0].procedureEntries[procedure]);
+      }
+
+      // compile the predicates that call other predicates first
+      KnowledgeBase callersFirst = createKnowledgeBase(source.toString());
+      for (int i = 0; i < length; i++) {
+         WamProgram program = getProgram(callersFirst, new PredicateKey("p" + i, 1));
+         assertTrue(program.numberOfProcedures <= length);
+         assertEquals(length - i, program.spyPoints.length);
+      }
+
+      // either way, each procedure is only compiled once
+      WamProgram callersFirstProgram = getProgram(callersFirst, new PredicateKey("p0", 1));
+      assertEquals(length, callersFirstProgram.numberOfProcedures);
+      assertEquals(programs[0].codeSize, callersFirstProgram.codeSize);
+
+      Variable x = variable("X");
+      Predicate p = getActualPredicateFactory(calleesFirst, new PredicateKey("p0", 1)).getPredicate(new Term[] {x});
+      assertTrue(p.evaluate());
+      assertEquals("a", x.toString());
+      assertFalse(p.evaluate());
+   }
+
+   private static WamProgram getProgram(KnowledgeBase kb, PredicateKey key) {
+      return ((WamPredicateFactory) getActualPredicateFactory(kb, key)).getProgram();
+   }
+
+   private PredicateFactory getActualPredicateFactory(PredicateKey key) {
+      return getActualPredicateFactory(kb, key);
+   }
+
+   private static PredicateFactory getActualPredicateFactory(KnowledgeBase kb, PredicateKey key) {
+      StaticUserDefinedPredicateFactory pf = (StaticUserDefinedPredicateFactory) kb.getPredicates().getPredicateFactory(key);
+      assertNotNull(pf);
+      return pf.getActualPredicateFactory();
+   }
+
+   private static KnowledgeBase createKnowledgeBase() {
+      return createKnowledgeBase(SOURCE);
+   }
+
+   private static KnowledgeBase createKnowledgeBase(String source) {
+      KnowledgeBase kb = TestUtils.createKnowledgeBase(new ProjogDefaultProperties() {
+         @Override
+         public boolean isWamEnabled() {
+            return true;
+         }
+      });
+      ProjogSourceReader.parseReader(kb, new StringReader(source));
+      return kb;
+   }
+
+   private static void consult(KnowledgeBase kb) {
+      ProjogSourceReader.parseReader(kb, new StringReader(SOURCE));
+   }
+}
@@ -134,16 +134,16 @@ reverse_list([X|Xs],Acc,Ys) :- reverse_list(Xs,[X|Acc],Ys).
 reverse_list([],Ys,Ys).
 
 %TRUE reverse_list([],[])
-%TRUE_NO reverse_list([a],[a])
+%TRUE reverse_list([a],[a])
 %FALSE reverse_list([a],[b])
-%TRUE_NO reverse_list([a,b],[b,a])
+%TRUE reverse_list([a,b],[b,a])
 %FALSE reverse_list([a,b],[a,b])
 %FALSE reverse_list([a,b],[a,a])
 %FALSE reverse_list([a,b],[b,b])
 %FALSE reverse_list([a,b],[a])
 %FALSE reverse_list([a,b],[b])
 %FALSE reverse_list([a,b],[c,b,a])
-%TRUE_NO reverse_list([a,b,c,d,e,f],[f,e,d,c,b,a])
+%TRUE reverse_list([a,b,c,d,e,f],[f,e,d,c,b,a])
 %FALSE reverse_list([a,b,c,d,e,f],[f,e,d,c,a,b])
 %QUERY reverse_list([a,b,c,X,e,Y],[f,Z,d,c,b,a])
 %ANSWER
@@ -151,13 +151,10 @@ reverse_list([],Ys,Ys).
 % Y=f
 % Z=e
 %ANSWER
-%NO
 %QUERY reverse_list([a,b,c,d,e,f],X)
 %ANSWER X=[f,e,d,c,b,a]
-%NO
 %QUERY reverse_list([a,b,c,[1,2,3]],X)
 %ANSWER X=[[1,2,3],c,b,a]
-%NO
 
 % Determine if elements are next to each other in a list.
 adjacent(X,Y,Zs) :- append_to_list(As,[X,Y|Ys],Zs).
@@ -225,14 +222,11 @@ list_length([X|Xs],A) :- list_length(Xs,B), A is B+1.
 %ANSWER X=0
 %QUERY list_length([a],X)
 %ANSWER X=1
-%NO
 %QUERY list_length([a,b],X)
 %ANSWER X=2
-%NO
 %QUERY list_length([a,b,c,d,e,f],X)
 %ANSWER X=6
-%NO
-%TRUE_NO list_length([a,b,c,d,e,f],6)
+%TRUE list_length([a,b,c,d,e,f],6)
 %FALSE list_length([a,b,c,d,e,f],5)
 
 % Delete elements from a list.
@@ -245,7 +239,6 @@ delete_from_list([],X,[]).
 %TRUE_NO delete_from_list([a,z,c],z,[a,c])
 %QUERY delete_from_list([a,z,c],y,X)
 %ANSWER X=[a,z,c]
-%NO
 %TRUE_NO delete_from_list([z,a,z,z,b,c,z,d,e,f,z],z,[a,b,c,d,e,f])
 %QUERY delete_from_list([z,a,z,z,b,c,z,d,e,f,z],X,[a,b,c,d,e,f])
 %ANSWER X=z
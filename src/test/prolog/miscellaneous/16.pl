@@ -104,7 +104,6 @@ test6(X, Y) :- p(X), p(B), B=A, X = A, B = Y.
 %ANSWER W=2
 %ANSWER W=2
 %ANSWER W=2
-%NO
 
 %QUERY test5(W,1)
 %ANSWER W=1
@@ -118,7 +117,6 @@ test6(X, Y) :- p(X), p(B), B=A, X = A, B = Y.
 %ANSWER W=2
 %ANSWER W=2
 %ANSWER W=2
-%NO
 
 %QUERY test6(W,1)
 %ANSWER W=1
@@ -514,7 +514,6 @@ z3(X,Y,Z) :- assert(b3(1,2,3)), assert(b3(4,5,6)), assert(b3(7,8,9)), repeat(3),
 % X=q
 % Z=e
 %ANSWER
-%NO
 
 %QUERY 1=1, x2(X,Y,Z)
 %ANSWER
@@ -948,7 +947,6 @@ z3(X,Y,Z) :- assert(b3(1,2,3)), assert(b3(4,5,6)), assert(b3(7,8,9)), repeat(3),
 % X=q
 % Z=e
 %ANSWER
-%NO
 
 %QUERY 1=1, x3(X,Y,Z)
 %ANSWER
@@ -70,11 +70,9 @@
 
 %QUERY p(X,b,c)
 %ANSWER X=a
-%NO
 
 %QUERY p(X,2,3)
 %ANSWER X=1
-%NO
 
 %QUERY p(X,y,z)
 %ANSWER X=x
@@ -153,3 +151,15 @@
 %TRUE p(t,y,u)
 %TRUE p(h,j,k)
 
+
+% Backtracking into retract/1 after the clause it is positioned at has been removed by another retract/1.
+%TRUE assertz(kv(a,1)), assertz(kv(b,2)), assertz(kv(a,3))
+%TRUE retract(kv(a,_)), retract(kv(a,_)), \+ kv(a,_), kv(b,2)
+
+%TRUE assertz(z(1)), assertz(z(2)), assertz(z(3))
+%FALSE retract(z(X)), retract(z(Y)), fail
+%QUERY findall(X, z(X), L)
+%ANSWER
+% X=UNINSTANTIATED VARIABLE
+% L=[]
+%ANSWER